@@ -0,0 +1,104 @@
+package database
+
+import com.onyx.exception.TransactionException
+import com.onyx.interactors.transaction.JournalDurability
+import com.onyx.interactors.transaction.data.JournalPosition
+import com.onyx.interactors.transaction.impl.DefaultTransactionStore
+import database.base.DatabaseBaseTest
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.ByteBuffer
+import java.util.concurrent.Executors
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+class JournalTest {
+
+    companion object {
+        private const val TEST_DATABASE = "C:/Sandbox/Onyx/Tests/journalTest.oxd"
+        private const val ENTRY_SIZE = 512
+    }
+
+    @Before
+    fun deleteDatabase() = DatabaseBaseTest.deleteDatabase(TEST_DATABASE)
+
+    @Test
+    fun concurrentEntriesAreAllWrittenForEachDurability() {
+        JournalDurability.values().forEach { durability ->
+            DatabaseBaseTest.deleteDatabase(TEST_DATABASE)
+
+            val store = DefaultTransactionStore(TEST_DATABASE)
+            store.durability = durability
+            store.flushInterval = 10
+
+            val pool = Executors.newFixedThreadPool(8)
+            (0 until 8).map { thread ->
+                pool.submit {
+                    for (i in 0 until 500) {
+                        val entry = ByteBuffer.allocate(ENTRY_SIZE)
+                        entry.putInt(thread)
+                        entry.putInt(i)
+                        entry.position(ENTRY_SIZE)
+                        entry.flip()
+                        store.append(entry).get()
+                    }
+                }
+            }.forEach { it.get() }
+            pool.shutdown()
+            store.close()
+
+            val written = HashSet<Pair<Int, Int>>()
+            File(TEST_DATABASE + File.separator + "wal").listFiles()!!.forEach { file ->
+                val buffer = ByteBuffer.wrap(file.readBytes())
+                while (buffer.hasRemaining()) {
+                    val start = buffer.position()
+                    written.add(Pair(buffer.int, buffer.int))
+                    buffer.position(start + ENTRY_SIZE)
+                }
+            }
+
+            assertEquals(4000, written.size, "Every entry should be written once with durability $durability")
+        }
+    }
+
+    @Test
+    fun entriesCanNotBeAppendedAfterClose() {
+        val store = DefaultTransactionStore(TEST_DATABASE)
+        store.append(ByteBuffer.wrap(ByteArray(10))).get()
+        store.close()
+        assertFailsWith<TransactionException> { store.append(ByteBuffer.wrap(ByteArray(10))) }
+        assertFailsWith<TransactionException> { store.appendHeader(ByteBuffer.wrap(ByteArray(10))) }
+        assertNull(store.sync())
+
+        assertEquals(10L, File(TEST_DATABASE + File.separator + "wal" + File.separator + "0.wal").length())
+    }
+
+    @Test
+    fun entriesCanNotBeAppendedOnceTheFlusherIsInterrupted() {
+        fun flushers() = Thread.getAllStackTraces().keys.filter { it.name == "Onyx Journal Flusher" && it.isAlive }.toSet()
+        val existing = flushers()
+
+        val store = DefaultTransactionStore(TEST_DATABASE)
+        store.append(ByteBuffer.wrap(ByteArray(10))).get()
+        val flusher = (flushers() - existing).single()
+        flusher.interrupt()
+        flusher.join(5000)
+
+        assertFailsWith<TransactionException> { store.append(ByteBuffer.wrap(ByteArray(10))) }
+        assertFailsWith<TransactionException> { store.sync() }
+        store.close()
+    }
+
+    @Test
+    fun syncReturnsThePositionFollowingAppendedEntries() {
+        val store = DefaultTransactionStore(TEST_DATABASE)
+        assertNull(store.sync(), "Nothing has been journaled")
+
+        store.append(ByteBuffer.wrap(ByteArray(10)))
+        store.append(ByteBuffer.wrap(ByteArray(15)))
+        assertEquals(JournalPosition(0, 25), store.sync())
+        store.close()
+    }
+}
@@ -0,0 +1,145 @@
+package database.batch
+
+import com.onyx.exception.AttributeSizeException
+import com.onyx.exception.BatchException
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.batch.BatchOperation
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.SimpleEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class BatchTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.from(SimpleEntity::class).delete()
+
+        for (i in 1..10) {
+            val simpleEntity = SimpleEntity()
+            simpleEntity.simpleId = "ID$i"
+            simpleEntity.name = "NAME$i"
+            manager.saveEntity<IManagedEntity>(simpleEntity)
+        }
+    }
+
+    private fun simpleEntity(id: String, name: String): SimpleEntity {
+        val simpleEntity = SimpleEntity()
+        simpleEntity.simpleId = id
+        simpleEntity.name = name
+        return simpleEntity
+    }
+
+    /**
+     * Tests a batch of reads and writes returns the result of each operation in order
+     */
+    @Test
+    fun testBatch() {
+        val results = manager.batch {
+            findById<SimpleEntity>(SimpleEntity::class.java, "ID1")
+            findById<SimpleEntity>(SimpleEntity::class.java, "ID2")
+            saveEntity(simpleEntity("ID11", "NAME11"))
+            countForQuery(Query(SimpleEntity::class.java))
+            exists(simpleEntity("ID12", ""))
+        }
+
+        assertEquals(5, results.size, "Expected a result for each operation")
+        assertEquals("NAME1", results[0].get<SimpleEntity>().name, "Invalid entity found")
+        assertEquals("NAME2", results[1].get<SimpleEntity>().name, "Invalid entity found")
+        assertEquals(11L, results[3].get<Long>(), "The count should include the entity saved before it")
+        assertFalse(results[4].get<Boolean>(), "Entity should not exist")
+    }
+
+    /**
+     * Tests a failed operation does not stop the rest of a batch that is not atomic
+     */
+    @Test
+    fun testBatchFailure() {
+        val results = manager.batch {
+            saveEntity(simpleEntity("ID11", "X".repeat(300)))
+            saveEntity(simpleEntity("ID12", "NAME12"))
+        }
+
+        assertTrue(results[0].isError, "Expected the first save to fail")
+        assertTrue(results[0].error is AttributeSizeException, "Unexpected error")
+        assertFalse(results[1].isError, "Expected the second save to succeed")
+        assertEquals(11L, manager.countForQuery(Query(SimpleEntity::class.java)), "Expected only the second entity to be saved")
+    }
+
+    /**
+     * Tests an atomic batch undoes its saves and deletes when an operation fails
+     */
+    @Test
+    fun testAtomicBatch() {
+        assertFailsWith(AttributeSizeException::class) {
+            manager.batch(atomic = true) {
+                saveEntity(simpleEntity("ID11", "NAME11"))
+                saveEntity(simpleEntity("ID1", "CHANGED"))
+                deleteEntity(simpleEntity("ID2", ""))
+                saveEntity(simpleEntity("ID12", "X".repeat(300)))
+            }
+        }
+
+        assertEquals(10L, manager.countForQuery(Query(SimpleEntity::class.java)), "The new entity should be deleted")
+        assertNull(manager.findById<SimpleEntity>(SimpleEntity::class.java, "ID11"), "The new entity should be deleted")
+        assertEquals("NAME1", manager.findById<SimpleEntity>(SimpleEntity::class.java, "ID1")!!.name, "The updated entity should be restored")
+        assertEquals("NAME2", manager.findById<SimpleEntity>(SimpleEntity::class.java, "ID2")!!.name, "The deleted entity should be restored")
+    }
+
+    /**
+     * Tests an atomic batch rejects operations that can not be undone before executing any of them
+     */
+    @Test
+    fun testAtomicBatchRejectsUpdates() {
+        assertFailsWith(BatchException::class) {
+            manager.batch(atomic = true) {
+                saveEntity(simpleEntity("ID11", "NAME11"))
+                executeUpdate(Query(SimpleEntity::class.java, QueryCriteria("simpleId", QueryCriteriaOperator.EQUAL, "ID1"), AttributeUpdate("name", "CHANGED")))
+            }
+        }
+
+        assertNull(manager.findById<SimpleEntity>(SimpleEntity::class.java, "ID11"), "No operation should be executed")
+    }
+
+    /**
+     * Tests cursors and other batches can not be recorded within a batch
+     */
+    @Test
+    fun testBatchRejectsUnsupportedMethods() {
+        assertFailsWith(BatchException::class) {
+            manager.batch { openCursor(Query(SimpleEntity::class.java), 10) }
+        }
+        assertFailsWith(BatchException::class) {
+            manager.batch { batch { countForQuery(Query(SimpleEntity::class.java)) } }
+        }
+    }
+
+    /**
+     * Tests operations that can not be batched are rejected when the batch is executed rather than only when it is
+     * recorded
+     */
+    @Test
+    fun testExecuteBatchRejectsUnsupportedOperations() {
+        val save = BatchOperation("saveEntity", arrayOf(IManagedEntity::class.java.name), arrayOf(simpleEntity("ID11", "NAME11")))
+
+        listOf(
+            BatchOperation("initialize", emptyArray(), emptyArray()),
+            BatchOperation("executeBatch", arrayOf(List::class.java.name, Boolean::class.java.name), arrayOf(listOf(save), false)),
+            BatchOperation("closeCursor", arrayOf(Long::class.java.name), arrayOf(1L))
+        ).forEach { operation ->
+            assertFailsWith(BatchException::class) { manager.executeBatch(listOf(save, operation), false) }
+        }
+
+        assertNull(manager.findById<SimpleEntity>(SimpleEntity::class.java, "ID11"), "No operation should be executed")
+    }
+}
@@ -1,15 +1,19 @@
 package database.functions
 
+import com.onyx.exception.MaxCardinalityExceededException
+import com.onyx.persistence.factory.impl.RemotePersistenceManagerFactory
 import com.onyx.persistence.query.*
 import database.base.DatabaseBaseTest
 import entities.AllAttributeEntity
 import entities.AllAttributeEntityWithRelationship
+import org.junit.Assume
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.junit.runners.Parameterized
 import kotlin.reflect.KClass
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
 
 @RunWith(Parameterized::class)
 class GroupByTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
@@ -95,6 +99,18 @@ class GroupByTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(facto
         assertEquals("some other value", results[0]["lower(stringValue)"], "Invalid result")
     }
 
+    @Test
+    fun testGroupByOrderedPage() {
+        val results = manager.select("longPrimitive")
+                .from(AllAttributeEntityWithRelationship::class)
+                .groupBy("longPrimitive")
+                .orderBy("longPrimitive".desc())
+                .limit(3)
+                .list<Map<String, Any?>>()
+
+        assertEquals(listOf(99L, 10L, 9L), results.map { it["longPrimitive"] }, "Expected the largest 3 groups")
+    }
+
     @Test
     fun testMin() {
         val results = manager.select("stringValue", min("longPrimitive"))
@@ -205,4 +221,96 @@ class GroupByTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(facto
         assertEquals(40, results.first { it["relationship.id"] == "HI5"}["sum(relationship.intValue)"] , "Relationship intValue is invalid")
         assertEquals(results.first(), results.first { it["relationship.id"] == "HI5" }, "Failure to sort")
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testGroupBySpilled() {
+        Assume.assumeFalse("The sort run size is not sent to the server", factory is RemotePersistenceManagerFactory)
+
+        val group = {
+            manager.select("longPrimitive", "lower(stringValue)")
+                    .from(AllAttributeEntityWithRelationship::class)
+                    .groupBy("longPrimitive", "stringValue")
+                    .orderBy("id".desc())
+                    .list<Map<String, Any?>>()
+        }
+        val results = spilled(group)
+
+        assertEquals(11, results.size, "Only 11 results should have been returned")
+        assertEquals("some other value", results[0]["lower(stringValue)"], "Invalid result")
+        assertEquals(group(), results, "Spilled groups should match the groups kept in memory")
+    }
+
+    @Test
+    fun testGroupFunctionsSpilled() {
+        Assume.assumeFalse("The sort run size is not sent to the server", factory is RemotePersistenceManagerFactory)
+
+        val group = {
+            manager.select("stringValue", sum("longPrimitive"), count("longPrimitive"))
+                    .from(AllAttributeEntityWithRelationship::class)
+                    .groupBy("stringValue")
+                    .list<Map<String, Any?>>()
+                    .sortedBy { it["stringValue"] as String }
+        }
+        val results = spilled(group)
+
+        assertEquals(10, results.size, "Each string value should be a group")
+        assertEquals(108L, results.first { it["stringValue"] == "9" }["sum(longPrimitive)"] , "108 should be the sum result")
+        assertEquals(2, results.first { it["stringValue"] == "9" }["count(longPrimitive)"] , "2 should be the count result")
+        assertEquals(group(), results, "Spilled groups should match the groups kept in memory")
+    }
+
+    @Test
+    fun testDistinctSpilled() {
+        Assume.assumeFalse("The sort run size is not sent to the server", factory is RemotePersistenceManagerFactory)
+
+        val query = Query(AllAttributeEntityWithRelationship::class.java)
+        query.selections = listOf("longPrimitive")
+        query.isDistinct = true
+        query.queryOrders = listOf("longPrimitive".desc())
+        query.firstRow = 1
+        query.maxResults = 3
+
+        val results = spilled { manager.executeQuery<Map<String, Any?>>(query) }
+
+        assertEquals(listOf(10L, 9L, 8L), results.map { it["longPrimitive"] }, "Duplicates should be removed before the page")
+        assertEquals(10, query.resultsCount, "Distinct results should be counted without duplicates")
+    }
+
+    @Test
+    fun testOrderedResultsPastMaxCardinality() {
+        Assume.assumeFalse("The max cardinality is not sent to the server", factory is RemotePersistenceManagerFactory)
+
+        val maxCardinality = manager.context.maxCardinality
+        manager.context.maxCardinality = 5
+        try {
+            assertFailsWith<MaxCardinalityExceededException> {
+                manager.select("longPrimitive")
+                        .from(AllAttributeEntityWithRelationship::class)
+                        .orderBy("longPrimitive".desc())
+                        .list<Map<String, Any?>>()
+            }
+
+            val page = manager.select("longPrimitive")
+                    .from(AllAttributeEntityWithRelationship::class)
+                    .orderBy("longPrimitive".desc())
+                    .limit(3)
+                    .list<Map<String, Any?>>()
+            assertEquals(listOf(99L, 10L, 9L), page.map { it["longPrimitive"] }, "A page within the max cardinality should be returned")
+        } finally {
+            manager.context.maxCardinality = maxCardinality
+        }
+    }
+
+    /**
+     * Run a query while spilling every 2 results it sorts
+     */
+    private fun <T> spilled(body: () -> T): T {
+        val runSize = manager.context.querySortRunSize
+        manager.context.querySortRunSize = 2
+        try {
+            return body()
+        } finally {
+            manager.context.querySortRunSize = runSize
+        }
+    }
+}
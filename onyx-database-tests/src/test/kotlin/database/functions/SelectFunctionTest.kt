@@ -363,4 +363,27 @@ class SelectFunctionTest(override var factoryClass: KClass<*>) : DatabaseBaseTes
         val percentileValue2 = group2["percentile(longPrimitive, 50.0)"]
         assertEquals(2L, percentileValue2, "Invalid 50th percentile for group '2'")
     }
-}
\ No newline at end of file
+
+    /**
+     * Test for approximate median and percentile.  With only a few values every value is kept within the digest
+     * so the estimates match the exact values.
+     */
+    @Test
+    fun testApproximateQuantiles() {
+        val result = manager.select(median("longPrimitive", true), percentile("longPrimitive", 20.0, true))
+            .from(AllAttributeEntityWithRelationship::class)
+            .list<Map<String, Any?>>()
+            .first()
+
+        assertEquals(7L, result["median(longPrimitive, approximate)"], "Invalid approximate median")
+        assertEquals(4L, result["percentile(longPrimitive, 20.0, approximate)"], "Invalid approximate 20th percentile")
+
+        val group9 = manager.select("stringValue", percentile("longPrimitive", 50.0, true))
+            .from(AllAttributeEntityWithRelationship::class)
+            .groupBy("stringValue")
+            .list<Map<String, Any?>>()
+            .firstOrNull { it["stringValue"] == "9" }
+        assertNotNull(group9, "Group for stringValue='9' not found")
+        assertEquals(54L, group9["percentile(longPrimitive, 50.0, approximate)"], "Invalid approximate 50th percentile for group '9'")
+    }
+}
@@ -74,6 +74,51 @@ class SaveIndexTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(fac
         assertEquals("A", results.first().identifier, "Rebuilt index returned the wrong entity")
     }
 
+    @Test
+    fun saveAllMatchesSavingInOrder() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class) {
+            return
+        }
+
+        val descriptor = factory.schemaContext.getDescriptorForEntity(StringIdentifierEntityIndex::class.java, "")
+        val indexInteractor = factory.schemaContext.getIndexInteractor(descriptor.indexes["indexValue"]!!)
+        indexInteractor.save("A", 0L, 1L)
+        indexInteractor.save("A", 0L, 2L)
+
+        indexInteractor.saveAll(listOf(
+            Triple("B", 1L, 1L),
+            Triple("A", 0L, 3L),
+            Triple("C", 3L, 4L),
+            Triple("B", 0L, 5L),
+            Triple("C", 5L, 5L)
+        ))
+
+        assertEquals(setOf(2L), indexInteractor.findAll("A").keys, "References moved off the value remain")
+        assertEquals(setOf(1L), indexInteractor.findAll("B").keys, "References were not moved to the value")
+        assertEquals(setOf(4L, 5L), indexInteractor.findAll("C").keys, "Later saves of a reference were not applied")
+    }
+
+    @Test
+    fun saveEntitiesUpdatesIndexes() {
+        manager.saveEntities((0 until 100).map {
+            val entity = StringIdentifierEntityIndex()
+            entity.identifier = "E$it"
+            entity.indexValue = if (it % 2 == 0) "EVEN" else "ODD"
+            entity
+        })
+        manager.saveEntities((0 until 10).map {
+            val entity = StringIdentifierEntityIndex()
+            entity.identifier = "E$it"
+            entity.indexValue = "FIRST"
+            entity
+        })
+
+        val evenQuery = Query(StringIdentifierEntityIndex::class.java, QueryCriteria("indexValue", QueryCriteriaOperator.EQUAL, "EVEN"))
+        val firstQuery = Query(StringIdentifierEntityIndex::class.java, QueryCriteria("indexValue", QueryCriteriaOperator.EQUAL, "FIRST"))
+        assertEquals(45, manager.executeQuery<StringIdentifierEntityIndex>(evenQuery).size, "Updated entities were not removed from the index value")
+        assertEquals(10, manager.executeQuery<StringIdentifierEntityIndex>(firstQuery).size, "Updated entities were not added to the index value")
+    }
+
     @Test
     fun saveStringIndexDeleteTest() {
         val entity = StringIdentifierEntityIndex()
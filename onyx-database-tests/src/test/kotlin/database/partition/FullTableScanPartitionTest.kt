@@ -6,6 +6,7 @@ import com.onyx.persistence.query.AttributeUpdate
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryPartitionMode
 import database.base.DatabaseBaseTest
 import entities.partition.FullTablePartitionEntity
 import org.junit.Before
@@ -270,4 +271,24 @@ class FullTableScanPartitionTest(override var factoryClass: KClass<*>) : Databas
 
         assertEquals(2, result.size, "Expected 2 result(s)")
     }
+
+    @Test
+    fun cTestQueryAllPartitionsWithGroupedCriteria() {
+        val entities = (1L..400L).map {
+            val entity = FullTablePartitionEntity()
+            entity.partitionId = it % 8
+            entity.indexVal = it
+            entity
+        }
+        manager.saveEntities(entities)
+
+        val query = Query(FullTablePartitionEntity::class.java, QueryCriteria("indexVal", QueryCriteriaOperator.LESS_THAN, 300L)
+                .and(QueryCriteria("partitionId", QueryCriteriaOperator.EQUAL, 1L).or("partitionId", QueryCriteriaOperator.EQUAL, 2L))
+                .and(!QueryCriteria("indexVal", QueryCriteriaOperator.LESS_THAN, 100L)))
+        query.partition = QueryPartitionMode.ALL
+
+        val expected = (100L until 300L).count { it % 8 == 1L || it % 8 == 2L }
+        assertEquals(expected, manager.executeQuery<Any>(query).size, "Expected $expected result(s)")
+        assertEquals(expected, manager.executeQuery<Any>(query).size, "Expected the same results when the query is reused")
+    }
 }
@@ -0,0 +1,48 @@
+package database.query
+
+import com.onyx.exception.StreamException
+import com.onyx.interactors.query.impl.QueryCursorRegistry
+import com.onyx.lang.asCloseable
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotEquals
+import kotlin.test.assertTrue
+
+class QueryCursorRegistryTest {
+
+    /**
+     * Tests cursors that are not read are closed without another cursor being opened
+     */
+    @Test
+    fun idleCursorsAreClosed() {
+        val registry = QueryCursorRegistry(idleTimeout = 50)
+        var closed = false
+        val cursorId = registry.open(null, (1..10).iterator().asCloseable { closed = true })
+
+        val waitUntil = System.currentTimeMillis() + 5000
+        while (registry.size > 0 && System.currentTimeMillis() < waitUntil)
+            Thread.sleep(10)
+
+        assertEquals(0, registry.size, "The idle cursor should be closed")
+        assertTrue(closed, "The idle cursor should release its results")
+        assertFailsWith<StreamException> { registry.fetch(null, cursorId, 10) }
+    }
+
+    /**
+     * Tests cursor ids do not follow each other so they can not be guessed
+     */
+    @Test
+    fun cursorIdsAreNotSequential() {
+        val registry = QueryCursorRegistry()
+        val session = Any()
+        val cursorIds = (1..100).map { registry.open(session, emptyList<Any?>().iterator().asCloseable()) }
+
+        assertEquals(100, cursorIds.toSet().size, "Cursor ids should be unique")
+        assertTrue(cursorIds.zipWithNext().none { (first, second) -> second == first + 1 }, "Cursor ids should not be sequential")
+        cursorIds.forEach { assertNotEquals(0L, it, "Cursor ids should not be zero") }
+
+        registry.closeAll(session)
+        assertEquals(0, registry.size, "Every cursor of the session should be closed")
+    }
+}
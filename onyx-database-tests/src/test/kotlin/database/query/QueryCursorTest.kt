@@ -0,0 +1,241 @@
+package database.query
+
+import com.onyx.exception.StreamException
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.factory.impl.RemotePersistenceManagerFactory
+import com.onyx.persistence.manager.impl.EmbeddedPersistenceManager
+import com.onyx.persistence.query.*
+import com.onyx.persistence.stream.QueryStream
+import database.base.DatabaseBaseTest
+import entities.SimpleEntity
+import entities.partition.BasicPartitionEntity
+import org.junit.Assume
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class QueryCursorTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.from(SimpleEntity::class).delete()
+        manager.from(BasicPartitionEntity::class).inPartition(QueryPartitionMode.ALL).delete()
+
+        for (i in 1..50) {
+            val simpleEntity = SimpleEntity()
+            simpleEntity.simpleId = "ID$i"
+            simpleEntity.name = if (i % 2 == 0) "EVEN" else "ODD"
+            manager.saveEntity<IManagedEntity>(simpleEntity)
+
+            val partitionEntity = BasicPartitionEntity()
+            partitionEntity.partitionId = (i % 3).toLong()
+            manager.saveEntity<IManagedEntity>(partitionEntity)
+        }
+    }
+
+    /**
+     * Read every result of a query using a cursor
+     */
+    private fun <T> readCursor(query: Query, fetchSize: Int = 10): List<T> = manager.cursor<T>(query, fetchSize).use { it.asSequence().toList() }
+
+    /**
+     * Tests a cursor returns the same results as the list of results
+     */
+    @Test
+    fun testCursor() {
+        val results = readCursor<SimpleEntity>(manager.from(SimpleEntity::class).query)
+        assertEquals(50, results.size, "Expected 50 results")
+        assertEquals(manager.from(SimpleEntity::class).list<SimpleEntity>().map { it.simpleId }.toSet(), results.map { it.simpleId }.toSet(), "Cursor results do not match")
+    }
+
+    /**
+     * Tests a cursor with criteria that reads every record
+     */
+    @Test
+    fun testCursorWithCriteria() {
+        val results = readCursor<SimpleEntity>(manager.from(SimpleEntity::class).where("name" eq "EVEN").query)
+        assertEquals(25, results.size, "Expected 25 results")
+        assertTrue(results.all { it.name == "EVEN" }, "Results do not meet the criteria")
+    }
+
+    /**
+     * Tests a cursor applies the first row and max results
+     */
+    @Test
+    fun testCursorFirstRowWithMaxResults() {
+        assertEquals(5, readCursor<SimpleEntity>(manager.from(SimpleEntity::class).where("name" eq "ODD").first(3).limit(5).query).size, "Expected 5 results")
+        assertEquals(22, readCursor<SimpleEntity>(manager.from(SimpleEntity::class).where("name" eq "ODD").first(3).query).size, "Expected 22 results")
+        assertEquals(0, readCursor<SimpleEntity>(manager.from(SimpleEntity::class).first(60).query).size, "Expected 0 results")
+    }
+
+    /**
+     * Tests an ordered cursor returns results in order
+     */
+    @Test
+    fun testCursorOrdered() {
+        val expected = manager.from(SimpleEntity::class).orderBy("simpleId".desc()).first(4).limit(20).list<SimpleEntity>().map { it.simpleId }
+        val results = readCursor<SimpleEntity>(manager.from(SimpleEntity::class).orderBy("simpleId".desc()).first(4).limit(20).query, 3)
+        assertEquals(expected, results.map { it.simpleId }, "Cursor results are not in order")
+    }
+
+    /**
+     * Tests a cursor of a selection query
+     */
+    @Test
+    fun testCursorSelection() {
+        val results = readCursor<Map<String, Any?>>(manager.from(SimpleEntity::class).select("simpleId").where("name" eq "EVEN").query)
+        assertEquals(25, results.size, "Expected 25 results")
+        assertEquals(setOf("simpleId"), results.flatMap { it.keys }.toSet(), "Expected only the selected attribute")
+    }
+
+    /**
+     * Tests a cursor spanning every partition
+     */
+    @Test
+    fun testCursorAllPartitions() {
+        assertEquals(50, readCursor<BasicPartitionEntity>(manager.from(BasicPartitionEntity::class).inPartition(QueryPartitionMode.ALL).query).size, "Expected 50 results")
+        assertEquals(17, readCursor<BasicPartitionEntity>(manager.from(BasicPartitionEntity::class).inPartition(1L).query).size, "Expected 17 results")
+    }
+
+    /**
+     * Tests the query builder cursor can be closed before every result is read
+     */
+    @Test
+    fun testCursorClosedEarly() {
+        val cursor = manager.from(SimpleEntity::class).cursor<SimpleEntity>(5)
+        assertTrue(cursor.hasNext(), "Expected results")
+        cursor.next()
+        cursor.close()
+        assertFalse(cursor.hasNext(), "Closed cursor should not have results")
+    }
+
+    /**
+     * Tests reading an open cursor a page at a time
+     */
+    @Test
+    fun testOpenCursorPages() {
+        var page = manager.openCursor(manager.from(SimpleEntity::class).query, 20)
+        val results = ArrayList<Any?>(page.results)
+        var pages = 1
+        while (page.hasMore) {
+            page = manager.fetchCursor(page.cursorId, 20)
+            results.addAll(page.results)
+            pages++
+        }
+
+        assertEquals(50, results.size, "Expected 50 results")
+        assertEquals(3, pages, "Expected 3 pages")
+        assertFailsWith<StreamException> { manager.fetchCursor(page.cursorId, 20) }
+    }
+
+    /**
+     * Tests closing an open cursor before it is read
+     */
+    @Test
+    fun testCloseOpenCursor() {
+        val page = manager.openCursor(manager.from(SimpleEntity::class).query, 10)
+        assertTrue(page.hasMore, "Expected more results")
+        assertTrue(manager.closeCursor(page.cursorId), "Expected the cursor to be closed")
+        assertFalse(manager.closeCursor(page.cursorId), "Cursor was already closed")
+        assertFailsWith<StreamException> { manager.fetchCursor(page.cursorId, 10) }
+    }
+
+    /**
+     * Tests executing a query as a cursor does not change the query
+     */
+    @Test
+    fun testCursorDoesNotChangeQuery() {
+        val query = manager.from(SimpleEntity::class).where("simpleId" gte "ID2").orderBy("name".asc()).query
+        assertEquals(39, readCursor<SimpleEntity>(query).size, "Expected 39 results")
+        assertFalse(query.isLazy, "The query should not be made lazy")
+    }
+
+    /**
+     * Tests ordered cursors sorting runs spilled to a temporary store return the same results as the list
+     */
+    @Test
+    fun testCursorOrderedSpilled() {
+        Assume.assumeFalse("The sort run size is not sent to the server", factory is RemotePersistenceManagerFactory)
+        val runSize = manager.context.querySortRunSize
+        manager.context.querySortRunSize = 2
+        try {
+            val indexed = manager.from(SimpleEntity::class).where("simpleId" gte "ID2").orderBy("name".asc(), "simpleId".desc()).first(2).limit(25)
+            assertEquals(indexed.list<SimpleEntity>().map { it.simpleId }, readCursor<SimpleEntity>(indexed.query, 4).map { it.simpleId }, "Indexed cursor results are not in order")
+
+            val scanned = manager.from(SimpleEntity::class).where("name" eq "EVEN").orderBy("simpleId".asc())
+            assertEquals(scanned.list<SimpleEntity>().map { it.simpleId }, readCursor<SimpleEntity>(scanned.query, 4).map { it.simpleId }, "Scanned cursor results are not in order")
+        } finally {
+            manager.context.querySortRunSize = runSize
+        }
+    }
+
+    /**
+     * Tests an open cursor can only be read and closed by the session that opened it and is closed with the session
+     */
+    @Test
+    fun testOpenCursorSessions() {
+        Assume.assumeFalse("Sessions are managed by the server", factory is RemotePersistenceManagerFactory)
+        val manager = manager as EmbeddedPersistenceManager
+        val owner = Any()
+        val other = Any()
+
+        val page = manager.withSession(owner) { manager.openCursor(manager.from(SimpleEntity::class).query, 10) }
+        assertTrue(page.hasMore, "Expected more results")
+        assertFailsWith<StreamException> { manager.withSession(other) { manager.fetchCursor(page.cursorId, 10) } }
+        assertFailsWith<StreamException> { manager.fetchCursor(page.cursorId, 10) }
+        assertFalse(manager.withSession(other) { manager.closeCursor(page.cursorId) }, "Another session should not close the cursor")
+        assertEquals(10, manager.withSession(owner) { manager.fetchCursor(page.cursorId, 10) }.results.size, "Expected 10 results")
+
+        manager.closeSession(owner)
+        assertFailsWith<StreamException> { manager.withSession(owner) { manager.fetchCursor(page.cursorId, 10) } }
+    }
+
+    /**
+     * Tests cursors are read and closed over the connection they were opened on when requests are spread across a
+     * pool of connections
+     */
+    @Test
+    fun testCursorOverConnectionPool() {
+        Assume.assumeFalse("Only remote persistence managers pool connections", factory !is RemotePersistenceManagerFactory)
+        val pooledFactory = RemotePersistenceManagerFactory(REMOTE_DATABASE_ENDPOINT)
+        pooledFactory.connectionPoolSize = 3
+        pooledFactory.setCredentials("admin", "admin")
+        pooledFactory.initialize()
+
+        try {
+            val manager = pooledFactory.persistenceManager
+            val query = manager.from(SimpleEntity::class).query
+            assertEquals(50, manager.cursor<SimpleEntity>(query, 5).use { it.asSequence().toList() }.size, "Expected 50 results")
+
+            var page = manager.openCursor(query, 10)
+            var pages = 1
+            while (page.hasMore) {
+                page = manager.fetchCursor(page.cursorId, 10)
+                pages++
+            }
+            assertEquals(5, pages, "Expected 5 pages")
+
+            val open = manager.openCursor(query, 10)
+            assertTrue(manager.closeCursor(open.cursorId), "Expected the cursor to be closed")
+
+            var streamed = 0
+            manager.stream(query, object : QueryStream<SimpleEntity> {
+                override fun accept(entity: SimpleEntity, persistenceManager: PersistenceManager): Boolean {
+                    streamed++
+                    return true
+                }
+            })
+            assertEquals(50, streamed, "Expected 50 streamed results")
+        } finally {
+            pooledFactory.close()
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package database.query
+
+import com.onyx.extension.referenceId
+import com.onyx.extension.validate
+import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.scanner.ScannerFactory
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.factory.impl.RemotePersistenceManagerFactory
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.SelectIdentifierTestEntity
+import org.junit.Assume
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+
+@RunWith(Parameterized::class)
+class QueryPlanTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.from(SelectIdentifierTestEntity::class).delete()
+
+        for (i in 1..100) {
+            val entity = SelectIdentifierTestEntity()
+            entity.id = i.toLong()
+            entity.index = i % 10
+            entity.attribute = i.toString()
+            manager.saveEntity<IManagedEntity>(entity)
+        }
+    }
+
+    @Test
+    fun testAndCriteriaStartWithIndex() {
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryCriteria("attribute", QueryCriteriaOperator.EQUAL, "17")
+                .and("index", QueryCriteriaOperator.EQUAL, 7L))
+
+        val plan = manager.explain(query)
+        assertEquals(QueryPlanStrategy.INDEX, plan.strategy)
+        assertEquals("index", plan.steps.first().attribute)
+        assertEquals(10L, plan.steps.first().estimatedResults)
+        assertEquals(QueryPlanAccess.FILTER, plan.steps.last().access)
+        assertEquals(1, manager.executeQuery<SelectIdentifierTestEntity>(query).size, "Expected 1 result")
+    }
+
+    @Test
+    fun testRangeCriteriaScannedTogether() {
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryCriteria("attribute", QueryCriteriaOperator.EQUAL, "16")
+                .and("index", QueryCriteriaOperator.LESS_THAN, 8L)
+                .and("index", QueryCriteriaOperator.GREATER_THAN, 5L))
+
+        val plan = manager.explain(query)
+        assertEquals(QueryPlanStrategy.INDEX, plan.strategy)
+        assertEquals(QueryCriteriaOperator.BETWEEN, plan.steps.first().operator)
+        assertEquals(1, manager.executeQuery<SelectIdentifierTestEntity>(query).size, "Expected 1 result")
+    }
+
+    @Test
+    fun testUnselectiveIndexReadsEveryRecord() {
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryCriteria("index", QueryCriteriaOperator.GREATER_THAN, 0L))
+
+        val plan = manager.explain(query)
+        assertEquals(QueryPlanStrategy.FULL_SCAN, plan.strategy)
+        assertEquals(100L, plan.estimatedRecords)
+        assertEquals(90, manager.executeQuery<SelectIdentifierTestEntity>(query).size, "Expected 90 results")
+    }
+
+    @Test
+    fun testOrCriteriaWithoutIndexReadsEveryRecord() {
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryCriteria("index", QueryCriteriaOperator.EQUAL, 3L)
+                .or("attribute", QueryCriteriaOperator.EQUAL, "4"))
+
+        assertEquals(QueryPlanStrategy.FULL_SCAN, manager.explain(query).strategy)
+        assertEquals(11, manager.executeQuery<SelectIdentifierTestEntity>(query).size, "Expected 11 results")
+    }
+
+    @Test
+    fun testGroupedCriteriaEvaluatedAsWritten() {
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryCriteria("index", QueryCriteriaOperator.EQUAL, 1L)
+                .and(QueryCriteria("id", QueryCriteriaOperator.LESS_THAN, 50L).or("attribute", QueryCriteriaOperator.EQUAL, "91")))
+
+        assertEquals(QueryPlanStrategy.AS_WRITTEN, manager.explain(query).strategy)
+        assertEquals(6, manager.executeQuery<SelectIdentifierTestEntity>(query).size, "Expected 6 results")
+    }
+
+    @Test
+    fun testOrderedPageReadInIndexOrder() {
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryOrder("index", false), QueryOrder("id", true))
+        query.firstRow = 3
+        query.maxResults = 5
+
+        assertEquals(QueryPlanStrategy.INDEX_ORDER, manager.explain(query).strategy)
+        val results = manager.executeQuery<SelectIdentifierTestEntity>(query)
+        assertEquals(listOf(39L, 49L, 59L, 69L, 79L), results.map { it.id })
+        assertEquals(100, query.resultsCount, "Expected every record to be counted")
+    }
+
+    @Test
+    fun testOrderedPageOfIndexedCriteriaReadInIdentifierOrder() {
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryCriteria("index", QueryCriteriaOperator.LESS_THAN, 2L), QueryOrder("id", false))
+        query.maxResults = 2
+
+        assertEquals(QueryPlanStrategy.INDEX_ORDER, manager.explain(query).strategy)
+        val results = manager.executeQuery<SelectIdentifierTestEntity>(query)
+        assertEquals(listOf(100L, 91L), results.map { it.id })
+        assertEquals(20, query.resultsCount, "Expected every match to be counted")
+    }
+
+    @Test
+    fun testIndexOrderScannerNarrowsExistingReferences() {
+        Assume.assumeFalse("Scanners are not available remotely", factory is RemotePersistenceManagerFactory)
+
+        val context = manager.context
+        val query = Query(SelectIdentifierTestEntity::class.java, QueryOrder("id", false))
+        query.maxResults = 3
+        query.validate(context)
+
+        // Records with an index of 1
+        val existing = (1..91 step 10).map { id ->
+            val entity = SelectIdentifierTestEntity()
+            entity.id = id.toLong()
+            Reference(0L, entity.referenceId(context))
+        }.toSet()
+
+        val scanner = ScannerFactory.getIndexOrderScanner(context, query.criteria!!, SelectIdentifierTestEntity::class.java, query, manager, query.queryOrders!!.first(), null)
+        scanner.isLast = true
+        scanner.scan(existing)
+
+        val collector = scanner.collector!!
+        collector.finalizeResults()
+        assertEquals(listOf(91L, 81L, 71L), collector.results.map { (it as SelectIdentifierTestEntity).id })
+        assertEquals(10, collector.getNumberOfResults(), "Expected every existing reference to be counted")
+    }
+}
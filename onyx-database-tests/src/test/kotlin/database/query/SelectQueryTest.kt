@@ -125,4 +125,48 @@ class SelectQueryTest(override var factoryClass: KClass<*>) : PrePopulatedDataba
         assertTrue(result.containsKey("longValue"))
         assertTrue(result.containsKey("intPrimitive"))
     }
+
+    @Test
+    fun testScanConvertsCriteriaValueToAttributeType() {
+        fun count(criteria: QueryCriteria) = manager.executeQuery<AllAttributeForFetch>(Query(AllAttributeForFetch::class.java, criteria)).size
+
+        assertEquals(3, count(QueryCriteria("longValue", QueryCriteriaOperator.IN, listOf(322, 999))), "Expected 3 results for Int values in a Long attribute")
+        assertEquals(3, count(QueryCriteria("longValue", QueryCriteriaOperator.NOT_IN, listOf(322))), "Expected 3 results including null attributes")
+        assertEquals(5, count(QueryCriteria("longValue", QueryCriteriaOperator.IN, listOf(322, null))), "Expected null attributes within a list containing null")
+        assertEquals(1, count(QueryCriteria("longValue", QueryCriteriaOperator.NOT_IN, listOf(322, null))), "Expected null attributes to be excluded by a list containing null")
+        assertEquals(4, count(QueryCriteria("stringValue", QueryCriteriaOperator.IN, listOf("Some test string1", null))), "Expected null attributes within a list containing null")
+        assertEquals(2, count(QueryCriteria("stringValue", QueryCriteriaOperator.NOT_IN, listOf("Some test string1", null))), "Expected null attributes to be excluded by a list containing null")
+        assertEquals(1, count(QueryCriteria("intPrimitive", QueryCriteriaOperator.GREATER_THAN, 3L)), "Expected 1 result for a Long value on an Int attribute")
+        assertEquals(4, count(QueryCriteria("doubleValue", QueryCriteriaOperator.GREATER_THAN_EQUAL, 1)), "Expected 4 results for an Int value on a Double attribute")
+        assertEquals(3, count(QueryCriteria("stringValue", QueryCriteriaOperator.MATCHES, "Some test string[0-9]")), "Expected 3 results matching the expression")
+    }
+
+    @Test
+    fun testOrderedPageMatchesSortedResults() {
+        val expected = manager.from(AllAttributeForFetch::class).list<AllAttributeForFetch>()
+                              .sortedWith(compareByDescending<AllAttributeForFetch> { it.intPrimitive }.thenBy { it.id })
+                              .drop(1)
+                              .take(2)
+
+        val results = manager.from(AllAttributeForFetch::class)
+                             .orderBy("intPrimitive".desc(), "id".asc())
+                             .first(1)
+                             .limit(2)
+                             .list<AllAttributeForFetch>()
+
+        assertEquals(expected.map { it.id }, results.map { it.id }, "Page should match the sorted results")
+    }
+
+    @Test
+    fun testUnorderedPageCountsEveryResult() {
+        val expected = manager.from(AllAttributeForFetch::class).list<AllAttributeForFetch>()
+
+        val builder = manager.from(AllAttributeForFetch::class)
+                             .first(1)
+                             .limit(2)
+        val results = builder.list<AllAttributeForFetch>()
+
+        assertEquals(expected.drop(1).take(2).map { it.id }, results.map { it.id }, "Page should match the unlimited results")
+        assertEquals(expected.size, builder.query.resultsCount, "Every result should be counted")
+    }
 }
@@ -0,0 +1,59 @@
+package database.save
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.query.eq
+import com.onyx.persistence.query.from
+import com.onyx.persistence.query.gte
+import database.base.DatabaseBaseTest
+import entities.AllAttributeForFetchSequenceGen
+import entities.index.StringIdentifierEntityIndex
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+
+@RunWith(Parameterized::class)
+class BulkLoadTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Test
+    fun testBulkLoadSequenceIdentifiers() {
+        manager.bulkLoad(AllAttributeForFetchSequenceGen::class.java, (0 until 25000).asSequence().map { i ->
+            val entity = AllAttributeForFetchSequenceGen()
+            entity.indexVal = i % 100
+            entity.stringValue = "Bulk $i"
+            entity
+        })
+
+        val entity = AllAttributeForFetchSequenceGen()
+        entity.indexVal = 7
+        manager.saveEntity<IManagedEntity>(entity)
+
+        assertEquals(25001L, entity.id, "Sequence should continue after the bulk load")
+        assertEquals("Bulk 12344", manager.findById<AllAttributeForFetchSequenceGen>(AllAttributeForFetchSequenceGen::class.java, 12345L)?.stringValue)
+        assertEquals(251, manager.from<AllAttributeForFetchSequenceGen>().where("indexVal" eq 7).list<AllAttributeForFetchSequenceGen>().size)
+    }
+
+    @Test
+    fun testBulkLoadUnorderedAndExistingIdentifiers() {
+        manager.bulkLoad(StringIdentifierEntityIndex::class.java, (0 until 20000).asSequence().map { i ->
+            val entity = StringIdentifierEntityIndex()
+            entity.identifier = "K" + (i * 7919L) % 20000
+            entity.indexValue = "A"
+            entity
+        })
+        manager.bulkLoad(StringIdentifierEntityIndex::class.java, (0 until 100).asSequence().map { i ->
+            val entity = StringIdentifierEntityIndex()
+            entity.identifier = "K$i"
+            entity.indexValue = "B"
+            entity
+        })
+
+        assertEquals(20000, manager.from<StringIdentifierEntityIndex>().list<StringIdentifierEntityIndex>().size)
+        assertEquals(100, manager.from<StringIdentifierEntityIndex>().where("indexValue" eq "B").list<StringIdentifierEntityIndex>().size)
+        assertEquals(19900, manager.from<StringIdentifierEntityIndex>().where("indexValue" eq "A").list<StringIdentifierEntityIndex>().size)
+        assertEquals(10, manager.from<StringIdentifierEntityIndex>().where("identifier" gte "K9990").list<StringIdentifierEntityIndex>().size)
+        assertNotNull(manager.findById<StringIdentifierEntityIndex>(StringIdentifierEntityIndex::class.java, "K19999"))
+    }
+}
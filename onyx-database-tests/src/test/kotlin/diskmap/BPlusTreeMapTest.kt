@@ -0,0 +1,155 @@
+package diskmap
+
+import com.onyx.diskmap.DiskMapType
+import com.onyx.diskmap.factory.impl.DefaultDiskMapFactory
+import com.onyx.diskmap.impl.DiskBPlusTreeMap
+import com.onyx.diskmap.impl.DiskSkipListMap
+import database.base.DatabaseBaseTest
+import org.junit.Before
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class BPlusTreeMapTest {
+
+    companion object {
+        private const val TEST_DATABASE = "C:/Sandbox/Onyx/Tests/bPlusTreeMapTest.db"
+    }
+
+    @Before
+    fun deleteDatabase() {
+        DatabaseBaseTest.deleteDatabase(TEST_DATABASE)
+        DatabaseBaseTest.deleteDatabase("$TEST_DATABASE.idx")
+        DatabaseBaseTest.deleteDatabase("$TEST_DATABASE.free")
+    }
+
+    @Test
+    fun putGetAndUpdate() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val map = store.getHashMap<DiskBPlusTreeMap<Int, String>>(Int::class.java, "basic", DiskMapType.BPLUS_TREE)
+
+        // Enough entries to split the root more than once
+        for (i in 0 until 100000)
+            map[i] = "value$i"
+
+        assertEquals(100000, map.size)
+        for (i in 0 until 100000)
+            assertEquals("value$i", map[i])
+
+        val recordId = map.getRecID(500)
+        map[500] = "updated"
+        assertEquals("updated", map[500])
+        assertEquals(recordId, map.getRecID(500), "Record id must not change on update")
+        assertEquals("updated", map.getWithRecID(recordId))
+        assertEquals(100000, map.size)
+
+        store.close()
+    }
+
+    @Test
+    fun removeEntries() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val map = store.getHashMap<DiskBPlusTreeMap<String, Int>>(String::class.java, "remove", DiskMapType.BPLUS_TREE)
+
+        for (i in 0 until 10000)
+            map["key$i"] = i
+
+        val removedRecordId = map.getRecID("key10")
+        for (i in 0 until 10000 step 2)
+            assertEquals(i, map.remove("key$i"))
+
+        assertEquals(5000, map.size)
+        assertNull(map.getWithRecID(removedRecordId))
+        for (i in 0 until 10000) {
+            if (i % 2 == 0) assertFalse(map.containsKey("key$i")) else assertEquals(i, map["key$i"])
+        }
+
+        // Removed keys can be inserted again
+        map["key10"] = 10
+        assertEquals(10, map["key10"])
+        assertEquals(5001, map.size)
+
+        store.close()
+    }
+
+    @Test
+    fun removedEntriesDoNotReadReusedKeys() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val map = store.getHashMap<DiskBPlusTreeMap<String, Int>>(String::class.java, "removedKeys", DiskMapType.BPLUS_TREE)
+
+        map["key1"] = 1
+        map["key2"] = 2
+        val entry = map.entries.first()
+
+        // The key of the new record is the same size so it re-uses the extent of the removed key
+        map.remove("key1")
+        map["key3"] = 3
+        assertNull(entry.key)
+        assertEquals(listOf("key2", "key3"), map.keys.toList())
+
+        store.close()
+    }
+
+    @Test
+    fun rangeQueries() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val map = store.getHashMap<DiskBPlusTreeMap<Long, Long>>(Long::class.java, "range", DiskMapType.BPLUS_TREE)
+
+        // Insert out of order so splits happen throughout the tree
+        (0L until 5000L).shuffled().forEach { map[it] = it * 10 }
+
+        assertEquals(1000, map.above(4000L, true).size)
+        assertEquals(999, map.above(4000L, false).size)
+        assertEquals(1000, map.below(999L, true).size)
+        assertEquals(999, map.below(999L, false).size)
+        assertEquals(101, map.between(100L, true, 200L, true).size)
+        assertEquals(99, map.between(100L, false, 200L, false).size)
+
+        val values = map.between(100L, true, 110L, true).map { map.getWithRecID(it) }.toSet()
+        assertEquals((100L..110L).map { it * 10 }.toSet(), values)
+
+        store.close()
+    }
+
+    @Test
+    fun iterateInKeyOrder() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val map = store.getHashMap<DiskBPlusTreeMap<Int, Int>>(Int::class.java, "iterate", DiskMapType.BPLUS_TREE)
+
+        (0 until 3000).shuffled().forEach { map[it] = it }
+
+        assertEquals((0 until 3000).toList(), map.keys.toList())
+        assertEquals((0 until 3000).toList(), map.values.toList())
+        assertEquals(3000, map.entries.count { it.key == it.value })
+        assertEquals(3000, map.references.size)
+
+        store.close()
+    }
+
+    @Test
+    fun reopenKeepsStructure() {
+        var store = DefaultDiskMapFactory(TEST_DATABASE)
+        var map: Map<String, String> = store.getHashMap(String::class.java, "reopen", DiskMapType.BPLUS_TREE)
+        val skipList: MutableMap<String, String> = store.getHashMap(String::class.java, "skipList")
+
+        for (i in 0 until 2000)
+            (map as MutableMap<String, String>)["key$i"] = "value$i"
+        skipList["key"] = "value"
+        store.close()
+
+        store = DefaultDiskMapFactory(TEST_DATABASE)
+
+        // The requested type is ignored for an existing map
+        map = store.getHashMap(String::class.java, "reopen", DiskMapType.SKIP_LIST)
+        assertTrue(map is DiskBPlusTreeMap<*, *>)
+        assertTrue(store.getHashMap<Map<String, String>>(String::class.java, "skipList", DiskMapType.BPLUS_TREE) is DiskSkipListMap<*, *>)
+
+        assertEquals(2000, map.size)
+        for (i in 0 until 2000)
+            assertEquals("value$i", map["key$i"])
+
+        store.close()
+    }
+}
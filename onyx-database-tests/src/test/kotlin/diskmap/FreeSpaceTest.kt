@@ -0,0 +1,106 @@
+package diskmap
+
+import com.onyx.diskmap.DiskMapType
+import com.onyx.diskmap.factory.impl.DefaultDiskMapFactory
+import com.onyx.diskmap.impl.DiskSkipListMap
+import database.base.DatabaseBaseTest
+import org.junit.Before
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class FreeSpaceTest {
+
+    companion object {
+        private const val TEST_DATABASE = "C:/Sandbox/Onyx/Tests/freeSpaceTest.db"
+    }
+
+    @Before
+    fun deleteDatabase() {
+        DatabaseBaseTest.deleteDatabase(TEST_DATABASE)
+        DatabaseBaseTest.deleteDatabase("$TEST_DATABASE.idx")
+        DatabaseBaseTest.deleteDatabase("$TEST_DATABASE.free")
+    }
+
+    @Test
+    fun updatesReuseReleasedSpace() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val map = store.getHashMap(String::class.java, "updates") as DiskSkipListMap<String, String>
+
+        for (i in 0 until 1000)
+            map.put("key$i", "a".repeat(100))
+        val sizeAfterInsert = map.records.getFileSize()
+
+        for (round in 0 until 10)
+            for (i in 0 until 1000)
+                map.put("key$i", "b".repeat(100))
+
+        assertTrue(map.records.getFileSize() <= sizeAfterInsert + 1024, "Updates should re-use the space of the previous values")
+        for (i in 0 until 1000)
+            assertEquals("b".repeat(100), map["key$i"])
+
+        store.close()
+    }
+
+    @Test
+    fun updatesDoNotReturnReplacedValues() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+
+        // Each value has the same size so the third one re-uses the extent the first one was cached for
+        for (type in DiskMapType.values()) {
+            val map: MutableMap<String, String> = store.getHashMap(String::class.java, "replaced$type", type)
+            map["key"] = "a".repeat(100)
+            assertEquals("a".repeat(100), map["key"])
+            map["key"] = "b".repeat(100)
+            map["key"] = "c".repeat(100)
+            assertEquals("c".repeat(100), map["key"], "$type should not return a value cached for a re-used extent")
+
+            for (value in listOf("d", "e", "f")) {
+                map["key"] = value.repeat(100)
+                assertEquals(value.repeat(100), map["key"], "$type should return the latest value")
+            }
+
+            map.remove("key")
+            assertNull(map["key"])
+            map["other"] = "g".repeat(100)
+            map["key"] = "h".repeat(100)
+            assertEquals("h".repeat(100), map["key"], "$type should not return the value of a removed record")
+        }
+
+        store.close()
+    }
+
+    @Test
+    fun compactionShrinksDataFile() {
+        var store = DefaultDiskMapFactory(TEST_DATABASE)
+        var map = store.getHashMap(String::class.java, "compact") as DiskSkipListMap<String, String>
+
+        for (i in 0 until 2000)
+            map.put("key$i", "c".repeat(200))
+        for (i in 0 until 2000 step 2)
+            map.remove("key$i")
+
+        val sizeBeforeCompaction = map.records.getFileSize()
+        store.compact()
+        assertTrue(map.records.getFileSize() < sizeBeforeCompaction * 3 / 4, "Compaction should trim the data file")
+
+        for (i in 1 until 2000 step 2)
+            assertEquals("c".repeat(200), map["key$i"])
+        for (i in 0 until 2000 step 2)
+            assertNull(map["key$i"])
+        assertEquals(1000, map.keys.size)
+        store.close()
+
+        // Re-open and make sure the relocated records and released extents survived
+        store = DefaultDiskMapFactory(TEST_DATABASE)
+        map = store.getHashMap(String::class.java, "compact") as DiskSkipListMap<String, String>
+        for (i in 1 until 2000 step 2)
+            assertEquals("c".repeat(200), map["key$i"])
+        for (i in 0 until 2000 step 2)
+            map.put("key$i", "d")
+        for (i in 0 until 2000 step 2)
+            assertEquals("d", map["key$i"])
+        store.close()
+    }
+}
@@ -1,5 +1,6 @@
 package diskmap
 
+import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.factory.impl.DefaultDiskMapFactory
 import database.base.DatabaseBaseTest
 import org.junit.BeforeClass
@@ -8,6 +9,7 @@ import org.junit.Test
 import java.util.*
 import java.util.concurrent.Executors
 import java.util.concurrent.Future
+import kotlin.test.assertEquals
 import kotlin.test.assertNull
 
 /**
@@ -59,6 +61,134 @@ class MultiThreadTest {
         store.close()
     }
 
+    @Test
+    fun testConcurrentInsertsOfIndependentKeys() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val myMap = store.getHashMap<MutableMap<Int, String>>(Int::class.java, "independent")
+
+        val items = ArrayList<Future<*>>()
+        for (thread in 0 until 8) {
+            items.add(DatabaseBaseTest.async(threadPool) {
+                for (k in 0 until 5000) {
+                    val key = k * 8 + thread
+                    myMap[key] = "first$key"
+                    myMap[key] = "second$key"
+                }
+            })
+        }
+        items.forEach { it.get() }
+
+        assertEquals(40000, myMap.size)
+        assertEquals((0 until 40000).toList(), myMap.entries.map { it.key })
+        for (key in 0 until 40000)
+            assertEquals("second$key", myMap[key])
+
+        store.close()
+    }
+
+    @Test
+    fun testConcurrentWritesOfSameKeys() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val myMap = store.getHashMap<MutableMap<Int, Int>>(Int::class.java, "same")
+
+        val items = ArrayList<Future<*>>()
+        for (thread in 0 until 8) {
+            items.add(DatabaseBaseTest.async(threadPool) {
+                for (key in 0 until 2000)
+                    myMap[key] = thread
+            })
+        }
+        items.forEach { it.get() }
+
+        assertEquals(2000, myMap.size)
+        assertEquals(2000, myMap.keys.toSet().size)
+        for (key in 0 until 2000)
+            assertEquals(true, myMap[key] in 0 until 8)
+
+        store.close()
+    }
+
+    @Test
+    fun testReadersDuringUpdatesAndRemoves() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val myMap = store.getHashMap<MutableMap<Int, String>>(Int::class.java, "readers")
+        for (key in 0 until 500)
+            myMap[key] = "key$key-0"
+
+        val writers = ArrayList<Future<*>>()
+        for (thread in 0 until 4) {
+            writers.add(DatabaseBaseTest.async(threadPool) {
+                for (version in 1..19) {
+                    for (key in thread until 500 step 4) {
+                        if (version % 5 == 0) myMap.remove(key) else myMap[key] = "key$key-$version"
+                    }
+                }
+            })
+        }
+
+        // Released values are re-used by the writers.  A reader must never see the value of another key.
+        val readers = ArrayList<Future<*>>()
+        for (thread in 0 until 4) {
+            readers.add(DatabaseBaseTest.async(threadPool) {
+                while (writers.any { !it.isDone }) {
+                    for (key in 0 until 500) {
+                        val value = myMap[key]
+                        assertEquals(true, value == null || value.startsWith("key$key-"), value)
+                    }
+                    myMap.entries.forEach { entry ->
+                        val value = entry.value
+                        assertEquals(true, value == null || value.startsWith("key${entry.key}-"), value)
+                    }
+                }
+            })
+        }
+
+        writers.forEach { it.get() }
+        readers.forEach { it.get() }
+
+        for (key in 0 until 500)
+            assertEquals("key$key-19", myMap[key])
+
+        store.close()
+    }
+
+    @Test
+    fun testReadersDuringAppends() {
+        val store = DefaultDiskMapFactory(TEST_DATABASE)
+        val myMap = store.getHashMap<DiskMap<Int, String>>(Int::class.java, "appends")
+
+        // Each batch follows the last key so it is appended as a whole
+        val writer = DatabaseBaseTest.async(threadPool) {
+            for (batch in 0 until 200)
+                myMap.putAllAndGet((batch * 50 until (batch + 1) * 50).map { it to "key$it" })
+        }
+
+        val readers = ArrayList<Future<*>>()
+        for (thread in 0 until 4) {
+            readers.add(DatabaseBaseTest.async(threadPool) {
+                while (!writer.isDone) {
+                    var count = 0
+                    myMap.entries.forEach { entry ->
+                        assertEquals("key${entry.key}", entry.value)
+                        count++
+                    }
+                    val last = count - 1
+                    if (last >= 0)
+                        assertEquals("key$last", myMap[last])
+                }
+            })
+        }
+
+        writer.get()
+        readers.forEach { it.get() }
+
+        assertEquals(10000, myMap.size)
+        for (key in 0 until 10000)
+            assertEquals("key$key", myMap[key])
+
+        store.close()
+    }
+
     internal inner class MyRunnable(private var myMap: MutableMap<Int, String>, private var p: Int) : Runnable {
 
         override fun run() {
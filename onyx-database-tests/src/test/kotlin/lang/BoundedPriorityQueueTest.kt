@@ -0,0 +1,39 @@
+package lang
+
+import com.onyx.lang.BoundedPriorityQueue
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class BoundedPriorityQueueTest {
+
+    @Test
+    fun `keeps the smallest elements in order`() {
+        val random = Random(11)
+        val values = List(10000) { random.nextInt(-1000, 1000) }
+        val queue = BoundedPriorityQueue<Int>(25, Comparator.naturalOrder())
+        values.forEach { queue.offer(it) }
+
+        assertEquals(25, queue.size)
+        assertEquals(values.sorted().take(25), queue.toSortedList())
+    }
+
+    @Test
+    fun `rejects elements larger than every kept element once full`() {
+        val queue = BoundedPriorityQueue<Int>(2, Comparator.naturalOrder())
+        assertTrue(queue.offer(5))
+        assertTrue(queue.offer(3))
+        assertFalse(queue.offer(7))
+        assertTrue(queue.offer(1))
+        assertEquals(listOf(1, 3), queue.toSortedList())
+    }
+
+    @Test
+    fun `holds fewer elements than the capacity`() {
+        val queue = BoundedPriorityQueue<Int>(100, Comparator.reverseOrder())
+        listOf(4, 9, 1).forEach { queue.offer(it) }
+        assertEquals(listOf(9, 4, 1), queue.toSortedList())
+    }
+}
@@ -0,0 +1,58 @@
+package lang
+
+import com.onyx.lang.concurrent.EpochReclamation
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.concurrent.thread
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class EpochReclamationTest {
+
+    @Test
+    fun `resources are released immediately without readers`() {
+        val reclamation = EpochReclamation()
+        val released = AtomicBoolean()
+        reclamation.retire { released.set(true) }
+        assertTrue(released.get())
+        assertEquals(0, reclamation.pending)
+    }
+
+    @Test
+    fun `resources are not released while an earlier reader is running`() {
+        val reclamation = EpochReclamation()
+        val released = AtomicBoolean()
+        val reading = CountDownLatch(1)
+        val finish = CountDownLatch(1)
+
+        val reader = thread {
+            reclamation.read {
+                reading.countDown()
+                finish.await()
+            }
+        }
+
+        reading.await()
+        reclamation.retire { released.set(true) }
+        assertFalse(released.get())
+        assertEquals(1, reclamation.pending)
+
+        finish.countDown()
+        reader.join()
+        assertTrue(released.get())
+        assertEquals(0, reclamation.pending)
+    }
+
+    @Test
+    fun `resources retired within a read are released once it finishes`() {
+        val reclamation = EpochReclamation()
+        val released = AtomicBoolean()
+        reclamation.read {
+            reclamation.retire { released.set(true) }
+            assertFalse(released.get())
+        }
+        assertTrue(released.get())
+    }
+}
@@ -0,0 +1,40 @@
+package lang
+
+import com.onyx.interactors.query.data.ExternalSorter
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class ExternalSorterTest {
+
+    private fun sorter(runSize: Int) = ExternalSorter<Pair<Int, Int>>(compareBy({ it.first }, { it.second }), null,
+        toSpilled = { arrayListOf(it.first, it.second) },
+        fromSpilled = { value -> (value as List<*>).let { it[0] as Int to it[1] as Int } },
+        runSize = runSize)
+
+    @Test
+    fun `merges spilled runs in order`() {
+        val random = Random(7)
+        val values = List(2500) { random.nextInt(100) to it }
+
+        sorter(100).use { sorter ->
+            values.forEach { sorter.add(it) }
+
+            assertTrue(sorter.isSpilled)
+            assertEquals(2500L, sorter.size)
+            assertEquals(values.sortedWith(compareBy({ it.first }, { it.second })), sorter.sorted().asSequence().toList())
+        }
+    }
+
+    @Test
+    fun `sorts in memory until a run is filled`() {
+        sorter(100).use { sorter ->
+            listOf(3 to 0, 1 to 1, 2 to 2).forEach { sorter.add(it) }
+
+            assertFalse(sorter.isSpilled)
+            assertEquals(listOf(1 to 1, 2 to 2, 3 to 0), sorter.sorted().asSequence().toList())
+        }
+    }
+}
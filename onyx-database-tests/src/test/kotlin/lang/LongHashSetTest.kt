@@ -0,0 +1,95 @@
+package lang
+
+import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
+import com.onyx.lang.LongHashSet
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class LongHashSetTest {
+
+    @Test
+    fun `matches a hash set while adding and removing`() {
+        val random = Random(7)
+        val set = LongHashSet()
+        val expected = HashSet<Long>()
+        repeat(20000) {
+            val value = random.nextLong(-500, 5000)
+            if (random.nextInt(4) == 0)
+                assertEquals(expected.remove(value), set.remove(value))
+            else
+                assertEquals(expected.add(value), set.add(value))
+        }
+        assertEquals(expected.size, set.size)
+        assertEquals(expected, set.toHashSet())
+        assertTrue(expected.all { set.contains(it) })
+    }
+
+    @Test
+    fun `values can be removed while iterating`() {
+        val set = LongHashSet()
+        for (i in 0L until 1000L)
+            set.add(i)
+
+        val iterator = set.iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0L)
+                iterator.remove()
+        }
+
+        assertEquals(500, set.size)
+        assertFalse(set.contains(10L))
+        assertTrue(set.contains(11L))
+    }
+
+    @Test
+    fun `sets are intersected and subtracted`() {
+        val multiplesOfTwo = LongHashSet().apply { for (i in 0L until 100L) add(i * 2) }
+        val multiplesOfThree = LongHashSet().apply { for (i in 0L until 100L) add(i * 3) }
+
+        val both = LongHashSet().apply { addAll(multiplesOfTwo) }
+        both.retainAll(multiplesOfThree)
+        assertEquals((0L until 200L step 6).toSet(), both.toSet())
+
+        val onlyTwo = LongHashSet().apply { addAll(multiplesOfTwo) }
+        onlyTwo.removeAll(multiplesOfThree)
+        assertEquals(multiplesOfTwo.toSet() - multiplesOfThree.toSet(), onlyTwo.toSet())
+    }
+
+    @Test
+    fun `reference sets are equal to sets of references`() {
+        val references = ReferenceSet()
+        val expected = HashSet<Reference>()
+        for (i in 0L until 300L) {
+            references.add(i % 3, i)
+            expected.add(Reference(i % 3, i))
+        }
+
+        assertEquals(expected, references)
+        assertEquals(references, expected)
+        assertEquals(expected.hashCode(), references.hashCode())
+        assertTrue(references.contains(Reference(1L, 4L)))
+        assertFalse(references.contains(Reference(0L, 4L)))
+    }
+
+    @Test
+    fun `reference sets are intersected by partition`() {
+        val references = ReferenceSet()
+        val other = ReferenceSet()
+        for (i in 0L until 100L) {
+            references.add(1L, i)
+            references.add(2L, i)
+            other.add(2L, i * 2)
+        }
+
+        references.retainAll(other)
+        assertEquals(50, references.size)
+        assertTrue(references.all { it.partition == 2L && it.reference % 2 == 0L })
+
+        references.addAll(setOf(Reference(3L, 1L)))
+        assertEquals(51, references.size)
+    }
+}
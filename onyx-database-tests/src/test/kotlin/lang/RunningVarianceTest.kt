@@ -0,0 +1,44 @@
+package lang
+
+import com.onyx.lang.RunningVariance
+import kotlin.math.abs
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class RunningVarianceTest {
+
+    @Test
+    fun `computes the population variance`() {
+        val variance = RunningVariance()
+        listOf(2.0, 4.0, 4.0, 4.0, 5.0, 5.0, 7.0, 9.0).forEach { variance.add(it) }
+        assertEquals(8L, variance.count)
+        assertEquals(5.0, variance.mean)
+        assertEquals(4.0, variance.variance)
+    }
+
+    @Test
+    fun `keeps precision with large values`() {
+        val variance = RunningVariance()
+        for (i in 0 until 100000)
+            variance.add(1e9 + i % 10)
+        assertTrue(abs(variance.variance - 8.25) < 1e-6, "Variance ${variance.variance}")
+    }
+
+    @Test
+    fun `merges running variances`() {
+        val values = List(1000) { (it * 37 % 101).toDouble() }
+        val all = RunningVariance()
+        val first = RunningVariance()
+        val second = RunningVariance()
+        values.forEachIndexed { index, value ->
+            all.add(value)
+            if (index < 300) first.add(value) else second.add(value)
+        }
+        first.merge(second)
+
+        assertEquals(all.count, first.count)
+        assertTrue(abs(all.mean - first.mean) < 1e-9)
+        assertTrue(abs(all.variance - first.variance) < 1e-9)
+    }
+}
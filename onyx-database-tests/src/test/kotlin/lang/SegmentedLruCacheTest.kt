@@ -0,0 +1,81 @@
+package lang
+
+import com.onyx.lang.map.SegmentedLruCache
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class SegmentedLruCacheTest {
+
+    @Test
+    fun `weight never exceeds the maximum`() {
+        val cache = SegmentedLruCache<Int, String>(1000, 1) { _, value -> value.length }
+        for (i in 0 until 1000)
+            cache[i] = "value$i"
+        assertTrue(cache.weight <= 1000)
+        assertTrue(cache.evictionCount > 0)
+    }
+
+    @Test
+    fun `entries read more than once survive a scan`() {
+        val cache = SegmentedLruCache<Int, String>(1000, 1) { _, _ -> 10 }
+        for (i in 0 until 50)
+            cache[i] = "hot$i"
+        for (i in 0 until 50)
+            cache[i]
+
+        for (i in 1000 until 10000)
+            cache[i] = "scan$i"
+
+        assertEquals(50, (0 until 50).count { cache[it] != null })
+    }
+
+    @Test
+    fun `entries heavier than the cache are not cached`() {
+        val cache = SegmentedLruCache<Int, String>(100, 1) { _, value -> value.length }
+        cache[1] = "x".repeat(200)
+        assertNull(cache[1])
+        assertEquals(0L, cache.weight)
+    }
+
+    @Test
+    fun `hits and misses are counted`() {
+        val cache = SegmentedLruCache<Int, String>(1000) { _, _ -> 1 }
+        cache[1] = "one"
+        cache[1]
+        cache[2]
+        assertEquals("two", cache.getOrPut(2) { "two" })
+        assertEquals(1L, cache.hitCount)
+        assertEquals(2L, cache.missCount)
+    }
+
+    @Test
+    fun `lowering the maximum weight evicts entries`() {
+        val cache = SegmentedLruCache<Int, String>(1000, 1) { _, _ -> 10 }
+        for (i in 0 until 100)
+            cache[i] = "value$i"
+        cache.maxWeight = 100
+        assertEquals(10, cache.size)
+    }
+
+    @Test
+    fun `listener is notified of added and removed keys`() {
+        val cache = SegmentedLruCache<Int, String>(100, 1) { _, _ -> 10 }
+        val keys = HashSet<Int>()
+        cache.listener = object : SegmentedLruCache.Listener<Int> {
+            override fun added(key: Int) { assertTrue(keys.add(key)) }
+            override fun removed(key: Int) { assertTrue(keys.remove(key)) }
+        }
+
+        for (i in 0 until 100)
+            cache[i] = "value$i"
+        cache[99] = "replaced"
+        cache.remove(98)
+        assertEquals(cache.size, keys.size)
+        assertTrue(keys.all { cache[it] != null })
+
+        cache.clear()
+        assertTrue(keys.isEmpty())
+    }
+}
@@ -0,0 +1,61 @@
+package lang
+
+import com.onyx.lang.TDigest
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class TDigestTest {
+
+    private fun rankOf(sorted: DoubleArray, value: Double): Double =
+        sorted.count { it < value }.toDouble() / sorted.size
+
+    @Test
+    fun `estimates quantiles within a small rank error`() {
+        val random = Random(5)
+        val values = DoubleArray(200000) { random.nextDouble() * random.nextDouble() * 1000 }
+        val digest = TDigest()
+        values.forEach { digest.add(it) }
+        val sorted = values.sortedArray()
+
+        assertTrue(digest.centroids <= digest.compression)
+        listOf(0.001, 0.01, 0.25, 0.5, 0.75, 0.99, 0.999).forEach { quantile ->
+            val error = kotlin.math.abs(rankOf(sorted, digest.quantile(quantile)) - quantile)
+            assertTrue(error < 0.002, "Rank error $error for quantile $quantile")
+        }
+        assertEquals(sorted.first(), digest.quantile(0.0))
+        assertEquals(sorted.last(), digest.quantile(1.0))
+    }
+
+    @Test
+    fun `is exact with few values`() {
+        val digest = TDigest()
+        listOf(9.0, 2.0, 10.0, 4.0, 99.0, 3.0, 6.0, 5.0, 8.0, 7.0, 9.0).forEach { digest.add(it) }
+        assertEquals(7.0, digest.quantile(0.5))
+        assertEquals(4.0, digest.quantile(0.2))
+        assertEquals(7.5, digest.quantile(0.55))
+        assertEquals(11L, digest.size)
+    }
+
+    @Test
+    fun `merges digests`() {
+        val random = Random(9)
+        val values = DoubleArray(100000) { random.nextDouble() * 100 }
+        val first = TDigest()
+        val second = TDigest()
+        values.forEachIndexed { index, value -> if (index % 3 == 0) first.add(value) else second.add(value) }
+        first.merge(second)
+
+        assertEquals(values.size.toLong(), first.size)
+        assertEquals(values.minOrNull(), first.min)
+        assertEquals(values.maxOrNull(), first.max)
+        val median = first.quantile(0.5)
+        assertTrue(kotlin.math.abs(rankOf(values.sortedArray(), median) - 0.5) < 0.002, "Merged median $median")
+    }
+
+    @Test
+    fun `has no quantiles without values`() {
+        assertTrue(TDigest().quantile(0.5).isNaN())
+    }
+}
@@ -0,0 +1,116 @@
+package network
+
+import com.onyx.exception.InitializationException
+import com.onyx.network.auth.AuthenticationManager
+import com.onyx.network.rmi.OnyxRMIClientPool
+import com.onyx.network.rmi.OnyxRMIServer
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class OnyxRMIClientPoolTest {
+
+    /**
+     * Remote service answering after a delay
+     */
+    interface DelayedService {
+        fun echo(value: Int, delay: Long): Int
+    }
+
+    private class DefaultDelayedService : DelayedService {
+        override fun echo(value: Int, delay: Long): Int {
+            Thread.sleep(delay)
+            return value
+        }
+    }
+
+    /**
+     * Accepts the credentials of the first connections and rejects the rest
+     */
+    private class LimitedAuthenticationManager(private val accepted: Int) : AuthenticationManager {
+        private val verified = AtomicInteger()
+
+        override fun verify(username: String, password: String) {
+            if (verified.incrementAndGet() > accepted)
+                throw InitializationException(InitializationException.INVALID_CREDENTIALS)
+        }
+    }
+
+    private val server = OnyxRMIServer()
+    private val pool = OnyxRMIClientPool(2)
+
+    @AfterTest
+    fun close() {
+        pool.close()
+        server.stop()
+    }
+
+    /**
+     * Start the server and connect every client of the pool
+     *
+     * @param accepted Number of connections the server accepts the credentials of
+     */
+    private fun connect(accepted: Int = Int.MAX_VALUE): DelayedService {
+        server.port = PORT
+        server.register(AUTHENTICATION_SERVICE, LimitedAuthenticationManager(accepted), AuthenticationManager::class.java)
+        server.register(DELAYED_SERVICE, DefaultDelayedService(), DelayedService::class.java)
+        server.start()
+
+        pool.authenticateWith(AUTHENTICATION_SERVICE)
+        pool.connect("localhost", PORT)
+        return pool.getRemoteObject(DELAYED_SERVICE, DelayedService::class.java) as DelayedService
+    }
+
+    @Test
+    fun `sends each request over the least loaded connection`() {
+        val service = connect()
+        val futures = (1..4).map { value -> pool.invokeAsync(service) { echo(value, 500) } }
+        assertEquals(listOf(2, 2), pool.clients.map { it.pendingRequestCount })
+
+        assertEquals((1..4).toList(), futures.map { it.get(5, TimeUnit.SECONDS) })
+        assertEquals(listOf(0, 0), pool.clients.map { it.pendingRequestCount })
+    }
+
+    @Test
+    fun `invokes remote methods through the pooled proxy`() {
+        val service = connect()
+        assertEquals((1..10).toList(), (1..10).map { service.echo(it, 0) })
+        assertEquals(listOf(0, 0), pool.clients.map { it.pendingRequestCount })
+    }
+
+    @Test
+    fun `sends every request of a pinned proxy over one connection`() {
+        val pinned = pool.pinned(connect())
+        val futures = (1..4).map { value -> CompletableFuture.supplyAsync { pinned.echo(value, 500) } }
+        Thread.sleep(200)
+        assertEquals(listOf(0, 4), pool.clients.map { it.pendingRequestCount }.sorted())
+
+        assertEquals((1..4).toList(), futures.map { it.get(5, TimeUnit.SECONDS) })
+    }
+
+    @Test
+    fun `closes the connected clients when a client can not connect`() {
+        assertFailsWith<InitializationException> { connect(accepted = 1) }
+        assertTrue(pool.clients.none { it.isActive }, "Every client should be closed")
+    }
+
+    @Test
+    fun `closes every client`() {
+        connect()
+        assertTrue(pool.clients.all { it.isActive }, "Every client should be connected")
+        pool.close()
+        assertFalse(pool.clients.any { it.isActive }, "Every client should be closed")
+    }
+
+    companion object {
+        private const val PORT = 8094
+        private const val AUTHENTICATION_SERVICE = "auth"
+        private const val DELAYED_SERVICE = "delayed"
+    }
+}
@@ -0,0 +1,117 @@
+package network
+
+import com.onyx.exception.ConnectionFailedException
+import com.onyx.exception.StreamException
+import com.onyx.network.auth.AuthenticationManager
+import com.onyx.network.rmi.OnyxRMIClient
+import com.onyx.network.rmi.OnyxRMIServer
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import kotlin.test.AfterTest
+import kotlin.test.BeforeTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class OnyxRMIClientTest {
+
+    /**
+     * Remote service answering after a delay
+     */
+    interface DelayedService {
+        fun echo(value: Int, delay: Long): Int
+        fun fail(): Int
+    }
+
+    private class DefaultDelayedService : DelayedService {
+        override fun echo(value: Int, delay: Long): Int {
+            Thread.sleep(delay)
+            return value
+        }
+
+        override fun fail(): Int = throw StreamException(StreamException.CURSOR_CLOSED)
+    }
+
+    private class AcceptingAuthenticationManager : AuthenticationManager {
+        override fun verify(username: String, password: String) = Unit
+    }
+
+    private val server = OnyxRMIServer()
+    private val client = OnyxRMIClient()
+    private lateinit var service: DelayedService
+
+    @BeforeTest
+    fun connect() {
+        server.port = PORT
+        server.register(AUTHENTICATION_SERVICE, AcceptingAuthenticationManager(), AuthenticationManager::class.java)
+        server.register(DELAYED_SERVICE, DefaultDelayedService(), DelayedService::class.java)
+        server.start()
+
+        client.authenticationManager = client.getRemoteObject(AUTHENTICATION_SERVICE, AuthenticationManager::class.java) as AuthenticationManager
+        client.connect("localhost", PORT)
+        service = client.getRemoteObject(DELAYED_SERVICE, DelayedService::class.java) as DelayedService
+    }
+
+    @AfterTest
+    fun close() {
+        client.close()
+        server.stop()
+    }
+
+    @Test
+    fun `invokes a remote method synchronously`() {
+        assertEquals(3, service.echo(3, 0))
+    }
+
+    @Test
+    fun `completes an asynchronous invocation with the result`() {
+        val future = client.invokeAsync(service) { echo(7, 50) }
+        assertEquals(7, future.get(5, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `completes an asynchronous invocation exceptionally with the server error`() {
+        val error = runCatching { client.invokeAsync(service) { fail() }.get(5, TimeUnit.SECONDS) }.exceptionOrNull()
+        assertTrue(error is ExecutionException && error.cause is StreamException, "Expected the server error but was $error")
+    }
+
+    @Test
+    fun `pipelines requests over a single connection`() {
+        val started = System.currentTimeMillis()
+        val futures = (1..10).map { value -> client.invokeAsync(service) { echo(value, 500) } }
+        assertEquals(10, client.pendingRequestCount)
+
+        assertEquals((1..10).toList(), futures.map { it.get(5, TimeUnit.SECONDS) })
+        assertTrue(System.currentTimeMillis() - started < 5000, "Requests should not wait on each other")
+        assertEquals(0, client.pendingRequestCount)
+    }
+
+    @Test
+    fun `answers requests out of order`() {
+        val slow = client.invokeAsync(service) { echo(1, 2000) }
+        val fast = client.invokeAsync(service) { echo(2, 0) }
+
+        assertEquals(2, fast.get(5, TimeUnit.SECONDS))
+        assertFalse(slow.isDone, "The slow request should still be awaiting its response")
+        assertEquals(1, slow.get(5, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `fails pending requests once the connection is lost`() {
+        val pending: CompletableFuture<Int> = client.invokeAsync(service) { echo(1, 10000) }
+        Thread.sleep(200)
+        server.stop()
+
+        val error = runCatching { pending.get(5, TimeUnit.SECONDS) }.exceptionOrNull()
+        assertTrue(error is ExecutionException && error.cause is ConnectionFailedException, "Expected the connection to fail but was $error")
+        assertEquals(0, client.pendingRequestCount)
+    }
+
+    companion object {
+        private const val PORT = 8093
+        private const val AUTHENTICATION_SERVICE = "auth"
+        private const val DELAYED_SERVICE = "delayed"
+    }
+}
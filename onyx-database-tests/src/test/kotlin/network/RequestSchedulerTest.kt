@@ -0,0 +1,87 @@
+package network
+
+import com.onyx.network.rmi.RequestPriority
+import com.onyx.network.rmi.RequestScheduler
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class RequestSchedulerTest {
+
+    private val scheduler = RequestScheduler(1, 3)
+    private val blocked = CountDownLatch(1)
+    private val started = CountDownLatch(1)
+
+    @AfterTest
+    fun shutdown() {
+        blocked.countDown()
+        scheduler.shutdown()
+    }
+
+    /**
+     * Occupy the only thread so submitted requests are queued
+     */
+    private fun blockScheduler() {
+        scheduler.submit(RequestPriority.NORMAL) {
+            started.countDown()
+            blocked.await()
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `processes higher priority requests first`() {
+        blockScheduler()
+        val order = Collections.synchronizedList(ArrayList<String>())
+        val done = CountDownLatch(3)
+        scheduler.submit(RequestPriority.LOW) { order.add("first scan"); done.countDown() }
+        scheduler.submit(RequestPriority.LOW) { order.add("second scan"); done.countDown() }
+        scheduler.submit(RequestPriority.HIGH) { order.add("lookup"); done.countDown() }
+        blocked.countDown()
+
+        assertTrue(done.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf("lookup", "first scan", "second scan"), order)
+    }
+
+    @Test
+    fun `rejects requests once the queue is full`() {
+        blockScheduler()
+        repeat(3) { assertTrue(scheduler.submit(RequestPriority.HIGH) { }) }
+        assertFalse(scheduler.submit(RequestPriority.HIGH) { })
+
+        assertEquals(3, scheduler.queuedRequests)
+        assertEquals(1, scheduler.activeRequests)
+        assertEquals(1L, scheduler.rejectedRequests)
+    }
+
+    @Test
+    fun `processes lower priority requests once enough requests have passed them`() {
+        val agingScheduler = RequestScheduler(1, 10, priorityAging = 2)
+        val blocked = CountDownLatch(1)
+        val started = CountDownLatch(1)
+        try {
+            agingScheduler.submit(RequestPriority.HIGH) {
+                started.countDown()
+                blocked.await()
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS))
+
+            val order = Collections.synchronizedList(ArrayList<String>())
+            val done = CountDownLatch(6)
+            agingScheduler.submit(RequestPriority.LOW) { order.add("scan"); done.countDown() }
+            repeat(5) { agingScheduler.submit(RequestPriority.HIGH) { order.add("lookup $it"); done.countDown() } }
+            blocked.countDown()
+
+            assertTrue(done.await(5, TimeUnit.SECONDS))
+            assertEquals(listOf("lookup 0", "lookup 1", "lookup 2", "scan", "lookup 3", "lookup 4"), order)
+        } finally {
+            blocked.countDown()
+            agingScheduler.shutdown()
+        }
+    }
+}
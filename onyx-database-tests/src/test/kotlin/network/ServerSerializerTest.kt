@@ -0,0 +1,88 @@
+package network
+
+import com.onyx.exception.BufferingException
+import com.onyx.network.serialization.impl.DefaultServerSerializer
+import com.onyx.network.transport.data.RequestToken
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryResult
+import java.nio.ByteBuffer
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class ServerSerializerTest {
+
+    private fun selectionRows(count: Int): List<Map<String, Any?>> = List(count) {
+        hashMapOf(
+            "id" to it.toLong(),
+            "quantity" to it,
+            "price" to it * 2.5,
+            "status" to if (it % 2 == 0) "OPEN" else "CLOSED",
+            "name" to "customer $it",
+            "note" to if (it % 3 == 0) null else "note $it"
+        )
+    }
+
+    private fun roundTrip(serializer: DefaultServerSerializer, results: Any?): Any? {
+        val buffer = serializer.serialize(RequestToken(1, QueryResult(Query(), results)))
+        return (serializer.deserialize<RequestToken>(buffer).packet as QueryResult).results
+    }
+
+    @Test
+    fun `selection rows survive column batching`() {
+        val rows = selectionRows(500)
+        assertEquals(rows, roundTrip(DefaultServerSerializer(), rows))
+    }
+
+    @Test
+    fun `rows with different attributes are sent as rows`() {
+        val rows = listOf(hashMapOf("a" to 1), hashMapOf("b" to 2))
+        assertEquals(rows, roundTrip(DefaultServerSerializer(), rows))
+    }
+
+    @Test
+    fun `large messages are compressed above the threshold`() {
+        val rows = selectionRows(500)
+        val uncompressed = DefaultServerSerializer().serialize(RequestToken(1, QueryResult(Query(), rows))).remaining()
+        val serializer = DefaultServerSerializer(1024)
+        val compressed = serializer.serialize(RequestToken(1, QueryResult(Query(), rows))).remaining()
+
+        assertTrue(compressed < uncompressed)
+        assertEquals(rows, roundTrip(serializer, rows))
+    }
+
+    /**
+     * Serialize a compressed message and change the size it claims to inflate to
+     */
+    private fun compressedWithSize(serializer: DefaultServerSerializer, size: (Int) -> Int): ByteBuffer {
+        val message = serializer.serialize(RequestToken(1, QueryResult(Query(), selectionRows(500))))
+        assertTrue(serializer.isCompressed(ByteArray(message.remaining()).also { message.duplicate().get(it) }))
+        message.putInt(1, size(message.getInt(1)))
+        return message
+    }
+
+    @Test
+    fun `compressed messages larger than the max message size are rejected before inflating`() {
+        val serializer = DefaultServerSerializer(1024)
+        assertFailsWith<BufferingException> { serializer.deserialize<RequestToken>(compressedWithSize(serializer) { Int.MAX_VALUE }) }
+        assertFailsWith<BufferingException> { serializer.deserialize<RequestToken>(compressedWithSize(serializer) { -1 }) }
+
+        serializer.maxMessageSize = 1024
+        assertFailsWith<BufferingException> { serializer.deserialize<RequestToken>(compressedWithSize(serializer) { it }) }
+    }
+
+    @Test
+    fun `compressed messages must inflate to the size they claim`() {
+        val serializer = DefaultServerSerializer(1024)
+        assertFailsWith<BufferingException> { serializer.deserialize<RequestToken>(compressedWithSize(serializer) { it - 1 }) }
+        assertFailsWith<BufferingException> { serializer.deserialize<RequestToken>(compressedWithSize(serializer) { it + 1 }) }
+    }
+
+    @Test
+    fun `uncompressed messages are not reported as compressed`() {
+        val message = DefaultServerSerializer().serialize(RequestToken(1, QueryResult(Query(), selectionRows(500))))
+        assertFalse(DefaultServerSerializer().isCompressed(ByteArray(message.remaining()).also { message.get(it) }))
+    }
+}
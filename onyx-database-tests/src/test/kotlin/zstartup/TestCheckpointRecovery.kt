@@ -0,0 +1,83 @@
+package zstartup
+
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.Query
+import database.base.DatabaseBaseTest.Companion.deleteDatabase
+import entities.SimpleEntity
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class TestCheckpointRecovery {
+
+    @Before
+    @After
+    fun deleteDatabases() {
+        deleteDatabase(DATABASE_LOCATION)
+        deleteDatabase(DATABASE_LOCATION_COPY)
+    }
+
+    /**
+     * A database that was not shut down applies the changes journaled after its last checkpoint when it starts
+     */
+    @Test
+    fun changesFollowingTheCheckpointAreRecoveredOnStartup() {
+        val factory = journaledFactory(DATABASE_LOCATION)
+        save(factory, 0 until 100)
+        factory.schemaContext.checkpoint()
+        save(factory, 100 until 200)
+
+        // The copy has the journal but none of the data files, as if they were lost before being committed
+        copyJournal()
+        factory.close()
+
+        val copy = journaledFactory(DATABASE_LOCATION_COPY)
+        val manager = copy.persistenceManager
+        assertEquals(100, manager.executeQuery<SimpleEntity>(Query(SimpleEntity::class.java)).size)
+        assertNull(manager.findById(SimpleEntity::class.java, "99"))
+        assertNotNull(manager.findById(SimpleEntity::class.java, "100"))
+        copy.close()
+    }
+
+    /**
+     * Shutting down writes a checkpoint so the journal is not applied again on startup
+     */
+    @Test
+    fun nothingIsRecoveredAfterShutdown() {
+        val factory = journaledFactory(DATABASE_LOCATION)
+        save(factory, 0 until 100)
+        factory.close()
+        copyJournal()
+
+        val copy = journaledFactory(DATABASE_LOCATION_COPY)
+        assertEquals(0, copy.persistenceManager.executeQuery<SimpleEntity>(Query(SimpleEntity::class.java)).size)
+        copy.close()
+    }
+
+    private fun journaledFactory(location: String): EmbeddedPersistenceManagerFactory {
+        val factory = EmbeddedPersistenceManagerFactory(location)
+        factory.isEnableJournaling = true
+        factory.initialize()
+        return factory
+    }
+
+    private fun save(factory: EmbeddedPersistenceManagerFactory, ids: IntRange) = ids.forEach {
+        val entity = SimpleEntity()
+        entity.simpleId = it.toString()
+        entity.name = "name$it"
+        factory.persistenceManager.saveEntity(entity)
+    }
+
+    private fun copyJournal() {
+        File(DATABASE_LOCATION + File.separator + "wal").copyRecursively(File(DATABASE_LOCATION_COPY + File.separator + "wal"), overwrite = true)
+    }
+
+    companion object {
+        private const val DATABASE_LOCATION = "C:/Sandbox/Onyx/Tests/checkpoint.oxd"
+        private const val DATABASE_LOCATION_COPY = "C:/Sandbox/Onyx/Tests/checkpointCopy.oxd"
+    }
+}
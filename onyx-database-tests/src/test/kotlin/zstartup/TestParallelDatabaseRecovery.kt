@@ -0,0 +1,100 @@
+package zstartup
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryCriteria
+import com.onyx.persistence.query.QueryCriteriaOperator
+import database.base.DatabaseBaseTest.Companion.deleteDatabase
+import entities.relationship.OneToManyChild
+import entities.relationship.OneToManyParent
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class TestParallelDatabaseRecovery {
+
+    @Before
+    @After
+    fun deleteDatabases() {
+        deleteDatabase(DATABASE_LOCATION_RELATIONSHIPS)
+        deleteDatabase(DATABASE_LOCATION_SERIAL)
+        deleteDatabase(DATABASE_LOCATION_PARALLEL)
+    }
+
+    /**
+     * Entities with relationships cascade to other entity types.  Recovering in parallel must produce the same
+     * database as recovering serially, and queries cached beforehand must see the recovered entities.
+     */
+    @Test
+    fun parallelRecoveryMatchesSerialRecovery() {
+        val sourceFactory = EmbeddedPersistenceManagerFactory(DATABASE_LOCATION_RELATIONSHIPS)
+        sourceFactory.isEnableJournaling = true
+        sourceFactory.initialize()
+        val sourceManager = sourceFactory.persistenceManager
+
+        for (version in 0 until 3) {
+            for (i in 0 until 200) {
+                val children = (0 until 3).map { child ->
+                    val oneToManyChild = OneToManyChild()
+                    oneToManyChild.identifier = "child$i-$child"
+                    oneToManyChild.correlation = version
+                    sourceManager.saveEntity(oneToManyChild)
+                }
+
+                val parent = OneToManyParent()
+                parent.identifier = "parent$i"
+                parent.correlation = version
+                parent.childCascade = children.toMutableList()
+                sourceManager.saveEntity<IManagedEntity>(parent)
+            }
+        }
+        for (i in 0 until 200 step 10) {
+            val parent = OneToManyParent()
+            parent.identifier = "parent$i"
+            sourceManager.deleteEntity(parent)
+        }
+        sourceFactory.close()
+
+        val serialFactory = EmbeddedPersistenceManagerFactory(DATABASE_LOCATION_SERIAL)
+        serialFactory.initialize()
+        serialFactory.schemaContext.transactionInteractor.recoverDatabase(DATABASE_LOCATION_RELATIONSHIPS + File.separator + "wal") { true }
+
+        val parallelFactory = EmbeddedPersistenceManagerFactory(DATABASE_LOCATION_PARALLEL)
+        parallelFactory.initialize()
+        val childQuery = Query(OneToManyChild::class.java, QueryCriteria("correlation", QueryCriteriaOperator.EQUAL, 2))
+        childQuery.cache = true
+        assertTrue(parallelFactory.persistenceManager.executeQuery<OneToManyChild>(childQuery).isEmpty())
+        parallelFactory.schemaContext.transactionInteractor.recoverDatabaseInParallel(DATABASE_LOCATION_RELATIONSHIPS + File.separator + "wal", 4) { true }
+
+        val serialManager = serialFactory.persistenceManager
+        val parallelManager = parallelFactory.persistenceManager
+        assertEquals(serialManager.executeQuery<OneToManyChild>(childQuery).size, parallelManager.executeQuery<OneToManyChild>(childQuery).size, "Cached query results should include recovered entities")
+
+        for (i in 0 until 200) {
+            val serialParent = serialManager.findById<OneToManyParent>(OneToManyParent::class.java, "parent$i")
+            val parallelParent = parallelManager.findById<OneToManyParent>(OneToManyParent::class.java, "parent$i")
+            assertEquals(serialParent?.correlation, parallelParent?.correlation)
+            assertEquals(serialParent?.childCascade?.map { it.identifier to it.correlation }, parallelParent?.childCascade?.map { it.identifier to it.correlation })
+
+            for (child in 0 until 3) {
+                val serialChild = serialManager.findById<OneToManyChild>(OneToManyChild::class.java, "child$i-$child")
+                val parallelChild = parallelManager.findById<OneToManyChild>(OneToManyChild::class.java, "child$i-$child")
+                assertEquals(serialChild?.correlation, parallelChild?.correlation)
+                assertEquals(serialChild?.parentCascade?.identifier, parallelChild?.parentCascade?.identifier)
+            }
+        }
+
+        serialFactory.close()
+        parallelFactory.close()
+    }
+
+    companion object {
+        private const val DATABASE_LOCATION_RELATIONSHIPS = "C:/Sandbox/Onyx/Tests/relationships2.oxd"
+        private const val DATABASE_LOCATION_SERIAL = "C:/Sandbox/Onyx/Tests/serial2.oxd"
+        private const val DATABASE_LOCATION_PARALLEL = "C:/Sandbox/Onyx/Tests/parallel2.oxd"
+    }
+}
@@ -1,6 +1,7 @@
 
 package com.onyx.descriptor
 
+import com.onyx.diskmap.DiskMapType
 import com.onyx.exception.InitializationException
 import com.onyx.extension.common.ClassMetadata
 import com.onyx.exception.OnyxException
@@ -198,6 +199,7 @@ constructor(
             index.maxNeighbors = indexAnnotation.maxNeighbors
             index.searchRadius = indexAnnotation.searchRadius
             index.quantization = indexAnnotation.quantization
+            index.mapType = indexAnnotation.mapType
             index.entityDescriptor = this
             it.isAccessible = true
             index.field = it
@@ -262,6 +264,14 @@ constructor(
     val archiveDirectories: Array<String>
         get() = entity?.archiveDirectories ?: arrayOf()
 
+    /**
+     * Data structure the entity records are stored in
+     *
+     * @since 3.9.10
+     */
+    val mapType: DiskMapType
+        get() = entity?.mapType ?: DiskMapType.SKIP_LIST
+
     private var _primaryLocation: String? = null
     var primaryLocationSearched: Boolean = false
 
@@ -1,5 +1,6 @@
 package com.onyx.descriptor
 
+import com.onyx.diskmap.DiskMapType
 import com.onyx.extension.common.ClassMetadata
 import com.onyx.persistence.annotations.values.IndexType
 import com.onyx.persistence.annotations.values.VectorQuantization
@@ -17,7 +18,8 @@ open class IndexDescriptor(
     open var minimumScore: Float = -1f,
     open var maxNeighbors: Int = 16,
     open var searchRadius: Int = 128,
-    open var quantization: VectorQuantization = VectorQuantization.NONE
+    open var quantization: VectorQuantization = VectorQuantization.NONE,
+    open var mapType: DiskMapType = DiskMapType.SKIP_LIST
 ) : AbstractBaseDescriptor(), BaseDescriptor {
 
     open lateinit var entityDescriptor: EntityDescriptor
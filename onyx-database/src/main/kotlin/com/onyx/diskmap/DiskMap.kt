@@ -52,6 +52,19 @@ interface DiskMap<K, V> : MutableMap<K, V> {
      */
     fun putAndGet(key:K, value:V, preUpdate:((Long) -> Unit)? = null): PutResult
 
+    /**
+     * Put several key values.  This is the same as invoking [putAndGet] for each entry except implementations may
+     * insert them more efficiently.
+     *
+     * @param entries Keys and values.  Keys should not be repeated.
+     * @param preUpdate Invoked with the index of an entry and its existing record id before its value is written.  The
+     *                  record id is -1 if the key is being inserted.
+     * @since 3.9.10
+     * @return Result of each put in the same order as the entries
+     */
+    fun putAllAndGet(entries: List<Pair<K, V>>, preUpdate: ((Int, Long) -> Unit)? = null): List<PutResult> =
+        entries.mapIndexed { index, (key, value) -> putAndGet(key, value) { preUpdate?.invoke(index, it) } }
+
     /**
      * Get the record id for a key
      *
@@ -141,6 +154,17 @@ interface DiskMap<K, V> : MutableMap<K, V> {
      */
     fun between(fromValue: K?, includeFrom:Boolean, toValue: K?, includeTo:Boolean): Set<Long>
 
+    /**
+     * Walk the record ids in key order.  Keys are only read as they are walked so stopping early does not read the
+     * rest of the map.
+     *
+     * @param descending Walk from the greatest key to the least
+     * @param consumer Invoked with each key and its record id.  Return false to stop.
+     *
+     * @since 3.9.10
+     */
+    fun walk(descending: Boolean, consumer: (K, Long) -> Boolean)
+
     /**
      * This was added because if you are scanning an unused partition, there is no way to expunge stale entries since
      * weak hash maps do not just do it on your own.  This caused a memory leak...ish...
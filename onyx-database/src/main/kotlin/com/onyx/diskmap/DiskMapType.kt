@@ -0,0 +1,23 @@
+package com.onyx.diskmap
+
+/**
+ * This indicates the data structure a disk map is built on.
+ *
+ * The type is only honored when a map is created.  An existing map is always opened with the structure it was
+ * created with.
+ *
+ * @since 3.9.10
+ */
+enum class DiskMapType {
+
+    /**
+     * Skip list of individual nodes.  Inexpensive inserts and a small footprint for maps with few entries.
+     */
+    SKIP_LIST,
+
+    /**
+     * Page oriented B+tree with linked leaves.  Lookups read a handful of pages and range or full scans read the
+     * leaves in order.  Better suited for large entities and indexes.
+     */
+    BPLUS_TREE
+}
@@ -44,4 +44,15 @@ interface SortedDiskMap<K, out V> : Map<K, V> {
      */
     fun between(fromValue: K?, includeFrom:Boolean, toValue: K?, includeTo:Boolean): Set<Long>
 
+    /**
+     * Walk the record ids in key order.  Keys are only read as they are walked so stopping early does not read the
+     * rest of the map.
+     *
+     * @param descending Walk from the greatest key to the least
+     * @param consumer Invoked with each key and its record id.  Return false to stop.
+     *
+     * @since 3.9.10
+     */
+    fun walk(descending: Boolean, consumer: (K, Long) -> Boolean)
+
 }
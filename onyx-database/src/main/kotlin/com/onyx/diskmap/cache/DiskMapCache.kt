@@ -0,0 +1,275 @@
+package com.onyx.diskmap.cache
+
+import com.onyx.diskmap.data.BPlusTreePage
+import com.onyx.diskmap.data.SkipNode
+import com.onyx.lang.map.SegmentedLruCache
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Cache shared by the disk maps of a schema context.  It holds skip list nodes, B+tree pages, the nodes found for a
+ * key, and de-serialized record values.  Both caches are bounded by an estimate of the bytes they hold so the amount of memory
+ * used does not depend on when the garbage collector runs.
+ *
+ * Entries are keyed by the map that owns them so one cache can serve every map within the context.  Each owner keeps
+ * track of its keys so the entries of a map are discarded without visiting the rest of the cache.
+ *
+ * @param maxNodeBytes Maximum estimated bytes of nodes, pages and key lookups
+ * @param maxRecordBytes Maximum estimated bytes of record values
+ * @since 3.9.10
+ */
+open class DiskMapCache(maxNodeBytes: Long = DEFAULT_NODE_CACHE_BYTES, maxRecordBytes: Long = DEFAULT_RECORD_CACHE_BYTES) {
+
+    /**
+     * Nodes and pages by position and the position of the bottom most node by key
+     */
+    val nodes = SegmentedLruCache<CacheKey, Any>(maxNodeBytes) { key, _ ->
+        when (key.type) {
+            NODE -> NODE_WEIGHT
+            PAGE -> PAGE_WEIGHT
+            else -> KEY_WEIGHT
+        }
+    }
+
+    /**
+     * Record values by the position of the node that references them
+     */
+    val records = SegmentedLruCache<CacheKey, CachedRecord>(maxRecordBytes) { _, record -> record.weight }
+
+    init {
+        val ownerKeys = object : SegmentedLruCache.Listener<CacheKey> {
+            override fun added(key: CacheKey) { key.owner.keys.add(key) }
+            override fun removed(key: CacheKey) { key.owner.keys.remove(key) }
+        }
+        nodes.listener = ownerKeys
+        records.listener = ownerKeys
+    }
+
+    /**
+     * Maximum estimated bytes of nodes, pages and key lookups
+     */
+    var maxNodeBytes: Long
+        get() = nodes.maxWeight
+        set(value) { nodes.maxWeight = value }
+
+    /**
+     * Maximum estimated bytes of record values
+     */
+    var maxRecordBytes: Long
+        get() = records.maxWeight
+        set(value) { records.maxWeight = value }
+
+    /**
+     * Nodes being mutated.  They are kept apart from the cache so they are not evicted while a writer is changing them.
+     */
+    private val pinned = ConcurrentHashMap<CacheKey, Pin>()
+
+    /**
+     * Get a node by its position.  A node that is being mutated is always returned as the instance being mutated.
+     *
+     * @param owner Map the node belongs to
+     * @param position Position of the node within the store
+     * @param loader Reads the node if it is not cached
+     */
+    fun node(owner: Owner, position: Long, loader: () -> SkipNode?): SkipNode? {
+        val key = CacheKey(owner, NODE, position)
+        pinned[key]?.let { return it.node }
+        return nodes.getOrPut(key, loader) as SkipNode?
+    }
+
+    /**
+     * Cache a node that has been created or modified
+     */
+    fun putNode(owner: Owner, node: SkipNode) {
+        nodes[CacheKey(owner, NODE, node.position)] = node
+    }
+
+    /**
+     * Pin a node so it is not evicted while it is being mutated.  Every writer and reader of the node gets the pinned
+     * instance until it is unpinned.  Otherwise a reader could load the node again after it has been evicted and the
+     * copy it loaded would be cached in place of the one a writer is changing.
+     *
+     * Pins are counted so a node may be pinned by several writers at once.
+     *
+     * @param owner Map the node belongs to
+     * @param position Position of the node within the store
+     * @param loader Reads the node if it is neither pinned nor cached
+     * @return The instance to mutate.  This may not be the instance the writer found.
+     */
+    fun pin(owner: Owner, position: Long, loader: () -> SkipNode?): SkipNode? {
+        val key = CacheKey(owner, NODE, position)
+        return pinned.compute(key) { _, pin ->
+            (pin ?: (nodes.getOrPut(key, loader) as SkipNode?)?.let { Pin(it) })?.apply { count++ }
+        }?.node
+    }
+
+    /**
+     * Release a pin.  Once a node is no longer pinned it is cached again as the most recent instance.
+     *
+     * @param owner Map the node belongs to
+     * @param node Node returned when it was pinned
+     */
+    fun unpin(owner: Owner, node: SkipNode) {
+        val key = CacheKey(owner, NODE, node.position)
+        pinned.computeIfPresent(key) { _, pin ->
+            if (--pin.count > 0) return@computeIfPresent pin
+            nodes[key] = pin.node
+            null
+        }
+    }
+
+    /**
+     * Get the bottom most node for a key.  Only the position of the node is cached for the key so the node itself is
+     * resolved through the node cache and is never a stale copy.  The lookup is not done while holding the cache
+     * lock since it reads other nodes through this cache.
+     *
+     * @param owner Map the key belongs to
+     * @param key Key of the record
+     * @param lookup Finds the node if it is not cached
+     * @param loader Reads a node by its position
+     */
+    fun nodeForKey(owner: Owner, key: Any?, lookup: () -> SkipNode?, loader: (Long) -> SkipNode?): SkipNode? {
+        val cacheKey = CacheKey(owner, KEY, key)
+        val position = nodes[cacheKey] as Long?
+        if (position != null)
+            return loader(position)
+        return lookup()?.also { nodes[cacheKey] = it.position }
+    }
+
+    /**
+     * Get a B+tree page by its position
+     *
+     * @param owner Map the page belongs to
+     * @param position Position of the page within the store
+     * @param loader Reads the page if it is not cached
+     */
+    fun page(owner: Owner, position: Long, loader: () -> BPlusTreePage): BPlusTreePage = nodes.getOrPut(CacheKey(owner, PAGE, position), loader) as BPlusTreePage
+
+    /**
+     * Cache a page that has been created or modified
+     */
+    fun putPage(owner: Owner, page: BPlusTreePage) {
+        nodes[CacheKey(owner, PAGE, page.position)] = page
+    }
+
+    /**
+     * Discard the node cached for a key
+     */
+    fun removeKey(owner: Owner, key: Any?) {
+        nodes.remove(CacheKey(owner, KEY, key))
+    }
+
+    /**
+     * Get the value of a record.  The cached value is only used if the node still references the same record
+     * location.  Released locations are re-used so the map must discard the value with removeRecord whenever the
+     * node stops referencing a location.  Otherwise a value written to the same location later would be hidden by
+     * the one cached for it.
+     *
+     * @param owner Map the record belongs to
+     * @param node Node referencing the record
+     * @param loader Reads the record value and its size in bytes from the location it is passed
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T> record(owner: Owner, node: SkipNode, loader: (Long) -> Pair<T, Int>): T {
+        val recordPosition = node.record
+        val cacheKey = CacheKey(owner, RECORD, node.position)
+        val cached = records[cacheKey]
+        if (cached != null && cached.position == recordPosition)
+            return cached.value as T
+
+        val (value, size) = loader(recordPosition)
+        if (value != null)
+            records[cacheKey] = CachedRecord(recordPosition, value, size + RECORD_OVERHEAD)
+        return value
+    }
+
+    /**
+     * Discard the value cached for a node.  Invoked once the node no longer references the location it was read from.
+     *
+     * @param owner Map the record belongs to
+     * @param position Position of the node referencing the record
+     */
+    fun removeRecord(owner: Owner, position: Long) {
+        records.remove(CacheKey(owner, RECORD, position))
+    }
+
+    /**
+     * Discard everything cached for a map.  Only the entries of the map are visited.
+     *
+     * @param owner Map to discard entries for
+     */
+    fun invalidate(owner: Owner) {
+        owner.keys.toList().forEach { key ->
+            if (key.type == RECORD) records.remove(key) else nodes.remove(key)
+        }
+        pinned.keys.removeIf { it.owner === owner }
+    }
+
+    /**
+     * Discard everything cached for several maps
+     *
+     * @param owners Maps to discard entries for
+     */
+    fun invalidate(owners: Collection<Owner>) = owners.forEach { invalidate(it) }
+
+    /**
+     * Discard everything
+     */
+    fun clear() {
+        nodes.clear()
+        records.clear()
+        pinned.clear()
+    }
+
+    /**
+     * Identifies the map that owns an entry.  Entries reference the owner rather than the map so the cache does not
+     * keep a map from being collected once it is closed.  The owner tracks the keys of its cached entries so they can
+     * be discarded without visiting the entire cache.
+     */
+    class Owner {
+        internal val keys: MutableSet<CacheKey> = ConcurrentHashMap.newKeySet()
+    }
+
+    /**
+     * Key of a cached entry.  The owner is compared by identity.
+     */
+    class CacheKey(val owner: Owner, val type: Byte, val id: Any?) {
+        override fun equals(other: Any?): Boolean = other is CacheKey && other.owner === owner && other.type == type && other.id == id
+        override fun hashCode(): Int = (System.identityHashCode(owner) * 31 + type) * 31 + (id?.hashCode() ?: 0)
+    }
+
+    /**
+     * Node that is being mutated and how many writers pinned it
+     */
+    private class Pin(val node: SkipNode) {
+        var count = 0
+    }
+
+    /**
+     * De-serialized record value along with the location it was read from
+     */
+    class CachedRecord(val position: Long, val value: Any, val weight: Int)
+
+    companion object {
+        const val DEFAULT_NODE_CACHE_BYTES = 32L * 1024 * 1024
+        const val DEFAULT_RECORD_CACHE_BYTES = 64L * 1024 * 1024
+
+        private const val NODE: Byte = 0
+        private const val KEY: Byte = 1
+        private const val RECORD: Byte = 2
+        private const val PAGE: Byte = 3
+
+        // Estimated heap size of a node instance along with its cache entry
+        private const val NODE_WEIGHT = SkipNode.SKIP_NODE_SIZE + 96
+        private const val KEY_WEIGHT = 96
+
+        // A page holds its keys, pointers and the keys it has hydrated
+        private const val PAGE_WEIGHT = BPlusTreePage.PAGE_SIZE * 3
+        private const val RECORD_OVERHEAD = 64
+
+        /**
+         * Cache used by maps that do not belong to a schema context
+         */
+        @JvmStatic
+        val DEFAULT: DiskMapCache by lazy { DiskMapCache() }
+    }
+}
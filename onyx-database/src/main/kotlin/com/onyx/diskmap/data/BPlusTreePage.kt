@@ -0,0 +1,204 @@
+package com.onyx.diskmap.data
+
+import com.onyx.buffer.BufferPool
+import com.onyx.diskmap.store.Store
+
+/**
+ * Fixed size page within a B+tree.
+ *
+ * A leaf page holds sorted keys along with the position of the record node for each key.  Leaves are linked to
+ * their neighbours so ranges can be read sequentially.  An internal page holds separator keys and one more child
+ * page than it has keys.  Child i contains the keys that are greater than or equal to separator i - 1 and less than
+ * separator i.
+ *
+ * Keys are stored as a long.  Keys that can be cast to a primitive are stored within the page.  Otherwise the long
+ * is the position of the serialized key within the record store.
+ *
+ * Layout:
+ *
+ * [marker 1][size 2][next 5][previous 5] followed by
+ * leaf:     ([key 8][record node 5]) * size
+ * internal: [child 5] ([key 8][child 5]) * size
+ *
+ * @since 3.9.10
+ */
+class BPlusTreePage(var position: Long = 0L, var isLeaf: Boolean = true) {
+
+    var size: Int = 0
+    var next: Long = 0L
+    var previous: Long = 0L
+
+    // One extra slot so a page can overflow before it is split
+    val keys = LongArray(CAPACITY + 1)
+    val pointers = LongArray(CAPACITY + 2)
+
+    // Keys that have already been hydrated
+    private val keyValues = arrayOfNulls<Any?>(CAPACITY + 1)
+
+    val isFull: Boolean
+        get() = size > CAPACITY
+
+    /**
+     * Get the hydrated key at an index
+     *
+     * @param index Index within the page
+     * @param hydrate Hydrate the key if it has not already been
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <K> keyAt(index: Int, hydrate: (Long) -> Any?): K {
+        var value = keyValues[index]
+        if (value == null) {
+            value = hydrate(keys[index]) ?: NULL_KEY
+            keyValues[index] = value
+        }
+        return (if (value === NULL_KEY) null else value) as K
+    }
+
+    /**
+     * Insert a key and pointer.  Within a leaf the pointer is the record node for the key.  Within an internal page
+     * the pointer is the child to the right of the key.
+     */
+    fun insert(index: Int, key: Long, keyValue: Any?, pointer: Long) {
+        val pointerIndex = if (isLeaf) index else index + 1
+        System.arraycopy(keys, index, keys, index + 1, size - index)
+        System.arraycopy(keyValues, index, keyValues, index + 1, size - index)
+        System.arraycopy(pointers, pointerIndex, pointers, pointerIndex + 1, (if (isLeaf) size else size + 1) - pointerIndex)
+        keys[index] = key
+        keyValues[index] = keyValue ?: NULL_KEY
+        pointers[pointerIndex] = pointer
+        size++
+    }
+
+    /**
+     * Remove an entry from a leaf page
+     */
+    fun remove(index: Int) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1)
+        System.arraycopy(keyValues, index + 1, keyValues, index, size - index - 1)
+        System.arraycopy(pointers, index + 1, pointers, index, size - index - 1)
+        size--
+        keyValues[size] = null
+    }
+
+    /**
+     * Replace the raw key at an index.  Used when a key is relocated within the record store.
+     */
+    fun setKey(index: Int, key: Long) {
+        keys[index] = key
+    }
+
+    /**
+     * Move the upper half of this page into the sibling.  For an internal page the middle key is not copied into
+     * either page.  It is returned so the caller can push it up to the parent.
+     *
+     * @param sibling Empty page to the right of this one
+     * @return Index of the key that separates the two pages prior to the split
+     */
+    fun splitInto(sibling: BPlusTreePage): Int {
+        val middle = size / 2
+        if (isLeaf) {
+            val count = size - middle
+            System.arraycopy(keys, middle, sibling.keys, 0, count)
+            System.arraycopy(keyValues, middle, sibling.keyValues, 0, count)
+            System.arraycopy(pointers, middle, sibling.pointers, 0, count)
+            sibling.size = count
+            size = middle
+        } else {
+            val count = size - middle - 1
+            System.arraycopy(keys, middle + 1, sibling.keys, 0, count)
+            System.arraycopy(keyValues, middle + 1, sibling.keyValues, 0, count)
+            System.arraycopy(pointers, middle + 1, sibling.pointers, 0, count + 1)
+            sibling.size = count
+            size = middle
+        }
+        keyValues.fill(null, if (isLeaf) size else size + 1, keyValues.size)
+        return middle
+    }
+
+    /**
+     * Update the link to the previous leaf without re-writing the page
+     */
+    fun setPrevious(store: Store, previous: Long) = BufferPool.withBigIntBuffer {
+        this.previous = previous
+        it.putBigInt(previous)
+        it.rewind()
+        store.write(it, position + 1 + java.lang.Short.BYTES + 5)
+    }
+
+    /**
+     * Write the page to the store.  Only the used portion of the page is written.
+     */
+    fun write(store: Store) = BufferPool.allocateAndLimit(PAGE_HEADER_SIZE + POINTER_SIZE + size * ENTRY_SIZE) {
+        it.put(if (isLeaf) LEAF_MARKER else INTERNAL_MARKER)
+        it.putShort(size.toShort())
+        it.putBigInt(next)
+        it.putBigInt(previous)
+        if (!isLeaf)
+            it.putBigInt(pointers[0])
+        for (i in 0 until size) {
+            it.putLong(keys[i])
+            it.putBigInt(pointers[if (isLeaf) i else i + 1])
+        }
+        it.flip()
+        store.write(it, position)
+    }
+
+    /**
+     * Read the page from the store
+     */
+    fun read(store: Store): BPlusTreePage = BufferPool.allocateAndLimit(PAGE_SIZE) {
+        store.read(it, position)
+        it.rewind()
+        isLeaf = it.get() == LEAF_MARKER
+        size = it.short.toInt()
+        next = it.bigInt
+        previous = it.bigInt
+        if (!isLeaf)
+            pointers[0] = it.bigInt
+        for (i in 0 until size) {
+            keys[i] = it.long
+            pointers[if (isLeaf) i else i + 1] = it.bigInt
+        }
+        keyValues.fill(null)
+        return@allocateAndLimit this
+    }
+
+    companion object {
+
+        const val PAGE_SIZE = 4096
+        const val PAGE_HEADER_SIZE = 1 + java.lang.Short.BYTES + 5 + 5
+        private const val POINTER_SIZE = 5
+        private const val ENTRY_SIZE = java.lang.Long.BYTES + POINTER_SIZE
+
+        /**
+         * Maximum number of keys within a page
+         */
+        const val CAPACITY = (PAGE_SIZE - PAGE_HEADER_SIZE - POINTER_SIZE) / ENTRY_SIZE
+
+        // Markers are never 0 so a page can not be mistaken for a skip list head.  A head never has a left neighbour
+        // so its first byte is always 0.
+        const val LEAF_MARKER: Byte = 'L'.code.toByte()
+        const val INTERNAL_MARKER: Byte = 'I'.code.toByte()
+
+        // Placeholder for a hydrated key that is null
+        private val NULL_KEY = Any()
+
+        /**
+         * Create and allocate a new page
+         */
+        fun create(store: Store, isLeaf: Boolean): BPlusTreePage =
+            BPlusTreePage(store.allocate(PAGE_SIZE), isLeaf)
+
+        fun get(store: Store, position: Long): BPlusTreePage = BPlusTreePage(position).read(store)
+
+        /**
+         * Whether the structure at the position is a B+tree page
+         */
+        fun isPage(store: Store, position: Long): Boolean = BufferPool.withIntBuffer {
+            store.read(it, position)
+            it.rewind()
+            val marker = it.get()
+            marker == LEAF_MARKER || marker == INTERNAL_MARKER
+        }
+    }
+}
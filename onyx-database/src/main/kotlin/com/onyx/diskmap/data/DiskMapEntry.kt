@@ -0,0 +1,15 @@
+package com.onyx.diskmap.data
+
+/**
+ * Entry returned when iterating the entries of a disk map.  In addition to the key and value it exposes the
+ * record node so that the record id is available without searching the map again.
+ *
+ * @since 3.9.10
+ */
+interface DiskMapEntry<K, V> : MutableMap.MutableEntry<K, V> {
+
+    /**
+     * Node the record is referenced by.  The node position is the record id.
+     */
+    val node: SkipNode?
+}
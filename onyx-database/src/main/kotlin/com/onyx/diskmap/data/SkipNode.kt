@@ -1,11 +1,11 @@
 package com.onyx.diskmap.data
 
 import com.onyx.buffer.BufferPool.withBigIntBuffer
+import com.onyx.buffer.BufferPool.withLongBuffer
 import com.onyx.buffer.BufferStreamable
 import com.onyx.diskmap.store.Store
 import com.onyx.exception.BufferingException
 import com.onyx.extension.common.toType
-import java.lang.ref.WeakReference
 import java.nio.ByteBuffer
 
 data class SkipNode(
@@ -43,7 +43,6 @@ data class SkipNode(
     }
 
     fun setRecord(store: Store, record: Long) = withBigIntBuffer {
-        this.recordValue = null
         if (this.record == record) return@withBigIntBuffer 0
         if (this.level.toInt() != 0) return@withBigIntBuffer 0
         this.record = record
@@ -52,6 +51,14 @@ data class SkipNode(
         store.write(it, position + (5 * 3))
     }
 
+    fun setKey(store: Store, key: Long) = withLongBuffer {
+        if (this.key == key) return@withLongBuffer 0
+        this.key = key
+        it.putLong(key)
+        it.rewind()
+        store.write(it, position + (5 * 4))
+    }
+
     private var keyValue: Any? = null
 
     @Suppress("UNCHECKED_CAST")
@@ -75,34 +82,35 @@ data class SkipNode(
         return keyValue as T
     }
 
-    private var recordValue: WeakReference<Any?>? = null
-
+    /**
+     * Read the record value.  Values are not held by the node.  They are cached by the map that owns the node.
+     *
+     * @param store Store the record value is written to
+     * @since 3.9.10 No longer keeps a weak reference to the value.  A removed node no longer references a record.
+     */
     @Suppress("UNCHECKED_CAST")
-    fun <T> getRecord(store: Store): T {
-        if (recordValue?.get() == null) {
-            synchronized(this) {
-                if (recordValue?.get() == null) {
-                    recordValue = if (record == -1L) {
-                        WeakReference(null)
-                    } else {
-                        WeakReference(store.getObject(record))
-                    }
-                }
-            }
-        }
-        return recordValue!!.get() as T
-    }
+    fun <T> getRecord(store: Store): T = if (record <= 0L) null as T else store.getObject(record)
 
     fun write(store: Store) {
         val buffer = getBuffer()
+        writeTo(buffer)
+        buffer.rewind()
+        store.write(buffer, position)
+    }
+
+    /**
+     * Put the node into a buffer in the same form it is written to the store
+     *
+     * @param buffer Buffer with at least [SKIP_NODE_SIZE] bytes remaining
+     * @since 3.9.10
+     */
+    fun writeTo(buffer: ByteBuffer) {
         buffer.putBigInt(left)
         buffer.putBigInt(right)
         buffer.putBigInt(down)
         buffer.putBigInt(record)
         buffer.putLong(key)
         buffer.put(level.toByte())
-        buffer.rewind()
-        store.write(buffer, position)
     }
 
     fun read(store: Store): SkipNode {
@@ -115,7 +123,6 @@ data class SkipNode(
         record = buffer.bigInt
         key = buffer.long
         level = buffer.get().toUByte()
-        recordValue = null
         return this
     }
 
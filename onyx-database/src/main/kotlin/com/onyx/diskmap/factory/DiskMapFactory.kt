@@ -1,5 +1,6 @@
 package com.onyx.diskmap.factory
 
+import com.onyx.diskmap.DiskMapType
 import com.onyx.diskmap.data.Header
 
 /**
@@ -36,6 +37,30 @@ interface DiskMapFactory {
      */
     fun <T : Map<*,*>> getHashMap(keyType:Class<*>, header: Header): T
 
+    /**
+     * Get the instance of a map built on a specific data structure.  The type is only honored when the map is
+     * created.  An existing map is opened with the structure it was created with.
+     *
+     * @param name Name of the map to uniquely identify it
+     * @param type Data structure to create the map with
+     *
+     * @return Instantiated map with storage
+     * @since 3.9.10
+     */
+    fun <T : Map<*,*>> getHashMap(keyType:Class<*>, name: String, type: DiskMapType): T
+
+    /**
+     * Get Disk Map by its header built on a specific data structure.  The type is only honored when the map is
+     * created.
+     *
+     * @param header reference within storage
+     * @param type Data structure to create the map with
+     *
+     * @return Instantiated disk structure
+     * @since 3.9.10
+     */
+    fun <T : Map<*,*>> getHashMap(keyType:Class<*>, header: Header, type: DiskMapType): T
+
     /**
      * Close Map Builder.  Flush the file writes
      * @since 1.0.0
@@ -77,4 +102,14 @@ interface DiskMapFactory {
      * @since 2.2.2
      */
     fun flush()
+
+    /**
+     * Reclaim space within the data file.  Keys and values of the maps that are in use are relocated into released
+     * extents closer to the front of the file so the end of the file can be trimmed.  This does not require the
+     * database to be taken offline.
+     *
+     * @return How many bytes the data file has shrunk by
+     * @since 3.9.10
+     */
+    fun compact(): Long
 }
@@ -1,17 +1,26 @@
 package com.onyx.diskmap.factory.impl
 
+import com.onyx.diskmap.DiskMap
+import com.onyx.diskmap.DiskMapType
 import com.onyx.diskmap.factory.DiskMapFactory
+import com.onyx.diskmap.data.BPlusTreePage
 import com.onyx.diskmap.data.Header
+import com.onyx.diskmap.impl.DiskBPlusTreeMap
 import com.onyx.diskmap.impl.DiskSkipListMap
+import com.onyx.diskmap.impl.base.AbstractDiskMap
 import com.onyx.diskmap.store.*
 import com.onyx.diskmap.store.impl.*
+import com.onyx.extension.common.Job
+import com.onyx.extension.common.catchAll
 import com.onyx.extension.common.metadata
+import com.onyx.extension.common.runJob
 import com.onyx.lang.map.OptimisticLockingMap
 import com.onyx.persistence.context.SchemaContext
 
 import java.io.File
 import java.lang.ref.WeakReference
 import java.util.*
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 
 /**
@@ -40,6 +49,9 @@ open class DefaultDiskMapFactory : DiskMapFactory {
     // Internal map that runs on storage
     protected open var internalMaps: MutableMap<String, Long> = hashMapOf()
 
+    // Background compaction job.  Only running if compaction has been started
+    protected open var compactionJob: Job? = null
+
     // region constructors
 
     /**
@@ -156,6 +168,8 @@ open class DefaultDiskMapFactory : DiskMapFactory {
      * Close the file stores
      */
     override fun close(): Boolean {
+        stopCompaction()
+        clearCaches()
         store.close()
         return nodeStore.close()
     }
@@ -214,7 +228,7 @@ open class DefaultDiskMapFactory : DiskMapFactory {
      * Note, this was changed to use what was being referred to as a DefaultDiskMap which was a parent of AbstractBitmap.
      * It is now an implementation of an inter-changeable index followed by a skip list.
      */
-    override fun <T : Map<*, *>> getHashMap(keyType: Class<*>, name: String): T = getMapWithType(keyType, name)
+    override fun <T : Map<*, *>> getHashMap(keyType: Class<*>, name: String): T = getMapWithType(keyType, name, null)
 
     /**
      * Get Disk Map with the ability to dynamically change the load factor.  Meaning change how it scales dynamically
@@ -224,36 +238,195 @@ open class DefaultDiskMapFactory : DiskMapFactory {
      *
      * @since 1.0.0
      */
-    override fun <T : Map<*, *>> getHashMap(keyType: Class<*>, header: Header): T = mapsByHeader.getOrPut(header) {
-        DiskSkipListMap<Any, Any>(
-            WeakReference(nodeStore), WeakReference(store), header, keyType
-        )
-    } as T
+    override fun <T : Map<*, *>> getHashMap(keyType: Class<*>, header: Header): T = getMapWithHeader(keyType, header, null)
+
+    /**
+     * Get the instance of a map built on a specific data structure
+     *
+     * @param name Name of the map to uniquely identify it
+     * @param type Data structure used if the map does not exist yet
+     * @return Instantiated map with storage
+     *
+     * @since 3.9.10
+     */
+    override fun <T : Map<*, *>> getHashMap(keyType: Class<*>, name: String, type: DiskMapType): T = getMapWithType(keyType, name, type)
+
+    /**
+     * Get Disk Map by its header built on a specific data structure
+     *
+     * @param header reference within storage
+     * @param type Data structure used if the map does not exist yet
+     * @return Instantiated disk structure
+     *
+     * @since 3.9.10
+     */
+    override fun <T : Map<*, *>> getHashMap(keyType: Class<*>, header: Header, type: DiskMapType): T = getMapWithHeader(keyType, header, type)
+
+    /**
+     * Get or create the map referenced by a header
+     *
+     * @param header reference within storage
+     * @param type Data structure used if the map does not exist yet.  Null to use the structure of an existing map
+     *             or a skip list for a new one.
+     * @return Instantiated disk structure
+     *
+     * @since 3.9.10
+     */
+    open protected fun <T : Map<*, *>> getMapWithHeader(keyType: Class<*>, header: Header, type: DiskMapType?): T {
+        val map = mapsByHeader.getOrPut(header) { createMap(keyType, header, type) }
+        if (type == null || mapType(map) == type || !map.isEmpty())
+            return map as T
+
+        // An empty map was opened with a different structure.  Re-create it with the requested one.
+        return mapsByHeader.lock.writeLock {
+            val current = mapsByHeader.m[header] ?: map
+            if (mapType(current) == type || !current.isEmpty()) current
+            else createMap(keyType, header, type, true).also { mapsByHeader.m[header] = it }
+        } as T
+    }
 
     /**
      * Default Map factory.  This creates or gets a map based on the name and puts it into a map
      *
      * @param name identifier of a map
+     * @param type Data structure used if the map does not exist yet.  Null to use the structure of an existing map
+     *             or a skip list for a new one.
      * @return Created map
      *
      * @since 1.2.0
      */
-    open protected fun <T : Map<*, *>> getMapWithType(keyType: Class<*>, name: String): T = maps.getOrPut(name) {
-        var header: Header? = null
-        val headerReference = internalMaps[name]
-        if (headerReference != null)
-            header = nodeStore.read(headerReference, Header.HEADER_SIZE, Header()) as Header?
-
-        // Create a new header for the new structure we are creating
-        if (header == null) {
-            header = Header()
-            header.position = nodeStore.allocate(Header.HEADER_SIZE)
-            nodeStore.write(header, header.position)
-            internalMaps[name] = header.position
+    open protected fun <T : Map<*, *>> getMapWithType(keyType: Class<*>, name: String, type: DiskMapType?): T {
+        val map = maps.getOrPut(name) {
+            var header: Header? = null
+            val headerReference = internalMaps[name]
+            if (headerReference != null)
+                header = nodeStore.read(headerReference, Header.HEADER_SIZE, Header()) as Header?
+
+            // Create a new header for the new structure we are creating
+            if (header == null) {
+                header = Header()
+                header.position = nodeStore.allocate(Header.HEADER_SIZE)
+                nodeStore.write(header, header.position)
+                internalMaps[name] = header.position
+            }
+
+            return@getOrPut createMap(keyType, header, type)
+        }
+        if (type == null || mapType(map) == type || !map.isEmpty())
+            return map as T
+
+        // An empty map was opened with a different structure.  Re-create it with the requested one.
+        return maps.lock.writeLock {
+            val current = maps.m[name] ?: map
+            if (mapType(current) == type || !current.isEmpty()) current
+            else createMap(keyType, (current as AbstractDiskMap<*, *>).reference, type, true).also { maps.m[name] = it }
+        } as T
+    }
+
+    /**
+     * Instantiate a disk map.  If the header already references a structure the map is opened with the structure
+     * it was created with.  Otherwise the requested type is used.
+     *
+     * @param header Map reference within storage
+     * @param type Data structure to use for a new map.  Defaults to a skip list if null.
+     * @param replace Discard the existing empty structure referenced by the header
+     *
+     * @since 3.9.10
+     */
+    private fun createMap(keyType: Class<*>, header: Header, type: DiskMapType?, replace: Boolean = false): Map<*, *> {
+        val mapHeader = Header()
+        mapHeader.position = header.position
+        mapHeader.firstNode = if (replace) 0L else header.firstNode
+        mapHeader.recordCount.set(header.recordCount.get())
+
+        val mapType = when {
+            mapHeader.firstNode == 0L -> type ?: DiskMapType.SKIP_LIST
+            BPlusTreePage.isPage(nodeStore, mapHeader.firstNode) -> DiskMapType.BPLUS_TREE
+            else -> DiskMapType.SKIP_LIST
+        }
+
+        return when (mapType) {
+            DiskMapType.BPLUS_TREE -> DiskBPlusTreeMap<Any, Any>(WeakReference(nodeStore), WeakReference(store), mapHeader, keyType)
+            DiskMapType.SKIP_LIST -> DiskSkipListMap<Any, Any>(WeakReference(nodeStore), WeakReference(store), mapHeader, keyType)
+        }
+    }
+
+    private fun mapType(map: Map<*, *>): DiskMapType = if (map is DiskBPlusTreeMap<*, *>) DiskMapType.BPLUS_TREE else DiskMapType.SKIP_LIST
+
+    // endregion
+
+    // region Compaction
+
+    /**
+     * Reclaim space within the data file.  All of the maps that are currently in use relocate their keys and values
+     * into released extents closer to the front of the file.  Each map is locked only while it is being compacted so
+     * the database stays online.  Maps that have not been opened are left alone since their layout is not known.
+     *
+     * @return How many bytes the data file has shrunk by
+     * @since 3.9.10
+     */
+    override fun compact(): Long {
+        val sizeBefore = store.getFileSize()
+
+        openMaps().forEach {
+            when (it) {
+                is DiskSkipListMap<*, *> -> it.compact()
+                is DiskBPlusTreeMap<*, *> -> it.compact()
+            }
+        }
+
+        return sizeBefore - store.getFileSize()
+    }
+
+    /**
+     * Start compacting in the background.  Compaction only runs once the amount of released space exceeds the
+     * threshold ratio of the data file.
+     *
+     * @param interval How often to check whether the data file should be compacted
+     * @param unit Time unit of the interval
+     * @param threshold Ratio of free bytes to file size that triggers compaction
+     * @since 3.9.10
+     */
+    fun startCompaction(interval: Long, unit: TimeUnit, threshold: Double = DEFAULT_COMPACTION_THRESHOLD) {
+        stopCompaction()
+        compactionJob = runJob(interval, unit) {
+            val freeBytes = (store as? FileChannelStore)?.freeBytes ?: 0L
+            val fileSize = store.getFileSize()
+            if (fileSize > 0 && freeBytes.toDouble() / fileSize.toDouble() >= threshold)
+                catchAll { compact() }
         }
+    }
+
+    /**
+     * Stop background compaction if it is running
+     *
+     * @since 3.9.10
+     */
+    fun stopCompaction() {
+        compactionJob?.cancel()
+        compactionJob = null
+    }
 
-        return@getOrPut DiskSkipListMap<Any, Any>(WeakReference(nodeStore), WeakReference(store), header, keyType)
-    } as T
+    /**
+     * All the maps that are currently in use
+     *
+     * @since 3.9.10
+     */
+    private fun openMaps(): List<Map<*, *>> {
+        val openMaps = ArrayList<Map<*, *>>()
+        openMaps.add(internalMaps)
+        maps.lock.readLock { openMaps.addAll(maps.m.values) }
+        mapsByHeader.lock.readLock { openMaps.addAll(mapsByHeader.m.values) }
+        return openMaps.distinct()
+    }
+
+    /**
+     * Discard the cached nodes and records of the maps in use.  The cache is shared with other factories so the
+     * entries are not left behind once the maps are no longer referenced by this factory.
+     *
+     * @since 3.9.10
+     */
+    private fun clearCaches() = openMaps().forEach { (it as? DiskMap<*, *>)?.clearCache() }
 
     // endregion
 
@@ -261,6 +434,7 @@ open class DefaultDiskMapFactory : DiskMapFactory {
 
         private val storeIdCounter = AtomicInteger(0)
         private const val FIRST_HEADER_LOCATION = 8L
+        const val DEFAULT_COMPACTION_THRESHOLD = 0.25
 
         /**
          * Check if large files can be mapped into memory.
@@ -284,6 +458,7 @@ open class DefaultDiskMapFactory : DiskMapFactory {
      * clear non-volatile cached items in the disk maps
      */
     override fun flush() {
+        clearCaches()
         maps.clear()
         mapsByHeader.clear()
     }
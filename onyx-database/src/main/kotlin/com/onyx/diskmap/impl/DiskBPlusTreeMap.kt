@@ -0,0 +1,712 @@
+package com.onyx.diskmap.impl
+
+import com.onyx.diskmap.SortedDiskMap
+import com.onyx.diskmap.data.BPlusTreePage
+import com.onyx.diskmap.data.DiskMapEntry
+import com.onyx.diskmap.data.Header
+import com.onyx.diskmap.data.PutResult
+import com.onyx.diskmap.data.SkipNode
+import com.onyx.diskmap.impl.base.AbstractDiskMap
+import com.onyx.diskmap.impl.base.skiplist.AbstractSkipList.Companion.cast
+import com.onyx.diskmap.store.Store
+import com.onyx.exception.AttributeTypeMismatchException
+import com.onyx.extension.common.castTo
+import com.onyx.extension.common.forceCompare
+import com.onyx.extension.common.getAny
+import com.onyx.extension.common.long
+import com.onyx.extension.common.toType
+import com.onyx.lang.concurrent.ClosureReadWriteLock
+import com.onyx.lang.concurrent.impl.DefaultClosureReadWriteLock
+import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.lang.LongHashSet
+import java.lang.ref.WeakReference
+import java.lang.reflect.Field
+import java.util.*
+
+/**
+ * Page oriented B+tree implementation of a disk map.
+ *
+ * Keys are kept in fixed size pages with a fan out of a few hundred so a lookup only reads a handful of pages.  The
+ * leaves are linked so range queries and full scans read pages in key order rather than chasing a pointer per entry.
+ *
+ * Record ids must remain stable for the life of a record since they are referenced by indexes and relationships.  Page
+ * entries move when a page is split so each record is referenced through a record node that is never moved.  The
+ * record node uses the same format as a skip list node so iterating references works the same for either structure.
+ *
+ * Pages are not merged when entries are removed.  An emptied leaf stays linked and is re-used by subsequent inserts
+ * within its key range.
+ *
+ * Values are only read while holding the read lock.  Writers hold the write lock while they release the extent of a
+ * replaced or removed value so a reader never reads an extent after it has been re-used.
+ *
+ * @param <K> Key Object Type
+ * @param <V> Value Object Type
+ * @since 3.9.10
+ */
+@Suppress("UNCHECKED_CAST")
+open class DiskBPlusTreeMap<K, V>(fileStore: WeakReference<Store>, recordStore: WeakReference<Store>, header: Header, keyType: Class<*>) : AbstractDiskMap<K, V>(fileStore, recordStore, header, keyType), SortedDiskMap<K, V> {
+
+    protected open var mapReadWriteLock: ClosureReadWriteLock = DefaultClosureReadWriteLock()
+
+    private var root: BPlusTreePage = if (reference.firstNode > 0L) findPage(reference.firstNode) else createRoot()
+
+    override val size: Int
+        get() = longSize().toInt()
+
+    // region Map
+
+    /**
+     * Get value from map
+     *
+     * @param key Key identifier
+     * @return The value if it exists otherwise null
+     */
+    override fun get(key: K): V? = mapReadWriteLock.readLock { find(key.castTo(keyType) as K)?.let { getRecordValue<V>(it) } }
+
+    override fun containsKey(key: K): Boolean = find(key.castTo(keyType) as K) != null
+
+    /**
+     * Iterates through all the values to see if it contains the value you are looking for.  This is not efficient.
+     *
+     * @param value Value you are looking for
+     * @return Whether the value was found
+     */
+    override fun containsValue(value: V): Boolean = values.any { it == value }
+
+    /**
+     * Put a value into a map based on its key.
+     *
+     * @param key   Key identifier of the value
+     * @param value Underlying value
+     * @return The value of the object that was just put into the map
+     */
+    override fun put(key: K, value: V): V {
+        putAndGet(key, value, null)
+        return value
+    }
+
+    override fun putAll(from: Map<out K, V>) = from.forEach { this[it.key] = it.value }
+
+    /**
+     * Put key value.  This is the same as map.put(K,V) except
+     * rather than the value you just put into the map, it will
+     * return the record id.
+     *
+     * @param key Primary Key
+     * @param value Value to insert or update
+     * @return Value for previous record ID and if the value is been updated or inserted
+     */
+    override fun putAndGet(key: K, value: V, preUpdate: ((Long) -> Unit)?): PutResult = mapReadWriteLock.writeLock {
+        val castedKey = key.castTo(keyType) as K
+        val existing = find(castedKey)
+
+        val result = PutResult(castedKey as Any, existing == null)
+        result.recordId = existing?.position ?: -1L
+
+        // The pre update callback may modify this map so the search is repeated afterwards
+        preUpdate?.invoke(result.recordId)
+
+        val path = ArrayList<BPlusTreePage>()
+        val childIndexes = ArrayList<Int>()
+        val leaf = findLeaf(castedKey, path, childIndexes)
+        val index = lowerBound(leaf, castedKey)
+        val valueLocation = records.writeObject(value)
+
+        if (index < leaf.size && compare(keyAt(leaf, index), castedKey) == 0) {
+            val node = findNodeAtPosition(leaf.pointers[index])!!
+            val previousValueLocation = node.record
+            node.setRecord(fileStore, valueLocation)
+            cache.putNode(cacheOwner, node)
+            cache.removeRecord(cacheOwner, node.position)
+
+            // The previous value is no longer referenced.  Release it so the space can be re-used
+            if (previousValueLocation > 0L && previousValueLocation != valueLocation)
+                records.freeObject(previousValueLocation)
+
+            result.isInsert = false
+            result.recordId = node.position
+        } else {
+            val keyLocation = if (storeKeyWithinNode) (castedKey as Any).long() else records.writeObject(castedKey)
+            val node = SkipNode.create(fileStore, keyLocation, valueLocation, 0L, 0L, 0L, 0.toUByte())
+            cache.putNode(cacheOwner, node)
+
+            leaf.insert(index, keyLocation, castedKey, node.position)
+            if (leaf.isFull)
+                split(leaf, path, childIndexes)
+            else
+                leaf.write(fileStore)
+
+            incrementSize()
+            result.isInsert = true
+            result.recordId = node.position
+        }
+
+        return@writeLock result
+    }
+
+    /**
+     * Remove The Key and value from the Map.
+     *
+     * @param key Key Identifier
+     * @return The value that was removed.  Null if it does not exist
+     */
+    override fun remove(key: K): V? = mapReadWriteLock.writeLock {
+        val castedKey = key.castTo(keyType) as K
+        val leaf = findLeaf(castedKey, null, null)
+        val index = lowerBound(leaf, castedKey)
+        if (index >= leaf.size || compare(keyAt(leaf, index), castedKey) != 0)
+            return@writeLock null
+
+        val node = findNodeAtPosition(leaf.pointers[index])!!
+        val returnValue: V? = getRecordValue(node)
+
+        leaf.remove(index)
+        leaf.write(fileStore)
+        decrementSize()
+
+        // Release the value and key.  The record node is kept since its position is the record id.  It no longer
+        // references either and its cached value is discarded so neither is read once the extents are re-used.
+        if (node.record > 0L)
+            records.freeObject(node.record)
+        if (!storeKeyWithinNode && node.key > 0L) {
+            records.freeObject(node.key)
+            node.setKey(fileStore, 0L)
+        }
+        node.setRecord(fileStore, 0L)
+        cache.putNode(cacheOwner, node)
+        cache.removeRecord(cacheOwner, node.position)
+
+        return@writeLock returnValue
+    }
+
+    /**
+     * Clear all the elements of the map.  Pages that were in use are abandoned.
+     */
+    override fun clear() = mapReadWriteLock.writeLock {
+        clearCache()
+        root = createRoot()
+        reference.recordCount.set(0L)
+        updateHeaderRecordCount(0L)
+    }
+
+    override fun clearCache() = cache.invalidate(cacheOwner)
+
+    // endregion
+
+    // region Record Ids
+
+    /**
+     * Get the record id of a corresponding key.  This is the position of the record node.
+     *
+     * @param key Identifier
+     * @return The position of the record node if it exists.  Otherwise -1
+     */
+    override fun getRecID(key: K): Long = find(key.castTo(keyType) as K)?.position ?: -1L
+
+    /**
+     * Hydrate a record with its record ID.  If the record value exists it will be returned
+     *
+     * @param recordId Position of the record node
+     * @return The value within the map
+     */
+    override fun getWithRecID(recordId: Long): V? {
+        if (recordId <= 0)
+            return null
+        return mapReadWriteLock.readLock {
+            val node = findNodeAtPosition(recordId) ?: return@readLock null
+            if (node.isRecord) getRecordValue<V>(node) else null
+        }
+    }
+
+    /**
+     * Get Map representation of key object
+     *
+     * @param recordId Record reference within storage structure
+     * @return Map of key values
+     */
+    override fun getMapWithRecID(recordId: Long): Map<String, Any?>? = mapReadWriteLock.readLock {
+        val node = findNodeAtPosition(recordId) ?: return@readLock null
+        if (node.isRecord) getRecordValueAsDictionary(node.record) else null
+    }
+
+    @Throws(AttributeTypeMismatchException::class)
+    override fun <T : Any?> getAttributeWithRecID(attribute: Field, reference: Long): T = mapReadWriteLock.readLock {
+        val node = findNodeAtPosition(reference)
+        if (node == null || !node.isRecord)
+            return@readLock null as T
+        getRecordValue<Any>(node).getAny(attribute)
+    }
+
+    @Throws(AttributeTypeMismatchException::class)
+    override fun <T : Any?> getAttributeWithRecID(field: Field, reference: SkipNode): T =
+        mapReadWriteLock.readLock { if (reference.isRecord) getRecordValue<Any>(reference).getAny<T>(field) else null as T }
+
+    // endregion
+
+    // region Sorted Map
+
+    /**
+     * Find all references above and perhaps equal to the key you are sending in.
+     *
+     * @param index        The key value to compare.  This must be comparable.
+     * @param includeFirst Whether above and equals to
+     * @return A Set of references
+     */
+    override fun above(index: K, includeFirst: Boolean): Set<Long> {
+        val from = index.cast(keyType) as K
+        val results = LongHashSet()
+        scanFrom(from) { key, recordId ->
+            if (includeFirst || compare(key, from) != 0)
+                results.add(recordId)
+            true
+        }
+        return results
+    }
+
+    /**
+     * Find all references below and perhaps equal to the key you are sending in.
+     *
+     * @param index The index value to compare.  This must be comparable.
+     * @param includeFirst Whether below and equals to
+     * @return A Set of references
+     */
+    override fun below(index: K, includeFirst: Boolean): Set<Long> {
+        val to = index.cast(keyType) as K
+        val results = LongHashSet()
+        scanFrom(null) { key, recordId ->
+            val comparison = compare(key, to)
+            if (comparison < 0 || (comparison == 0 && includeFirst)) {
+                results.add(recordId)
+                true
+            } else comparison < 0
+        }
+        return results
+    }
+
+    /**
+     * Find all references between from and to value.
+     *
+     * @param fromValue The key to compare.  This must be comparable.
+     * @param includeFrom Whether to compare above and equal or not.
+     * @param toValue Key to end range to
+     * @param includeTo Whether to compare equal or not.
+     */
+    override fun between(fromValue: K?, includeFrom: Boolean, toValue: K?, includeTo: Boolean): Set<Long> {
+        val from = fromValue?.cast(keyType) as K
+        val to = toValue?.cast(keyType) as K
+        val results = LongHashSet()
+        scanFrom(from) { key, recordId ->
+            val comparison = compare(key, to)
+            if (comparison > 0 || (comparison == 0 && !includeTo))
+                return@scanFrom false
+            if (includeFrom || compare(key, from) != 0)
+                results.add(recordId)
+            true
+        }
+        return results
+    }
+
+    /**
+     * Walk the leaves in key order starting at the first key that is greater than or equal to the key.  Each leaf is
+     * copied while holding the read lock so the walk does not block writers for its entire duration.
+     *
+     * @param from Key to start at.  Null starts at the first leaf.
+     * @param consumer Invoked with each key and record id.  Return false to stop.
+     */
+    private fun scanFrom(from: K?, consumer: (K, Long) -> Boolean) {
+        var keys: Array<Any?> = emptyArray()
+        var recordIds = LongArray(0)
+        var next = 0L
+
+        mapReadWriteLock.readLock {
+            val leaf = if (from == null) firstLeaf() else findLeaf(from, null, null)
+            val start = if (from == null) 0 else lowerBound(leaf, from)
+            keys = Array(leaf.size - start) { keyAt(leaf, start + it) }
+            recordIds = leaf.pointers.copyOfRange(start, leaf.size)
+            next = leaf.next
+        }
+
+        while (true) {
+            for (i in keys.indices) {
+                if (!consumer(keys[i] as K, recordIds[i]))
+                    return
+            }
+            if (next == 0L) return
+
+            mapReadWriteLock.readLock {
+                val leaf = findPage(next)
+                keys = Array(leaf.size) { keyAt(leaf, it) }
+                recordIds = leaf.pointers.copyOf(leaf.size)
+                next = leaf.next
+            }
+        }
+    }
+
+    /**
+     * Walk the record ids in key order.  Ascending walks follow the next leaf and descending walks follow the previous
+     * leaf.
+     *
+     * @param descending Walk from the greatest key to the least
+     * @param consumer Invoked with each key and its record id.  Return false to stop.
+     *
+     * @since 3.9.10
+     */
+    override fun walk(descending: Boolean, consumer: (K, Long) -> Boolean) {
+        if (!descending)
+            return scanFrom(null, consumer)
+
+        var keys: Array<Any?> = emptyArray()
+        var recordIds = LongArray(0)
+        var previous = 0L
+
+        mapReadWriteLock.readLock {
+            val leaf = lastLeaf()
+            keys = Array(leaf.size) { keyAt(leaf, it) }
+            recordIds = leaf.pointers.copyOf(leaf.size)
+            previous = leaf.previous
+        }
+
+        while (true) {
+            for (i in keys.indices.reversed()) {
+                if (!consumer(keys[i] as K, recordIds[i]))
+                    return
+            }
+            if (previous == 0L) return
+
+            mapReadWriteLock.readLock {
+                val leaf = findPage(previous)
+                keys = Array(leaf.size) { keyAt(leaf, it) }
+                recordIds = leaf.pointers.copyOf(leaf.size)
+                previous = leaf.previous
+            }
+        }
+    }
+
+    // endregion
+
+    // region Tree
+
+    /**
+     * Find the record node for a key
+     *
+     * @param key Key to search for
+     * @return Record node or null if the key does not exist
+     */
+    protected open fun find(key: K): SkipNode? = mapReadWriteLock.readLock {
+        val leaf = findLeaf(key, null, null)
+        val index = lowerBound(leaf, key)
+        if (index < leaf.size && compare(keyAt(leaf, index), key) == 0)
+            findNodeAtPosition(leaf.pointers[index])
+        else
+            null
+    }
+
+    /**
+     * Descend to the leaf that contains or would contain the key
+     *
+     * @param key Key to search for
+     * @param path Populated with the internal pages visited if not null
+     * @param childIndexes Populated with the child index followed within each internal page
+     */
+    private fun findLeaf(key: K, path: MutableList<BPlusTreePage>?, childIndexes: MutableList<Int>?): BPlusTreePage {
+        var page = root
+        while (!page.isLeaf) {
+            val childIndex = upperBound(page, key)
+            path?.add(page)
+            childIndexes?.add(childIndex)
+            page = findPage(page.pointers[childIndex])
+        }
+        return page
+    }
+
+    /**
+     * Descend along the left most edge to the first leaf
+     */
+    private fun firstLeaf(): BPlusTreePage {
+        var page = root
+        while (!page.isLeaf)
+            page = findPage(page.pointers[0])
+        return page
+    }
+
+    /**
+     * Descend along the right most edge to the last leaf
+     */
+    private fun lastLeaf(): BPlusTreePage {
+        var page = root
+        while (!page.isLeaf)
+            page = findPage(page.pointers[page.size])
+        return page
+    }
+
+    /**
+     * Index of the first key within the page that is greater than or equal to the key
+     */
+    private fun lowerBound(page: BPlusTreePage, key: K): Int {
+        var low = 0
+        var high = page.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (compare(keyAt(page, middle), key) < 0) low = middle + 1 else high = middle
+        }
+        return low
+    }
+
+    /**
+     * Index of the first key within the page that is greater than the key.  For an internal page this is the index
+     * of the child to descend into.
+     */
+    private fun upperBound(page: BPlusTreePage, key: K): Int {
+        var low = 0
+        var high = page.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (compare(keyAt(page, middle), key) <= 0) low = middle + 1 else high = middle
+        }
+        return low
+    }
+
+    /**
+     * Split a full page and carry the separator up through the path.  If the root is split the tree grows a level.
+     *
+     * @param full Page that has overflowed
+     * @param path Internal pages from the root down to the parent of the page
+     * @param childIndexes Child index followed within each of the internal pages
+     */
+    private fun split(full: BPlusTreePage, path: List<BPlusTreePage>, childIndexes: List<Int>) {
+        var page = full
+        var level = path.size - 1
+
+        while (page.isFull) {
+            val sibling = BPlusTreePage.create(fileStore, page.isLeaf)
+            val middle = page.splitInto(sibling)
+
+            val separator: Long
+            val separatorValue: Any?
+            if (page.isLeaf) {
+                // Separators own a copy of the key so removing the leaf entry does not release it
+                separatorValue = keyAt(sibling, 0)
+                separator = if (storeKeyWithinNode) sibling.keys[0] else records.writeObject(separatorValue)
+
+                sibling.next = page.next
+                sibling.previous = page.position
+                if (page.next > 0L)
+                    findPage(page.next).setPrevious(fileStore, sibling.position)
+                page.next = sibling.position
+            } else {
+                separatorValue = keyAt(page, middle)
+                separator = page.keys[middle]
+            }
+
+            sibling.write(fileStore)
+            page.write(fileStore)
+            cache.putPage(cacheOwner, sibling)
+            cache.putPage(cacheOwner, page)
+
+            if (level < 0) {
+                val newRoot = BPlusTreePage.create(fileStore, false)
+                newRoot.pointers[0] = page.position
+                newRoot.insert(0, separator, separatorValue, sibling.position)
+                newRoot.write(fileStore)
+                cache.putPage(cacheOwner, newRoot)
+                root = newRoot
+                updateHeaderFirstNode(reference, newRoot.position)
+                return
+            }
+
+            val parent = path[level]
+            parent.insert(childIndexes[level], separator, separatorValue, sibling.position)
+            if (!parent.isFull) {
+                parent.write(fileStore)
+                return
+            }
+
+            page = parent
+            level--
+        }
+    }
+
+    /**
+     * Create an empty leaf and use it as the root
+     */
+    private fun createRoot(): BPlusTreePage {
+        val page = BPlusTreePage.create(fileStore, true)
+        page.write(fileStore)
+        cache.putPage(cacheOwner, page)
+        updateHeaderFirstNode(reference, page.position)
+        return page
+    }
+
+    protected open fun findPage(position: Long): BPlusTreePage = cache.page(cacheOwner, position) { BPlusTreePage.get(fileStore, position) }
+
+    protected open fun findNodeAtPosition(position: Long): SkipNode? = if (position <= 0L) null else cache.node(cacheOwner, position) { SkipNode.get(fileStore, position) }
+
+    private fun keyAt(page: BPlusTreePage, index: Int): K = page.keyAt(index) { hydrateKey(it) }
+
+    private fun hydrateKey(key: Long): Any? = if (storeKeyWithinNode) key.toType(keyType) else records.getObject(key)
+
+    // endregion
+
+    // region Compaction
+
+    /**
+     * Relocate the keys and values of this map towards the front of the record store.  Pages and record nodes are not
+     * moved so record ids remain stable.
+     *
+     * @return How many keys and values were relocated
+     */
+    fun compact(): Int = mapReadWriteLock.writeLock {
+        var relocated = 0
+        val pages = ArrayDeque<BPlusTreePage>()
+        pages.add(root)
+
+        while (pages.isNotEmpty()) {
+            val page = pages.poll()
+            var modified = false
+
+            if (!page.isLeaf) {
+                for (i in 0..page.size)
+                    pages.add(findPage(page.pointers[i]))
+            }
+
+            for (i in 0 until page.size) {
+                if (page.isLeaf) {
+                    val node = findNodeAtPosition(page.pointers[i]) ?: continue
+                    val previousRecord = node.record
+                    val movedRecord = records.relocateObject(previousRecord)
+                    if (movedRecord != previousRecord) {
+                        node.setRecord(fileStore, movedRecord)
+                        cache.removeRecord(cacheOwner, node.position)
+                        records.freeObject(previousRecord)
+                        relocated++
+                    }
+                }
+
+                if (!storeKeyWithinNode) {
+                    val previousKey = page.keys[i]
+                    val movedKey = records.relocateObject(previousKey)
+                    if (movedKey != previousKey) {
+                        page.setKey(i, movedKey)
+                        if (page.isLeaf)
+                            findNodeAtPosition(page.pointers[i])?.setKey(fileStore, movedKey)
+                        records.freeObject(previousKey)
+                        modified = true
+                        relocated++
+                    }
+                }
+            }
+
+            if (modified)
+                page.write(fileStore)
+        }
+
+        return@writeLock relocated
+    }
+
+    // endregion
+
+    // region Iterable Collections
+
+    override val references: Set<SkipNode>
+        get() = NodeCollection()
+
+    override val values: MutableCollection<V>
+        get() = ValueCollection()
+
+    override val keys: MutableSet<K>
+        get() = KeyCollection()
+
+    override val entries: MutableSet<MutableMap.MutableEntry<K, V>>
+        get() = EntryCollection()
+
+    /**
+     * Abstract collection that mirrors the size of the map
+     */
+    abstract inner class AbstractNodeCollection<T> : AbstractSet<T>() {
+        override val size: Int
+            get() = this@DiskBPlusTreeMap.longSize().toInt()
+    }
+
+    inner class NodeCollection : AbstractNodeCollection<SkipNode>() {
+        override fun iterator(): MutableIterator<SkipNode> = NodeIterator()
+    }
+
+    inner class ValueCollection : AbstractNodeCollection<V>() {
+        override fun iterator(): MutableIterator<V> = NodeIterator().map { node -> mapReadWriteLock.readLock { getRecordValue<V>(node) } }
+    }
+
+    inner class KeyCollection : AbstractNodeCollection<K>() {
+        override fun iterator(): MutableIterator<K> = NodeIterator().map { node -> mapReadWriteLock.readLock { node.getKey<K>(records, storeKeyWithinNode, keyType) } }
+    }
+
+    inner class EntryCollection : AbstractNodeCollection<MutableMap.MutableEntry<K, V>>() {
+        override fun iterator(): MutableIterator<MutableMap.MutableEntry<K, V>> = NodeIterator().map { BPlusTreeEntry(it) }
+    }
+
+    /**
+     * Iterates through the record nodes in key order.  A leaf is copied when the iterator reaches it.
+     */
+    inner class NodeIterator : MutableIterator<SkipNode> {
+
+        private var recordIds = LongArray(0)
+        private var index = 0
+        private var next: Long = 0L
+
+        init {
+            mapReadWriteLock.readLock { load(firstLeaf()) }
+        }
+
+        private fun load(leaf: BPlusTreePage) {
+            recordIds = leaf.pointers.copyOf(leaf.size)
+            index = 0
+            next = leaf.next
+        }
+
+        override fun hasNext(): Boolean {
+            while (index >= recordIds.size && next > 0L)
+                mapReadWriteLock.readLock { load(findPage(next)) }
+            return index < recordIds.size
+        }
+
+        override fun next(): SkipNode {
+            if (!hasNext()) throw NoSuchElementException()
+            return findNodeAtPosition(recordIds[index++])!!
+        }
+
+        override fun remove() = Unit
+
+        fun <T> map(transform: (SkipNode) -> T): MutableIterator<T> = object : MutableIterator<T> {
+            override fun hasNext(): Boolean = this@NodeIterator.hasNext()
+            override fun next(): T = transform(this@NodeIterator.next())
+            override fun remove() = Unit
+        }
+    }
+
+    /**
+     * Map entry that lazy loads the key and value from its record node
+     */
+    inner class BPlusTreeEntry(override val node: SkipNode) : DiskMapEntry<K, V> {
+
+        override val key: K
+            get() = mapReadWriteLock.readLock { node.getKey(records, storeKeyWithinNode, keyType) }
+
+        override val value: V
+            get() = mapReadWriteLock.readLock { getRecordValue(node) }
+
+        override fun setValue(newValue: V): V = value
+    }
+
+    // endregion
+
+    companion object {
+
+        /**
+         * Total ordering of keys.  Null keys come first.
+         */
+        private fun compare(first: Any?, second: Any?): Int = when {
+            first.forceCompare(second) -> 0
+            second.forceCompare(first, QueryCriteriaOperator.GREATER_THAN) -> 1
+            else -> -1
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.onyx.extension.common.forceCompare
 import com.onyx.extension.common.getAny
 import com.onyx.lang.concurrent.ClosureReadWriteLock
 import com.onyx.lang.concurrent.impl.DefaultClosureReadWriteLock
+import com.onyx.lang.LongHashSet
 import java.lang.ref.WeakReference
 import java.lang.reflect.Field
 import java.util.*
@@ -38,12 +39,13 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
     open protected var mapReadWriteLock: ClosureReadWriteLock = DefaultClosureReadWriteLock()
 
     /**
-     * Remove an item within the map
+     * Remove an item within the map.  Writers share the map lock.  It is only held exclusively while the map is
+     * cleared or compacted.
      *
      * @param key Key Identifier
      * @return The value that was removed
      */
-    override fun remove(key: K): V? = mapReadWriteLock.writeLock { super.remove(key.cast(keyType) as K) }
+    override fun remove(key: K): V? = mapReadWriteLock.readLock { super.remove(key.cast(keyType) as K) }
 
     /**
      * Put a value into a map based on its key.
@@ -52,7 +54,7 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      * @param value Underlying value
      * @return The value of the object that was just put into the map
      */
-    override fun put(key: K, value: V): V = mapReadWriteLock.writeLock { super.put(key.cast(keyType) as K, value) }
+    override fun put(key: K, value: V): V = mapReadWriteLock.readLock { super.put(key.cast(keyType) as K, value) }
 
     /**
      * Put key value.  This is the same as map.put(K,V) except
@@ -66,7 +68,18 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      * @since 2.1.3
      * @return Value for previous record ID and if the value is been updated or inserted
      */
-    override fun putAndGet(key: K, value: V, preUpdate:((Long) -> Unit)?): PutResult = mapReadWriteLock.writeLock { super.internalPutAndGet(key.cast(keyType) as K, value, preUpdate) }
+    override fun putAndGet(key: K, value: V, preUpdate:((Long) -> Unit)?): PutResult = mapReadWriteLock.readLock { super.internalPutAndGet(key.cast(keyType) as K, value, preUpdate) }
+
+    /**
+     * Put several key values.  Keys greater than every key within the map are appended without searching for each.
+     *
+     * @param entries Keys and values
+     * @param preUpdate Invoked with the index of an entry and its existing record id before its value is written
+     * @since 3.9.10
+     * @return Result of each put in the same order as the entries
+     */
+    override fun putAllAndGet(entries: List<Pair<K, V>>, preUpdate: ((Int, Long) -> Unit)?): List<PutResult> =
+        mapReadWriteLock.readLock { super.internalPutAllAndGet(entries.map { (key, value) -> (key.cast(keyType) as K) to value }, preUpdate) }
 
     /**
      * Iterates through the entire skip list to see if it contains the value you are looking for.
@@ -107,6 +120,61 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
         updateHeaderRecordCount(0L)
     }
 
+    /**
+     * Relocate the keys and values of this map towards the front of the record store.  Only extents that fit within
+     * a free extent closer to the start of the store are moved.  Node positions are not changed so record ids remain
+     * stable.  Values are only referenced from the bottom level while keys are shared by every level of a tower so
+     * the relocated key positions are carried up through the levels before the previous key extents are released.
+     *
+     * @return How many keys and values were relocated
+     * @since 3.9.10
+     */
+    fun compact(): Int = mapReadWriteLock.writeLock {
+        val levelHeads = ArrayList<SkipNode>()
+        var levelHead: SkipNode? = head
+        while (levelHead != null) {
+            levelHeads.add(levelHead)
+            levelHead = if (levelHead.down > 0) findNodeAtPosition(levelHead.down) else null
+        }
+
+        val relocatedKeys = HashMap<Long, Long>()
+        var relocated = 0
+
+        levelHeads.asReversed().forEach { currentHead ->
+            var node: SkipNode? = if (currentHead.right > 0) findNodeAtPosition(currentHead.right) else null
+            while (node != null) {
+                if (node.level.toInt() == 0 && node.record > 0) {
+                    val previous = node.record
+                    val moved = records.relocateObject(previous)
+                    if (moved != previous) {
+                        node.setRecord(fileStore, moved)
+                        release(previous)
+                        relocated++
+                    }
+                }
+
+                if (!storeKeyWithinNode && node.key > 0) {
+                    val previous = node.key
+                    val moved = if (node.level.toInt() == 0) records.relocateObject(previous) else relocatedKeys[previous] ?: previous
+                    if (moved != previous) {
+                        node.setKey(fileStore, moved)
+                        if (node.level.toInt() == 0) {
+                            relocatedKeys[previous] = moved
+                            relocated++
+                        }
+                    }
+                }
+
+                node = if (node.right > 0) findNodeAtPosition(node.right) else null
+            }
+        }
+
+        // Upper levels no longer reference the previous key locations
+        relocatedKeys.keys.forEach { release(it) }
+
+        return@writeLock relocated
+    }
+
     /**
      * Get the record id of a corresponding data.  Note, this points to the SkipListNode position.  Not the actual
      * record position.
@@ -115,7 +183,7 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      * @return The position of the record reference if it exists.  Otherwise -1
      * @since 1.2.0
      */
-    override fun getRecID(key: K): Long = mapReadWriteLock.readLock { find(key.cast(keyType) as K)?.position ?: -1  }
+    override fun getRecID(key: K): Long = mapReadWriteLock.readLock { reading { find(key.cast(keyType) as K)?.position ?: -1 } }
 
     /**
      * Hydrate a record with its record ID.  If the record value exists it will be returned
@@ -127,8 +195,7 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
     override fun getWithRecID(recordId: Long): V? {
         if (recordId <= 0)
             return null
-        val node:SkipNode = findNodeAtPosition(recordId) ?: return null
-        return node.getRecord<V>(records)
+        return reading { findNodeAtPosition(recordId)?.let { getRecordValue<V>(it) } }
     }
 
     /**
@@ -138,9 +205,11 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      * @return Map of key values
      * @since 1.2.0
      */
-    override fun getMapWithRecID(recordId: Long): Map<String, Any?>? = mapReadWriteLock.readLock{
-        val node:SkipNode = findNodeAtPosition(recordId) ?: return@readLock null
-        return@readLock getRecordValueAsDictionary(node.record)
+    override fun getMapWithRecID(recordId: Long): Map<String, Any?>? = mapReadWriteLock.readLock {
+        reading {
+            val node = findNodeAtPosition(recordId)
+            if (node == null || !node.isRecord) null else getRecordValueAsDictionary(node.record)
+        }
     }
 
     /**
@@ -155,13 +224,15 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      */
     @Throws(AttributeTypeMismatchException::class)
     override fun <T : Any?> getAttributeWithRecID(attribute: Field, reference: Long): T = mapReadWriteLock.readLock {
-        @Suppress("UNCHECKED_CAST")
-        val node:SkipNode = findNodeAtPosition(reference) ?: return@readLock  null as T
-        return@readLock node.getRecord<Any>(records).getAny(attribute)
+        reading {
+            @Suppress("UNCHECKED_CAST")
+            val node: SkipNode = findNodeAtPosition(reference) ?: return@reading null as T
+            getRecordValue<Any>(node).getAny<T>(attribute)
+        }
     }
 
     @Throws(AttributeTypeMismatchException::class)
-    override fun <T : Any?> getAttributeWithRecID(field: Field, reference: SkipNode): T = reference.getRecord<Any>(records).getAny(field)
+    override fun <T : Any?> getAttributeWithRecID(field: Field, reference: SkipNode): T = reading { getRecordValue<Any>(reference).getAny<T>(field) }
 
     /**
      * Find all references above and perhaps equal to the key you are sending in.  The underlying data structure
@@ -172,9 +243,9 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      * @return A Set of references
      * @since 1.2.0
      */
-    override fun above(key: K, includeFirst: Boolean): Set<Long> {
+    override fun above(key: K, includeFirst: Boolean): Set<Long> = reading {
         val index = key.cast(keyType) as K
-        val results = HashSet<Long>()
+        val results = LongHashSet()
         var node:SkipNode? = nearest(index)
 
         if(node != null && !node.isRecord && node.right> 0)
@@ -189,7 +260,7 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
             node = if (node.right > 0) findNodeAtPosition(node.right) else null
         }
 
-        return results
+        results
     }
 
     /**
@@ -201,8 +272,8 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      * @return A Set of references
      * @since 1.2.0
      */
-    override fun below(key: K, includeFirst: Boolean): Set<Long> {
-        val results = HashSet<Long>()
+    override fun below(key: K, includeFirst: Boolean): Set<Long> = reading {
+        val results = LongHashSet()
         val index = key.cast(keyType) as K
         var node:SkipNode? = nearest(index)
 
@@ -219,7 +290,7 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
             node = if (node.left > 0) findNodeAtPosition(node.left) else null
         }
 
-        return results
+        results
     }
 
     /**
@@ -233,10 +304,10 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
      *
      * @since 2.1.3
      */
-    override fun between(from: K?, includeFrom: Boolean, to: K?, includeTo: Boolean): Set<Long> {
+    override fun between(from: K?, includeFrom: Boolean, to: K?, includeTo: Boolean): Set<Long> = reading {
         val fromValue = from?.cast(keyType) as K?
         val toValue = to?.cast(keyType) as K?
-        val results = HashSet<Long>()
+        val results = LongHashSet()
         var node:SkipNode? = nearest(fromValue!!)
 
         if(node != null && !node.isRecord && node.right> 0)
@@ -253,7 +324,40 @@ open class DiskSkipListMap<K, V>(fileStore:WeakReference<Store>, recordStore:Wea
             node = if (node.right > 0) findNodeAtPosition(node.right) else null
         }
 
-        return results
+        results
+    }
+
+    /**
+     * Walk the record ids in key order.  The bottom level of the skip list links every record node to its neighbours
+     * so the walk starts at either end of it.
+     *
+     * @param descending Walk from the greatest key to the least
+     * @param consumer Invoked with each key and its record id.  Return false to stop.
+     *
+     * @since 3.9.10
+     */
+    override fun walk(descending: Boolean, consumer: (K, Long) -> Boolean) {
+        var node: SkipNode = head ?: return
+
+        // Descend to the bottom level.  The right most node of each level leads to the last node.
+        while (true) {
+            while (descending && node.right > 0L) {
+                val next = findNodeAtPosition(node.right) ?: break
+                if (next.position == node.position) break
+                node = next
+            }
+            if (node.down <= 0L) break
+            node = findNodeAtPosition(node.down) ?: return
+        }
+
+        var current: SkipNode? = if (descending) node else if (node.right > 0L) findNodeAtPosition(node.right) else null
+        while (current != null) {
+            val record = current
+            if (!reading { !record.isRecord || consumer(record.getKey(records, storeKeyWithinNode, keyType), record.position) })
+                return
+            val next = if (descending) current.left else current.right
+            current = if (next > 0L) findNodeAtPosition(next) else null
+        }
     }
 
 }
@@ -3,7 +3,9 @@ package com.onyx.diskmap.impl.base
 import com.onyx.buffer.BufferPool
 import com.onyx.buffer.BufferPool.withBigIntBuffer
 import com.onyx.diskmap.DiskMap
+import com.onyx.diskmap.cache.DiskMapCache
 import com.onyx.diskmap.data.Header
+import com.onyx.diskmap.data.SkipNode
 import com.onyx.diskmap.data.putBigInt
 import com.onyx.diskmap.store.Store
 import com.onyx.extension.common.canBeCastToPrimitive
@@ -33,6 +35,20 @@ abstract class AbstractDiskMap<K, V> constructor(protected val store: WeakRefere
 
     val storeKeyWithinNode:Boolean = keyType.canBeCastToPrimitive()
 
+    /**
+     * Node and record cache.  It is shared by all the maps within a schema context.
+     *
+     * @since 3.9.10
+     */
+    protected val cache: DiskMapCache by lazy { store.get()?.context?.diskMapCache ?: DiskMapCache.DEFAULT }
+
+    /**
+     * Identifies the entries of this map within the cache
+     *
+     * @since 3.9.10
+     */
+    protected val cacheOwner = DiskMapCache.Owner()
+
     init {
         // Clone the header so that we do not have a cross reference
         // This was preventing WeakHashMaps from ejecting the entire map value
@@ -59,6 +75,28 @@ abstract class AbstractDiskMap<K, V> constructor(protected val store: WeakRefere
         return records.readObject(recordId + Integer.BYTES, size).perform { it!!.toMap(records.context!!) }
     }
 
+    /**
+     * Get the record value a node references.  The value is read through the cache and is weighed by its serialized
+     * size.
+     *
+     * @param node Node referencing the record
+     * @return The record value
+     *
+     * @since 3.9.10
+     */
+    @Suppress("UNCHECKED_CAST")
+    protected fun <T> getRecordValue(node: SkipNode): T = cache.record(cacheOwner, node) { recordPosition ->
+        if (recordPosition <= 0L)
+            return@record Pair(null as T, 0)
+        val value = records.getObject<T>(recordPosition)
+        val size = BufferPool.withIntBuffer {
+            records.read(it, recordPosition)
+            it.rewind()
+            it.int
+        }
+        Pair(value, size)
+    }
+
     /**
      * This method will only update the record count rather than the entire header
      */
@@ -116,7 +154,19 @@ abstract class AbstractDiskMap<K, V> constructor(protected val store: WeakRefere
      * @since 1.2.0
      */
     open protected fun incrementSize() {
-        updateHeaderRecordCount(reference.recordCount.incrementAndGet())
+        reference.recordCount.incrementAndGet()
+        writeRecordCount()
+    }
+
+    /**
+     * Increase the size of the map by several records at once
+     *
+     * @param count Number of records added
+     * @since 3.9.10
+     */
+    protected fun incrementSize(count: Long) {
+        reference.recordCount.addAndGet(count)
+        writeRecordCount()
     }
 
     /**
@@ -125,6 +175,17 @@ abstract class AbstractDiskMap<K, V> constructor(protected val store: WeakRefere
      * @since 1.2.0
      */
     open protected fun decrementSize() {
-        updateHeaderRecordCount(reference.recordCount.decrementAndGet())
+        reference.recordCount.decrementAndGet()
+        writeRecordCount()
+    }
+
+    /**
+     * Write the current record count.  Concurrent writers may change the count in any order so the latest count is
+     * read while holding the lock rather than writing the value each writer computed.
+     *
+     * @since 3.9.10
+     */
+    private fun writeRecordCount() = synchronized(reference) {
+        updateHeaderRecordCount(reference.recordCount.get())
     }
 }
@@ -3,9 +3,7 @@ package com.onyx.diskmap.impl.base.skiplist
 import com.onyx.diskmap.data.Header
 import com.onyx.diskmap.data.SkipNode
 import com.onyx.diskmap.store.Store
-import com.onyx.lang.map.OptimisticLockingMap
 import java.lang.ref.WeakReference
-import java.util.*
 
 /**
  * Created by Tim Osborn on 1/7/17.
@@ -13,19 +11,16 @@ import java.util.*
  *
  * This class was added to enhance the existing index within Onyx Database.  The bitmap was very efficient but, it was a hog
  * as far as how much space it took over.  As far as in-memory data structures, this will be the go-to algorithm.  The
- * data structure is based on a SkipList.  This contains the caching implementation of the SkipList.  It will try to
- * maintain a weak reference of all the values.  If memory consumption goes to far, it will start flushing those
- * from the elastic cache.
+ * data structure is based on a SkipList.  This contains the caching implementation of the SkipList.  Nodes and the
+ * nodes found for a key are kept in the bounded cache shared by the schema context.
  *
  * @param <K> Key Object Type
  * @param <V> Value Object Type
  * @since 1.2.0
+ * @since 3.9.10 Uses the context cache rather than weak hash maps so entries are not dropped by the garbage collector
  */
 abstract class AbstractCachedSkipList<K, V>(fileStore: WeakReference<Store>, nodeStore: WeakReference<Store>, header: Header, keyType:Class<*>) : AbstractSkipList<K, V>(fileStore, nodeStore, header, keyType) {
 
-    // Caching maps
-    protected open var keyCache = OptimisticLockingMap<K, SkipNode?>(WeakHashMap())
-
     /**
      * Find a data at a position.  First check the cache.  If it is in there great return it otherwise go the the
      * store to find it.
@@ -34,7 +29,8 @@ abstract class AbstractCachedSkipList<K, V>(fileStore: WeakReference<Store>, nod
      * @return The SkipListNode at that position.
      * @since 1.2.0
      */
-    override fun findNodeAtPosition(position: Long): SkipNode? = nodeCache.getOrPut(position) { super.findNodeAtPosition(position) }
+    override fun findNodeAtPosition(position: Long): SkipNode? =
+        if (position == 0L) null else cache.node(cacheOwner, position) { super.findNodeAtPosition(position) }
 
     /**
      * Find the record reference based on the key
@@ -44,7 +40,27 @@ abstract class AbstractCachedSkipList<K, V>(fileStore: WeakReference<Store>, nod
      *
      * @since 1.2.0
      */
-    override fun find(key: K): SkipNode? = keyCache.getOrPut(key) { super.find(key) }
+    override fun find(key: K): SkipNode? = cache.nodeForKey(cacheOwner, key, { super.find(key) }) { findNodeAtPosition(it) }
+
+    /**
+     * Mutate a node while it is pinned within the cache.  The node may have been evicted since it was found so the
+     * pinned instance is the one mutated.  That way the changes of concurrent writers are made to the same instance and
+     * a copy loaded in the meantime is never cached over them.
+     *
+     * @param node Node to mutate
+     * @param body Mutates the pinned instance of the node
+     * @since 3.9.10
+     */
+    override fun <T> mutate(node: SkipNode, body: (SkipNode) -> T): T {
+        val pinned = cache.pin(cacheOwner, node.position) { super.findNodeAtPosition(node.position) } ?: node
+        if (node === head)
+            head = pinned
+        try {
+            return body(pinned)
+        } finally {
+            cache.unpin(cacheOwner, pinned)
+        }
+    }
 
     /**
      * Add node to cache
@@ -54,7 +70,7 @@ abstract class AbstractCachedSkipList<K, V>(fileStore: WeakReference<Store>, nod
      */
     override fun updateNodeCache(node:SkipNode?) {
         if(node != null)
-            nodeCache[node.position] = node
+            cache.putNode(cacheOwner, node)
     }
 
     /**
@@ -63,15 +79,7 @@ abstract class AbstractCachedSkipList<K, V>(fileStore: WeakReference<Store>, nod
      * @param node to remove
      */
     override fun updateKeyCache(node: K) {
-        keyCache.remove(node)
-    }
-
-    /**
-     * Clear Node and key cache
-     */
-    override fun clearCache() {
-        super.clearCache()
-        keyCache.clear()
+        cache.removeKey(cacheOwner, node)
     }
 
     /**
@@ -79,7 +87,6 @@ abstract class AbstractCachedSkipList<K, V>(fileStore: WeakReference<Store>, nod
      * @since 1.2.0
      */
     override fun clear() {
-        nodeCache.clear()
-        keyCache.clear()
+        cache.invalidate(cacheOwner)
     }
 }
@@ -1,5 +1,6 @@
 package com.onyx.diskmap.impl.base.skiplist
 
+import com.onyx.diskmap.data.DiskMapEntry
 import com.onyx.diskmap.data.Header
 import com.onyx.diskmap.data.SkipNode
 import com.onyx.diskmap.store.Store
@@ -126,7 +127,7 @@ abstract class AbstractIterableSkipList<K, V>(store: WeakReference<Store>, recor
          *
          * @return The next dictionary object
          */
-        override fun next(): V? = nodeIterator.next()?.getRecord<V>(records)
+        override fun next(): V? = nodeIterator.next()?.let { node -> reading { getRecordValue<V>(node) } }
 
         override fun remove() = Unit
 
@@ -179,7 +180,7 @@ abstract class AbstractIterableSkipList<K, V>(store: WeakReference<Store>, recor
          */
         override fun next(): SkipListEntry<K, V> {
             val node = nodeIterator.next()
-            return SkipListEntry(node)
+            return reading { SkipListEntry(node) }
         }
     }
 
@@ -205,7 +206,7 @@ abstract class AbstractIterableSkipList<K, V>(store: WeakReference<Store>, recor
         override fun next(): T {
             val next = nodeIterator.next()
             @Suppress("UNCHECKED_CAST")
-            return if(next != null) getRecordValueAsDictionary(next.record) as T else null as T
+            return if(next != null) reading { getRecordValueAsDictionary(next.record) } as T else null as T
         }
     }
 
@@ -229,6 +230,15 @@ abstract class AbstractIterableSkipList<K, V>(store: WeakReference<Store>, recor
                 findNodeAtPosition(current!!.right)
             else
                 null
+            skipRemoved()
+        }
+
+        /**
+         * A node removed after the iterator reached its neighbour no longer has a record.  Move past it.
+         */
+        private fun skipRemoved() {
+            while (current != null && !current!!.isRecord)
+                current = if (current!!.right > 0) findNodeAtPosition(current!!.right) else null
         }
 
         /**
@@ -250,6 +260,7 @@ abstract class AbstractIterableSkipList<K, V>(store: WeakReference<Store>, recor
                 findNodeAtPosition(current!!.right)
             else
                 null
+            skipRemoved()
 
             return previous
         }
@@ -264,7 +275,7 @@ abstract class AbstractIterableSkipList<K, V>(store: WeakReference<Store>, recor
      *
      */
     @Suppress("UNCHECKED_CAST")
-    inner class SkipListEntry<A,B> internal constructor(var node: SkipNode?) : MutableMap.MutableEntry<A?, B?> {
+    inner class SkipListEntry<A,B> internal constructor(override var node: SkipNode?) : DiskMapEntry<A?, B?> {
 
         /**
          * Get Key
@@ -272,14 +283,14 @@ abstract class AbstractIterableSkipList<K, V>(store: WeakReference<Store>, recor
          * @return Key from the data
          */
         override val key: A?
-            get() = node?.getKey(records, storeKeyWithinNode, keyType)
+            get() = reading { node?.getKey<A>(records, storeKeyWithinNode, keyType) }
 
         /**
          * Get Value
          *
          * @return Value from the data position
          */
-        override val value: B? = node?.getRecord<B>(records)
+        override val value: B? = node?.let { getRecordValue<B>(it) }
 
         override fun setValue(newValue: B?): B? = value
     }
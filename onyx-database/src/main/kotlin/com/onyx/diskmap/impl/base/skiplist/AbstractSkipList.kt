@@ -1,17 +1,22 @@
 package com.onyx.diskmap.impl.base.skiplist
 
+import com.onyx.buffer.BufferPool
 import com.onyx.diskmap.data.Header
 import com.onyx.diskmap.data.PutResult
 import com.onyx.diskmap.data.SkipNode
 import com.onyx.diskmap.impl.base.AbstractDiskMap
 import com.onyx.diskmap.store.Store
 import com.onyx.extension.common.castTo
+import com.onyx.extension.common.catchAll
 import com.onyx.extension.common.forceCompare
 import com.onyx.extension.common.long
-import com.onyx.lang.map.OptimisticLockingMap
+import com.onyx.lang.concurrent.EpochReclamation
 import com.onyx.persistence.query.QueryCriteriaOperator
 import java.lang.ref.WeakReference
 import java.util.*
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 import kotlin.reflect.KClass
 
 /**
@@ -25,6 +30,8 @@ import kotlin.reflect.KClass
  * @param <V> Value Object Type
  * @since 1.2.0
  * @since 2.0.0 This was refactored to make simpler.  It now conforms better to an actual skip list
+ * @since 3.9.10 Keys and values are read without a lock.  The extents of replaced or removed keys and values are only
+ *               released once every operation that may have found them has finished.
  */
 @Suppress("UNCHECKED_CAST")
 abstract class AbstractSkipList<K, V>(
@@ -34,14 +41,61 @@ abstract class AbstractSkipList<K, V>(
     keyType: Class<*>
 ) : AbstractDiskMap<K, V>(store, recordStore, header, keyType) {
 
-    protected open var nodeCache = OptimisticLockingMap<Long, SkipNode?>(WeakHashMap())
+    @Volatile
+    protected var head: SkipNode? = null
+
+    // Guards the links between nodes.  Keys and values are written to the store before it is acquired so concurrent
+    // writers only wait on each other for the handful of pointer updates needed to link or unlink a tower.
+    protected open val linkLock = ReentrantLock()
+
+    // Guards the value of a record node.  Updating existing keys does not change any links so it only needs the
+    // lock for that node.
+    private val recordLocks = Array(RECORD_LOCK_STRIPES) { ReentrantLock() }
+
+    // Defers releasing key and value extents until no reader can still hold their location
+    private val reclamation = EpochReclamation()
 
     init {
         @Suppress("LeakingThis")
         determineHead()
     }
 
-    protected var head: SkipNode? = null
+    private fun recordLock(node: SkipNode): ReentrantLock = recordLocks[(node.position xor (node.position ushr 32)).toInt() and (RECORD_LOCK_STRIPES - 1)]
+
+    /**
+     * Invoke a body that finds nodes and reads their keys or values.  Extents released while it runs are not re-used
+     * until it has finished.
+     *
+     * @param body Function to invoke
+     * @return The result of the body
+     * @since 3.9.10
+     */
+    protected fun <T> reading(body: () -> T): T = reclamation.read(body)
+
+    /**
+     * Mutate a node.  Subclasses that cache nodes make sure the instance mutated is the one every reader and writer
+     * uses while it is being mutated.
+     *
+     * @param node Node to mutate
+     * @param body Mutates the node.  It is passed the instance to mutate which may not be the one given.
+     * @return The result of the body
+     * @since 3.9.10
+     */
+    protected open fun <T> mutate(node: SkipNode, body: (SkipNode) -> T): T = body(node)
+
+    /**
+     * Release a key or value extent that is no longer referenced once no reader can still hold its location
+     *
+     * @param location Location of the extent within the record store
+     * @param node Position of the node the value was cached for.  Its cached value is discarded again right before
+     *             the extent is freed since a reader that started beforehand may have cached it in the meantime.
+     * @since 3.9.10
+     */
+    protected fun release(location: Long, node: Long = 0L) = reclamation.retire {
+        if (node > 0L)
+            cache.removeRecord(cacheOwner, node)
+        catchAll { recordStore.get()?.freeObject(location) }
+    }
 
     /**
      * Determine the head.  This will vary based on if it is attached or detached.
@@ -63,9 +117,7 @@ abstract class AbstractSkipList<K, V>(
     protected open fun findNodeAtPosition(position: Long): SkipNode? =
         if (position == 0L) null else SkipNode.get(fileStore, position)
 
-    override fun containsKey(key: K): Boolean = find(key) != null
-
-    private val update = arrayOfNulls<SkipNode?>(34)
+    override fun containsKey(key: K): Boolean = reading { find(key) != null }
 
     /**
      * Put key value.  This is the same as map.put(K,V) except
@@ -74,72 +126,235 @@ abstract class AbstractSkipList<K, V>(
      * do not have to fetch the record id and search the skip list
      * again after inserting the record.
      *
+     * The value is written before any lock is taken.  An update only locks the record node while an insert only
+     * holds the link lock while it searches for the predecessors and links the new tower.  If another writer
+     * inserts or removes the same key in the meantime the put falls back to an update or insert accordingly.
+     *
      * @param key Primary Key
      * @param value Value to insert or update
      * @since 2.1.3
+     * @since 3.9.10 Writers no longer share predecessor state and are not serialized while writing values
      * @return Value for previous record ID and if the value is been updated or inserted
      */
-    fun internalPutAndGet(key: K, value: V, preUpdate: ((Long) -> Unit)?): PutResult {
+    fun internalPutAndGet(key: K, value: V, preUpdate: ((Long) -> Unit)?): PutResult = reading { putRecord(key, value, preUpdate) }
+
+    /**
+     * Insert or update a record.  This must be invoked while reading.
+     *
+     * @see internalPutAndGet
+     */
+    private fun putRecord(key: K, value: V, preUpdate: ((Long) -> Unit)?): PutResult {
 
-        val foundNodeBottomMost = searchAndCollectPredecessors(key)
+        var existingNode = searchAndCollectPredecessors(key, arrayOfNulls(MAX_LEVEL))
 
-        val result = PutResult(key as Any, foundNodeBottomMost == null)
-        result.recordId = foundNodeBottomMost?.position ?: -1L
+        val result = PutResult(key as Any, existingNode == null)
+        result.recordId = existingNode?.position ?: -1L
 
-        if (preUpdate != null) {
-            // The purpose of getting and setting the head is in the event there is a recursive call within the pre-update
-            // method.  That would scratch out the head and we have to re-set it
-            val tempHead = head
-            preUpdate.invoke(result.recordId)
-            head = tempHead
-        }
+        preUpdate?.invoke(result.recordId)
 
         val valueLocation: Long = records.writeObject(value)
+        var keyLocation = -1L
+
+        while (true) {
+            val node = existingNode
+            if (node != null && updateRecord(node, key, valueLocation)) {
+                // A concurrent insert beat this one.  The key written for it is not referenced.
+                if (keyLocation > 0L && !storeKeyWithinNode)
+                    records.freeObject(keyLocation)
+
+                result.isInsert = false
+                result.recordId = node.position
+                return result
+            }
 
-        if (!result.isInsert && foundNodeBottomMost != null) {
-            foundNodeBottomMost.setRecord(fileStore, valueLocation)
-            updateNodeCache(foundNodeBottomMost)
-            updateKeyCache(key)
-        } else {
-            val keyLocation: Long = if (storeKeyWithinNode) key.long() else records.writeObject(key)
+            if (keyLocation == -1L)
+                keyLocation = if (storeKeyWithinNode) key.long() else records.writeObject(key)
 
-            var newNodeLevel = 0
-            while (coinToss() && newNodeLevel < (34 - 1)) {
-                newNodeLevel++
+            val predecessors = arrayOfNulls<SkipNode?>(MAX_LEVEL)
+            val insertedNode = linkLock.withLock {
+                existingNode = searchAndCollectPredecessors(key, predecessors)
+                if (existingNode == null) linkTower(keyLocation, valueLocation, predecessors) else null
             }
 
-            var currentOverallHead = this.head!!
-
-            if (newNodeLevel > currentOverallHead.level.toInt()) {
-                for (lvl in (currentOverallHead.level.toInt() + 1)..newNodeLevel) {
-                    val oldHead = this.head!!
-                    val newHeadNode = SkipNode.create(
-                        fileStore,
-                        key = 0L,
-                        value = 0L,
-                        left = 0L,
-                        right = 0L,
-                        bottom = oldHead.position,
-                        level = lvl.toUByte()
-                    )
-                    updateNodeCache(newHeadNode)
-
-                    this.head = newHeadNode
-                    updateHeaderFirstNode(reference, newHeadNode.position)
-                    update[lvl] = newHeadNode
-                }
-                currentOverallHead = this.head!!
+            if (insertedNode != null) {
+                incrementSize()
+                result.isInsert = true
+                result.recordId = insertedNode.position
+                return result
+            }
+        }
+    }
+
+    /**
+     * Put several key values.  The entries are put in ascending key order.  If every key is greater than the keys
+     * already within the skip list, the entries are appended by building their towers bottom up in a single pass.
+     * Otherwise each entry is put individually.
+     *
+     * The link lock is held while appending so concurrent writers wait until all the entries are linked.
+     *
+     * @param entries Keys and values
+     * @param preUpdate Invoked with the index of an entry and its existing record id before its value is written
+     * @since 3.9.10
+     * @return Result of each put in the same order as the entries
+     */
+    fun internalPutAllAndGet(entries: List<Pair<K, V>>, preUpdate: ((Int, Long) -> Unit)?): List<PutResult> = reading {
+        val order = entries.indices.sortedWith { first, second ->
+            val firstKey = entries[first].first
+            val secondKey = entries[second].first
+            when {
+                isEqual(firstKey, secondKey) -> 0
+                isGreater(firstKey, secondKey) -> 1
+                else -> -1
+            }
+        }
+
+        val results = arrayOfNulls<PutResult>(entries.size)
+        if (!linkLock.withLock { append(entries, order, preUpdate, results) }) {
+            order.forEach { index ->
+                val (key, value) = entries[index]
+                results[index] = putRecord(key, value) { preUpdate?.invoke(index, it) }
+            }
+        }
+        results.map { it!! }
+    }
+
+    /**
+     * Append entries after the last key.  This must be invoked while holding the link lock.
+     *
+     * The keys and values are each written as one extent.  The new nodes are laid out contiguously and carry the right
+     * most node of each level from one tower to the next, so every link is known before the nodes are written with a
+     * single write.  Only the existing right most node of each level the new towers reach is updated in place.  That
+     * is done once the new nodes are written so a concurrent search never follows a link to a node not yet written.
+     *
+     * @param entries Keys and values
+     * @param order Indexes of the entries in ascending key order
+     * @param preUpdate Invoked with the index of an entry before its value is written
+     * @param results Populated with the result of each entry
+     * @return False if the keys are not unique or not all greater than the last key.  Nothing has been written.
+     */
+    private fun append(entries: List<Pair<K, V>>, order: List<Int>, preUpdate: ((Int, Long) -> Unit)?, results: Array<PutResult?>): Boolean {
+        if (order.isEmpty())
+            return true
+
+        for (i in 1 until order.size) {
+            if (!isGreater(entries[order[i]].first, entries[order[i - 1]].first))
+                return false
+        }
+
+        // The predecessors of the first key are the right most node of each level if no key is greater
+        val tails = arrayOfNulls<SkipNode?>(MAX_LEVEL)
+        if (searchAndCollectPredecessors(entries[order[0]].first, tails) != null || tails[0] == null || tails[0]!!.right != 0L)
+            return false
+
+        order.forEach { index -> preUpdate?.invoke(index, -1L) }
+        val valueLocations = records.writeObjects(order.map { entries[it].second })
+        val keyLocations = if (storeKeyWithinNode) LongArray(order.size) { entries[order[it]].first!!.long() } else records.writeObjects(order.map { entries[it].first })
+
+        val levels = IntArray(order.size) { towerLevel() }
+        growHead(levels.max(), tails)
+
+        val nodeCount = levels.sumOf { it + 1 }
+        val nodes = ArrayList<SkipNode>(nodeCount)
+        val firstPosition = fileStore.allocate(SkipNode.SKIP_NODE_SIZE * nodeCount)
+
+        // The existing tails are linked to the new nodes only once the new nodes are written
+        val existingTails = tails.copyOf()
+        val firstNodes = arrayOfNulls<SkipNode>(MAX_LEVEL)
+
+        order.forEachIndexed { i, index ->
+            var below: SkipNode? = null
+            for (level in 0..levels[i]) {
+                val tail = tails[level]!!
+                val node = SkipNode(
+                    position = firstPosition + nodes.size.toLong() * SkipNode.SKIP_NODE_SIZE,
+                    left = tail.position,
+                    down = below?.position ?: 0L,
+                    record = if (level == 0) valueLocations[i] else 0L,
+                    key = keyLocations[i],
+                    level = level.toUByte()
+                )
+
+                if (firstNodes[level] == null)
+                    firstNodes[level] = node
+                else
+                    tail.right = node.position
+
+                tails[level] = node
+                nodes.add(node)
+                if (level == 0)
+                    results[index] = PutResult(entries[index].first as Any, true, node.position)
+                below = node
+            }
+        }
+
+        BufferPool.allocateAndLimit(nodes.size * SkipNode.SKIP_NODE_SIZE) { buffer ->
+            nodes.forEach { it.writeTo(buffer) }
+            buffer.flip()
+            fileStore.write(buffer, firstPosition)
+        }
+
+        for (level in 0 until MAX_LEVEL) {
+            val node = firstNodes[level] ?: break
+            mutate(existingTails[level]!!) {
+                it.setRight(fileStore, node.position)
+                updateNodeCache(it)
             }
+        }
+
+        incrementSize(order.size.toLong())
+        return true
+    }
+
+    /**
+     * Replace the value of a record node
+     *
+     * @param node Bottom most node of the tower
+     * @param key Key of the node
+     * @param valueLocation Location of the new value
+     * @return False if the node has been removed since it was found.  A removed node no longer has a left link.
+     */
+    private fun updateRecord(node: SkipNode, key: K, valueLocation: Long): Boolean = recordLock(node).withLock {
+        // The node may be a stale copy.  Update the instance searches use so they see the new value.
+        mutate(node) { target ->
+            if (target.left == 0L)
+                return@mutate false
+
+            val previousValueLocation = target.record
+
+            target.setRecord(fileStore, valueLocation)
+            cache.removeRecord(cacheOwner, target.position)
+            updateKeyCache(key)
+
+            // The previous value is no longer referenced.  Release it so the space can be re-used once concurrent
+            // readers are done with it.
+            if (previousValueLocation > 0L && previousValueLocation != valueLocation)
+                release(previousValueLocation, target.position)
+            true
+        }
+    }
 
-            var insertedNodeTowerBottom: SkipNode? = null
+    /**
+     * Link a new tower after its predecessors.  This must be invoked while holding the link lock.
+     *
+     * @param keyLocation Key or location of the key
+     * @param valueLocation Location of the value
+     * @param predecessors Predecessor at each level.  Each level the tower reaches is replaced with the new node.
+     * @return Bottom most node of the new tower
+     */
+    private fun linkTower(keyLocation: Long, valueLocation: Long, predecessors: Array<SkipNode?>): SkipNode {
+        val newNodeLevel = towerLevel()
+        growHead(newNodeLevel, predecessors)
+
+        var insertedNodeTowerBottom: SkipNode? = null
+        var recordNode: SkipNode? = null
 
-            for (currentLevel in 0..newNodeLevel) {
-                val predecessorAtLevel = update[currentLevel]
-                val pred = predecessorAtLevel ?: headAtLevel(currentLevel)
+        for (currentLevel in 0..newNodeLevel) {
+            val predecessorAtLevel = predecessors[currentLevel]
 
+            val newNodeAtCurrentLevel = mutate(predecessorAtLevel ?: headAtLevel(currentLevel)) { pred ->
                 val rightOfPredecessorPos = pred.right
 
-                val newNodeAtCurrentLevel = SkipNode.create(
+                val newNode = SkipNode.create(
                     fileStore,
                     keyLocation,
                     if (currentLevel == 0) valueLocation else 0L,
@@ -148,40 +363,80 @@ abstract class AbstractSkipList<K, V>(
                     insertedNodeTowerBottom?.position ?: 0L,
                     currentLevel.toUByte()
                 )
-                updateNodeCache(newNodeAtCurrentLevel)
+                updateNodeCache(newNode)
 
-                pred.setRight(fileStore, newNodeAtCurrentLevel.position)
+                pred.setRight(fileStore, newNode.position)
                 updateNodeCache(pred)
 
                 if (rightOfPredecessorPos > 0L) {
-                    val oldRightNode = findNodeAtPosition(rightOfPredecessorPos)!!
-                    oldRightNode.setLeft(fileStore, newNodeAtCurrentLevel.position)
-                    updateNodeCache(oldRightNode)
+                    mutate(findNodeAtPosition(rightOfPredecessorPos)!!) { oldRightNode ->
+                        oldRightNode.setLeft(fileStore, newNode.position)
+                        updateNodeCache(oldRightNode)
+                    }
                 }
+                newNode
+            }
 
-                insertedNodeTowerBottom = newNodeAtCurrentLevel
+            insertedNodeTowerBottom = newNodeAtCurrentLevel
+            predecessors[currentLevel] = newNodeAtCurrentLevel
 
-                if (currentLevel == 0) {
-                    result.recordId =
-                        newNodeAtCurrentLevel.position
-                }
-            }
-            incrementSize()
+            if (currentLevel == 0)
+                recordNode = newNodeAtCurrentLevel
+        }
+
+        return recordNode!!
+    }
+
+    /**
+     * Choose the level of a new tower
+     */
+    private fun towerLevel(): Int {
+        var level = 0
+        while (coinToss() && level < (MAX_LEVEL - 1)) {
+            level++
         }
+        return level
+    }
+
+    /**
+     * Add head levels until the head reaches a level.  This must be invoked while holding the link lock.
+     *
+     * @param level Level of the tower about to be linked
+     * @param predecessors Set to the new head at each level added
+     */
+    private fun growHead(level: Int, predecessors: Array<SkipNode?>) {
+        val currentOverallHead = this.head!!
 
-        return result
+        if (level > currentOverallHead.level.toInt()) {
+            for (lvl in (currentOverallHead.level.toInt() + 1)..level) {
+                val oldHead = this.head!!
+                val newHeadNode = SkipNode.create(
+                    fileStore,
+                    key = 0L,
+                    value = 0L,
+                    left = 0L,
+                    right = 0L,
+                    bottom = oldHead.position,
+                    level = lvl.toUByte()
+                )
+                updateNodeCache(newHeadNode)
+
+                this.head = newHeadNode
+                updateHeaderFirstNode(reference, newHeadNode.position)
+                predecessors[lvl] = newHeadNode
+            }
+        }
     }
 
     /**
-     * Placeholder for the crucial search method that populates predecessors.
-     * This method needs to be implemented in your AbstractSkipList class.
+     * Search for a key and collect the right most node before the key at each level.
      *
      * @param key The key to search for.
+     * @param predecessors Populated with the predecessor at each level.  Each writer supplies its own so
+     *                     concurrent writers do not share state.
      * @return The bottom-most SkipNode if the key is found, otherwise null.
      */
-    protected open fun searchAndCollectPredecessors(key: K): SkipNode? {
-        for (i in update.indices) update[i] = null
-
+    protected open fun searchAndCollectPredecessors(key: K, predecessors: Array<SkipNode?>): SkipNode? {
         var currentNodeAtCurrentLevel: SkipNode = this.head ?: return null
 
         val headLevel = currentNodeAtCurrentLevel.level.toInt()
@@ -198,7 +453,7 @@ abstract class AbstractSkipList<K, V>(
                     currentNodeAtCurrentLevel = rightNode
                 } else break
             }
-            update[level] = currentNodeAtCurrentLevel
+            predecessors[level] = currentNodeAtCurrentLevel
 
             if (level > 0) {
                 val downNodePosition = currentNodeAtCurrentLevel.down
@@ -211,7 +466,7 @@ abstract class AbstractSkipList<K, V>(
             }
         }
 
-        val predecessorAtLevel0 = update[0]
+        val predecessorAtLevel0 = predecessors[0]
 
         if (predecessorAtLevel0 != null && predecessorAtLevel0.right > 0L) {
             val candidateNodePosition = predecessorAtLevel0.right
@@ -262,35 +517,51 @@ abstract class AbstractSkipList<K, V>(
     /**
      * Remove The Key and value from the Map.
      *
+     * The tower is unlinked while holding the link lock.  The bottom node loses its left link so a concurrent update
+     * can tell the node is no longer linked.  It also loses its record and key so a reader still holding it finds
+     * neither.
+     *
      * @param key Key Identifier
      * @return The value that was removed.  Null if it does not exist
      * @since 1.2.0
      */
-    override fun remove(key: K): V? {
-        val nodeToDeleteBottomMost = searchAndCollectPredecessors(key)
+    override fun remove(key: K): V? = reading { removeRecord(key) }
 
-        if (nodeToDeleteBottomMost != null &&
-            nodeToDeleteBottomMost.isRecord &&
-            isEqual(key, nodeToDeleteBottomMost.getKey(records, storeKeyWithinNode, keyType))
-        ) {
-            val returnValue: V? = nodeToDeleteBottomMost.getRecord(records)
+    /**
+     * Unlink and release a record.  This must be invoked while reading.
+     *
+     * @see remove
+     */
+    private fun removeRecord(key: K): V? {
+        val predecessors = arrayOfNulls<SkipNode?>(MAX_LEVEL)
+        var nodePosition = 0L
+
+        val removed = linkLock.withLock {
+            val node = searchAndCollectPredecessors(key, predecessors)
+
+            if (node == null ||
+                !node.isRecord ||
+                !isEqual(key, node.getKey(records, storeKeyWithinNode, keyType))
+            ) return@withLock null
 
             for (i in 0..this.head!!.level.toInt()) {
-                val predecessorAtLevelI = update[i] ?: continue
-
-                val nodeAfterPredecessorPos = predecessorAtLevelI.right
-                if (nodeAfterPredecessorPos > 0L) {
-                    val nodeToDeleteAtLevelI = findNodeAtPosition(nodeAfterPredecessorPos)
-                    if (nodeToDeleteAtLevelI != null) {
-                        if (isEqual(key, nodeToDeleteAtLevelI.getKey(records, storeKeyWithinNode, keyType))) {
-                            predecessorAtLevelI.setRight(fileStore, nodeToDeleteAtLevelI.right)
-                            updateNodeCache(predecessorAtLevelI)
-                            if (nodeToDeleteAtLevelI.right > 0L) {
-                                val successorNode = findNodeAtPosition(nodeToDeleteAtLevelI.right)
-                                if (successorNode != null) {
-                                    successorNode.setLeft(fileStore, predecessorAtLevelI.position)
-                                    updateNodeCache(successorNode)
-                                }
+                val predecessorAtLevelI = predecessors[i] ?: continue
+
+                mutate(predecessorAtLevelI) { predecessor ->
+                    val nodeAfterPredecessorPos = predecessor.right
+                    if (nodeAfterPredecessorPos <= 0L)
+                        return@mutate
+                    val nodeToDeleteAtLevelI = findNodeAtPosition(nodeAfterPredecessorPos) ?: return@mutate
+                    if (!isEqual(key, nodeToDeleteAtLevelI.getKey(records, storeKeyWithinNode, keyType)))
+                        return@mutate
+
+                    predecessor.setRight(fileStore, nodeToDeleteAtLevelI.right)
+                    updateNodeCache(predecessor)
+                    if (nodeToDeleteAtLevelI.right > 0L) {
+                        findNodeAtPosition(nodeToDeleteAtLevelI.right)?.let { successor ->
+                            mutate(successor) {
+                                it.setLeft(fileStore, predecessor.position)
+                                updateNodeCache(it)
                             }
                         }
                     }
@@ -306,18 +577,44 @@ abstract class AbstractSkipList<K, V>(
                 currentHead = this.head!!
             }
 
-            decrementSize()
-            updateKeyCache(key)
-            return returnValue
-        }
+            // Mark the node as removed so a concurrent update does not write to it.  An update already in progress
+            // finishes first so its value is the one released.  The record and key pointers are cleared before they
+            // are released so the node never references an extent that may be reused.
+            recordLock(node).withLock {
+                mutate(node) { removedNode ->
+                    val value: V? = getRecordValue(removedNode)
+                    val valueLocation = removedNode.record
+                    val keyLocation = if (storeKeyWithinNode) 0L else removedNode.key
+                    removedNode.setRecord(fileStore, 0L)
+                    removedNode.setLeft(fileStore, 0L)
+                    if (keyLocation > 0L)
+                        removedNode.setKey(fileStore, 0L)
+                    updateNodeCache(removedNode)
+                    cache.removeRecord(cacheOwner, removedNode.position)
+                    nodePosition = removedNode.position
+                    Triple(value, valueLocation, keyLocation)
+                }
+            }
+        } ?: return null
 
-        return null
+        val (returnValue, valueLocation, keyLocation) = removed
+
+        decrementSize()
+        updateKeyCache(key)
+
+        // Release the value and key.  The key is shared by every node within the tower so it is only released once.
+        if (valueLocation > 0L)
+            release(valueLocation, nodePosition)
+        if (keyLocation > 0L)
+            release(keyLocation)
+
+        return returnValue
     }
 
     /**
      * Get value from map
      */
-    override fun get(key: K): V? = find(key.castTo(keyType) as K)?.getRecord(records)
+    override fun get(key: K): V? = reading { find(key.castTo(keyType) as K)?.let { getRecordValue<V>(it) } }
 
     /**
      * Find matching value.  This is different than nearest because it will return null
@@ -386,7 +683,7 @@ abstract class AbstractSkipList<K, V>(
     }
 
     override fun clearCache() {
-        nodeCache.clear()
+        cache.invalidate(cacheOwner)
     }
 
     /**
@@ -402,7 +699,10 @@ abstract class AbstractSkipList<K, V>(
     companion object {
         private fun <K> isGreater(key: K, key2: K): Boolean = key2.forceCompare(key, QueryCriteriaOperator.GREATER_THAN)
         private fun <K> isEqual(key: K, key2: K): Boolean = key.forceCompare(key2, QueryCriteriaOperator.EQUAL)
-        private fun coinToss() = Math.random() < 0.3
+        private fun coinToss() = ThreadLocalRandom.current().nextDouble() < 0.3
+
+        private const val MAX_LEVEL = 34
+        private const val RECORD_LOCK_STRIPES = 64
 
         fun Any?.cast(type: Class<*>): Any? {
             val kotlinClass: KClass<*> = type.kotlin
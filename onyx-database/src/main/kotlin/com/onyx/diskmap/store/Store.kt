@@ -79,6 +79,25 @@ interface Store {
      */
     fun allocate(size: Int): Long
 
+    /**
+     * Release a previously allocated extent so that it may be re-used by a subsequent allocation.
+     *
+     * @param position Start of the extent
+     * @param size Size of the extent in bytes
+     * @since 3.9.10
+     */
+    fun free(position: Long, size: Int)
+
+    /**
+     * Relocate an object written with [writeObject] towards the front of the store if there is a free extent that
+     * can hold it.
+     *
+     * @param position Current location of the object
+     * @return The new location of the object or the same position if it was not moved
+     * @since 3.9.10
+     */
+    fun relocateObject(position: Long): Long
+
     /**
      * Getter for file longSize
      *
@@ -130,7 +149,14 @@ interface Store {
      */
     fun writeObject(value:Any?): Long {
         if (value == null) {
-            return this.allocate(Integer.BYTES)
+            // The extent may have been re-used so the empty size prefix must be written explicitly
+            val position = this.allocate(Integer.BYTES)
+            BufferPool.withIntBuffer {
+                it.putInt(0)
+                it.rewind()
+                this.write(it, position)
+            }
+            return position
         } else {
             val stream = BufferStream()
             stream.putObject(value, context)
@@ -152,6 +178,61 @@ interface Store {
         }
     }
 
+    /**
+     * Write several objects to the store.  Each is written the same as [writeObject] but they are allocated as one
+     * contiguous extent and written at once.  Each object can still be released on its own.
+     *
+     * @param values Values to append to the store
+     * @return Position of each value in the same order
+     * @since 3.9.10
+     */
+    fun writeObjects(values: List<Any?>): LongArray {
+        val positions = LongArray(values.size)
+        if (values.isEmpty())
+            return positions
+
+        val serialized = values.map { value ->
+            if (value == null) null else BufferStream().also { it.putObject(value, context); it.flip() }
+        }
+
+        val totalSize = serialized.sumOf { (it?.byteBuffer?.limit() ?: 0) + Integer.BYTES }
+        val firstPosition = this.allocate(totalSize)
+        BufferPool.allocateAndLimit(totalSize) { buffer ->
+            serialized.forEachIndexed { index, stream ->
+                positions[index] = firstPosition + buffer.position()
+                if (stream == null) {
+                    buffer.putInt(0)
+                } else {
+                    withBuffer(stream.byteBuffer) { valueBuffer ->
+                        buffer.putInt(valueBuffer.limit())
+                        buffer.put(valueBuffer)
+                    }
+                }
+            }
+            buffer.flip()
+            this.write(buffer, firstPosition)
+        }
+        return positions
+    }
+
     fun readObject(position: Long, size: Int): BufferStream? =
             read(position, size)
+
+    /**
+     * Release an object that was written with [writeObject].  The size prefix is used to determine
+     * how many bytes the object occupies.
+     *
+     * @param position Position of the object within the store
+     * @since 3.9.10
+     */
+    fun freeObject(position: Long) {
+        if (position <= 0) return
+        val size = BufferPool.withIntBuffer {
+            this.read(it, position)
+            it.rewind()
+            it.int
+        }
+        if (size >= 0)
+            free(position, size + Integer.BYTES)
+    }
 }
\ No newline at end of file
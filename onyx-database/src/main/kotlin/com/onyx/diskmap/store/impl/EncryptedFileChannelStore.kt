@@ -66,6 +66,15 @@ class EncryptedFileChannelStore(filePath: String, context: SchemaContext, delete
         }
     }
 
+    /**
+     * Write several values.  Each value is encrypted on its own so they are written individually.
+     *
+     * @param values Values to write
+     * @return Location of each value
+     * @since 3.9.10
+     */
+    override fun writeObjects(values: List<Any?>): LongArray = LongArray(values.size) { writeObject(values[it]) }
+
     /**
      * Read an encrypted entity's data
      *
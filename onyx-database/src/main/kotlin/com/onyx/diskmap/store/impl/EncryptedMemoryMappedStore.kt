@@ -64,6 +64,15 @@ class EncryptedMemoryMappedStore (filePath: String, context: SchemaContext, dele
         }
     }
 
+    /**
+     * Write several values.  Each value is encrypted on its own so they are written individually.
+     *
+     * @param values Values to write
+     * @return Location of each value
+     * @since 3.9.10
+     */
+    override fun writeObjects(values: List<Any?>): LongArray = LongArray(values.size) { writeObject(values[it]) }
+
     /**
      * Read an encrypted entity's data
      *
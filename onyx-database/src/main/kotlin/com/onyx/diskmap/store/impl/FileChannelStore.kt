@@ -46,6 +46,9 @@ open class FileChannelStore() : Store {
     protected var contextId: String? = null
     private var fileSizeCounter: AtomicCounter = DefaultAtomicCounter(0)
 
+    // Extents that have been released and can be handed out again by allocate
+    protected val freeSpace = FreeSpaceList()
+
     constructor(filePath: String = "", context: SchemaContext? = null, deleteOnClose: Boolean = false) : this() {
         this.bufferSliceSize = if (deleteOnClose || isSmallDevice) SMALL_FILE_SLICE_SIZE else LARGE_FILE_SLICE_SIZE
         this.deleteOnClose = deleteOnClose
@@ -55,6 +58,8 @@ open class FileChannelStore() : Store {
 
         this.open(filePath = filePath)
         this.determineSize()
+        if (!deleteOnClose)
+            freeSpace.read(freeSpaceFile, fileSizeCounter.get())
     }
 
     /**
@@ -62,6 +67,20 @@ open class FileChannelStore() : Store {
      */
     override fun getFileSize(): Long = fileSizeCounter.get()
 
+    /**
+     * Amount of bytes within the store that have been released and are available for re-use
+     *
+     * @since 3.9.10
+     */
+    val freeBytes: Long
+        get() = freeSpace.freeBytes
+
+    /**
+     * File the free extents are persisted to when the store is closed
+     */
+    private val freeSpaceFile: File
+        get() = File("$filePath$FREE_SPACE_EXTENSION")
+
     /**
      * Open the data file
      *
@@ -132,7 +151,10 @@ open class FileChannelStore() : Store {
      * @return Whether the file was closed successfully.
      */
     override fun close(): Boolean = try {
-        if (!deleteOnClose) {
+        if (!deleteOnClose && this.channel!!.isOpen) {
+            freeSpace.write(freeSpaceFile)
+            writeFileSize(fileSizeCounter.get())
+            truncate()
             this.channel!!.force(true)
         }
         this.channel!!.close()
@@ -252,6 +274,14 @@ open class FileChannelStore() : Store {
     override fun allocate(size: Int): Long = withLongBuffer {
         if (this !is InMemoryStore && !channel!!.isOpen)
             throw InitializationException(InitializationException.DATABASE_SHUTDOWN)
+
+        // Prefer re-using a released extent over growing the file
+        if (!freeSpace.isEmpty()) {
+            val reused = freeSpace.reserve(size)
+            if (reused > 0)
+                return@withLongBuffer reused
+        }
+
         val newFileSize = fileSizeCounter.getAndAdd(size)
         it.putLong(newFileSize + size)
         it.rewind()
@@ -259,12 +289,87 @@ open class FileChannelStore() : Store {
         return@withLongBuffer newFileSize
     }
 
+    /**
+     * Release an extent so it can be re-used.  If the extent is at the end of the store, the store is trimmed
+     * rather than keeping track of it.
+     *
+     * @param position Start of the extent
+     * @param size Size of the extent in bytes
+     * @since 3.9.10
+     */
+    override fun free(position: Long, size: Int) {
+        if (position < Long.SIZE_BYTES || size <= 0) return
+        synchronized(freeSpace) {
+            freeSpace.release(position, size)
+
+            val end = fileSizeCounter.get()
+            val start = freeSpace.trailingExtentStart(end)
+            if (start > 0 && fileSizeCounter.compareAndSet(end, start)) {
+                freeSpace.forget(start)
+                writeFileSize(start)
+            }
+        }
+    }
+
+    /**
+     * Relocate an object towards the front of the store.  The bytes are copied as is so this works the same
+     * for encrypted stores.  The caller is responsible for updating its pointer and then releasing the old location.
+     *
+     * @param position Current location of the object
+     * @return The new location of the object or the same position if there was no room for it
+     * @since 3.9.10
+     */
+    override fun relocateObject(position: Long): Long {
+        if (position <= 0 || freeSpace.isEmpty()) return position
+
+        val size = BufferPool.withIntBuffer {
+            this.read(it, position)
+            it.rewind()
+            it.int
+        }
+        if (size < 0) return position
+
+        val length = size + Integer.BYTES
+        val destination = freeSpace.reserve(length, position)
+        if (destination < 0) return position
+
+        BufferPool.allocateAndLimit(length) {
+            this.read(it, position)
+            it.flip()
+            this.write(it, destination)
+        }
+        return destination
+    }
+
+    /**
+     * Write the logical size of the store to the first 8 bytes
+     *
+     * @param size Size to record
+     */
+    private fun writeFileSize(size: Long) = withLongBuffer {
+        it.putLong(size)
+        it.rewind()
+        this.write(it, 0)
+    }
+
+    /**
+     * Truncate the file to its logical size.  The logical size can shrink when trailing extents are released.
+     *
+     * @since 3.9.10
+     */
+    protected open fun truncate() {
+        val size = fileSizeCounter.get()
+        if (channel!!.size() > size)
+            channel!!.truncate(size)
+    }
+
     /**
      * Delete File
      */
     override fun delete() {
         val dataFile = File(filePath)
         dataFile.delete()
+        freeSpaceFile.delete()
     }
 
     /**
@@ -311,6 +416,7 @@ open class FileChannelStore() : Store {
      * @since 1.3.0
      */
     override fun reset() {
+        freeSpace.clear()
         fileSizeCounter.set(0)
         this.allocate(8)
     }
@@ -321,6 +427,7 @@ open class FileChannelStore() : Store {
     companion object {
         const val SMALL_FILE_SLICE_SIZE = 1024 * 128 // 128K
         var LARGE_FILE_SLICE_SIZE = 1024 * 1024 * 4 // 4MB
+        const val FREE_SPACE_EXTENSION = ".free"
 
         val isSmallDevice:Boolean by lazy {
             try {
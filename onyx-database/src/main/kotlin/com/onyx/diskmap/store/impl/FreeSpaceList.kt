@@ -0,0 +1,236 @@
+package com.onyx.diskmap.store.impl
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.util.*
+
+/**
+ * Tracks extents within a [com.onyx.diskmap.store.Store] that have been released and can be handed out again
+ * by the allocator.
+ *
+ * Extents are kept in a position ordered map so that neighbours can be coalesced when released and so the trailing
+ * extent can be trimmed off the end of the store.  For allocation they are also bucketed into power of two size
+ * classes.  Bucket entries are validated lazily, so an extent that has since been merged or consumed is just
+ * skipped over.
+ *
+ * An extent is always split exactly to the requested size.  This keeps the invariant that a record written with
+ * [com.onyx.diskmap.store.Store.writeObject] occupies exactly its size prefix plus the prefix itself so it can be
+ * released later without any additional bookkeeping.
+ *
+ * @since 3.9.10
+ */
+class FreeSpaceList {
+
+    private val extents = TreeMap<Long, Int>()
+    private val sizeClasses = Array(SIZE_CLASSES) { ArrayDeque<Long>() }
+
+    @Volatile
+    private var extentCount = 0
+
+    /**
+     * Total amount of bytes that are free and can be re-used
+     */
+    @Volatile
+    var freeBytes = 0L
+        private set
+
+    /**
+     * Whether there are no free extents.  This is intentionally not synchronized so the allocator can skip the
+     * free list entirely when there is nothing to re-use.
+     */
+    fun isEmpty(): Boolean = extentCount == 0
+
+    /**
+     * Release an extent so it can be re-used.  The extent is merged with any adjacent free extents.
+     *
+     * @param position Start of the extent
+     * @param size Number of bytes within the extent
+     */
+    @Synchronized
+    fun release(position: Long, size: Int) {
+        if (size <= 0 || position <= 0) return
+
+        var start = position
+        var length = size.toLong()
+
+        val previous = extents.floorEntry(position - 1)
+        if (previous != null && previous.key + previous.value == position && length + previous.value <= Int.MAX_VALUE) {
+            remove(previous.key, previous.value)
+            start = previous.key
+            length += previous.value
+        }
+
+        val next = extents[position + size]
+        if (next != null && length + next <= Int.MAX_VALUE) {
+            remove(position + size, next)
+            length += next
+        }
+
+        add(start, length.toInt())
+    }
+
+    /**
+     * Reserve an extent from the free list
+     *
+     * @param size Amount of bytes required
+     * @param below Only return an extent that starts before this position.  This is used when relocating records
+     *              so they only ever move towards the front of the store.
+     * @return Position of the reserved extent or -1 if none is available
+     */
+    @Synchronized
+    fun reserve(size: Int, below: Long = Long.MAX_VALUE): Long {
+        if (extentCount == 0 || size <= 0) return -1L
+
+        // When relocating, the lowest extent that fits is preferred so that the end of the store frees up
+        if (below != Long.MAX_VALUE) {
+            var scanned = 0
+            for ((position, length) in extents) {
+                if (position >= below || scanned++ >= MAX_POSITION_SCAN) break
+                if (length < size) continue
+                remove(position, length)
+                if (length > size)
+                    add(position + size, length - size)
+                return position
+            }
+        }
+
+        for (sizeClass in sizeClassOf(size) until SIZE_CLASSES) {
+            val bucket = sizeClasses[sizeClass]
+            val iterator = bucket.iterator()
+            var scanned = 0
+            while (iterator.hasNext() && scanned < MAX_BUCKET_SCAN) {
+                val position = iterator.next()
+                val length = extents[position]
+
+                // Stale entry.  It was either merged or consumed.  These do not count towards the scan limit since
+                // they are discarded.
+                if (length == null || sizeClassOf(length) != sizeClass) {
+                    iterator.remove()
+                    continue
+                }
+
+                if (length < size || position >= below) {
+                    scanned++
+                    continue
+                }
+
+                iterator.remove()
+                remove(position, length)
+                if (length > size)
+                    add(position + size, length - size)
+                return position
+            }
+        }
+
+        return -1L
+    }
+
+    /**
+     * Find the trailing extent if it ends at the end of the store.
+     *
+     * @param end Current logical end of the store
+     * @return Start of the trailing extent or -1 if the last extent does not end at the end of the store
+     */
+    @Synchronized
+    fun trailingExtentStart(end: Long): Long {
+        val last = extents.lastEntry() ?: return -1L
+        return if (last.key + last.value == end) last.key else -1L
+    }
+
+    /**
+     * Drop the extent starting at the position.  Used after the store has been trimmed.
+     *
+     * @param position Start of the extent to forget
+     */
+    @Synchronized
+    fun forget(position: Long) {
+        val length = extents[position] ?: return
+        remove(position, length)
+    }
+
+    /**
+     * Forget all free extents
+     */
+    @Synchronized
+    fun clear() {
+        extents.clear()
+        sizeClasses.forEach { it.clear() }
+        extentCount = 0
+        freeBytes = 0L
+    }
+
+    /**
+     * Persist the free extents so they survive a restart.
+     *
+     * @param file File to write to
+     */
+    @Synchronized
+    fun write(file: File) {
+        if (extents.isEmpty()) {
+            file.delete()
+            return
+        }
+        DataOutputStream(file.outputStream().buffered()).use { stream ->
+            stream.writeInt(extents.size)
+            extents.forEach { (position, length) ->
+                stream.writeLong(position)
+                stream.writeInt(length)
+            }
+        }
+    }
+
+    /**
+     * Read free extents that were previously persisted.  The file is removed afterwards so that a crash can never
+     * cause stale extents to be handed out.  Worst case we leak space which can be reclaimed by compaction.
+     *
+     * @param file File to read from
+     * @param end Logical end of the store.  Extents beyond this are ignored.
+     */
+    @Synchronized
+    fun read(file: File, end: Long) {
+        if (!file.exists()) return
+        try {
+            DataInputStream(file.inputStream().buffered()).use { stream ->
+                repeat(stream.readInt()) {
+                    val position = stream.readLong()
+                    val length = stream.readInt()
+                    if (position + length <= end)
+                        release(position, length)
+                }
+            }
+        } catch (e: IOException) {
+            clear()
+        } finally {
+            file.delete()
+        }
+    }
+
+    private fun add(position: Long, length: Int) {
+        extents[position] = length
+        sizeClasses[sizeClassOf(length)].add(position)
+        extentCount++
+        freeBytes += length
+    }
+
+    /**
+     * Bucket entries are not removed here.  They are discarded the next time they are scanned.
+     */
+    private fun remove(position: Long, length: Int) {
+        extents.remove(position)
+        extentCount--
+        freeBytes -= length
+    }
+
+    companion object {
+        private const val SIZE_CLASSES = 32
+        private const val MAX_BUCKET_SCAN = 64
+        private const val MAX_POSITION_SCAN = 1024
+
+        /**
+         * Size class is the floor of log2 of the size.  Every extent in a bucket is at least 2^class bytes.
+         */
+        private fun sizeClassOf(size: Int): Int = 31 - Integer.numberOfLeadingZeros(size)
+    }
+}
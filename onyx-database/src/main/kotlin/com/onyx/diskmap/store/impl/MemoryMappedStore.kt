@@ -132,6 +132,9 @@ open class MemoryMappedStore : FileChannelStore, Store {
      * @return True if the store was closed successfully, false otherwise.
      */
     override fun close(): Boolean {
+        // Close first, closing may still write the file size and needs the mapped slices
+        val closed = super.close()
+
         val keysForThisInstance = cache.keys
             .filter { it.fileId == fileId }
 
@@ -139,7 +142,7 @@ open class MemoryMappedStore : FileChannelStore, Store {
             cache.remove(keyToRemove)
         }
 
-        return super.close()
+        return closed
     }
 
     /**
@@ -150,6 +153,11 @@ open class MemoryMappedStore : FileChannelStore, Store {
         if (!deleteOnClose) super.commit()
     }
 
+    /**
+     * Memory mapped files are never truncated.  Truncating a file that still has live mappings is unsafe.
+     */
+    override fun truncate() = Unit
+
     /**
      * Ensures that the file channel is open.
      * @throws InitializationException if the channel is not open.
@@ -0,0 +1,15 @@
+package com.onyx.exception
+
+/**
+ * Thrown when a batch of persistence manager operations can not be executed
+ *
+ * @since 3.9.10
+ */
+class BatchException @JvmOverloads constructor(message: String? = "") : OnyxException(message) {
+    companion object {
+        const val UNKNOWN_OPERATION = "The batch operation is not a persistence manager method: "
+        const val NESTED_BATCH = "A batch can not contain another batch."
+        const val UNSUPPORTED_OPERATION = "The persistence manager method can not be batched: "
+        const val UNSUPPORTED_ATOMIC_OPERATION = "Atomic batches may only read, save and delete entities.  Unable to undo: "
+    }
+}
@@ -7,5 +7,6 @@ class StreamException @JvmOverloads constructor(message: String = "") : OnyxExce
     companion object {
         const val CANNOT_INSTANTIATE_STREAM = "Unable to instantiate stream.  Define a valid constructor."
         const val UNSUPPORTED_FUNCTION_ALTERNATIVE = "Unable to instantiate stream.  This function is unsupported."
+        const val CURSOR_CLOSED = "The cursor is closed or has expired."
     }
 }
@@ -28,5 +28,6 @@ class TransactionException @JvmOverloads constructor(message: String? = "") : On
         const val TRANSACTION_FAILED_TO_READ_FILE = "Failed to read from a transaction file"
         const val TRANSACTION_FAILED_TO_RECOVER_FROM_DIRECTORY = "Failed to recover database.  The WAL directory does not exist or is not a directory"
         const val TRANSACTION_FAILED_TO_EXECUTE = "Failed to execute transaction."
+        const val TRANSACTION_STORE_CLOSED = "The transaction store is closed"
     }
 }
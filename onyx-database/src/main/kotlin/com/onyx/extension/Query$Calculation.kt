@@ -12,7 +12,6 @@ import com.onyx.extension.identifier
 import com.onyx.interactors.record.data.Reference
 import com.onyx.persistence.query.QueryCriteriaOperator
 import com.onyx.persistence.query.resolveFullTextQuery
-import com.onyx.persistence.query.relationship
 import com.onyx.interactors.record.FullTextRecordInteractor
 
 /**
@@ -28,42 +27,35 @@ import com.onyx.interactors.record.FullTextRecordInteractor
  * @throws OnyxException Cannot hydrate or pull an attribute from an entity
  *
  * @since 1.3.0 Simplified query criteria management
+ * @since 3.9.10 Criteria are checked by a compiled evaluator rather than synchronizing on the query
  */
 @Throws(OnyxException::class)
-fun Query.meetsCriteria(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext, descriptor: EntityDescriptor): Boolean = synchronized(this) {
+fun Query.meetsCriteria(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext, descriptor: EntityDescriptor): Boolean =
+    criteriaEvaluator(descriptor).meetsCriteria(entity, entityReference, context, descriptor)
 
-    var subCriteria: Boolean
-
-    // Iterate through
-    for(it in this.getAllCriteria()) {
-        if(it.flip)
-            continue
-        else if (it.isRelationship!!) {
-            subCriteria = if(descriptor.relationships.contains(it.relationship)) {
-                relationshipMeetsCriteria(entity, entityReference, it, context)
-            } else {
-                graphMeetsCriteria(entity, it)
-            }
-        }
-        else {
-            // Compare operator for attribute value
-            if (it.attributeDescriptor == null)
-                it.attributeDescriptor = descriptor.attributes[it.attribute!!]
-
-            val attribute = if (it.attributeDescriptor != null) {
-                entity?.get<Any?>(context = context, descriptor = descriptor, name = it.attribute!!)
-            } else {
-                entity?.get<Any?>(it.attribute!!) // Use Kotlin property accessors
-            }
-
-            val comparableAttribute = attribute.normalizeForComparison(it.operator, context)
-            subCriteria = it.value.compare(comparableAttribute, it.operator!!)
-        }
-        it.meetsCriteria = subCriteria
+/**
+ * Attribute meets criteria.  Compare the value of an entity attribute with the criteria value.
+ *
+ * @param entity Entity to check for criteria
+ * @param criteria Criteria to check
+ * @param isAttribute Whether the attribute is defined within the entity descriptor.  Otherwise, the Kotlin property
+ *                    accessors are used.
+ * @param context Schema context used to pull entity descriptors, and such
+ * @param descriptor Quick reference to the entities descriptor
+ * @return Whether the attribute value has met the criteria
+ *
+ * @since 3.9.10 Split from meetsCriteria so criteria can be checked concurrently
+ */
+@Throws(OnyxException::class)
+internal fun attributeMeetsCriteria(entity: IManagedEntity?, criteria: QueryCriteria, isAttribute: Boolean, context: SchemaContext, descriptor: EntityDescriptor): Boolean {
+    val attribute = if (isAttribute) {
+        entity?.get<Any?>(context = context, descriptor = descriptor, name = criteria.attribute!!)
+    } else {
+        entity?.get<Any?>(criteria.attribute!!) // Use Kotlin property accessors
     }
 
-    this.criteria ?: return@synchronized true
-    return calculateCriteriaMet(this.criteria!!)
+    val comparableAttribute = attribute.normalizeForComparison(criteria.operator, context)
+    return criteria.value.compare(comparableAttribute, criteria.operator!!)
 }
 
 private fun Query.resolveFullTextMatches(
@@ -82,35 +74,6 @@ private fun Query.resolveFullTextMatches(
         .keys
 }
 
-/**
- * Calculates the result of the parent criteria and correlates
- * its set of children criteria.  A pre-requisite to invoking this method
- * is that all of the criteria have the meet criteria field set and
- * it does NOT take into account the not modifier in the pre-requisite.
- *
- *
- * @param criteria Root criteria to check.  This maintains the order of operations
- * @return Whether all the criteria are met taking into account the order of operations
- * and the not() modifier
- *
- * @since 1.3.0 Added to enhance insertion based criteria checking
- */
-private fun Query.calculateCriteriaMet(criteria: QueryCriteria): Boolean {
-    var meetsCriteria = criteria.meetsCriteria
-
-    if (criteria.subCriteria.size > 0) {
-        criteria.subCriteria.forEach {
-            if(it.flip)
-                return@forEach
-            meetsCriteria = if (it.isOr) { calculateCriteriaMet(it) || meetsCriteria } else { calculateCriteriaMet(it) && meetsCriteria }
-        }
-    }
-
-    if (criteria.isNot)
-        meetsCriteria = !meetsCriteria
-    return meetsCriteria
-}
-
 /**
  * Relationship meets criteria.  This method will hydrate a relationship for an entity and
  * check its criteria to ensure the criteria is met
@@ -134,7 +97,7 @@ private fun Query.calculateCriteriaMet(criteria: QueryCriteria): Boolean {
  * to do a quick reference to see if newly saved entities meet the criteria
  */
 @Throws(OnyxException::class)
-private fun relationshipMeetsCriteria(entity: IManagedEntity?, entityReference: Reference, criteria: QueryCriteria, context: SchemaContext): Boolean {
+internal fun relationshipMeetsCriteria(entity: IManagedEntity?, entityReference: Reference, criteria: QueryCriteria, context: SchemaContext): Boolean {
     var meetsCriteria = false
     val operator = criteria.operator
 
@@ -179,7 +142,7 @@ private fun relationshipMeetsCriteria(entity: IManagedEntity?, entityReference:
  *
  */
 @Throws(OnyxException::class)
-private fun graphMeetsCriteria(entity: IManagedEntity?, criteria: QueryCriteria): Boolean {
+internal fun graphMeetsCriteria(entity: IManagedEntity?, criteria: QueryCriteria): Boolean {
     val value = entity.get<Any?>(criteria.attribute!!)
     if (value is List<*>) {
         return value.any {
@@ -102,3 +102,18 @@ fun Query.isDefaultQuery(descriptor: EntityDescriptor): Boolean = this.criteria
         || (this.criteria!!.subCriteria.size <= 0 && this.criteria!!.operator === QueryCriteriaOperator.NOT_NULL && this.criteria!!.attribute == descriptor.identifier!!.name)
         || (this.criteria!!.subCriteria.size <= 0 && this.criteria!!.operator === QueryCriteriaOperator.NOT_EQUAL && this.criteria!!.value == null && this.criteria!!.attribute == descriptor.identifier!!.name)
 
+
+/**
+ * Partitions the query spans along with their descriptor
+ *
+ * @param context Schema context
+ * @param descriptor Descriptor of the entity type being queried
+ * @return Partition id and descriptor of each partition
+ * @since 3.9.10
+ */
+@Throws(OnyxException::class)
+fun Query.partitionDescriptors(context: SchemaContext, descriptor: EntityDescriptor): List<Pair<Long, EntityDescriptor>> = when {
+    !descriptor.hasPartition -> listOf(0L to descriptor)
+    partition === QueryPartitionMode.ALL -> context.getAllPartitions(entityType!!).map { it.index to context.getDescriptorForEntity(entityType, it.value) }
+    else -> listOf((context.getPartitionWithValue(entityType!!, partition)?.index ?: 0L) to descriptor)
+}
@@ -153,7 +153,10 @@ open class DefaultQueryCacheInteractor(context: SchemaContext) : QueryCacheInter
             // The query has already been cached.  Return the results from the cache
             if (cachedResults?.references != null) {
                 results = QueryCollectorFactory.create(context, context.getBaseDescriptorForEntity(query.entityType!!)!!, query)
-                results.setReferenceSet(cachedResults.references!!)
+                results.use {
+                    it.setReferenceSet(cachedResults.references!!)
+                    it.finalizeResults()
+                }
             } else {
                 // There were no cached results, load them from the store
                 results = body.invoke()
@@ -2,6 +2,7 @@ package com.onyx.interactors.index
 
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.exception.OnyxException
+import com.onyx.interactors.index.data.IndexStatistics
 
 /**
  * Created by timothy.osborn on 2/10/15.
@@ -20,6 +21,16 @@ interface IndexInteractor {
     @Throws(OnyxException::class)
     fun save(indexValue: Any?, oldReferenceId: Long, newReferenceId: Long)
 
+    /**
+     * Save several index keys.  The result is the same as saving each in order.
+     *
+     * @param entries Index value, old entity reference and new entity reference of each save
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun saveAll(entries: List<Triple<Any?, Long, Long>>) = entries.forEach { (indexValue, oldReferenceId, newReferenceId) -> save(indexValue, oldReferenceId, newReferenceId) }
+
     /**
      * Delete an index key with a record reference
      *
@@ -37,6 +48,41 @@ interface IndexInteractor {
     @Throws(OnyxException::class)
     fun findAll(indexValue: Any?): Map<Long, *>
 
+    /**
+     * Count the references matching an index value
+     *
+     * @param indexValue Index value to count references for
+     * @return Number of references matching that index value
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun countAll(indexValue: Any?): Long = findAll(indexValue).size.toLong()
+
+    /**
+     * Cardinality and value distribution of the index used to estimate the cost of a query.
+     *
+     * @return Index statistics or null if the index does not keep them
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun statistics(): IndexStatistics? = null
+
+    /**
+     * Walk the references in index value order.  The references of each index value are passed together.  References
+     * without a value come before every other value the same way query orders sort null values.
+     *
+     * @param descending Walk from the greatest index value to the least
+     * @param filter References to include.  Null includes every reference.
+     * @param consumer Invoked with the references of each index value.  Return false to stop.
+     * @return False without invoking the consumer if the index can not be walked in order
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun walkInOrder(descending: Boolean, filter: ((Long) -> Boolean)?, consumer: (Set<Long>) -> Boolean): Boolean = false
+
     /**
      * Find all the references above and perhaps equal to the key parameter
      * @param indexValue The key to compare.  This must be comparable.  It is only sorted by comparable values
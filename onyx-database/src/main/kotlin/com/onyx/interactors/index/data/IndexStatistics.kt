@@ -0,0 +1,89 @@
+package com.onyx.interactors.index.data
+
+import com.onyx.extension.common.forceCompare
+import com.onyx.persistence.query.QueryCriteriaOperator
+
+/**
+ * Cardinality and value distribution of an index.  The distribution is an equi-depth histogram.  Each bucket ends
+ * with an index value and holds the number of references up to and including that value.
+ *
+ * @param references Number of references within the index
+ * @param distinctValues Number of distinct index values
+ * @param bounds Last index value of each bucket in ascending order
+ * @param cumulativeReferences Number of references up to and including the bound of each bucket
+ * @param modifications Number of index modifications when the statistics were taken
+ *
+ * @since 3.9.10
+ */
+class IndexStatistics(
+    val references: Long,
+    val distinctValues: Long,
+    private val bounds: List<Any>,
+    private val cumulativeReferences: LongArray,
+    val modifications: Long = 0L
+) {
+
+    /**
+     * Average number of references for a single index value
+     */
+    val referencesPerValue: Long
+        get() = if (distinctValues == 0L) 0L else maxOf(1L, references / distinctValues)
+
+    /**
+     * Estimate the number of references whose index value is below and perhaps equal to a value
+     *
+     * @param indexValue Value to compare
+     * @param includeValue Whether to include references equal to the value
+     * @return Estimated number of references
+     */
+    fun estimateBelow(indexValue: Any?, includeValue: Boolean): Long {
+        if (indexValue == null || bounds.isEmpty())
+            return references
+
+        val bucket = bounds.indexOfFirst { compare(it, indexValue) >= 0 }
+        if (bucket < 0)
+            return references
+
+        val previous = if (bucket == 0) 0L else cumulativeReferences[bucket - 1]
+        val current = cumulativeReferences[bucket]
+
+        return when {
+            compare(bounds[bucket], indexValue) == 0 -> if (includeValue) current else maxOf(previous, current - referencesPerValue)
+            else -> previous + (current - previous) / 2
+        }
+    }
+
+    /**
+     * Estimate the number of references whose index value is above and perhaps equal to a value
+     *
+     * @param indexValue Value to compare
+     * @param includeValue Whether to include references equal to the value
+     * @return Estimated number of references
+     */
+    fun estimateAbove(indexValue: Any?, includeValue: Boolean): Long =
+        if (indexValue == null) references else references - estimateBelow(indexValue, !includeValue)
+
+    /**
+     * Estimate the number of references whose index value is within a range
+     *
+     * @param fromValue Start of the range
+     * @param includeFromValue Whether the start is inclusive
+     * @param toValue End of the range
+     * @param includeToValue Whether the end is inclusive
+     * @return Estimated number of references
+     */
+    fun estimateBetween(fromValue: Any?, includeFromValue: Boolean, toValue: Any?, includeToValue: Boolean): Long =
+        maxOf(0L, estimateBelow(toValue, includeToValue) - (if (fromValue == null) 0L else estimateBelow(fromValue, !includeFromValue)))
+
+    companion object {
+
+        /**
+         * Total ordering of index values.  Values that cannot be compared are treated as greater.
+         */
+        private fun compare(first: Any?, second: Any?): Int = when {
+            first.forceCompare(second) -> 0
+            second.forceCompare(first, QueryCriteriaOperator.GREATER_THAN) -> 1
+            else -> -1
+        }
+    }
+}
@@ -4,15 +4,19 @@ import com.onyx.descriptor.EntityDescriptor
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.index.IndexInteractor
+import com.onyx.interactors.index.data.IndexStatistics
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.diskmap.DiskMap
+import com.onyx.diskmap.data.DiskMapEntry
 import com.onyx.diskmap.data.Header
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.extension.get
+import com.onyx.lang.LongHashSet
 import java.lang.ref.WeakReference
 
 import java.util.*
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.collections.HashMap
 
 /**
@@ -31,10 +35,16 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
         get() = context.getDataFile(descriptor)
 
     private val references: DiskMap<Any, Header>// Stores the references for an index key
-        get() = dataFile.getHashMap(indexDescriptor.type, descriptor.entityClass.name + indexDescriptor.name)
+        get() = dataFile.getHashMap(indexDescriptor.type, descriptor.entityClass.name + indexDescriptor.name, indexDescriptor.mapType)
 
     protected open val indexValues: DiskMap<Long, Any>
-        get() = dataFile.getHashMap(Long::class.java, descriptor.entityClass.name + indexDescriptor.name + "indexValues")
+        get() = dataFile.getHashMap(Long::class.java, descriptor.entityClass.name + indexDescriptor.name + "indexValues", indexDescriptor.mapType)
+
+    // Number of references saved or deleted since the interactor was created
+    private val modifications = AtomicLong(0L)
+
+    @Volatile
+    private var cachedStatistics: IndexStatistics? = null
 
     init {
         contextReference = WeakReference(context)
@@ -66,6 +76,87 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
             header
         }
         indexValues[newReferenceId] = indexValue ?: ""
+        modifications.incrementAndGet()
+    }
+
+    /**
+     * Save several index keys.  The references are grouped by index value so the reference map of each value is
+     * opened and written once.  References are put in ascending order so references following the existing ones are
+     * appended.
+     *
+     * @param entries Index value, old entity reference and new entity reference of each save
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    @Synchronized
+    override fun saveAll(entries: List<Triple<Any?, Long, Long>>) {
+        // Index value of each reference once every save is applied in order.  Null if the reference was deleted.
+        val finalValues = HashMap<Long, Any?>()
+        val deletedReferences = HashSet<Long>()
+        entries.forEach { (indexValue, oldReferenceId, newReferenceId) ->
+            if (oldReferenceId > 0) {
+                deletedReferences.add(oldReferenceId)
+                finalValues[oldReferenceId] = null
+            }
+            finalValues[newReferenceId] = indexValue ?: ""
+        }
+
+        val dataFile = dataFile
+        val references = references
+        val indexValues = indexValues
+
+        deleteAll(deletedReferences, dataFile, references, indexValues)
+
+        val referencesByValue = HashMap<Any, MutableList<Long>>()
+        finalValues.forEach { (reference, indexValue) ->
+            if (indexValue != null)
+                referencesByValue.getOrPut(indexValue) { ArrayList() }.add(reference)
+        }
+
+        referencesByValue.forEach { (indexValue, valueReferences) ->
+            valueReferences.sort()
+            references.compute(indexValue) { _, existingHeader ->
+                val header = existingHeader ?: dataFile.newMapHeader()
+                val indexes: DiskMap<Long, Any?> = dataFile.getHashMap(Long::class.java, header)
+                indexes.putAllAndGet(valueReferences.map { it to null })
+                header.firstNode = indexes.reference.firstNode
+                header.position = indexes.reference.position
+                header.recordCount.set(indexes.reference.recordCount.get())
+                header
+            }
+        }
+
+        indexValues.putAllAndGet(finalValues.entries.filter { it.value != null }.sortedBy { it.key }.map { it.key to it.value!! })
+        modifications.addAndGet(entries.size.toLong())
+    }
+
+    /**
+     * Delete several references.  Each index value losing references has its reference map written once.
+     *
+     * @param deletedReferences Entity references
+     * @param dataFile Data file of the index
+     * @param references Reference map header of each index value
+     * @param indexValues Index value of each reference
+     */
+    private fun deleteAll(deletedReferences: Collection<Long>, dataFile: DiskMapFactory, references: DiskMap<Any, Header>, indexValues: DiskMap<Long, Any>) {
+        val deletedByValue = HashMap<Any, MutableList<Long>>()
+        deletedReferences.forEach { reference ->
+            val indexValue = indexValues.remove(reference)
+            if (indexValue != null)
+                deletedByValue.getOrPut(indexValue) { ArrayList() }.add(reference)
+        }
+
+        deletedByValue.forEach { (indexValue, valueReferences) ->
+            references.computeIfPresent(indexValue) { _, header ->
+                val indexes: DiskMap<Long, Any?> = dataFile.getHashMap(Long::class.java, header!!)
+                valueReferences.forEach { indexes.remove(it) }
+                header.firstNode = indexes.reference.firstNode
+                header.position = indexes.reference.position
+                header.recordCount.set(indexes.reference.recordCount.get())
+                header
+            }
+        }
     }
 
     /**
@@ -89,6 +180,7 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
                     header.recordCount.set(indexes.reference.recordCount.get())
                     header
                 }
+                modifications.incrementAndGet()
             }
         }
     }
@@ -107,6 +199,132 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
         return dataFile.getHashMap(Long::class.java, header)
     }
 
+    /**
+     * Count the references matching an index value.  The count is kept within the header of the value's reference
+     * map so the references are not read.
+     *
+     * @param indexValue Index value to count references for
+     * @return Number of references matching that index value
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun countAll(indexValue: Any?): Long = references[indexValue]?.recordCount?.get() ?: 0L
+
+    /**
+     * Cardinality and value distribution of the index.  The statistics are taken by walking the index values in order
+     * and are kept until the number of references saved or deleted since exceeds a ratio of the references.
+     *
+     * @return Index statistics
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun statistics(): IndexStatistics {
+        val statistics = cachedStatistics
+        val modified = modifications.get()
+        if (statistics != null && modified - statistics.modifications <= maxOf(STATISTICS_MIN_MODIFICATIONS, (statistics.references * STATISTICS_STALE_RATIO).toLong()))
+            return statistics
+
+        return buildStatistics(modified).also { cachedStatistics = it }
+    }
+
+    /**
+     * Walk the index values in ascending order and build an equi-depth histogram of their references
+     *
+     * @param modified Number of modifications the statistics reflect
+     * @return Index statistics
+     */
+    private fun buildStatistics(modified: Long): IndexStatistics {
+        val depth = maxOf(1L, indexValues.longSize() / HISTOGRAM_BUCKETS)
+        val bounds = ArrayList<Any>()
+        val cumulativeReferences = ArrayList<Long>()
+        var total = 0L
+        var distinct = 0L
+        var lastValue: Any? = null
+
+        references.entries.forEach {
+            // Null index values are stored as an empty string and never match a range
+            if (it.key == "" && indexDescriptor.type != String::class.java)
+                return@forEach
+
+            total += it.value.recordCount.get()
+            distinct++
+            lastValue = it.key
+            if (total >= (bounds.size + 1) * depth) {
+                bounds.add(it.key)
+                cumulativeReferences.add(total)
+            }
+        }
+
+        if (lastValue != null && bounds.lastOrNull() !== lastValue) {
+            bounds.add(lastValue!!)
+            cumulativeReferences.add(total)
+        }
+
+        return IndexStatistics(total, distinct, bounds, cumulativeReferences.toLongArray(), modified)
+    }
+
+    /**
+     * Walk the references in index value order.  Null index values are saved under an empty string.  Other than for
+     * strings, the empty string is cast to the default value of the type so those references share a value with the
+     * references of the default value.  They are told apart by the value saved for each reference.
+     *
+     * An index rebuilt with null values does not reference those records.  It is only walked while it references
+     * every record.
+     *
+     * @param descending Walk from the greatest index value to the least
+     * @param filter References to include.  Null includes every reference.
+     * @param consumer Invoked with the references of each index value.  Return false to stop.
+     * @return False without invoking the consumer if the index can not be walked in order
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun walkInOrder(descending: Boolean, filter: ((Long) -> Boolean)?, consumer: (Set<Long>) -> Boolean): Boolean {
+        if (indexDescriptor.type !in ORDERED_TYPES)
+            return false
+
+        val dataFile = dataFile
+        val references = references
+        val indexValues = indexValues
+        val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, descriptor.entityClass.name)
+        if (indexValues.longSize() != records.longSize())
+            return false
+
+        fun referencesOf(recordId: Long): Set<Long> {
+            val keys = dataFile.getHashMap<DiskMap<Long, Any?>>(Long::class.java, references.getWithRecID(recordId)!!).keys
+            return if (filter == null) keys else keys.filterTo(LongHashSet(), filter)
+        }
+
+        // Null values share a key with the default value so they are told apart by the value saved for each record
+        val nullRecordId = if (indexDescriptor.type == String::class.java) -1L else references.getRecID("")
+        val nulls = LongHashSet()
+        val defaults = LongHashSet()
+        val isSplit by lazy {
+            if (nullRecordId > 0L) {
+                referencesOf(nullRecordId).forEach {
+                    if (indexValues[it] == "") nulls.add(it) else defaults.add(it)
+                }
+            }
+            true
+        }
+
+        if (!descending && isSplit && nulls.isNotEmpty() && !consumer(nulls))
+            return true
+
+        var isComplete = true
+        references.walk(descending) { _, recordId ->
+            val valueReferences = if (recordId == nullRecordId && isSplit) defaults else referencesOf(recordId)
+            isComplete = valueReferences.isEmpty() || consumer(valueReferences)
+            isComplete
+        }
+
+        if (descending && isComplete && isSplit && nulls.isNotEmpty())
+            consumer(nulls)
+        return true
+    }
+
     /**
      * Find all index references
      *
@@ -131,7 +349,7 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
      */
     @Throws(OnyxException::class)
     override fun findAllAbove(indexValue: Any?, includeValue: Boolean): Set<Long> {
-        val allReferences = HashSet<Long>()
+        val allReferences = LongHashSet()
         val diskReferences = references.above(indexValue!!, includeValue)
 
         val dataFile = context.getDataFile(descriptor)
@@ -160,7 +378,7 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
      */
     @Throws(OnyxException::class)
     override fun findAllBelow(indexValue: Any?, includeValue: Boolean): Set<Long> {
-        val allReferences = HashSet<Long>()
+        val allReferences = LongHashSet()
         val diskReferences = references.below(indexValue!!, includeValue)
         val dataFile = context.getDataFile(descriptor)
         diskReferences
@@ -186,7 +404,7 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
      * @since 1.2.0
      */
     override fun findAllBetween(fromValue: Any?, includeFromValue: Boolean, toValue: Any?, includeToValue: Boolean): Set<Long> {
-        val allReferences = HashSet<Long>()
+        val allReferences = LongHashSet()
         val diskReferences = references.between(fromValue, includeFromValue, toValue, includeToValue)
         val dataFile = context.getDataFile(descriptor)
         diskReferences
@@ -200,6 +418,7 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
     /**
      * ReBuilds an index by iterating through all the values and re-mapping index values
      *
+     * @since 3.9.10 References are saved in batches
      */
     @Throws(OnyxException::class)
     @Synchronized
@@ -207,14 +426,17 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
         val dataFile = context.getDataFile(descriptor)
         val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, descriptor.entityClass.name)
         clear()
-        records.entries.forEach {
-            val recId = records.getRecID(it.key)
-            if (recId > 0) {
-                val indexValue = it.value.get<Any?>(context, descriptor, indexDescriptor.name)
-                if (indexValue != null)
-                    save(indexValue, recId, recId)
+
+        // The index is empty so there are no previous references to remove
+        records.entries.asSequence()
+            .mapNotNull {
+                @Suppress("UNCHECKED_CAST")
+                val recId = (it as DiskMapEntry<Any?, IManagedEntity?>).node?.position ?: 0L
+                val indexValue = if (recId > 0) it.value.get<Any?>(context, descriptor, indexDescriptor.name) else null
+                if (indexValue != null) Triple(indexValue, 0L, recId) else null
             }
-        }
+            .chunked(REBUILD_BATCH_SIZE)
+            .forEach { saveAll(it) }
     }
 
     /**
@@ -226,6 +448,7 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
     override fun clear() {
         references.clear()
         indexValues.clear()
+        cachedStatistics = null
     }
 
     /**
@@ -247,4 +470,26 @@ open class DefaultIndexInteractor @Throws(OnyxException::class) constructor(priv
     override fun deleteResources() {
         // Default implementation does nothing - uses main data file
     }
+
+    companion object {
+        // Index value types that can be walked in order.  A null value of these is saved under a known key.
+        private val ORDERED_TYPES = setOf<Class<*>>(
+            String::class.java, Date::class.java,
+            java.lang.Long::class.java, java.lang.Long.TYPE, Integer::class.java, Integer.TYPE,
+            java.lang.Short::class.java, java.lang.Short.TYPE, java.lang.Byte::class.java, java.lang.Byte.TYPE,
+            java.lang.Double::class.java, java.lang.Double.TYPE, java.lang.Float::class.java, java.lang.Float.TYPE
+        )
+
+        // Number of records whose references are saved together while rebuilding
+        private const val REBUILD_BATCH_SIZE = 10000
+
+        // Number of buckets within the histogram of index values
+        private const val HISTOGRAM_BUCKETS = 64
+
+        // Statistics are taken again once the references saved or deleted exceed this ratio of the references
+        private const val STATISTICS_STALE_RATIO = 0.2
+
+        // Minimum number of references saved or deleted before statistics are taken again
+        private const val STATISTICS_MIN_MODIFICATIONS = 100L
+    }
 }
@@ -2,11 +2,12 @@ package com.onyx.interactors.query
 
 import com.onyx.interactors.record.data.Reference
 import com.onyx.persistence.IManagedEntity
+import java.io.Closeable
 
 /**
  * Collects and aggregates the results of a query
  */
-interface QueryCollector<T> {
+interface QueryCollector<T> : Closeable {
 
     var results: MutableCollection<T>
     val references:MutableList<Reference>
@@ -44,9 +45,35 @@ interface QueryCollector<T> {
      */
     fun getNumberOfResults():Int
 
+    /**
+     * Count results that match but are not collected.  The collected references are no longer all the results so
+     * they are not cached.
+     *
+     * @param count Number of results skipped
+     *
+     * @since 3.9.10
+     */
+    fun skipResults(count: Int)
+
+    /**
+     * Whether the page of results is already collected.  Once it is, matching records do not need to be read.  They
+     * are counted using skipResults instead.
+     *
+     * @since 3.9.10
+     */
+    val isFull: Boolean
+
     /**
      * Indicator of whether the results should be cached or not
      */
     fun shouldCacheResults():Boolean
 
+    /**
+     * Delete what the collector keeps outside of memory such as results spilled to a temporary store.  This is
+     * invoked once the results are finalized or if collecting them fails.  Finalized results are kept.
+     *
+     * @since 3.9.10
+     */
+    override fun close() { }
+
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package com.onyx.interactors.query
 
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.lang.CloseableIterator
 import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryPlan
 
 interface QueryInteractor {
 
@@ -17,6 +19,18 @@ interface QueryInteractor {
      */
     fun <T> getReferencesForQuery(query: Query): QueryCollector<T>
 
+    /**
+     * Find the references matching a query without collecting the results.  Ordered results are sorted in runs
+     * spilled to a temporary store rather than in memory.
+     *
+     * @param query Validated entity query
+     * @return References to the page of results in order.  It must be closed to delete the sorted runs.
+     * @throws OnyxException General query exception
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun getReferenceCursor(query: Query): CloseableIterator<Reference>
+
     /**
      * Delete record with reference ids
      *
@@ -48,4 +62,14 @@ interface QueryInteractor {
     @Throws(OnyxException::class)
     fun getCountForQuery(query: Query): Long
 
-}
\ No newline at end of file
+    /**
+     * Get the plan chosen to execute a query without executing it
+     *
+     * @param query Query to plan
+     * @return The plan listing the steps in the order they are evaluated
+     * @throws OnyxException Exception occurred while planning the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun explain(query: Query): QueryPlan
+}
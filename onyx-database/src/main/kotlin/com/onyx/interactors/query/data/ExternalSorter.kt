@@ -0,0 +1,157 @@
+package com.onyx.interactors.query.data
+
+import com.onyx.diskmap.store.Store
+import com.onyx.diskmap.store.impl.EncryptedFileChannelStore
+import com.onyx.diskmap.store.impl.FileChannelStore
+import com.onyx.persistence.context.SchemaContext
+import java.io.Closeable
+import java.io.File
+import java.util.PriorityQueue
+
+/**
+ * Sorts more elements than should be kept in memory.  Elements are buffered until there are runSize of them.  The
+ * buffer is then sorted and spilled to a temporary store as a run.  The sorted elements are read back by merging the
+ * runs with the elements still buffered.  Only one block of each run is kept in memory while merging.
+ *
+ * The sorter is not thread safe.  Elements are converted to a value the store can serialize before they are spilled
+ * and converted back once they are read.  The temporary store is deleted when the sorter is closed.
+ *
+ * @param comparator Orders the elements.  It must be consistent so two different elements never compare as equal.
+ * @param context Schema context of the query.  Runs are encrypted if the database is.
+ * @param toSpilled Convert an element so it can be written to the store
+ * @param fromSpilled Convert a value read from the store back into an element
+ * @param runSize Number of elements buffered before they are spilled
+ *
+ * @since 3.9.10
+ */
+class ExternalSorter<T>(
+    private val comparator: Comparator<in T>,
+    private val context: SchemaContext?,
+    private val toSpilled: (T) -> Any?,
+    private val fromSpilled: (Any?) -> T,
+    private val runSize: Int = DEFAULT_RUN_SIZE
+) : Closeable {
+
+    private var buffer = ArrayList<T>()
+
+    // Position of each block of each run within the store
+    private val runs = ArrayList<LongArray>()
+
+    private var store: Store? = null
+
+    var size = 0L
+        private set
+
+    /**
+     * Whether any of the elements were spilled to the temporary store
+     */
+    val isSpilled: Boolean
+        get() = runs.isNotEmpty()
+
+    /**
+     * Add an element.  If the buffer is full it is spilled as a run.
+     *
+     * @param element Element to sort
+     */
+    fun add(element: T) {
+        buffer.add(element)
+        size++
+        if (buffer.size >= runSize)
+            spill()
+    }
+
+    /**
+     * Read the elements in sorted order.  The elements can only be read once.
+     *
+     * @return Iterator of the sorted elements
+     */
+    fun sorted(): Iterator<T> {
+        buffer.sortWith(comparator)
+        if (runs.isEmpty())
+            return buffer.iterator()
+
+        val store = store!!
+        val cursors = PriorityQueue<Cursor<T>>(runs.size + 1) { first, second -> comparator.compare(first.head, second.head) }
+        runs.forEach { blocks ->
+            val elements = blocks.asSequence().flatMap { position -> store.getObject<List<Any?>>(position).asSequence().map(fromSpilled) }
+            Cursor.of(elements.iterator())?.let { cursors.add(it) }
+        }
+        Cursor.of(buffer.iterator())?.let { cursors.add(it) }
+
+        return object : Iterator<T> {
+            override fun hasNext(): Boolean = cursors.isNotEmpty()
+
+            override fun next(): T {
+                val cursor = cursors.poll() ?: throw NoSuchElementException()
+                val element = cursor.head
+                if (cursor.advance())
+                    cursors.add(cursor)
+                return element
+            }
+        }
+    }
+
+    /**
+     * Delete the temporary store
+     */
+    override fun close() {
+        store?.close()
+        store = null
+        runs.clear()
+        buffer = ArrayList()
+    }
+
+    /**
+     * Sort the buffer and write it to the store as a run of blocks
+     */
+    private fun spill() {
+        buffer.sortWith(comparator)
+        val store = store ?: createStore().also { store = it }
+        val blocks = ArrayList<Any?>((buffer.size + BLOCK_SIZE - 1) / BLOCK_SIZE)
+        for (start in buffer.indices step BLOCK_SIZE)
+            blocks.add(buffer.subList(start, minOf(start + BLOCK_SIZE, buffer.size)).mapTo(ArrayList(BLOCK_SIZE), toSpilled))
+        runs.add(store.writeObjects(blocks))
+        buffer = ArrayList()
+    }
+
+    /**
+     * Create the temporary store the runs are spilled to
+     */
+    private fun createStore(): Store {
+        val file = File.createTempFile("onyx", ".sort")
+        file.deleteOnExit()
+        return if (context?.encryptDatabase == true)
+            EncryptedFileChannelStore(file.path, context, true)
+        else
+            FileChannelStore(file.path, context, true)
+    }
+
+    /**
+     * Next element of a run being merged
+     */
+    private class Cursor<T> private constructor(private val elements: Iterator<T>, var head: T) {
+
+        /**
+         * Move to the next element
+         *
+         * @return False if there are no more elements
+         */
+        fun advance(): Boolean {
+            if (!elements.hasNext())
+                return false
+            head = elements.next()
+            return true
+        }
+
+        companion object {
+            fun <T> of(elements: Iterator<T>): Cursor<T>? = if (elements.hasNext()) Cursor(elements, elements.next()) else null
+        }
+    }
+
+    companion object {
+        const val DEFAULT_RUN_SIZE = 100000
+
+        // Number of elements written to the store as one object
+        private const val BLOCK_SIZE = 1000
+    }
+}
@@ -39,15 +39,7 @@ class QuerySortComparator(query: Query, private val orderBy: Array<QueryOrder>,
             val attribute1 = attributeValues.getOrPut(reference1) { getAttribute(scannerProperties, reference1, context)}
             val attribute2 = attributeValues.getOrPut(reference2) { getAttribute(scannerProperties, reference2, context)}
 
-            var compareValue = 0
-            catchAll {
-                compareValue = when {
-                    attribute2.compare(attribute1, QueryCriteriaOperator.GREATER_THAN) -> if (queryOrder.isAscending) 1 else -1
-                    attribute2.compare(attribute1, QueryCriteriaOperator.LESS_THAN) -> if (queryOrder.isAscending) -1 else 1
-                    else -> 0
-                }
-            }
-
+            val compareValue = compareAttributes(queryOrder, attribute1, attribute2)
             if(compareValue != 0)
                 return@compare compareValue
         }
@@ -63,15 +55,7 @@ class QuerySortComparator(query: Query, private val orderBy: Array<QueryOrder>,
             val attribute1 = getAttribute(scannerProperties, entity1, context)
             val attribute2 = getAttribute(scannerProperties, entity2, context)
 
-            var compareValue = 0
-            catchAll {
-                compareValue = when {
-                    attribute2.compare(attribute1, QueryCriteriaOperator.GREATER_THAN) -> if (queryOrder.isAscending) 1 else -1
-                    attribute2.compare(attribute1, QueryCriteriaOperator.LESS_THAN) -> if (queryOrder.isAscending) -1 else 1
-                    else -> 0
-                }
-            }
-
+            val compareValue = compareAttributes(queryOrder, attribute1, attribute2)
             if(compareValue != 0)
                 return@compare compareValue
         }
@@ -84,15 +68,7 @@ class QuerySortComparator(query: Query, private val orderBy: Array<QueryOrder>,
             val attribute1 = entity1[it.attribute]
             val attribute2 = entity2[it.attribute]
 
-            var compareValue = 0
-            catchAll {
-                compareValue = when {
-                    attribute2.compare(attribute1, QueryCriteriaOperator.GREATER_THAN) -> if (it.isAscending) 1 else -1
-                    attribute2.compare(attribute1, QueryCriteriaOperator.LESS_THAN) -> if (it.isAscending) -1 else 1
-                    else -> 0
-                }
-            }
-
+            val compareValue = compareAttributes(it, attribute1, attribute2)
             if(compareValue != 0)
                 return@compare compareValue
         }
@@ -100,6 +76,56 @@ class QuerySortComparator(query: Query, private val orderBy: Array<QueryOrder>,
         return if (entity1 === entity2) 0 else -1
     }
 
+    /**
+     * Get the values an entity is sorted by.  The values are read once so an entity can be compared many times
+     * without pulling its attributes again.
+     *
+     * @param entity Entity to get sort values for
+     * @return Value of each query order
+     * @since 3.9.10
+     */
+    fun sortKey(entity: IManagedEntity): Array<Any?> {
+        val context = Contexts.get(contextId)!!
+        return Array(scanObjects.size) { getAttribute(scanObjects[it], entity, context) }
+    }
+
+    /**
+     * Get the values a selection record is sorted by
+     *
+     * @param record Selection record containing the query order attributes
+     * @return Value of each query order
+     * @since 3.9.10
+     */
+    fun sortKey(record: Map<String, Any?>): Array<Any?> = Array(orderBy.size) { record[orderBy[it].attribute] }
+
+    /**
+     * Compare sort values taken from sortKey.  Unlike the other comparisons, values that sort the same are equal.
+     *
+     * @since 3.9.10
+     */
+    fun compareSortKeys(key1: Array<Any?>, key2: Array<Any?>): Int {
+        orderBy.forEachIndexed { index, queryOrder ->
+            val compareValue = compareAttributes(queryOrder, key1[index], key2[index])
+            if(compareValue != 0)
+                return@compareSortKeys compareValue
+        }
+        return 0
+    }
+
+    /**
+     * Compare two attribute values for a single query order
+     */
+    private fun compareAttributes(queryOrder: QueryOrder, attribute1: Any?, attribute2: Any?): Int {
+        var compareValue = 0
+        catchAll {
+            compareValue = when {
+                attribute2.compare(attribute1, QueryCriteriaOperator.GREATER_THAN) -> if (queryOrder.isAscending) 1 else -1
+                attribute2.compare(attribute1, QueryCriteriaOperator.LESS_THAN) -> if (queryOrder.isAscending) -1 else 1
+                else -> 0
+            }
+        }
+        return compareValue
+    }
 
     /**
      * Get an attribute value
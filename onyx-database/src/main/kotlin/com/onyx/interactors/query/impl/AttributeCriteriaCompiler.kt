@@ -0,0 +1,200 @@
+package com.onyx.interactors.query.impl
+
+import com.onyx.lang.LongHashSet
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.query.QueryCriteria
+import com.onyx.persistence.query.QueryCriteriaOperator
+import java.lang.reflect.Field
+import java.util.function.Predicate
+
+/**
+ * Compiles criteria on an entity attribute into a predicate that reads the field directly.  The type coercion done
+ * by Any?.compare for every entity is resolved once when the criteria is compiled.  Primitive fields are read and
+ * compared without boxing.
+ *
+ * The compiled predicates return the same result as comparing with Any?.compare.  Criteria that can not be compiled
+ * return null so the caller falls back to the reflective comparison.
+ *
+ * @since 3.9.10
+ */
+internal object AttributeCriteriaCompiler {
+
+    private val INTEGRAL_TYPES = setOf<Class<*>>(java.lang.Long.TYPE, Integer.TYPE, java.lang.Short.TYPE, java.lang.Byte.TYPE)
+    private val FLOATING_TYPES = setOf<Class<*>>(java.lang.Double.TYPE, java.lang.Float.TYPE)
+
+    /**
+     * Compile criteria on an attribute
+     *
+     * @param criteria Criteria to compile
+     * @param field Field of the attribute
+     * @return Predicate checking an entity or null if the criteria can not be compiled
+     */
+    fun compile(criteria: QueryCriteria, field: Field): Predicate<IManagedEntity>? {
+        val value = criteria.value ?: return null
+        return when (val operator = criteria.operator ?: return null) {
+            QueryCriteriaOperator.EQUAL,
+            QueryCriteriaOperator.NOT_EQUAL,
+            QueryCriteriaOperator.GREATER_THAN,
+            QueryCriteriaOperator.GREATER_THAN_EQUAL,
+            QueryCriteriaOperator.LESS_THAN,
+            QueryCriteriaOperator.LESS_THAN_EQUAL -> compileComparison(field, value, operator)
+            QueryCriteriaOperator.IN -> compileIn(field, value as? List<*> ?: return null, true)
+            QueryCriteriaOperator.NOT_IN -> compileIn(field, value as? List<*> ?: return null, false)
+            QueryCriteriaOperator.MATCHES,
+            QueryCriteriaOperator.NOT_MATCHES -> compileMatches(field, value as? String ?: return null, operator == QueryCriteriaOperator.MATCHES)
+            QueryCriteriaOperator.STARTS_WITH,
+            QueryCriteriaOperator.NOT_STARTS_WITH,
+            QueryCriteriaOperator.CONTAINS,
+            QueryCriteriaOperator.NOT_CONTAINS,
+            QueryCriteriaOperator.CONTAINS_IGNORE_CASE,
+            QueryCriteriaOperator.NOT_CONTAINS_IGNORE_CASE,
+            QueryCriteriaOperator.LIKE,
+            QueryCriteriaOperator.NOT_LIKE -> compileText(field, value as? String ?: return null, operator)
+            else -> null
+        }
+    }
+
+    /**
+     * Compile a comparison.  The attribute is converted to the type of the criteria value the same way Any?.compare
+     * converts it.
+     */
+    private fun compileComparison(field: Field, value: Any, operator: QueryCriteriaOperator): Predicate<IManagedEntity>? {
+        val type = field.type
+        return when (value) {
+            is Long -> when (type) {
+                in INTEGRAL_TYPES -> Predicate { operator.matches(field.getLong(it).compareTo(value)) }
+                in FLOATING_TYPES -> Predicate { operator.matches(field.getDouble(it).toLong().compareTo(value)) }
+                else -> compileNumber(field, operator) { it.toLong().compareTo(value) }
+            }
+            is Int -> when (type) {
+                in INTEGRAL_TYPES -> Predicate { operator.matches(field.getLong(it).toInt().compareTo(value)) }
+                in FLOATING_TYPES -> Predicate { operator.matches(field.getDouble(it).toInt().compareTo(value)) }
+                else -> compileNumber(field, operator) { it.toInt().compareTo(value) }
+            }
+            is Double -> when (type) {
+                in INTEGRAL_TYPES -> Predicate { operator.matches(field.getLong(it).toDouble().compareTo(value)) }
+                in FLOATING_TYPES -> Predicate { operator.matches(field.getDouble(it).compareTo(value)) }
+                else -> compileNumber(field, operator) { it.toDouble().compareTo(value) }
+            }
+            is Float -> when (type) {
+                in INTEGRAL_TYPES -> Predicate { operator.matches(field.getLong(it).toFloat().compareTo(value)) }
+                java.lang.Float.TYPE -> Predicate { operator.matches(field.getFloat(it).compareTo(value)) }
+                java.lang.Double.TYPE -> Predicate { operator.matches(field.getDouble(it).toFloat().compareTo(value)) }
+                else -> compileNumber(field, operator) { it.toFloat().compareTo(value) }
+            }
+            is String -> Predicate {
+                val attribute = field.get(it)
+                if (attribute == null) operator.matchesNull() else operator.matches(attribute.toString().compareTo(value))
+            }
+            else -> null
+        }
+    }
+
+    /**
+     * Compile a comparison on an attribute that is not a primitive.  Only boxed numbers can be compiled.
+     *
+     * @param compare Compare the attribute with the criteria value
+     */
+    private inline fun compileNumber(field: Field, operator: QueryCriteriaOperator, crossinline compare: (Number) -> Int): Predicate<IManagedEntity>? {
+        if (!Number::class.java.isAssignableFrom(field.type))
+            return null
+        return Predicate {
+            val attribute = field.get(it) as Number?
+            if (attribute == null) operator.matchesNull() else operator.matches(compare(attribute))
+        }
+    }
+
+    /**
+     * Compile a check for whether the attribute is in a list.  Each value of the list is converted to the type of the
+     * attribute the same way Any?.compare converts it.  A null attribute is only within the list if the list contains
+     * null.
+     *
+     * @param isIn True for IN, false for NOT_IN
+     */
+    private fun compileIn(field: Field, values: List<*>, isIn: Boolean): Predicate<IManagedEntity>? {
+        val type = field.type
+        val nullMatches = values.contains(null) == isIn
+
+        val narrow: ((Number) -> Long)? = when (type) {
+            java.lang.Long.TYPE, java.lang.Long::class.java -> { number -> number.toLong() }
+            Integer.TYPE, Integer::class.java -> { number -> number.toInt().toLong() }
+            java.lang.Short.TYPE, java.lang.Short::class.java -> { number -> number.toShort().toLong() }
+            java.lang.Byte.TYPE, java.lang.Byte::class.java -> { number -> number.toByte().toLong() }
+            else -> null
+        }
+
+        if (narrow != null) {
+            val numbers = LongHashSet(values.size)
+            values.forEach { if (it is Number) numbers.add(narrow(it)) }
+            return if (type.isPrimitive)
+                Predicate { numbers.contains(field.getLong(it)) == isIn }
+            else
+                Predicate {
+                    val attribute = field.get(it) as Number?
+                    if (attribute == null) nullMatches else numbers.contains(attribute.toLong()) == isIn
+                }
+        }
+
+        val converted: Set<Any> = when (type) {
+            java.lang.Double.TYPE, java.lang.Double::class.java -> values.mapNotNullTo(HashSet()) { (it as? Number)?.toDouble() }
+            java.lang.Float.TYPE, java.lang.Float::class.java -> values.mapNotNullTo(HashSet()) { (it as? Number)?.toFloat() }
+            String::class.java -> values.mapNotNullTo(HashSet()) { it?.toString() }
+            else -> return null
+        }
+        return Predicate {
+            val attribute = field.get(it)
+            if (attribute == null) nullMatches else converted.contains(attribute) == isIn
+        }
+    }
+
+    /**
+     * Compile a regular expression match.  The expression is only parsed once.
+     *
+     * @param isMatch True for MATCHES, false for NOT_MATCHES
+     */
+    private fun compileMatches(field: Field, value: String, isMatch: Boolean): Predicate<IManagedEntity>? {
+        val regex = try {
+            Regex(value)
+        } catch (_: IllegalArgumentException) {
+            return null // Leave it to Any?.compare to report the invalid expression
+        }
+        return Predicate { regex.matches(field.text(it)) == isMatch }
+    }
+
+    /**
+     * Compile a text comparison.  The attribute is compared by its string value.
+     */
+    private fun compileText(field: Field, value: String, operator: QueryCriteriaOperator): Predicate<IManagedEntity> = when (operator) {
+        QueryCriteriaOperator.STARTS_WITH -> Predicate { field.text(it).startsWith(value) }
+        QueryCriteriaOperator.NOT_STARTS_WITH -> Predicate { !field.text(it).startsWith(value) }
+        QueryCriteriaOperator.CONTAINS -> Predicate { field.text(it).contains(value) }
+        QueryCriteriaOperator.NOT_CONTAINS -> Predicate { !field.text(it).contains(value) }
+        QueryCriteriaOperator.CONTAINS_IGNORE_CASE -> Predicate { field.text(it).contains(value, true) }
+        QueryCriteriaOperator.NOT_CONTAINS_IGNORE_CASE -> Predicate { !field.text(it).contains(value, true) }
+        QueryCriteriaOperator.LIKE -> Predicate { field.text(it).equals(value, true) }
+        else -> Predicate { !field.text(it).equals(value, true) }
+    }
+
+    /**
+     * String value of an attribute.  A null attribute is compared as "null" the same way Any?.compare does.
+     */
+    private fun Field.text(entity: IManagedEntity): String = (get(entity) as Any?).toString()
+
+    /**
+     * Whether the result of comparing the attribute with the criteria value meets the operator
+     */
+    private fun QueryCriteriaOperator.matches(comparison: Int): Boolean = when (this) {
+        QueryCriteriaOperator.EQUAL -> comparison == 0
+        QueryCriteriaOperator.NOT_EQUAL -> comparison != 0
+        QueryCriteriaOperator.GREATER_THAN -> comparison > 0
+        QueryCriteriaOperator.GREATER_THAN_EQUAL -> comparison >= 0
+        QueryCriteriaOperator.LESS_THAN -> comparison < 0
+        else -> comparison <= 0
+    }
+
+    /**
+     * Whether a null attribute meets the operator when the criteria value is not null
+     */
+    private fun QueryCriteriaOperator.matchesNull(): Boolean =
+        this == QueryCriteriaOperator.NOT_EQUAL || this == QueryCriteriaOperator.LESS_THAN || this == QueryCriteriaOperator.LESS_THAN_EQUAL
+}
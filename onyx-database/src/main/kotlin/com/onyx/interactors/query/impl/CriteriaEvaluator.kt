@@ -0,0 +1,114 @@
+package com.onyx.interactors.query.impl
+
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.exception.OnyxException
+import com.onyx.extension.attributeMeetsCriteria
+import com.onyx.extension.graphMeetsCriteria
+import com.onyx.extension.relationshipMeetsCriteria
+import com.onyx.interactors.record.data.Reference
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.query.QueryCriteria
+import com.onyx.persistence.query.relationship
+
+/**
+ * Query criteria compiled into a tree of predicates.  The tree does not hold any state while checking an entity so
+ * a single evaluator can be used by every thread scanning a query at the same time.
+ *
+ * The criteria are read but never modified.  Since the tree is not mutated, results of each criteria are no longer
+ * stored within the criteria while checking an entity.  Criteria on entity attributes are compiled by
+ * AttributeCriteriaCompiler so the type coercion is only resolved once.
+ *
+ * @param criteria Root criteria of the query.  Null matches every entity.
+ * @param descriptor Descriptor of the entity being checked
+ *
+ * @since 3.9.10
+ */
+class CriteriaEvaluator(val criteria: QueryCriteria?, descriptor: EntityDescriptor) {
+
+    val entityClass: Class<*> = descriptor.entityClass
+
+    private val root: Predicate? = criteria?.let { compile(it, descriptor) }
+
+    /**
+     * Whether an entity meets the criteria
+     *
+     * @param entity Entity to check for criteria
+     * @param entityReference The entities reference
+     * @param context Schema context used to pull entity descriptors, and such
+     * @param descriptor Quick reference to the entities descriptor
+     * @return Whether the entity meets all the criteria
+     * @throws OnyxException Cannot hydrate or pull an attribute from an entity
+     */
+    @Throws(OnyxException::class)
+    fun meetsCriteria(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext, descriptor: EntityDescriptor): Boolean =
+        root?.meets(entity, entityReference, context, descriptor) ?: true
+
+    private fun compile(criteria: QueryCriteria, descriptor: EntityDescriptor): Predicate {
+        val leaf: Predicate = when {
+            criteria.flip -> Predicate { _, _, _, _ -> false }
+            criteria.isRelationship!! && descriptor.relationships.contains(criteria.relationship) ->
+                Predicate { entity, reference, context, _ -> relationshipMeetsCriteria(entity, reference, criteria, context) }
+            criteria.isRelationship!! -> Predicate { entity, _, _, _ -> graphMeetsCriteria(entity, criteria) }
+            else -> compileAttribute(criteria, descriptor)
+        }
+
+        val children = criteria.subCriteria.filter { !it.flip }
+        if (children.isEmpty() && !criteria.isNot)
+            return leaf
+
+        return Group(leaf,
+            children.map { compile(it, descriptor) }.toTypedArray(),
+            children.map { it.isOr }.toBooleanArray(),
+            criteria.isNot)
+    }
+
+    /**
+     * Compile criteria on an entity attribute.  If the field of the attribute is known and the comparison can be
+     * compiled, the field is read directly.  The compiled predicate is only used while the criteria value and
+     * operator are the ones it was compiled with.
+     *
+     * @param criteria Criteria on an attribute
+     * @param descriptor Descriptor of the entity being checked
+     * @return Predicate checking the attribute
+     */
+    private fun compileAttribute(criteria: QueryCriteria, descriptor: EntityDescriptor): Predicate {
+        val isAttribute = criteria.attributeDescriptor != null || descriptor.attributes[criteria.attribute!!] != null
+        val field = if (isAttribute) descriptor.reflectionFields[criteria.attribute!!] else null
+        val compiled = field?.let { AttributeCriteriaCompiler.compile(criteria, it) }
+            ?: return Predicate { entity, _, context, entityDescriptor -> attributeMeetsCriteria(entity, criteria, isAttribute, context, entityDescriptor) }
+
+        val value = criteria.value
+        val operator = criteria.operator
+        return Predicate { entity, _, context, entityDescriptor ->
+            if (entity != null && criteria.value === value && criteria.operator === operator)
+                compiled.test(entity)
+            else
+                attributeMeetsCriteria(entity, criteria, isAttribute, context, entityDescriptor)
+        }
+    }
+
+    /**
+     * Check whether an entity meets a single criteria or a group of criteria
+     */
+    private fun interface Predicate {
+        fun meets(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext, descriptor: EntityDescriptor): Boolean
+    }
+
+    /**
+     * Criteria with sub criteria.  Each sub criteria is combined with the result so far in the order it was
+     * written.  A sub criteria is not checked when it can not change the result.
+     */
+    private class Group(private val criteria: Predicate, private val children: Array<Predicate>, private val isOr: BooleanArray, private val isNot: Boolean) : Predicate {
+        override fun meets(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext, descriptor: EntityDescriptor): Boolean {
+            var meetsCriteria = criteria.meets(entity, entityReference, context, descriptor)
+            for (index in children.indices) {
+                meetsCriteria = if (isOr[index])
+                    meetsCriteria || children[index].meets(entity, entityReference, context, descriptor)
+                else
+                    meetsCriteria && children[index].meets(entity, entityReference, context, descriptor)
+            }
+            return if (isNot) !meetsCriteria else meetsCriteria
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.onyx.interactors.query.impl
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.diskmap.DiskMap
+import com.onyx.diskmap.data.DiskMapEntry
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.ScannerFactory
 import com.onyx.exception.OnyxException
 import com.onyx.exception.MaxCardinalityExceededException
@@ -16,8 +18,12 @@ import com.onyx.interactors.query.QueryCollector
 import com.onyx.interactors.query.QueryCollectorFactory
 import com.onyx.persistence.context.Contexts
 import com.onyx.interactors.query.QueryInteractor
+import com.onyx.interactors.query.data.ExternalSorter
+import com.onyx.interactors.query.data.QuerySortComparator
 import com.onyx.interactors.record.FullTextRecordInteractor
 import com.onyx.interactors.scanner.impl.*
+import com.onyx.lang.CloseableIterator
+import com.onyx.lang.asCloseable
 
 /**
  * Created by timothy.osborn on 3/5/15.
@@ -51,25 +57,96 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
             if (luceneQuery != null) {
                 val references = executeLuceneCriteriaQuery(query, luceneQuery, context)
                 val collector = QueryCollectorFactory.create<T>(context, descriptor, query)
-                collector.setReferenceSet(references)
-                collector.finalizeResults()
+                collector.use {
+                    it.setReferenceSet(references)
+                    it.finalizeResults()
+                }
                 query.resultsCount = collector.getNumberOfResults()
                 return collector
             }
         }
 
-        val pair = getReferencesForCriteria<T>(query, query.criteria!!, null, query.criteria!!.isNot)
-        var collector = pair.second
-        if(collector == null) {
-            collector = QueryCollectorFactory.create(Contexts.get(contextId)!!, descriptor, query)
-            collector.setReferenceSet(pair.first)
+        val plan = QueryPlanner(context, query).plan()
+        val pair = if (plan.order != null)
+            getReferencesInOrder<T>(query, plan, plan.order)
+        else
+            getReferencesForCriteria<T>(query, plan.criteria, null, plan.forceFullScan, plan)
+        val collector = pair.second ?: QueryCollectorFactory.create(Contexts.get(contextId)!!, descriptor, query)
+        collector.use {
+            if(pair.second == null)
+                it.setReferenceSet(pair.first)
+            it.finalizeResults()
         }
-        collector.finalizeResults()
         query.resultsCount = collector.getNumberOfResults()
 
         return collector
     }
 
+    /**
+     * Find the references matching a query without collecting the results.  Unordered references are returned as
+     * they are found.  Ordered references are sorted by the values of the query orders using an external sorter so
+     * only a run of them is kept in memory.  Records are read in turn when every record is scanned so their
+     * references are never held as a set.
+     *
+     * @param query Validated entity query
+     * @return References to the page of results in order
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun getReferenceCursor(query: Query): CloseableIterator<Reference> {
+        val context = Contexts.get(contextId)!!
+        val plan = QueryPlanner(context, query).plan()
+        val queryOrders = query.queryOrders.orEmpty()
+
+        if (queryOrders.isEmpty())
+            return getReferencesForCriteria<Nothing>(query, plan.criteria, null, plan.forceFullScan, plan, collect = false).first
+                .asSequence().page(query).iterator().asCloseable()
+
+        // Spilled as the partition and position of the reference followed by its sort key
+        val comparator = QuerySortComparator(query, queryOrders.toTypedArray(), descriptor, context)
+        val sorter = ExternalSorter<Pair<Array<Any?>, Reference>>(
+            comparator = Comparator { first, second -> comparator.compareSortKeys(first.first, second.first).takeIf { it != 0 } ?: first.second.compareTo(second.second) },
+            context = context,
+            toSpilled = { ArrayList<Any?>(it.first.size + 2).apply { add(it.second.partition); add(it.second.reference); addAll(it.first) } },
+            fromSpilled = { value -> (value as List<*>).let { Pair(it.subList(2, it.size).toTypedArray(), Reference(it[0] as Long, it[1] as Long)) } },
+            runSize = context.querySortRunSize
+        )
+
+        try {
+            if (query.isDefaultQuery(descriptor) || plan.forceFullScan) {
+                val isDefaultQuery = query.isDefaultQuery(descriptor)
+                query.partitionDescriptors(context, descriptor).forEach { (partitionId, partitionDescriptor) ->
+                    val records = context.getDataFile(partitionDescriptor).getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, partitionDescriptor.entityClass.name)
+                    records.entries.forEach {
+                        @Suppress("UNCHECKED_CAST")
+                        val entry = it as DiskMapEntry<Any?, IManagedEntity?>
+                        val entity = entry.value ?: return@forEach
+                        val reference = Reference(partitionId, entry.node?.position ?: return@forEach)
+                        if (query.isTerminated)
+                            return@forEach
+                        if (isDefaultQuery || query.meetsCriteria(entity, reference, context, partitionDescriptor))
+                            sorter.add(Pair(comparator.sortKey(entity), reference))
+                    }
+                }
+            } else {
+                getReferencesForCriteria<Nothing>(query, plan.criteria, null, false, plan, collect = false).first.forEach {
+                    val entity = it.toManagedEntity(context, descriptor) ?: return@forEach
+                    sorter.add(Pair(comparator.sortKey(entity), it))
+                }
+            }
+        } catch (e: Exception) {
+            sorter.close()
+            throw e
+        }
+
+        return sorter.sorted().asSequence().page(query).map { it.second }.iterator().asCloseable { sorter.close() }
+    }
+
+    /**
+     * Skip to the first row of a query and stop after its max results
+     */
+    private fun <T> Sequence<T>.page(query: Query): Sequence<T> = drop(query.firstRow).let { if (query.maxResults > 0) it.take(query.maxResults) else it }
+
     private fun executeLuceneCriteriaQuery(
         query: Query,
         criteriaQuery: LuceneCriteriaQuery,
@@ -77,7 +154,7 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
     ): MutableSet<Reference> {
         val maxCardinality = context.maxCardinality
         val limit = if (query.maxResults > 0) query.maxResults else maxCardinality - 1
-        val matchingReferences = HashSet<Reference>()
+        val matchingReferences = ReferenceSet()
         val scores = HashMap<Reference, Float>()
         val minScore = criteriaQuery.minScore
 
@@ -238,6 +315,18 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
         }
     }
 
+    /**
+     * Get the plan chosen to execute a query.  The index statistics are used to order the criteria and to choose
+     * between scanning indexes and reading every record.
+     *
+     * @param query Query to plan
+     * @return The plan listing the steps in the order they are evaluated
+     * @throws OnyxException Exception occurred while planning the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun explain(query: Query): QueryPlan = QueryPlanner(Contexts.get(contextId)!!, query).plan().queryPlan
+
     /**
      * Get references matching a specific criteria
      *
@@ -245,15 +334,16 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      * @param criteria Criteria to get references for
      * @param existingReferences Existing matching references from previous criteria.  Null if this is the first criteria.
      * @param forceFullScan Force a full table scan.
+     * @param plan Plan the criteria belongs to
      *
      * @return Filtered references matching criteria
      */
     @Suppress("UNCHECKED_CAST")
-    private fun <T> getReferencesForCriteria(query: Query, criteria: QueryCriteria, existingReferences: MutableSet<Reference>?, forceFullScan: Boolean, collect:Boolean = true):Pair<MutableSet<Reference>, QueryCollector<T>?> {
+    private fun <T> getReferencesForCriteria(query: Query, criteria: QueryCriteria, existingReferences: MutableSet<Reference>?, forceFullScan: Boolean, plan: QueryPlanner.Plan, collect:Boolean = true):Pair<MutableSet<Reference>, QueryCollector<T>?> {
         val context = Contexts.get(contextId)!!
         // Ensure query is still valid
         if (query.isTerminated) {
-            return Pair(HashSet(), null)
+            return Pair(ReferenceSet(), null)
         }
 
         val scanner = if (forceFullScan) {
@@ -264,7 +354,7 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
 
         if(collect &&
                 (scanner is FullTableScanner || (
-                    criteria == query.getAllCriteria().last()
+                    criteria == plan.lastCriteria
                     && !criteria.isNot
                     && !criteria.flip
                     && !criteria.isOr))){
@@ -296,34 +386,87 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
         }
 
 
-        // Scan for records
-        // If there are existing references, use those to narrow it down.  Otherwise
-        // start from a clean slate
+        var collector: QueryCollector<T>? = null
+        try {
+            // Scan for records
+            // If there are existing references, use those to narrow it down.  Otherwise
+            // start from a clean slate
 
-        val criteriaResults: MutableSet<Reference> = if (existingReferences == null) {
-            scanner.scan()
-        } else {
-            if (criteria.isOr || criteria.isNot) {
+            val criteriaResults: MutableSet<Reference> = if (existingReferences == null) {
                 scanner.scan()
             } else {
-                scanner.scan(existingReferences)
+                if (criteria.isOr || criteria.isNot) {
+                    scanner.scan()
+                } else {
+                    scanner.scan(existingReferences)
+                }
             }
-        }
 
-        if(scanner !is FullTableScanner) {
-            // Go through and ensure all the sub criteria is met
-            criteria.subCriteria.forEachIndexed { index, subCriteriaObject ->
-                if(index == 0 && subCriteriaIsRange)
-                    return@forEachIndexed
-                val subCriteriaResults = getReferencesForCriteria<T>(query, subCriteriaObject, criteriaResults,
-                    forceFullScan = false,
-                    collect = false
-                )
-                aggregateFilteredReferences(subCriteriaObject, criteriaResults, subCriteriaResults.first)
+            collector = scanner.collector as QueryCollector<T>?
+            if(scanner !is FullTableScanner) {
+                // Go through and ensure all the sub criteria is met
+                criteria.subCriteria.forEachIndexed { index, subCriteriaObject ->
+                    if(index == 0 && subCriteriaIsRange)
+                        return@forEachIndexed
+                    // A planned filter is the last step so it collects the records it has already read
+                    val isFilter = subCriteriaObject in plan.filters
+                    val subCriteriaResults = getReferencesForCriteria<T>(query, subCriteriaObject, criteriaResults,
+                        forceFullScan = isFilter,
+                        plan = plan,
+                        collect = isFilter && collect
+                    )
+                    if (subCriteriaResults.second != null) {
+                        collector?.close()
+                        collector = subCriteriaResults.second
+                    }
+                    else
+                        aggregateFilteredReferences(subCriteriaObject, criteriaResults, subCriteriaResults.first)
+                }
             }
+
+            return Pair(criteriaResults, collector)
+        } catch (e: Exception) {
+            // Delete what the collector spilled before failing
+            (collector ?: scanner.collector)?.close()
+            throw e
         }
+    }
 
-        return Pair(criteriaResults, scanner.collector as QueryCollector<T>?)
+    /**
+     * Collect the first page of results by reading records in the order of the first query order.  The references
+     * matching the criteria are found first using the indexes.  If there are too many of them to be worth reading in
+     * order, they are returned so the collector sorts them instead.
+     *
+     * @param query Query with a page of results
+     * @param plan Plan to read records in index order
+     * @param order First query order
+     * @return Matching references or the collector holding the page of results
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun <T> getReferencesInOrder(query: Query, plan: QueryPlanner.Plan, order: QueryOrder): Pair<MutableSet<Reference>, QueryCollector<T>?> {
+        val context = Contexts.get(contextId)!!
+        val candidates = if (query.isDefaultQuery(descriptor)) {
+            null
+        } else {
+            val references = getReferencesForCriteria<T>(query, plan.criteria, null, false, plan, collect = false).first
+            val candidates = references as? ReferenceSet ?: ReferenceSet().apply { addAll(references) }
+            if (!QueryPlanner.isIndexOrderCheaper(query, candidates.size.toLong(), plan.queryPlan.estimatedRecords))
+                return Pair(candidates, null)
+            candidates
+        }
+
+        if (query.isTerminated)
+            return Pair(ReferenceSet(), null)
+
+        val scanner = ScannerFactory.getIndexOrderScanner(context, plan.criteria, query.entityType!!, query, persistenceManager, order, candidates)
+        scanner.isLast = true
+        try {
+            scanner.scan()
+        } catch (e: Exception) {
+            scanner.collector?.close()
+            throw e
+        }
+        return Pair(ReferenceSet(), scanner.collector as QueryCollector<T>?)
     }
 
     /**
@@ -335,11 +478,10 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      * @param criteriaResults Criteria results used to aggregate a contrived list
      */
     private fun aggregateFilteredReferences(criteria: QueryCriteria, totalResults: MutableSet<Reference>, criteriaResults: MutableSet<Reference>) {
-        @Suppress("ConvertArgumentToSet") // Nope, not more performant
         when {
-            criteria.flip ->  {totalResults.clear(); totalResults += criteriaResults}
-            criteria.isOr ->  totalResults += criteriaResults
-            criteria.isAnd -> totalResults -= totalResults.filter { !criteriaResults.contains(it) }
+            criteria.flip ->  {totalResults.clear(); totalResults.addAll(criteriaResults)}
+            criteria.isOr ->  totalResults.addAll(criteriaResults)
+            criteria.isAnd -> totalResults.retainAll(criteriaResults)
         }
     }
 
@@ -0,0 +1,161 @@
+package com.onyx.interactors.query.impl
+
+import com.onyx.exception.OnyxException
+import com.onyx.exception.StreamException
+import com.onyx.extension.common.Job
+import com.onyx.extension.common.catchAll
+import com.onyx.extension.common.runJob
+import com.onyx.lang.CloseableIterator
+import com.onyx.persistence.query.QueryCursorPage
+import java.security.SecureRandom
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Cursors held open for remote persistence managers.  Each cursor belongs to the session that opened it and can only
+ * be read or closed by that session.  Cursor ids are random so a client can not guess the id of another client's
+ * cursor.
+ *
+ * Cursors that are not read for idleTimeout are closed by a job that runs while any cursor is open.
+ *
+ * @param idleTimeout Milliseconds a cursor can go unread before it is closed
+ *
+ * @since 3.9.10
+ */
+class QueryCursorRegistry(private val idleTimeout: Long = DEFAULT_IDLE_TIMEOUT) {
+
+    private val cursors = ConcurrentHashMap<Long, OpenCursor>()
+    private val random = SecureRandom()
+    private var idleCursorJob: Job? = null
+
+    /**
+     * Number of open cursors
+     */
+    val size: Int
+        get() = cursors.size
+
+    /**
+     * Hold a cursor open
+     *
+     * @param session Session the cursor belongs to.  Null if it is not opened on behalf of a session.
+     * @param results Cursor to hold open
+     * @return Id of the cursor
+     */
+    fun open(session: Any?, results: CloseableIterator<Any?>): Long {
+        val cursor = OpenCursor(session, results)
+        var cursorId: Long
+        do {
+            cursorId = random.nextLong()
+        } while (cursorId == 0L || cursors.putIfAbsent(cursorId, cursor) != null)
+
+        watchIdleCursors()
+        return cursorId
+    }
+
+    /**
+     * Read the next batch of results from an open cursor
+     *
+     * @param session Session reading the cursor
+     * @param cursorId Id returned when the cursor was opened
+     * @param fetchSize Maximum number of results to read
+     * @return Next batch of results.  The cursor is closed if there are no more results.
+     * @throws OnyxException The cursor is closed, has expired or belongs to another session
+     */
+    @Throws(OnyxException::class)
+    fun fetch(session: Any?, cursorId: Long, fetchSize: Int): QueryCursorPage {
+        val cursor = cursors[cursorId]?.takeIf { it.session === session } ?: throw StreamException(StreamException.CURSOR_CLOSED)
+        val page = try {
+            synchronized(cursor) {
+                cursor.lastRead = System.currentTimeMillis()
+                val results = ArrayList<Any?>()
+                while ((results.isEmpty() || results.size < fetchSize) && cursor.results.hasNext())
+                    results.add(cursor.results.next())
+                QueryCursorPage(cursorId, results, cursor.results.hasNext())
+            }
+        } catch (e: Exception) {
+            close(session, cursorId)
+            throw e
+        }
+
+        if (!page.hasMore)
+            close(session, cursorId)
+        return page
+    }
+
+    /**
+     * Close a cursor before all of its results are read
+     *
+     * @param session Session closing the cursor
+     * @param cursorId Id returned when the cursor was opened
+     * @return Whether the cursor was open and belonged to the session
+     */
+    fun close(session: Any?, cursorId: Long): Boolean {
+        val cursor = cursors[cursorId]?.takeIf { it.session === session } ?: return false
+        return close(cursorId, cursor)
+    }
+
+    /**
+     * Close every cursor opened by a session.  Invoked once the session ends.
+     *
+     * @param session Session that has ended
+     */
+    fun closeAll(session: Any?) = cursors.forEach { (cursorId, cursor) ->
+        if (cursor.session === session)
+            close(cursorId, cursor)
+    }
+
+    /**
+     * Close the cursors that have not been read for idleTimeout
+     */
+    fun closeIdle() {
+        val expired = System.currentTimeMillis() - idleTimeout
+        cursors.forEach { (cursorId, cursor) ->
+            if (cursor.lastRead < expired)
+                close(cursorId, cursor)
+        }
+    }
+
+    /**
+     * Remove a cursor and release what it holds
+     */
+    private fun close(cursorId: Long, cursor: OpenCursor): Boolean {
+        if (!cursors.remove(cursorId, cursor))
+            return false
+        synchronized(cursor) { catchAll { cursor.results.close() } }
+        return true
+    }
+
+    /**
+     * Start the job closing idle cursors if it is not running.  It stops once there are no open cursors.
+     */
+    @Synchronized
+    private fun watchIdleCursors() {
+        if (idleCursorJob != null)
+            return
+
+        idleCursorJob = runJob(maxOf(idleTimeout / 4, 1), TimeUnit.MILLISECONDS) {
+            closeIdle()
+            stopWatchingIfEmpty()
+        }
+    }
+
+    @Synchronized
+    private fun stopWatchingIfEmpty() {
+        if (cursors.isEmpty()) {
+            idleCursorJob?.cancel()
+            idleCursorJob = null
+        }
+    }
+
+    /**
+     * Cursor along with the session it belongs to and the last time it was read
+     */
+    private class OpenCursor(val session: Any?, val results: CloseableIterator<Any?>) {
+        @Volatile var lastRead = System.currentTimeMillis()
+    }
+
+    companion object {
+        // Time a cursor can go unread before it is closed
+        const val DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000L
+    }
+}
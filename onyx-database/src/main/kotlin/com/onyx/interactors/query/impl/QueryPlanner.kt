@@ -0,0 +1,414 @@
+package com.onyx.interactors.query.impl
+
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.diskmap.DiskMap
+import com.onyx.exception.OnyxException
+import com.onyx.extension.isDefaultQuery
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.annotations.values.IndexType
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.query.*
+import java.util.*
+
+/**
+ * Chooses how the criteria of a query are evaluated based on the statistics of the entity indexes.
+ *
+ * Criteria all joined by and are reordered so the most selective identifier or index criteria is scanned first.
+ * Further index criteria are intersected while they are cheaper than reading the records found so far and the rest
+ * are checked by reading those records.  Criteria all joined by or are scanned as written unless reading every
+ * record is cheaper.  If the criteria are negated, grouped or mix and with or, they are evaluated as written.
+ *
+ * A query that only needs its first page of results ordered by the identifier or a default index reads the records
+ * in that order and stops once the page is filled.  This is only done while the matching references are known without
+ * reading the records, since the rest of the results are counted rather than read.
+ *
+ * @param context Schema context the query runs within
+ * @param query Validated query to plan
+ *
+ * @since 3.9.10
+ */
+class QueryPlanner(private val context: SchemaContext, private val query: Query) {
+
+    /**
+     * Chosen plan of a query
+     *
+     * @param queryPlan Description of the plan
+     * @param criteria Root criteria to evaluate
+     * @param forceFullScan Whether the root criteria is evaluated by reading every record
+     * @param filters Criteria evaluated by reading the records found so far
+     * @param lastCriteria Last criteria evaluated
+     * @param order Query order the records are read in.  Null if the results are sorted once they are read.
+     */
+    class Plan(
+        val queryPlan: QueryPlan,
+        val criteria: QueryCriteria,
+        val forceFullScan: Boolean,
+        val filters: Set<QueryCriteria>,
+        val lastCriteria: QueryCriteria,
+        val order: QueryOrder? = null
+    )
+
+    /**
+     * Criteria evaluated as a single scan.  An upper and lower bound on the same attribute are scanned as a range.
+     */
+    private class Unit(val criteria: QueryCriteria, val upperBound: QueryCriteria?, val access: QueryPlanAccess, val estimate: Long?)
+
+    private val descriptor: EntityDescriptor = context.getDescriptorForEntity(query.entityType, if (query.partition === QueryPartitionMode.ALL) "" else query.partition)
+
+    // Descriptor of each partition the query spans
+    private val descriptors: List<EntityDescriptor> by lazy {
+        if (descriptor.hasPartition && query.partition === QueryPartitionMode.ALL)
+            context.getAllPartitions(query.entityType!!).map { context.getDescriptorForEntity(query.entityType, it.value) }
+        else
+            listOf(descriptor)
+    }
+
+    // Number of records the query spans
+    private val records: Long by lazy {
+        descriptors.sumOf {
+            context.getDataFile(it).getHashMap<DiskMap<Any, IManagedEntity>>(it.identifier!!.type, it.entityClass.name).longSize()
+        }
+    }
+
+    /**
+     * Plan the query
+     *
+     * @return Chosen plan
+     * @throws OnyxException Error reading the index statistics
+     */
+    @Throws(OnyxException::class)
+    fun plan(): Plan {
+        val root = query.criteria!!
+        val leaves = arrayListOf(root)
+        leaves += root.subCriteria
+
+        // Unknown attributes are left for the scanners to report
+        val isPlannable = !root.isNot && leaves.none { it.flip || it.isNot } && root.subCriteria.none { it.subCriteria.isNotEmpty() }
+                && leaves.none { access(it) == QueryPlanAccess.FULL_SCAN && descriptor.attributes[it.attribute] == null }
+        val plan = when {
+            isPlannable && root.subCriteria.all { it.isAnd } -> planConjunction(root, leaves)
+            isPlannable && root.subCriteria.all { it.isOr } -> planDisjunction(root, leaves)
+            else -> asWritten(root)
+        }
+        return planIndexOrder(plan) ?: plan
+    }
+
+    /**
+     * Read the records in the order of the first query order if only the first page of results is needed.  The
+     * criteria must either match every record or be answered by identifiers and indexes alone.
+     *
+     * @param plan Plan chosen for the criteria
+     * @return Plan reading the records in order or null if sorting the results is cheaper
+     */
+    private fun planIndexOrder(plan: Plan): Plan? {
+        val order = query.queryOrders?.firstOrNull() ?: return null
+        if (query.maxResults <= 0 || query.isDistinct || query.isLazy || query.isUpdateOrDelete
+                || query.groupBy?.isNotEmpty() == true || query.functions().any { it.type.isGroupFunction })
+            return null
+
+        val isIdentifier = order.attribute == descriptor.identifier!!.name
+        if (!isIdentifier && descriptor.indexes[order.attribute]?.indexType != IndexType.DEFAULT)
+            return null
+
+        val isDefaultQuery = query.isDefaultQuery(descriptor)
+        val matches = when {
+            isDefaultQuery -> records
+            plan.queryPlan.strategy == QueryPlanStrategy.INDEX && plan.filters.isEmpty() -> plan.queryPlan.estimatedResults
+            else -> return null
+        }
+        if (!isIndexOrderCheaper(query, matches, records))
+            return null
+
+        val steps = if (isDefaultQuery) ArrayList() else ArrayList(plan.queryPlan.steps)
+        val page = query.firstRow.toLong() + query.maxResults
+        steps += QueryPlanStep(order.attribute, null, if (isIdentifier) QueryPlanAccess.IDENTIFIER else QueryPlanAccess.INDEX, minOf(page, matches))
+
+        return Plan(QueryPlan(QueryPlanStrategy.INDEX_ORDER, steps, records, matches), plan.criteria, plan.forceFullScan, plan.filters, plan.lastCriteria, order)
+    }
+
+    /**
+     * Plan criteria all joined by and
+     *
+     * @param root Root criteria
+     * @param leaves Root criteria and its sub criteria
+     * @return Chosen plan
+     */
+    private fun planConjunction(root: QueryCriteria, leaves: List<QueryCriteria>): Plan {
+        val units = toUnits(leaves)
+        if (units.any { it.access == QueryPlanAccess.SEARCH || it.access == QueryPlanAccess.RELATIONSHIP })
+            return asWritten(root)
+
+        // Identifier lookups are as cheap as it gets
+        if (units.size == 1 && units.first().access == QueryPlanAccess.IDENTIFIER)
+            return asWritten(root)
+
+        val indexed = units.filter { it.access == QueryPlanAccess.IDENTIFIER || it.access == QueryPlanAccess.INDEX }
+        if (indexed.any { it.estimate == null })
+            return asWritten(root)
+
+        val candidates = indexed.sortedBy { it.estimate!! }
+        val best = candidates.firstOrNull()
+        if (best == null || best.estimate!! > records * FULL_SCAN_RATIO)
+            return fullScan(root, leaves)
+
+        val steps = ArrayList<QueryPlanStep>()
+        val filters: MutableSet<QueryCriteria> = Collections.newSetFromMap(IdentityHashMap())
+        val plannedRoot = copy(best, isAnd = false)
+        steps += step(best)
+
+        var estimate = best.estimate!!
+        var lastCriteria = plannedRoot
+        val remaining = units.filter { it !== best }.toMutableList()
+
+        candidates.drop(1).forEach {
+            if (it.estimate!! <= estimate * INTERSECTION_RATIO) {
+                lastCriteria = copy(it, isAnd = true)
+                plannedRoot.subCriteria.add(lastCriteria)
+                steps += step(it)
+                estimate = if (records == 0L) 0L else maxOf(minOf(1L, estimate), estimate * it.estimate / records)
+                remaining.remove(it)
+            }
+        }
+
+        // The records found so far are read once and checked against all criteria
+        if (remaining.isNotEmpty()) {
+            lastCriteria = copy(remaining.first(), isAnd = true)
+            plannedRoot.subCriteria.add(lastCriteria)
+            filters.add(lastCriteria)
+            steps += QueryPlanStep(remaining.joinToString(", ") { it.criteria.attribute!! }, null, QueryPlanAccess.FILTER, estimate)
+        }
+
+        return Plan(QueryPlan(QueryPlanStrategy.INDEX, steps, records, if (remaining.isEmpty()) estimate else -1L), plannedRoot, false, filters, lastCriteria)
+    }
+
+    /**
+     * Plan criteria all joined by or
+     *
+     * @param root Root criteria
+     * @param leaves Root criteria and its sub criteria
+     * @return Chosen plan
+     */
+    private fun planDisjunction(root: QueryCriteria, leaves: List<QueryCriteria>): Plan {
+        val units = leaves.map { unit(it, null) }
+        if (units.any { it.access == QueryPlanAccess.SEARCH || it.access == QueryPlanAccess.RELATIONSHIP || (it.access == QueryPlanAccess.INDEX && it.estimate == null) })
+            return asWritten(root)
+
+        // Any criteria without an index requires reading every record so do it once
+        if (units.any { it.estimate == null })
+            return fullScan(root, leaves)
+
+        val estimate = minOf(records, units.sumOf { it.estimate!! })
+        if (estimate > records * FULL_SCAN_RATIO)
+            return fullScan(root, leaves)
+
+        return Plan(QueryPlan(QueryPlanStrategy.INDEX, units.mapTo(ArrayList()) { step(it) }, records, estimate), root, false, emptySet(), query.getAllCriteria().last())
+    }
+
+    /**
+     * Read every record once and check it against all criteria
+     *
+     * @param root Root criteria
+     * @param leaves Root criteria and its sub criteria
+     * @return Full scan plan
+     */
+    private fun fullScan(root: QueryCriteria, leaves: List<QueryCriteria>): Plan {
+        val step = QueryPlanStep(leaves.joinToString(", ") { it.attribute!! }, null, QueryPlanAccess.FULL_SCAN, records)
+        return Plan(QueryPlan(QueryPlanStrategy.FULL_SCAN, arrayListOf(step), records), root, true, emptySet(), root)
+    }
+
+    /**
+     * Evaluate the criteria in the order they were written
+     *
+     * @param root Root criteria
+     * @return Plan describing how the criteria are evaluated
+     */
+    private fun asWritten(root: QueryCriteria): Plan {
+        val rootAccess = if (root.isNot) QueryPlanAccess.FULL_SCAN else access(root)
+        val steps = if (rootAccess == QueryPlanAccess.FULL_SCAN) {
+            arrayListOf(QueryPlanStep(root.attribute!!, root.operator, QueryPlanAccess.FULL_SCAN, records))
+        } else {
+            query.getAllCriteria().mapIndexedTo(ArrayList()) { index, criteria ->
+                val access = if (index == 0) rootAccess else access(criteria).let { if (it == QueryPlanAccess.FULL_SCAN) QueryPlanAccess.FILTER else it }
+                QueryPlanStep(criteria.attribute!!, criteria.operator, access, -1L)
+            }
+        }
+
+        return Plan(QueryPlan(QueryPlanStrategy.AS_WRITTEN, steps, records), root, root.isNot, emptySet(), query.getAllCriteria().last())
+    }
+
+    /**
+     * Group criteria into the scans evaluating them.  A lower and an upper bound on the same attribute become a
+     * single range scan.
+     *
+     * @param leaves Criteria to group
+     * @return Scans of the criteria
+     */
+    private fun toUnits(leaves: List<QueryCriteria>): List<Unit> {
+        val units = ArrayList<Unit>()
+        val paired: MutableSet<QueryCriteria> = Collections.newSetFromMap(IdentityHashMap())
+
+        leaves.forEach { leaf ->
+            if (leaf in paired)
+                return@forEach
+            val partner = when (leaf.operator) {
+                in LOWER_BOUNDS -> leaves.firstOrNull { it !in paired && it.attribute == leaf.attribute && it.operator in UPPER_BOUNDS }
+                in UPPER_BOUNDS -> leaves.firstOrNull { it !in paired && it.attribute == leaf.attribute && it.operator in LOWER_BOUNDS }
+                else -> null
+            }
+
+            paired.add(leaf)
+            when {
+                partner == null -> units.add(unit(leaf, null))
+                leaf.operator in LOWER_BOUNDS -> units.add(unit(leaf, partner))
+                else -> units.add(unit(partner, leaf))
+            }
+            if (partner != null)
+                paired.add(partner)
+        }
+
+        return units
+    }
+
+    /**
+     * Classify and estimate a scan
+     *
+     * @param criteria Criteria scanned
+     * @param upperBound Upper bound scanned together with a lower bound criteria
+     * @return Scan of the criteria
+     */
+    private fun unit(criteria: QueryCriteria, upperBound: QueryCriteria?): Unit {
+        val access = access(criteria)
+        val estimate = when (access) {
+            QueryPlanAccess.IDENTIFIER -> when (criteria.operator) {
+                QueryCriteriaOperator.EQUAL -> minOf(records, descriptors.size.toLong())
+                QueryCriteriaOperator.IN -> minOf(records, ((criteria.value as? List<*>)?.size ?: 1).toLong() * descriptors.size)
+                else -> (records * RANGE_SELECTIVITY).toLong()
+            }
+            QueryPlanAccess.INDEX -> estimateIndex(criteria, upperBound)
+            else -> null
+        }
+        return Unit(criteria, upperBound, access, estimate)
+    }
+
+    /**
+     * Estimate the references matching an index criteria across all partitions
+     *
+     * @param criteria Index criteria
+     * @param upperBound Upper bound scanned together with a lower bound criteria
+     * @return Estimated references or null if the index keeps no statistics
+     */
+    private fun estimateIndex(criteria: QueryCriteria, upperBound: QueryCriteria?): Long? {
+        var estimate = 0L
+        descriptors.forEach { partitionDescriptor ->
+            val indexDescriptor = partitionDescriptor.indexes[criteria.attribute] ?: return null
+            if (indexDescriptor.indexType == IndexType.VECTOR)
+                return null
+            val interactor = context.getIndexInteractor(indexDescriptor)
+            val value = criteria.value
+
+            estimate += when (criteria.operator) {
+                QueryCriteriaOperator.EQUAL -> interactor.countAll(value)
+                QueryCriteriaOperator.IN -> (value as? List<*>)?.sumOf { interactor.countAll(it) } ?: interactor.countAll(value)
+                else -> {
+                    val statistics = interactor.statistics() ?: return null
+                    when (criteria.operator) {
+                        QueryCriteriaOperator.GREATER_THAN, QueryCriteriaOperator.GREATER_THAN_EQUAL -> {
+                            val inclusive = criteria.operator === QueryCriteriaOperator.GREATER_THAN_EQUAL
+                            if (upperBound == null) statistics.estimateAbove(value, inclusive)
+                            else statistics.estimateBetween(value, inclusive, upperBound.value, upperBound.operator === QueryCriteriaOperator.LESS_THAN_EQUAL)
+                        }
+                        QueryCriteriaOperator.LESS_THAN -> statistics.estimateBelow(value, false)
+                        QueryCriteriaOperator.LESS_THAN_EQUAL -> statistics.estimateBelow(value, true)
+                        QueryCriteriaOperator.BETWEEN -> (value as? Pair<*, *>)?.let { statistics.estimateBetween(it.first, true, it.second, true) } ?: 0L
+                        QueryCriteriaOperator.NOT_BETWEEN -> (value as? Pair<*, *>)?.let { statistics.references - statistics.estimateBetween(it.first, true, it.second, true) } ?: 0L
+                        else -> return null
+                    }
+                }
+            }
+        }
+        return estimate
+    }
+
+    /**
+     * How a criteria is scanned.  This mirrors the scanner chosen by the ScannerFactory.
+     *
+     * @param criteria Criteria to scan
+     * @return Access of the scan
+     */
+    private fun access(criteria: QueryCriteria): QueryPlanAccess {
+        val attribute = criteria.attribute!!
+        val segments = attribute.split(".")
+        val indexDescriptor = descriptor.indexes[attribute]
+        return when {
+            attribute == Query.FULL_TEXT_ATTRIBUTE -> QueryPlanAccess.SEARCH
+            segments.size > 1 && descriptor.relationships[segments.first()] != null -> QueryPlanAccess.RELATIONSHIP
+            criteria.flip -> QueryPlanAccess.FILTER
+            descriptor.identifier!!.name == attribute && criteria.operator!!.isIndexed -> QueryPlanAccess.IDENTIFIER
+            indexDescriptor != null && criteria.operator!!.isIndexed -> QueryPlanAccess.INDEX
+            indexDescriptor != null && indexDescriptor.indexType != IndexType.DEFAULT
+                    && (criteria.operator === QueryCriteriaOperator.LIKE || criteria.operator === QueryCriteriaOperator.MATCHES) -> QueryPlanAccess.SEARCH
+            else -> QueryPlanAccess.FULL_SCAN
+        }
+    }
+
+    /**
+     * Copy the criteria of a scan so the query criteria are left as written
+     *
+     * @param unit Scan to copy
+     * @param isAnd Whether the copy is joined by and
+     * @return Copied criteria.  A range has its upper bound as its first sub criteria.
+     */
+    private fun copy(unit: Unit, isAnd: Boolean): QueryCriteria {
+        val criteria = copy(unit.criteria, isAnd)
+        if (unit.upperBound != null)
+            criteria.subCriteria.add(copy(unit.upperBound, true))
+        return criteria
+    }
+
+    private fun copy(criteria: QueryCriteria, isAnd: Boolean): QueryCriteria {
+        val copy = QueryCriteria(criteria.attribute!!, criteria.operator!!, criteria.value)
+        copy.isAnd = isAnd
+        copy.attributeDescriptor = criteria.attributeDescriptor
+        return copy
+    }
+
+    /**
+     * Describe a scan
+     *
+     * @param unit Scan to describe
+     * @return Plan step
+     */
+    private fun step(unit: Unit): QueryPlanStep = if (unit.upperBound == null)
+        QueryPlanStep(unit.criteria.attribute!!, unit.criteria.operator, unit.access, unit.estimate ?: -1L)
+    else
+        QueryPlanStep(unit.criteria.attribute!!, QueryCriteriaOperator.BETWEEN, unit.access, unit.estimate ?: -1L)
+
+    companion object {
+
+        /**
+         * Whether reading records in order is cheaper than sorting the matching records.  Reading in order reads
+         * about page / matches of the records before the page is filled.
+         *
+         * @param query Query with the page of results
+         * @param matches Number of references matching the criteria
+         * @param records Number of records the query spans
+         * @return True if fewer records are read in order than there are matches
+         */
+        fun isIndexOrderCheaper(query: Query, matches: Long, records: Long): Boolean {
+            val page = query.firstRow.toDouble() + query.maxResults
+            return matches > 0L && matches.toDouble() * matches > page * records
+        }
+
+        // An index scan matching more than this ratio of the records is slower than reading every record
+        private const val FULL_SCAN_RATIO = 0.25
+
+        // Another index is intersected while it matches less than this many times the references found so far
+        private const val INTERSECTION_RATIO = 10L
+
+        // Estimated ratio of the records matching an identifier range
+        private const val RANGE_SELECTIVITY = 1.0 / 3
+
+        private val LOWER_BOUNDS = setOf(QueryCriteriaOperator.GREATER_THAN, QueryCriteriaOperator.GREATER_THAN_EQUAL)
+        private val UPPER_BOUNDS = setOf(QueryCriteriaOperator.LESS_THAN, QueryCriteriaOperator.LESS_THAN_EQUAL)
+    }
+}
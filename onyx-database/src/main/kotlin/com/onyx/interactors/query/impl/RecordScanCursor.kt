@@ -0,0 +1,108 @@
+package com.onyx.interactors.query.impl
+
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.diskmap.DiskMap
+import com.onyx.diskmap.data.DiskMapEntry
+import com.onyx.extension.hydrateRelationships
+import com.onyx.extension.isDefaultQuery
+import com.onyx.extension.meetsCriteria
+import com.onyx.extension.partitionDescriptors
+import com.onyx.interactors.record.data.Reference
+import com.onyx.lang.CloseableIterator
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.query.Query
+
+/**
+ * Reads the records of each partition the query spans one at a time and returns the ones meeting the criteria.  The
+ * next record is only read when it is asked for so memory does not grow with the number of results.  Used for
+ * queries that are not ordered and would read every record anyway.
+ *
+ * The first row and max results of the query are applied while reading.
+ *
+ * @param query Validated query
+ * @param context Schema context
+ * @param descriptor Descriptor of the entity type being queried
+ *
+ * @since 3.9.10
+ */
+class RecordScanCursor(private val query: Query, private val context: SchemaContext, private val descriptor: EntityDescriptor) : CloseableIterator<IManagedEntity> {
+
+    private val partitions = query.partitionDescriptors(context, descriptor).iterator()
+    private val isDefaultQuery = query.isDefaultQuery(descriptor)
+
+    // Records of the partition being read along with its id and descriptor
+    private var records: Iterator<Any?>? = null
+    private var partitionId = 0L
+    private var partitionDescriptor = descriptor
+
+    private var nextEntity: IManagedEntity? = null
+    private var skipped = 0
+    private var returned = 0
+    private var isClosed = false
+
+    override fun hasNext(): Boolean {
+        if (nextEntity == null && !isClosed)
+            nextEntity = read()
+        return nextEntity != null
+    }
+
+    override fun next(): IManagedEntity {
+        if (!hasNext())
+            throw NoSuchElementException()
+        val entity = nextEntity!!
+        nextEntity = null
+        returned++
+        return entity
+    }
+
+    override fun close() {
+        isClosed = true
+        nextEntity = null
+        records = null
+    }
+
+    /**
+     * Read records until one meets the criteria
+     *
+     * @return Next result or null if there are no more
+     */
+    private fun read(): IManagedEntity? {
+        if (query.maxResults in 1..returned)
+            return null
+
+        context.checkForKillSwitch()
+        while (true) {
+            val records = records ?: nextPartition() ?: return null
+            while (records.hasNext()) {
+                @Suppress("UNCHECKED_CAST")
+                val entry = records.next() as DiskMapEntry<Any?, IManagedEntity?>
+                val entity = entry.value ?: continue
+                val node = entry.node ?: continue
+                if (!isDefaultQuery && !query.meetsCriteria(entity, Reference(partitionId, node.position), context, partitionDescriptor))
+                    continue
+                if (skipped < query.firstRow) {
+                    skipped++
+                    continue
+                }
+                entity.hydrateRelationships(context)
+                return entity
+            }
+            this.records = null
+        }
+    }
+
+    /**
+     * Start reading the next partition
+     *
+     * @return Records of the partition or null if every partition is read
+     */
+    private fun nextPartition(): Iterator<Any?>? {
+        if (!partitions.hasNext())
+            return null
+        val (id, partition) = partitions.next()
+        partitionId = id
+        partitionDescriptor = partition
+        return context.getDataFile(partition).getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, partition.entityClass.name).entries.iterator().also { records = it }
+    }
+}
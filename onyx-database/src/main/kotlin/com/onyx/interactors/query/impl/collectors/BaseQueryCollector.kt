@@ -7,9 +7,11 @@ import com.onyx.extension.hydrateRelationships
 import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.cache.impl.DefaultQueryCacheInteractor
 import com.onyx.interactors.query.QueryCollector
+import com.onyx.interactors.query.data.ExternalSorter
 import com.onyx.interactors.query.data.QueryAttributeResource
 import com.onyx.interactors.query.data.QuerySortComparator
 import com.onyx.interactors.record.data.Reference
+import com.onyx.lang.BoundedPriorityQueue
 import com.onyx.lang.SortedHashSet
 import com.onyx.lang.SortedList
 import com.onyx.lang.concurrent.impl.DefaultClosureLock
@@ -18,6 +20,7 @@ import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.Query
 import java.util.Comparator
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.collections.LinkedHashSet
 
 /**
@@ -54,6 +57,34 @@ abstract class BaseQueryCollector<T>(
             } else
                 if(query.queryOrders?.isNotEmpty() == true) SortedList(EntityComparator(comparator)) as MutableCollection<T> else ArrayList()
 
+    // Best firstRow + maxResults results of an ordered and limited query.  Collectors that support it create it using
+    // createTopResults.  While it is set, results are not limited until they are finalized.
+    protected open val topResults: BoundedPriorityQueue<RankedResult<T>>? = null
+
+    // Results of an ordered query that is not limited to its top results.  Collectors that support it create it using
+    // createSorter.  The results are sorted once they are all collected.
+    protected open val sortedResults: ExternalSorter<RankedResult<T?>>? = null
+
+    // Whether results are kept in the order they are collected so collecting can stop once the page of results is
+    // filled.  Collectors that support it set it using isLimitedInOrder.
+    protected open val stopsAtPage: Boolean = false
+
+    // Whether the sorted results are distinct.  Duplicates are removed once they are sorted next to each other.
+    private var sortsDistinct = false
+
+    // Order results were collected in.  Used to keep results that sort the same in a stable order.
+    private val resultSequence = AtomicLong(0)
+
+    /**
+     * Whether the results kept in memory are bounded by the page of results or by aggregating them rather than by
+     * the number of records collected.  If they are not, collecting more records than the max cardinality fails
+     * rather than running out of memory.
+     *
+     * @since 3.9.10
+     */
+    protected open val boundsResults: Boolean
+        get() = !query.isLazy && (topResults != null || stopsAtPage || (sortedResults != null && query.maxResults in 1..context.maxCardinality))
+
     // Selection Query Attributes
     private val expandedSelections: List<String> by lazy {
         val configuredSelections = query.selections ?: return@lazy emptyList()
@@ -108,7 +139,17 @@ abstract class BaseQueryCollector<T>(
      * @since 2.1.3
      */
     override fun setReferenceSet(value: MutableSet<Reference>) {
-        if(value.size > 1000)
+        if(stopsAtPage) {
+            var skipped = 0
+            value.forEach {
+                if(isFull)
+                    skipped++
+                else
+                    collect(it, it.toManagedEntity(context, descriptor))
+            }
+            skipResults(skipped)
+        }
+        else if(value.size > 1000)
             value.parallelForEach { collect(it, it.toManagedEntity(context, descriptor)) }
         else
             value.forEach { collect(it, it.toManagedEntity(context, descriptor)) }
@@ -126,17 +167,192 @@ abstract class BaseQueryCollector<T>(
         if(shouldCacheResults) {
             referenceLock.perform {
                 if(references.size >= context.maxCardinality) {
-                    throw MaxCardinalityExceededException(context.maxCardinality)
+                    if(!boundsResults)
+                        throw MaxCardinalityExceededException(context.maxCardinality)
+
+                    // Only the page of results is kept in memory.  The references are only kept to cache the results
+                    // so stop caching rather than failing.
+                    shouldCacheResults = false
+                    references.clear()
+                    return@perform
                 }
                 references.add(reference)
             }
         }
     }
 
+    /**
+     * Create the bounded heap of top results if the query is ordered and limited.  Distinct and lazy queries keep
+     * every result so they are not supported.
+     *
+     * @return Bounded heap or null if results should be sorted and limited as they are collected
+     * @since 3.9.10
+     */
+    protected fun createTopResults(): BoundedPriorityQueue<RankedResult<T>>? {
+        if(query.queryOrders?.isNotEmpty() != true || query.maxResults <= 0 || query.isDistinct || query.isLazy)
+            return null
+
+        val capacity = query.firstRow.toLong() + query.maxResults
+        if(capacity > Int.MAX_VALUE)
+            return null
+
+        return BoundedPriorityQueue(capacity.toInt(), rankedComparator())
+    }
+
+    /**
+     * Create the sorter for the results of an ordered or distinct query that is not limited to its top results.
+     * Results are spilled to a temporary store while there are too many of them to keep in memory.
+     *
+     * @param toValue Value the result is spilled as
+     * @param fromValue Read the result back from the spilled value.  Null if it no longer exists.
+     * @param distinct Whether duplicate results are removed once they are sorted.  They must be added with their hash.
+     * @return Sorter or null if the query is not ordered or distinct or only keeps its top results
+     * @since 3.9.10
+     */
+    protected fun <R> createSorter(toValue: (RankedResult<R?>) -> Any?, fromValue: (Any?) -> R?, distinct: Boolean = false): ExternalSorter<RankedResult<R?>>? {
+        if(topResults != null || (query.queryOrders?.isNotEmpty() != true && !distinct))
+            return null
+
+        sortsDistinct = distinct
+        return createSorter(rankedComparator(distinct), toValue, fromValue)
+    }
+
+    /**
+     * Create a sorter of ranked results
+     *
+     * @param comparator Orders the ranked results
+     * @param toValue Value the result is spilled as
+     * @param fromValue Read the result back from the spilled value.  Null if it no longer exists.
+     * @return Sorter spilling to a temporary store once it has querySortRunSize results
+     * @since 3.9.10
+     */
+    protected fun <R> createSorter(comparator: Comparator<RankedResult<R?>>, toValue: (RankedResult<R?>) -> Any?, fromValue: (Any?) -> R?): ExternalSorter<RankedResult<R?>> =
+        ExternalSorter(comparator, context,
+            toSpilled = { ArrayList<Any?>(it.sortKey.size + 3).apply { add(it.sequence); add(it.hash); add(toValue(it)); addAll(it.sortKey) } },
+            fromSpilled = {
+                val values = it as List<*>
+                RankedResult(values.subList(3, values.size).toTypedArray(), values[0] as Long, fromValue(values[2]), hash = values[1] as Int)
+            },
+            runSize = context.querySortRunSize)
+
+    /**
+     * Add a result to be sorted
+     *
+     * @param sorter Sorter of the results
+     * @param sortKey Values the result is sorted by
+     * @param result Result to sort
+     * @param reference Reference of the record the result is from
+     * @param hash Hash of the values that make the result a duplicate
+     * @since 3.9.10
+     */
+    protected fun <R> addSortedResult(sorter: ExternalSorter<RankedResult<R?>>, sortKey: Array<Any?>, result: R, reference: Reference?, hash: Int = 0) {
+        val rankedResult = RankedResult<R?>(sortKey, resultSequence.getAndIncrement(), result, reference, hash)
+        resultLock.perform { sorter.add(rankedResult) }
+    }
+
+    /**
+     * Orders ranked results by their sort key, then by their hash if they are distinct and then by the order they
+     * were collected in.  Ordering by hash puts duplicates next to each other.
+     */
+    private fun <R> rankedComparator(distinct: Boolean = false): Comparator<RankedResult<R>> = Comparator { o1, o2 ->
+        var compareValue = comparator.compareSortKeys(o1.sortKey, o2.sortKey)
+        if(compareValue == 0 && distinct)
+            compareValue = o1.hash.compareTo(o2.hash)
+        if(compareValue != 0) compareValue else o1.sequence.compareTo(o2.sequence)
+    }
+
+    /**
+     * Remove duplicates from sorted results.  Duplicates are sorted next to each other because they have the same
+     * sort key and hash so only the keys of the results sharing both are kept to compare.  The first result collected
+     * of each duplicate is kept.
+     *
+     * @param key Values that make a result a duplicate
+     * @return Sorted results without duplicates
+     * @since 3.9.10
+     */
+    protected fun <R> Sequence<RankedResult<R?>>.withoutDuplicates(key: (RankedResult<R?>) -> Any?): Sequence<RankedResult<R?>> {
+        var previous: RankedResult<R?>? = null
+        val keys = HashSet<Any?>()
+        return filter { rankedResult ->
+            val last = previous
+            if(last == null || last.hash != rankedResult.hash
+                    || (last.sortKey.isNotEmpty() && comparator.compareSortKeys(last.sortKey, rankedResult.sortKey) != 0))
+                keys.clear()
+            previous = rankedResult
+            keys.add(key(rankedResult))
+        }
+    }
+
+    /**
+     * Fail if there are more results to keep in memory than the max cardinality
+     *
+     * @param size Number of results kept in memory
+     * @throws MaxCardinalityExceededException There are more results than the max cardinality
+     * @since 3.9.10
+     */
+    protected fun checkCardinality(size: Int) {
+        if(size > context.maxCardinality)
+            throw MaxCardinalityExceededException(context.maxCardinality)
+    }
+
+    /**
+     * Delete the results spilled to a temporary store
+     *
+     * @since 3.9.10
+     */
+    override fun close() {
+        sortedResults?.close()
+    }
+
+    /**
+     * Offer a result to the top results.  The sort key should be read before so the lock is only held while
+     * comparing.
+     *
+     * @param topResults Bounded heap of top results
+     * @param sortKey Values the result is sorted by
+     * @param result Result to offer
+     * @since 3.9.10
+     */
+    protected fun offerTopResult(topResults: BoundedPriorityQueue<RankedResult<T>>, sortKey: Array<Any?>, result: T) {
+        val rankedResult = RankedResult(sortKey, resultSequence.getAndIncrement(), result)
+        resultLock.perform { topResults.offer(rankedResult) }
+    }
+
+    /**
+     * Whether results can be kept in the order they are collected.  The query must be limited and must not sort,
+     * remove duplicates or load its results lazily.
+     *
+     * @return True if collecting can stop once the page of results is filled
+     * @since 3.9.10
+     */
+    protected fun isLimitedInOrder(): Boolean =
+        query.maxResults > 0 && query.queryOrders?.isNotEmpty() != true && !query.isDistinct && !query.isLazy
+
+    /**
+     * Whether the page of results is already collected
+     *
+     * @since 3.9.10
+     */
+    override val isFull: Boolean
+        get() = stopsAtPage && numberOfResults.get() >= query.firstRow.toLong() + query.maxResults
+
     protected fun increment() {
         numberOfResults.incrementAndGet()
     }
 
+    /**
+     * Count results that match but are not collected.  The collected references are no longer all the results so
+     * they are not cached.
+     *
+     * @since 3.9.10
+     */
+    override fun skipResults(count: Int) {
+        if(count > 0) {
+            numberOfResults.addAndGet(count)
+            shouldCacheResults = false
+        }
+    }
+
     /**
      * Should cache the results.  This tells the query caching that the result size is acceptable or too large to cache.
      *
@@ -150,7 +366,9 @@ abstract class BaseQueryCollector<T>(
      * @since 2.1.3
      */
     protected open fun limit():Boolean {
-        if(query.firstRow > 0
+        if(topResults != null || sortedResults != null)
+            return false
+        else if(query.firstRow > 0
                 && startIndex <= query.firstRow
                 && query.maxResults > 0
                 && query.maxResults < results.size) {
@@ -213,6 +431,20 @@ abstract class BaseQueryCollector<T>(
     override fun finalizeResults() {
         if(!isFinalized) {
 
+            // Top results are only sorted once all results are collected.  Skip the rows before the first row.
+            topResults?.let { top ->
+                results = top.toSortedList().drop(query.firstRow).mapTo(ArrayList()) { it.result }
+            }
+
+            // Sorted results are merged once all results are collected.  Only the page of results is kept.
+            sortedResults?.let { sorter ->
+                try {
+                    results = pageOf(sorter)
+                } finally {
+                    sorter.close()
+                }
+            }
+
             // If it is only entity results, hydrate the relationships
             if (query.groupBy?.isEmpty() != false
                     && query.selections?.isEmpty() != false) {
@@ -249,6 +481,37 @@ abstract class BaseQueryCollector<T>(
         }
     }
 
+    /**
+     * Read the page of sorted results.  Distinct results are all read so they are counted without their duplicates.
+     *
+     * @param sorter Sorter of the results
+     * @return Page of results
+     * @throws MaxCardinalityExceededException The page has more results than the max cardinality
+     */
+    private fun pageOf(sorter: ExternalSorter<RankedResult<T?>>): MutableCollection<T> {
+        var sorted = sorter.sorted().asSequence()
+        if(sortsDistinct)
+            sorted = sorted.withoutDuplicates { it.result }
+
+        val page = ArrayList<T>()
+        var index = 0
+        for(rankedResult in sorted) {
+            if(index >= query.firstRow && (query.maxResults <= 0 || index < query.firstRow.toLong() + query.maxResults)) {
+                rankedResult.result?.let {
+                    page.add(it)
+                    checkCardinality(page.size)
+                }
+            } else if(index >= query.firstRow && !sortsDistinct) {
+                break
+            }
+            index++
+        }
+
+        if(sortsDistinct)
+            numberOfResults.set(index)
+        return page
+    }
+
     /**
      * Get final limited references
      *
@@ -293,6 +556,13 @@ abstract class BaseQueryCollector<T>(
      */
     override fun getNumberOfResults(): Int = numberOfResults.get()
 
+    /**
+     * Result kept within the top results along with the values it is sorted by
+     *
+     * @since 3.9.10
+     */
+    protected class RankedResult<T>(val sortKey: Array<Any?>, val sequence: Long, val result: T, val reference: Reference? = null, val hash: Int = 0)
+
     /**
      * Class used to compare entity order
      */
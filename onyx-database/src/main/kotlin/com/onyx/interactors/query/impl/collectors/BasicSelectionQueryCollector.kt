@@ -2,12 +2,9 @@ package com.onyx.interactors.query.impl.collectors
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.interactors.record.data.Reference
-import com.onyx.lang.SortedHashSet
-import com.onyx.lang.SortedList
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.Query
-import java.util.ArrayList
 
 /**
  * Used for basic selection queries
@@ -18,15 +15,14 @@ open class BasicSelectionQueryCollector(
     descriptor: EntityDescriptor
 ) : BaseQueryCollector<Map<String, Any?>>(query, context, descriptor) {
 
-    override var results: MutableCollection<Map<String, Any?>> =
-            if(query.isDistinct) {
-                if(query.queryOrders?.isNotEmpty() == true) {
-                    SortedHashSet(MapComparator(comparator))
-                } else {
-                    HashSet()
-                }
-            } else
-                if(query.queryOrders?.isNotEmpty() == true) SortedList(MapComparator(comparator)) else ArrayList()
+    override val topResults = createTopResults()
+    override val stopsAtPage = isLimitedInOrder()
+
+    override var results: MutableCollection<Map<String, Any?>> = ArrayList()
+
+    // Distinct results are sorted by their hash so duplicates are removed once they are next to each other
+    @Suppress("UNCHECKED_CAST")
+    override val sortedResults = createSorter<Map<String, Any?>>({ it.result }, { it as Map<String, Any?>? }, distinct = query.isDistinct)
 
     override fun collect(reference: Reference, entity: IManagedEntity?) {
         super.collect(reference, entity)
@@ -34,13 +30,34 @@ open class BasicSelectionQueryCollector(
         if(entity == null)
             return
 
-        val selectionResult = getSelectionRecord(entity, reference)
+        addResult(getSelectionRecord(entity, reference), reference)
+        limit()
+    }
 
-        resultLock.perform {
-            if(results.add(selectionResult))
-                increment()
+    /**
+     * Add a selection result to the top results, the sorter or the results
+     *
+     * @param selectionResult Selection record
+     * @param reference Reference of the record it was selected from.  Null if it was spilled.
+     * @since 3.9.10
+     */
+    protected fun addResult(selectionResult: Map<String, Any?>, reference: Reference?) {
+        val topResults = topResults
+        val sortedResults = sortedResults
+        if(topResults != null) {
+            offerTopResult(topResults, comparator.sortKey(selectionResult), selectionResult)
+            increment()
+        } else if(sortedResults != null) {
+            addSortedResult(sortedResults, comparator.sortKey(selectionResult), selectionResult, reference,
+                if(query.isDistinct) selectionResult.hashCode() else 0)
+            increment()
+        } else {
+            resultLock.perform {
+                if(results.add(selectionResult))
+                    increment()
+                checkCardinality(results.size)
+            }
         }
-        limit()
     }
 
 }
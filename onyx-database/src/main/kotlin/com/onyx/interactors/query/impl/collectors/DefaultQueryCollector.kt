@@ -1,8 +1,8 @@
 package com.onyx.interactors.query.impl.collectors
 
 import com.onyx.descriptor.EntityDescriptor
+import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.record.data.Reference
-import com.onyx.lang.SortedList
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.Query
@@ -17,18 +17,63 @@ class DefaultQueryCollector(
     descriptor: EntityDescriptor
 ) : BaseQueryCollector<IManagedEntity>(query, context, descriptor) {
 
-    override var results: MutableCollection<IManagedEntity> = if(query.queryOrders?.isNotEmpty() == true) SortedList(EntityComparator(comparator)) else ArrayList()
-    override val references: MutableList<Reference> = if(query.isLazy) SortedList(ReferenceComparator(comparator)) else ArrayList()
+    override val topResults = createTopResults()
+    override val stopsAtPage = isLimitedInOrder()
+    override var results: MutableCollection<IManagedEntity> = ArrayList()
+    override val references: MutableList<Reference> = ArrayList()
+
+    // Entities are spilled as their reference and read again once sorted
+    override val sortedResults = if(query.isLazy) null else createSorter<IManagedEntity>({ it.reference }, { (it as Reference).toManagedEntity(context, descriptor) })
+
+    // Lazy queries only sort the references.  They are sorted by the values read while collecting so the records are
+    // not read again while sorting.
+    private val sortedReferences = if(query.isLazy) createSorter<Reference>({ it.result }, { it as Reference }) else null
 
     override fun collect(reference: Reference, entity: IManagedEntity?) {
         super.collect(reference, entity)
         if (entity == null)
             return
 
-        if(!query.isLazy)
-            resultLock.perform { results.add(entity) }
+        val topResults = topResults
+        val sortedResults = sortedResults
+        when {
+            topResults != null -> offerTopResult(topResults, comparator.sortKey(entity), entity)
+            sortedResults != null -> addSortedResult(sortedResults, comparator.sortKey(entity), entity, reference)
+            sortedReferences != null -> addSortedResult(sortedReferences, comparator.sortKey(entity), reference, reference)
+            !query.isLazy -> resultLock.perform { results.add(entity) }
+        }
         increment()
         limit()
     }
 
+    /**
+     * Sort the references of a lazy query before they are limited
+     *
+     * @since 3.9.10
+     */
+    override fun finalizeResults() {
+        if(!isFinalized) {
+            sortedReferences?.let { sorter ->
+                try {
+                    val sorted = sorter.sorted().asSequence().mapNotNullTo(ArrayList()) { it.result }
+                    references.clear()
+                    references.addAll(sorted)
+                } finally {
+                    sorter.close()
+                }
+            }
+        }
+        super.finalizeResults()
+    }
+
+    /**
+     * Delete the results and references spilled to a temporary store
+     *
+     * @since 3.9.10
+     */
+    override fun close() {
+        sortedReferences?.close()
+        super.close()
+    }
+
 }
\ No newline at end of file
@@ -22,8 +22,17 @@ class GroupFunctionQueryCollector(
     // Override to define sort comparator
     override var results: MutableCollection<Map<String, Any?>> = if(query.shouldSortResults()) SortedList(MapComparator(comparator)) else ArrayList()
 
-    // Group results
-    private val groups = OptimisticLockingMap(HashMap<List<Any?>, MutableMap<String, Any?>>())
+    // Groups aggregated in memory.  Once there are querySortRunSize of them, the records of other groups are spilled.
+    private val groups = OptimisticLockingMap(HashMap<List<Any?>, MutableMap<String, Any?>?>())
+
+    // Records of the groups that are not in memory sorted by the hash of their group.  Each group is aggregated once
+    // its records are read back next to each other.
+    @Suppress("UNCHECKED_CAST")
+    private val groupedRecords = createSorter<List<Any?>>(compareBy({ it.hash }, { it.sequence }), { it.result }, { it as List<Any?>? })
+
+    // Only the groups are kept in memory so there may be more records than the max cardinality
+    override val boundsResults: Boolean
+        get() = true
 
     // Functions that require group aggregation
     private val selectionFunctions = selections.filter { it.function?.type?.isGroupFunction == true }
@@ -50,12 +59,42 @@ class GroupFunctionQueryCollector(
         super.collect(reference, entity)
 
         val groupResult = getGroupResults(entity)
+        val values = getAttributeValues(entity)
 
         val map = groups.getOrPut(groupResult) {
+            if(groups.m.size >= context.querySortRunSize)
+                return@getOrPut null
             increment()
             HashMap()
         }
 
+        if(map == null)
+            addSortedResult(groupedRecords, emptyArray(), arrayListOf(groupResult, values), reference, groupResult.hashCode())
+        else
+            aggregate(map, values)
+    }
+
+    /**
+     * Get the values of the query attributes.  Group functions are aggregated later so they are not applied.
+     */
+    private fun getAttributeValues(entity: IManagedEntity) : HashMap<String, Any?> {
+        val values = HashMap<String, Any?>()
+        allQueryAttributes.forEach { attribute ->
+            values[attribute.selection] = if (attribute.function == null || attribute.function.type.isGroupFunction)
+                comparator.getAttribute(attribute, entity, context)
+            else
+                attribute.function.execute(comparator.getAttribute(attribute, entity, context))
+        }
+        return values
+    }
+
+    /**
+     * Aggregate the attribute values of a record into its group
+     *
+     * @param map Group the record belongs to
+     * @param values Attribute values of the record
+     */
+    private fun aggregate(map: MutableMap<String, Any?>, values: Map<String, Any?>) {
         allQueryAttributes.forEach { attribute ->
             if (attribute.function?.type?.isGroupFunction == true) {
                 val function = synchronized(map) {
@@ -63,15 +102,10 @@ class GroupFunctionQueryCollector(
                         attribute.function.newInstance()
                     }
                 } as QueryFunction
-                function.preProcess(query, comparator.getAttribute(attribute, entity, context)) // Process function
+                function.preProcess(query, values[attribute.selection]) // Process function
             } else {
-                val attributeValue = if (attribute.function == null) {
-                    comparator.getAttribute(attribute, entity, context)
-                } else {
-                    attribute.function.execute(comparator.getAttribute(attribute, entity, context))
-                }
                 map.getOrPut(attribute.selection) {
-                    attributeValue
+                    values[attribute.selection]
                 }
             }
         }
@@ -92,20 +126,57 @@ class GroupFunctionQueryCollector(
         return selectionResult
     }
 
+    /**
+     * Finish aggregating a group and add it to the results
+     */
+    private fun addGroup(group: MutableMap<String, Any?>) {
+        selectionFunctions.forEach {
+            val function = group[it.selection] as QueryFunction
+            function.postProcess(query)
+            group[it.selection] = function.getFunctionValue()
+        }
+
+        results.add(group)
+        limit()
+        checkCardinality(results.size)
+    }
+
+    /**
+     * Delete the records spilled to a temporary store
+     *
+     * @since 3.9.10
+     */
+    override fun close() {
+        groupedRecords.close()
+        super.close()
+    }
+
     /**
      * Re-format the results
      */
     override fun finalizeResults() {
         if(!isFinalized) {
-            groups.values.forEach { group ->
-                selectionFunctions.forEach {
-                    val function = group[it.selection] as QueryFunction
-                    function.postProcess(query)
-                    group[it.selection] = function.getFunctionValue()
-                }
+            groups.values.forEach { addGroup(it!!) }
+
+            // Spilled records are read back by the hash of their group.  Only the groups of one hash are aggregated at
+            // a time.
+            try {
+                val spilledGroups = HashMap<List<Any?>, MutableMap<String, Any?>>()
+                var hash: Int? = null
+                groupedRecords.sorted().forEach { rankedResult ->
+                    if(rankedResult.hash != hash) {
+                        spilledGroups.values.forEach { addGroup(it) }
+                        spilledGroups.clear()
+                        hash = rankedResult.hash
+                    }
 
-                results.add(group)
-                limit()
+                    val record = rankedResult.result!!
+                    @Suppress("UNCHECKED_CAST")
+                    aggregate(spilledGroups.getOrPut(record[0] as List<Any?>) { increment(); HashMap() }, record[1] as Map<String, Any?>)
+                }
+                spilledGroups.values.forEach { addGroup(it) }
+            } finally {
+                groupedRecords.close()
             }
 
             // Remove un-selected attributes
@@ -16,44 +16,66 @@ class GroupSelectionQueryCollector(
         descriptor: EntityDescriptor
 ) : BasicSelectionQueryCollector(query, context, descriptor) {
 
-    private val groupedResults = HashSet<Map<String, Any?>>()
+    private val groupedResults = HashSet<List<Any?>>()
     private val groupAttributes:List<QueryAttributeResource> by lazy {
         val groupStrings = query.groupBy ?: emptyList()
         QueryAttributeResource.create(groupStrings.toHashSet().toTypedArray(), descriptor, query, context)
     }
 
+    // Records sorted by the hash of their group so the first record of each group is found once they are all
+    // collected.  Only a query keeping the first page of groups remembers the groups in memory instead.
+    @Suppress("UNCHECKED_CAST")
+    private val groupedRecords = if(stopsAtPage) null else createSorter<Map<String, Any?>>(compareBy({ it.hash }, { it.sequence }), { it.result }, { it as Map<String, Any?>? })
+
     override fun collect(reference: Reference, entity: IManagedEntity?) {
         if(entity == null)
             return
 
-        val selections = getGroupResults(entity)
         val selectionResult = getSelectionRecord(entity, reference)
+        val groupedRecords = groupedRecords
 
-        resultLock.perform {
-            if (!groupedResults.contains(selections)) {
-                if(results.add(selectionResult))
-                    increment()
-                groupedResults.add(selections)
-            }
-        }
+        if(groupedRecords != null)
+            addSortedResult(groupedRecords, emptyArray(), selectionResult, reference, getGroup(selectionResult).hashCode())
+        else if(resultLock.perform { groupedResults.add(getGroup(selectionResult)) })
+            addResult(selectionResult, reference)
 
         limit()
 
     }
 
     /**
-     * Get groupings
+     * Add the first record of each group to the results
+     *
+     * @since 3.9.10
      */
-    private fun getGroupResults(entity: IManagedEntity) : HashMap<String, Any?> {
-        val selectionResult = HashMap<String, Any?>()
-        groupAttributes.forEach { selection ->
-            if(selection.function == null)
-                selectionResult[selection.selection] = comparator.getAttribute(selection, entity, context)
-            else
-                selectionResult[selection.selection] = selection.function.execute(comparator.getAttribute(selection, entity, context))
+    override fun finalizeResults() {
+        if(!isFinalized) {
+            groupedRecords?.let { sorter ->
+                try {
+                    sorter.sorted().asSequence()
+                        .withoutDuplicates { getGroup(it.result!!) }
+                        .forEach { addResult(it.result!!, it.reference) }
+                } finally {
+                    sorter.close()
+                }
+            }
         }
+        super.finalizeResults()
+    }
 
-        return selectionResult
+    /**
+     * Delete the records spilled to a temporary store
+     *
+     * @since 3.9.10
+     */
+    override fun close() {
+        groupedRecords?.close()
+        super.close()
     }
 
+    /**
+     * Get the values of the group attributes from a selection record
+     */
+    private fun getGroup(selectionResult: Map<String, Any?>) : List<Any?> = groupAttributes.map { selectionResult[it.selection] }
+
 }
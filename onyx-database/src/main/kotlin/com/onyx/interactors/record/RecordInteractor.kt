@@ -22,6 +22,17 @@ interface RecordInteractor {
     @Throws(OnyxException::class)
     fun save(entity: IManagedEntity): PutResult
 
+    /**
+     * Save several entities and persist them to the data file.  Record callbacks are invoked the same as [save].
+     *
+     * @param entities Entities to save
+     * @return Result of each save in the same order as the entities
+     * @throws OnyxException Attribute missing
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun saveAll(entities: List<IManagedEntity>): List<PutResult> = entities.map { save(it) }
+
     /**
      * Delete
      *
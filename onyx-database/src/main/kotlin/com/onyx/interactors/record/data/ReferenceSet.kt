@@ -0,0 +1,140 @@
+package com.onyx.interactors.record.data
+
+import com.onyx.lang.LongHashSet
+
+/**
+ * Set of record references grouped by partition.  The record positions of each partition are primitive longs so a
+ * reference is only allocated when it is read back through the iterator.  Set algebra between two reference sets does
+ * not allocate references.
+ *
+ * @since 3.9.10
+ */
+class ReferenceSet : AbstractMutableSet<Reference>() {
+
+    @PublishedApi
+    internal val partitions = HashMap<Long, LongHashSet>()
+
+    override val size: Int
+        get() = partitions.values.sumOf { it.size }
+
+    /**
+     * Add a reference
+     *
+     * @param partition Partition the record is in
+     * @param reference Record position within the partition
+     * @return Whether the reference was not already within the set
+     */
+    fun add(partition: Long, reference: Long): Boolean = partitions.getOrPut(partition) { LongHashSet() }.add(reference)
+
+    override fun add(element: Reference): Boolean = add(element.partition, element.reference)
+
+    /**
+     * Add every record position of a partition
+     *
+     * @param partition Partition the records are in
+     * @param references Record positions within the partition
+     */
+    fun addAll(partition: Long, references: Set<Long>) {
+        val positions = partitions.getOrPut(partition) { LongHashSet(references.size) }
+        if (references is LongHashSet)
+            positions.addAll(references)
+        else
+            references.forEach { positions.add(it) }
+    }
+
+    /**
+     * Whether a reference is within the set
+     *
+     * @param partition Partition the record is in
+     * @param reference Record position within the partition
+     * @return True if the set contains it
+     */
+    fun contains(partition: Long, reference: Long): Boolean = partitions[partition]?.contains(reference) == true
+
+    override fun contains(element: Reference): Boolean = contains(element.partition, element.reference)
+
+    override fun remove(element: Reference): Boolean = partitions[element.partition]?.remove(element.reference) == true
+
+    override fun addAll(elements: Collection<Reference>): Boolean {
+        if (elements !is ReferenceSet)
+            return super.addAll(elements)
+
+        var changed = false
+        elements.partitions.forEach { (partition, references) ->
+            if (partitions.getOrPut(partition) { LongHashSet(references.size) }.addAll(references))
+                changed = true
+        }
+        return changed
+    }
+
+    override fun retainAll(elements: Collection<Reference>): Boolean {
+        if (elements !is ReferenceSet)
+            return super.retainAll(elements)
+
+        var changed = false
+        val iterator = partitions.entries.iterator()
+        while (iterator.hasNext()) {
+            val (partition, references) = iterator.next()
+            val other = elements.partitions[partition]
+            if (other == null) {
+                if (references.isNotEmpty())
+                    changed = true
+                iterator.remove()
+            } else if (references.retainAll(other)) {
+                changed = true
+            }
+        }
+        return changed
+    }
+
+    override fun removeAll(elements: Collection<Reference>): Boolean {
+        if (elements !is ReferenceSet)
+            return super.removeAll(elements)
+
+        var changed = false
+        elements.partitions.forEach { (partition, references) ->
+            if (partitions[partition]?.removeAll(references) == true)
+                changed = true
+        }
+        return changed
+    }
+
+    override fun clear() = partitions.clear()
+
+    /**
+     * Iterate the references without allocating them
+     *
+     * @param action Invoked with the partition and record position of each reference
+     */
+    inline fun forEachReference(action: (partition: Long, reference: Long) -> Unit) {
+        for ((partition, references) in partitions)
+            references.forEachLong { action(partition, it) }
+    }
+
+    override fun iterator(): MutableIterator<Reference> = object : MutableIterator<Reference> {
+        private val partitionIterator = partitions.entries.iterator()
+        private var partition = 0L
+        private var references: MutableIterator<Long>? = null
+
+        override fun hasNext(): Boolean {
+            while (references?.hasNext() != true) {
+                if (!partitionIterator.hasNext())
+                    return false
+                val entry = partitionIterator.next()
+                partition = entry.key
+                references = entry.value.iterator()
+            }
+            return true
+        }
+
+        override fun next(): Reference {
+            if (!hasNext())
+                throw NoSuchElementException()
+            return Reference(partition, references!!.next())
+        }
+
+        override fun remove() {
+            references!!.remove()
+        }
+    }
+}
@@ -32,7 +32,7 @@ open class DefaultRecordInteractor(val entityDescriptor: EntityDescriptor, conte
         get() = context.getDataFile(entityDescriptor)
 
     protected val records: DiskMap<Any, IManagedEntity>
-        get() = dataFile.getHashMap(entityDescriptor.identifier!!.type, entityDescriptor.entityClass.name)
+        get() = dataFile.getHashMap(entityDescriptor.identifier!!.type, entityDescriptor.entityClass.name, entityDescriptor.mapType)
 
     init {
         contextReference = WeakReference(context)
@@ -48,7 +48,6 @@ open class DefaultRecordInteractor(val entityDescriptor: EntityDescriptor, conte
      * @since 1.2.3 Optimized to only do a put if there are not pre persist callbacks
      * @since 2.0.0 Optimized to return the old reference value
      */
-    @Synchronized
     override fun save(entity: IManagedEntity): PutResult {
         val identifierValue = entity.identifier(context)!!
         val partitionId = entity.partitionId(context)
@@ -70,6 +69,36 @@ open class DefaultRecordInteractor(val entityDescriptor: EntityDescriptor, conte
         return result
     }
 
+    /**
+     * Save several entities with a single put into the record map.  The map inserts them in key order.
+     *
+     * @param entities Entities to save
+     * @return Result of each save in the same order as the entities
+     * @throws OnyxException Error saving entity
+     *
+     * @since 3.9.10
+     */
+    override fun saveAll(entities: List<IManagedEntity>): List<PutResult> {
+        val results = records.putAllAndGet(entities.map { it.identifier(context)!! to it }) { index, recordId ->
+            val entity = entities[index]
+            if (recordId > 0L) {
+                context.queryCacheInteractor.updateCachedQueryResultsForEntity(entity, this.entityDescriptor, Reference(entity.partitionId(context), recordId), QueryListenerEvent.PRE_UPDATE)
+                entity.onPreUpdate(context, entityDescriptor)
+            } else {
+                entity.onPreInsert(context, entityDescriptor)
+            }
+        }
+
+        results.forEachIndexed { index, result ->
+            if (result.isInsert)
+                entities[index].onPostInsert(context, entityDescriptor)
+            else
+                entities[index].onPostUpdate(context, entityDescriptor)
+        }
+
+        return results
+    }
+
     /**
      * Get an entity by primary key
      *
@@ -94,7 +123,6 @@ open class DefaultRecordInteractor(val entityDescriptor: EntityDescriptor, conte
      * @param entity Entity to delete
      * @throws OnyxException Error deleting an entity
      */
-    @Synchronized
     @Throws(OnyxException::class)
     override fun delete(entity: IManagedEntity) {
         val identifierValue = entity.identifier(context)
@@ -113,7 +141,6 @@ open class DefaultRecordInteractor(val entityDescriptor: EntityDescriptor, conte
      *
      * @param primaryKey Identifier of an entity
      */
-    @Synchronized
     override fun deleteWithId(primaryKey: Any) = records.remove(primaryKey)
 
     /**
@@ -45,12 +45,31 @@ open class SequenceRecordInteractor(entityDescriptor: EntityDescriptor, context:
      * @since 2.0.0 Optimized to return the old reference value
      */
     @Throws(OnyxException::class)
-    @Synchronized
     override fun save(entity: IManagedEntity): PutResult {
         autoIncrementSequence(entity)
         return super.save(entity)
     }
 
+    /**
+     * Save several entities.  Identifiers are assigned in order so entities without one are appended to the
+     * record map.  The last sequence value is persisted once for all of them.
+     *
+     * @param entities Entities to save
+     * @return Result of each save in the same order as the entities
+     * @throws OnyxException Error saving entity
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun saveAll(entities: List<IManagedEntity>): List<PutResult> {
+        sequenceLock.perform {
+            val lastValue = entities.mapNotNull { nextSequence(it) }.lastOrNull()
+            if (lastValue != null)
+                metadata.put(LAST_SEQUENCE_VALUE, lastValue)
+        }
+        return super<DefaultRecordInteractor>.saveAll(entities)
+    }
+
     /**
      * Automatically increment the identifier value if it is undefined.  If it is, ensure the maximum sequence value
      * is less than or equal to the id value so it skips unused sequences and does not mess up with the counting.
@@ -59,22 +78,32 @@ open class SequenceRecordInteractor(entityDescriptor: EntityDescriptor, context:
      * @since 2.0.0 Ensured this is compatible with any kind of number.
      */
     private fun autoIncrementSequence(entity:IManagedEntity) {
-        var identifierValue:Number = entity.identifier(context) as Number? ?: 0L
-
         sequenceLock.perform {
-            when {
-                identifierValue.toLong() == 0L -> {
-                    identifierValue = sequenceValue.incrementAndGet().castTo(entityDescriptor.identifier!!.type) as Number
-                    entity[context, entityDescriptor, entityDescriptor.identifier!!.name] = identifierValue
-                    metadata.put(LAST_SEQUENCE_VALUE, identifierValue)
-                }
-                identifierValue.toLong() > sequenceValue.get() -> {
-                    sequenceValue.set(identifierValue.toLong())
-                    metadata.put(LAST_SEQUENCE_VALUE, identifierValue)
-                }
-                else -> {
-                }
+            nextSequence(entity)?.let { metadata.put(LAST_SEQUENCE_VALUE, it) }
+        }
+    }
+
+    /**
+     * Assign the next sequence value to an entity without an identifier or advance the sequence past its identifier.
+     * This must be invoked while holding the sequence lock.
+     *
+     * @param entity Entity to determine identifier
+     * @return The new last sequence value or null if the sequence did not change
+     */
+    private fun nextSequence(entity: IManagedEntity): Number? {
+        val identifierValue:Number = entity.identifier(context) as Number? ?: 0L
+
+        return when {
+            identifierValue.toLong() == 0L -> {
+                val sequence = sequenceValue.incrementAndGet().castTo(entityDescriptor.identifier!!.type) as Number
+                entity[context, entityDescriptor, entityDescriptor.identifier!!.name] = sequence
+                sequence
+            }
+            identifierValue.toLong() > sequenceValue.get() -> {
+                sequenceValue.set(identifierValue.toLong())
+                identifierValue
             }
+            else -> null
         }
     }
 
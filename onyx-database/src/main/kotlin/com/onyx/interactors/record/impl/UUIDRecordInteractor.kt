@@ -11,11 +11,20 @@ import com.onyx.persistence.context.SchemaContext
 open class UUIDRecordInteractor(entityDescriptor: EntityDescriptor, context: SchemaContext) : DefaultRecordInteractor(entityDescriptor, context) {
 
     override fun save(entity: IManagedEntity): PutResult {
+        generateIdentifier(entity)
+        return super.save(entity)
+    }
+
+    override fun saveAll(entities: List<IManagedEntity>): List<PutResult> {
+        entities.forEach { generateIdentifier(it) }
+        return super.saveAll(entities)
+    }
+
+    private fun generateIdentifier(entity: IManagedEntity) {
         val identifierValue = entity.identifier(context)
 
         if ((identifierValue as? String).isNullOrEmpty()) {
             entity[context, entityDescriptor, entityDescriptor.identifier!!.name] = uuid()
         }
-        return super.save(entity)
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.onyx.exception.AttributeMissingException
 import com.onyx.exception.OnyxException
 import com.onyx.extension.common.ReflectionCache.hasMember
 import com.onyx.extension.common.hasKey
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.impl.*
 import com.onyx.persistence.annotations.values.IndexType
 import com.onyx.persistence.context.SchemaContext
@@ -12,6 +13,7 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryOrder
 import com.onyx.persistence.query.QueryPartitionMode
 
 /**
@@ -52,6 +54,32 @@ object ScannerFactory {
         }
     }
 
+    /**
+     * Returns a scanner that reads records in the order of a query order until the page of results is filled
+     *
+     * @param context Context contains database resources
+     * @param criteria Root criteria of the query
+     * @param classToScan Entity class to scan
+     * @param query Query definitions
+     * @param persistenceManager Persistence manager
+     * @param order Query order on the identifier or an attribute with a default index
+     * @param candidates References matching the criteria.  Null if every record matches.
+     * @return Index order scanner
+     * @throws OnyxException Attribute is either not supported or bad access
+     *
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun getIndexOrderScanner(context: SchemaContext, criteria: QueryCriteria, classToScan: Class<*>, query: Query, persistenceManager: PersistenceManager, order: QueryOrder, candidates: ReferenceSet?): TableScanner {
+        val descriptor: EntityDescriptor = if (query.partition === QueryPartitionMode.ALL) {
+            context.getDescriptorForEntity(classToScan, "")
+        } else {
+            context.getDescriptorForEntity(classToScan, query.partition)
+        }
+
+        return IndexOrderScanner(criteria, classToScan, descriptor, query, context, persistenceManager, order, candidates)
+    }
+
     /**
      * Returns the proper scanner for criteria
      * @param context Context contains database resources
@@ -2,8 +2,12 @@ package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.diskmap.DiskMap
+import com.onyx.exception.MaxCardinalityExceededException
+import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.query.QueryCollector
 import com.onyx.interactors.query.QueryCollectorFactory
+import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.Contexts
 import com.onyx.persistence.context.SchemaContext
@@ -44,4 +48,61 @@ abstract class AbstractTableScanner constructor(protected val criteria: QueryCri
             }
         }
 
+    /**
+     * Add record positions to the matching references.  If there is a collector and the records are not going to be
+     * checked against existing references, they are collected instead so a reference is only allocated for a
+     * collected record.  Once the collector has the page of results, the rest are counted without being read.
+     *
+     * @param positions Record positions within the partition
+     * @param partition Partition the records are in
+     * @param matching References matching so far
+     * @param collect Whether to collect the records if there is a collector
+     *
+     * @since 3.9.10
+     */
+    protected fun addMatching(positions: Set<Long>, partition: Long, matching: ReferenceSet, collect: Boolean = true) {
+        val context = Contexts.get(contextId)!!
+        val collector = collector
+        if (collector == null || !collect) {
+            matching.addAll(partition, positions)
+            if (matching.size > context.maxCardinality)
+                throw MaxCardinalityExceededException(context.maxCardinality)
+        } else {
+            var skipped = 0
+            positions.forEach {
+                if (collector.isFull)
+                    skipped++
+                else
+                    Reference(partition, it).let { reference -> collector.collect(reference, reference.toManagedEntity(context, descriptor)) }
+            }
+            collector.skipResults(skipped)
+        }
+    }
+
+    /**
+     * Narrow existing references to the ones matching this scanner.  If there is a collector, the existing references
+     * that match are collected instead.  Once the collector has the page of results, the rest are only counted.
+     *
+     * @param matching References matching this scanner
+     * @param existingValues Existing references from previous criteria
+     * @return Existing references that match
+     *
+     * @since 3.9.10
+     */
+    protected fun retainExisting(matching: ReferenceSet, existingValues: Set<Reference>): MutableSet<Reference> {
+        val collector = collector ?: return matching.apply { retainAll(existingValues) }
+        val context = Contexts.get(contextId)!!
+        var skipped = 0
+        existingValues.forEach {
+            if (!matching.contains(it))
+                return@forEach
+            if (collector.isFull)
+                skipped++
+            else
+                collector.collect(it, it.toManagedEntity(context, descriptor))
+        }
+        collector.skipResults(skipped)
+        return ReferenceSet()
+    }
+
 }
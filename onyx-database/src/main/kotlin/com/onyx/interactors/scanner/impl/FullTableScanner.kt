@@ -1,11 +1,13 @@
 package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
-import com.onyx.diskmap.impl.base.skiplist.AbstractIterableSkipList
+import com.onyx.diskmap.DiskMap
+import com.onyx.diskmap.data.DiskMapEntry
 import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.exception.OnyxException
 import com.onyx.extension.*
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.Contexts
@@ -29,24 +31,53 @@ open class FullTableScanner @Throws(OnyxException::class) constructor(criteria:
      * @since 1.3.0 Simplified to check all criteria rather than only a single criteria
      */
     @Throws(OnyxException::class)
-    override fun scan(): MutableSet<Reference> {
-        val matching = HashSet<Reference>()
+    override fun scan(): MutableSet<Reference> = scanRecords(records, partitionId)
+
+    /**
+     * Scan the records of a partition.  Once the collector has the page of results, matching records are counted
+     * rather than collected.  Every record matches a default query so the records after the page of results are
+     * counted without reading them.
+     *
+     * @param records Records within the partition
+     * @param partitionId Partition the records are in
+     * @return References matching criteria.  Empty if they are collected.
+     * @throws OnyxException Query exception while trying to scan elements
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    protected fun scanRecords(records: DiskMap<Any, IManagedEntity>, partitionId: Long): ReferenceSet {
+        val matching = ReferenceSet()
         val context = Contexts.get(contextId)!!
         val maxCardinality = context.maxCardinality
+        val collector = collector
+        val isDefaultQuery = collector != null && query.isDefaultQuery(descriptor)
+        var read = 0L
+        var skipped = 0
+
+        val iterator = records.entries.iterator()
+        while (iterator.hasNext()) {
+            if (isDefaultQuery && collector!!.isFull) {
+                skipped += (records.longSize() - read).coerceIn(0L, Int.MAX_VALUE.toLong()).toInt()
+                break
+            }
 
-        @Suppress("UNCHECKED_CAST")
-        records.entries.forEach {
-            val entry = it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>
+            @Suppress("UNCHECKED_CAST")
+            val entry = iterator.next() as DiskMapEntry<Any?, IManagedEntity?>
+            read++
             val reference = Reference(partitionId, entry.node?.position ?: 0)
             if(entry.node != null && query.meetsCriteria(entry.value!!, reference, context, descriptor)) {
-                collector?.collect(reference, entry.value)
+                if (collector?.isFull == true)
+                    skipped++
+                else
+                    collector?.collect(reference, entry.value)
                 if (matching.size > maxCardinality)
                     throw MaxCardinalityExceededException(context.maxCardinality)
                 if(collector == null)
-                    matching.add(reference)
+                    matching.add(partitionId, reference.reference)
             }
         }
 
+        collector?.skipResults(skipped)
         return matching
     }
 
@@ -61,7 +92,7 @@ open class FullTableScanner @Throws(OnyxException::class) constructor(criteria:
     @Throws(OnyxException::class)
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
-        return existingValues.filterTo(HashSet()) {
+        return existingValues.filterTo(ReferenceSet()) {
             val entity = it.toManagedEntity(context, descriptor)
             val meetsCriteria = query.meetsCriteria(entity, it, context, descriptor)
             if(meetsCriteria)
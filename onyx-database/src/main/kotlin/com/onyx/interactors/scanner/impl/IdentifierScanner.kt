@@ -1,10 +1,9 @@
 package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
-import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.exception.OnyxException
-import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
@@ -13,6 +12,7 @@ import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
 import com.onyx.interactors.record.RecordInteractor
 import com.onyx.persistence.context.Contexts
+import com.onyx.lang.LongHashSet
 
 /**
  * Created by timothy.osborn on 1/3/15.
@@ -41,24 +41,15 @@ open class IdentifierScanner @Throws(OnyxException::class) constructor(criteria:
         return scan(recordInteractor)
     }
 
-    fun scan(recordInteractor: RecordInteractor, scanExisting:Boolean = false, partitionId:Long = this.partitionId):MutableSet<Reference> {
-        val matching = HashSet<Reference>()
-        val context = Contexts.get(contextId)!!
-        val maxCardinality = context.maxCardinality
+    fun scan(recordInteractor: RecordInteractor, scanExisting:Boolean = false, partitionId:Long = this.partitionId):ReferenceSet {
+        val matching = ReferenceSet()
 
         // If it is an in clause
         if (criteria.value is List<*>) {
-            (criteria.value as List<*>)
-                    .map { Reference(partitionId, recordInteractor.getReferenceId(it!!)) }
-                    .filter { it.reference > 0L }
-                    .forEach {
-                        if(!scanExisting)
-                            collector?.collect(it, it.toManagedEntity(context, descriptor))
-                        if (matching.size > maxCardinality)
-                            throw MaxCardinalityExceededException(context.maxCardinality)
-                        if(collector == null)
-                            matching.add(it)
-                    }
+            val values = LongHashSet()
+            (criteria.value as List<*>).forEach { values.add(recordInteractor.getReferenceId(it!!)) }
+            values.remove(0L)
+            addMatching(values, partitionId, matching, !scanExisting)
         } else {
             val values: Set<Long> = if(isBetween) {
                 recordInteractor.findAllBetween(
@@ -89,16 +80,7 @@ open class IdentifierScanner @Throws(OnyxException::class) constructor(criteria:
                 }
             }
 
-            values.filter { it > 0L }
-                    .map { Reference(partitionId, it) }
-                    .forEach {
-                        if(!scanExisting)
-                            collector?.collect(it, it.toManagedEntity(context, descriptor))
-                        if (matching.size > maxCardinality)
-                            throw MaxCardinalityExceededException(context.maxCardinality)
-                        if(collector == null)
-                            matching.add(it)
-                    }
+            addMatching(values.filterTo(LongHashSet(values.size)) { it > 0L }, partitionId, matching, !scanExisting)
         }
 
         return matching
@@ -115,12 +97,6 @@ open class IdentifierScanner @Throws(OnyxException::class) constructor(criteria:
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
         val matching = scan(context.getRecordInteractor(descriptor), true)
-        return existingValues.filterTo(HashSet()) {
-            if(matching.contains(it)) {
-                collector?.collect(it, it.toManagedEntity(context, descriptor))
-                return@filterTo (collector == null)
-            }
-            return@filterTo false
-        }
+        return retainExisting(matching, existingValues)
     }
 }
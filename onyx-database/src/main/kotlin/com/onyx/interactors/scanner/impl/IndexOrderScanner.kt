@@ -0,0 +1,117 @@
+package com.onyx.interactors.scanner.impl
+
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.diskmap.DiskMap
+import com.onyx.exception.OnyxException
+import com.onyx.extension.partitionDescriptors
+import com.onyx.extension.toManagedEntity
+import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
+import com.onyx.interactors.scanner.TableScanner
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.context.Contexts
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryCriteria
+import com.onyx.persistence.query.QueryOrder
+
+/**
+ * Reads records in the order of a query order and stops once the page of results is filled.  The order is either the
+ * identifier or an attribute with a default index.  Every record sharing an index value is read so the collector can
+ * sort them by the rest of the query orders.  Each partition is read until it fills the page on its own.
+ *
+ * The matching references must be known before scanning.  Either every record matches or only the candidates do.
+ * Matching references that are not read are counted so the number of results is the same as reading all of them.
+ *
+ * @param order Query order the records are read in
+ * @param candidates References matching the criteria.  Null if every record matches.
+ *
+ * @since 3.9.10
+ */
+class IndexOrderScanner @Throws(OnyxException::class) constructor(criteria: QueryCriteria, classToScan: Class<*>, descriptor: EntityDescriptor, query: Query, context: SchemaContext, persistenceManager: PersistenceManager, private val order: QueryOrder, private val candidates: ReferenceSet?) : AbstractTableScanner(criteria, classToScan, descriptor, query, context, persistenceManager), TableScanner {
+
+    /**
+     * Collect the first page of matching records in order
+     *
+     * @return No references.  The page is collected.
+     * @throws OnyxException Cannot read the index or records
+     */
+    @Throws(OnyxException::class)
+    override fun scan(): MutableSet<Reference> = collectInOrder(candidates)
+
+    /**
+     * Collect the first page of existing references in order.  Only the existing references that are also candidates
+     * are read.
+     *
+     * @param existingValues Existing references
+     * @return No references.  The page is collected.
+     * @throws OnyxException Cannot read the index or records
+     */
+    @Throws(OnyxException::class)
+    override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
+        val existing = existingValues as? ReferenceSet ?: ReferenceSet().apply { addAll(existingValues) }
+        return collectInOrder(if (candidates == null) existing else ReferenceSet().apply { addAll(existing); retainAll(candidates) })
+    }
+
+    /**
+     * Collect the first page of matching records in order
+     *
+     * @param candidates References matching the criteria.  Null if every record matches.
+     * @return No references.  The page is collected.
+     */
+    private fun collectInOrder(candidates: ReferenceSet?): MutableSet<Reference> {
+        val context = Contexts.get(contextId)!!
+        val page = query.firstRow.toLong() + query.maxResults
+        var matches = 0L
+        var collected = 0L
+
+        query.partitionDescriptors(context, descriptor).forEach { (partition, partitionDescriptor) ->
+            val records = context.getDataFile(partitionDescriptor).getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, partitionDescriptor.entityClass.name)
+            val positions = candidates?.partitions?.get(partition)
+            if (candidates != null && positions.isNullOrEmpty())
+                return@forEach
+
+            matches += positions?.size?.toLong() ?: records.longSize()
+            val filter: ((Long) -> Boolean)? = positions?.let { { position -> it.contains(position) } }
+
+            var partitionCollected = 0L
+            val collect: (Long) -> Unit = { position ->
+                val reference = Reference(partition, position)
+                val entity = reference.toManagedEntity(context, descriptor)
+                if (entity != null) {
+                    collector?.collect(reference, entity)
+                    partitionCollected++
+                }
+            }
+
+            val isWalked = if (order.attribute == descriptor.identifier!!.name) {
+                records.walk(!order.isAscending) { _, position ->
+                    if (filter == null || filter(position))
+                        collect(position)
+                    partitionCollected < page
+                }
+                true
+            } else {
+                val indexDescriptor = partitionDescriptor.indexes[order.attribute]!!
+                context.getIndexInteractor(indexDescriptor).walkInOrder(!order.isAscending, filter) { positions ->
+                    positions.forEach(collect)
+                    partitionCollected < page
+                }
+            }
+
+            // The index does not reference every record so read all of the matching records
+            if (!isWalked) {
+                if (candidates == null)
+                    records.walk(false) { _, position -> collect(position); true }
+                else
+                    positions!!.forEachLong(collect)
+            }
+
+            collected += partitionCollected
+        }
+
+        collector?.skipResults((matches - collected).coerceIn(0L, Int.MAX_VALUE.toLong()).toInt())
+        return ReferenceSet()
+    }
+}
@@ -1,10 +1,9 @@
 package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
-import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.exception.OnyxException
-import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.interactors.index.IndexInteractor
 import com.onyx.persistence.context.Contexts
@@ -13,6 +12,7 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.lang.LongHashSet
 
 /**
  * Created by timothy.osborn on 2/10/15.
@@ -43,32 +43,16 @@ open class IndexScanner @Throws(OnyxException::class) constructor(criteria: Quer
      * @return Indexes meeting criteria
      * @throws OnyxException Cannot scan index
      */
-    fun scan(includesExisting:Boolean = false): MutableSet<Reference> {
-        val matching = HashSet<Reference>()
-        val context = Contexts.get(contextId)!!
-        val maxCardinality = context.maxCardinality
+    fun scan(includesExisting:Boolean = false): ReferenceSet {
+        val matching = ReferenceSet()
 
         // If it is an in clause
         if (criteria.value is List<*>) {
-            (criteria.value as List<*>).forEach { it ->
-                find(it).forEach {
-                    if(!includesExisting)
-                        collector?.collect(it, it.toManagedEntity(context, descriptor))
-                    if (matching.size > maxCardinality)
-                        throw MaxCardinalityExceededException(context.maxCardinality)
-                    if(collector == null)
-                        matching.add(it)
-                }
+            (criteria.value as List<*>).forEach {
+                addMatching(find(it), partitionId, matching, !includesExisting)
             }
         } else {
-            find(criteria.value).forEach {
-                if(!includesExisting)
-                    collector?.collect(it, it.toManagedEntity(context, descriptor))
-                if (matching.size > maxCardinality)
-                    throw MaxCardinalityExceededException(context.maxCardinality)
-                if(collector == null)
-                    matching.add(it)
-            }
+            addMatching(find(criteria.value), partitionId, matching, !includesExisting)
         }
 
         return matching
@@ -82,26 +66,19 @@ open class IndexScanner @Throws(OnyxException::class) constructor(criteria: Quer
      */
     @Throws(OnyxException::class)
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
-        val context = Contexts.get(contextId)!!
         val matching = scan(true)
-        return existingValues.filterTo(HashSet()) {
-            if(matching.contains(it)) {
-                collector?.collect(it, it.toManagedEntity(context, descriptor))
-                return@filterTo collector == null
-            }
-            return@filterTo false
-        }
+        return retainExisting(matching, existingValues)
     }
 
     /**
      * Find all references within an index matching the value for this query criteria
      * @param indexValue Index value to find references for
-     * @return List of Partition References
+     * @return Record positions within the partition
      *
      * @since 2.0.0
      */
-    protected fun find(indexValue:Any?, interactor: IndexInteractor = indexInteractor, partition: Long = partitionId):List<Reference> {
-        val references = if(isBetween) {
+    protected fun find(indexValue:Any?, interactor: IndexInteractor = indexInteractor, partition: Long = partitionId):Set<Long> {
+        return if(isBetween) {
             interactor.findAllBetween(rangeFrom, fromOperator === QueryCriteriaOperator.GREATER_THAN_EQUAL, rangeTo, toOperator === QueryCriteriaOperator.LESS_THAN_EQUAL)
         } else {
             when {
@@ -117,8 +94,10 @@ open class IndexScanner @Throws(OnyxException::class) constructor(criteria: Quer
                 criteria.operator === QueryCriteriaOperator.NOT_BETWEEN -> {
                     val pair = indexValue as? Pair<*,*>
                     if (pair != null) {
-                        interactor.findAllBelow(pair.first, false)
-                            .union(interactor.findAllAbove(pair.second, false))
+                        LongHashSet().apply {
+                            addAll(interactor.findAllBelow(pair.first, false))
+                            addAll(interactor.findAllAbove(pair.second, false))
+                        }
                     } else {
                         emptySet()
                     }
@@ -137,10 +116,6 @@ open class IndexScanner @Throws(OnyxException::class) constructor(criteria: Quer
                 }
             }
         }
-
-        return references.map {
-            Reference(partition, it)
-        }
     }
 
     private fun collectScores(matches: Map<Long, *>, partition: Long) {
@@ -6,6 +6,7 @@ import com.onyx.exception.OnyxException
 import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.record.FullTextRecordInteractor
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.Contexts
 import com.onyx.persistence.context.SchemaContext
@@ -46,7 +47,7 @@ open class LuceneRecordScanner @Throws(OnyxException::class) constructor(
 
         val results = fullTextInteractor.searchAll(queryText, limit)
         val minScore = fullTextQuery?.minScore
-        val matching = HashSet<Reference>()
+        val matching = ReferenceSet()
 
         results.forEach { (recordId, score) ->
             if (minScore != null && score < minScore) return@forEach
@@ -71,7 +72,7 @@ open class LuceneRecordScanner @Throws(OnyxException::class) constructor(
         val context = Contexts.get(contextId)!!
         val matching = scan()
 
-        return existingValues.filterTo(HashSet()) { reference ->
+        return existingValues.filterTo(ReferenceSet()) { reference ->
             if (matching.contains(reference)) {
                 collector?.collect(reference, reference.toManagedEntity(context, descriptor))
                 return@filterTo collector == null
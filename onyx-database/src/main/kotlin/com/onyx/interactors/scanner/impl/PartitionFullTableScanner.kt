@@ -2,11 +2,10 @@ package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.diskmap.DiskMap
-import com.onyx.diskmap.impl.base.skiplist.AbstractIterableSkipList
-import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.exception.OnyxException
 import com.onyx.extension.common.async
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
@@ -14,7 +13,6 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryPartitionMode
-import com.onyx.extension.meetsCriteria
 import com.onyx.persistence.context.Contexts
 import java.util.concurrent.Future
 
@@ -26,37 +24,6 @@ import java.util.concurrent.Future
  */
 class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criteria: QueryCriteria, classToScan: Class<*>, descriptor: EntityDescriptor, query: Query, context: SchemaContext, persistenceManager: PersistenceManager) : FullTableScanner(criteria, classToScan, descriptor, query, context, persistenceManager), TableScanner {
 
-    /**
-     * Scan records with existing values
-     *
-     * @param records Existing values to check for criteria
-     * @return Existing values that match the criteria
-     * @throws OnyxException Cannot scan partition
-     */
-    @Throws(OnyxException::class)
-    private fun scanPartition(records: DiskMap<Any, IManagedEntity>, partitionId: Long): MutableSet<Reference> {
-        val matching = HashSet<Reference>()
-        val context = Contexts.get(contextId)!!
-        val maxCardinality = context.maxCardinality
-
-        @Suppress("UNCHECKED_CAST")
-        records.entries.forEach {
-            val entry = it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>
-            val reference = Reference(partitionId, entry.node?.position ?: 0)
-            if(entry.node != null && query.meetsCriteria(entry.value!!, reference, context, descriptor)) {
-                collector?.collect(reference, entry.value)
-                if (matching.size > maxCardinality)
-                    throw MaxCardinalityExceededException(context.maxCardinality)
-                if(collector == null)
-                    matching.add(reference)
-            }
-        }
-
-        records.clearCache()
-
-        return matching
-    }
-
     /**
      * Full Table Scan
      *
@@ -68,8 +35,8 @@ class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criter
         val context = Contexts.get(contextId)!!
 
         if (query.partition === QueryPartitionMode.ALL) {
-            val matching = HashSet<Reference>()
-            val units = ArrayList<Future<Set<Reference>>>()
+            val matching = ReferenceSet()
+            val units = ArrayList<Future<ReferenceSet>>()
 
             val entries = context.getAllPartitions(query.entityType!!)
             entries.forEach {
@@ -78,14 +45,14 @@ class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criter
                         val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
                         val dataFile = context.getDataFile(partitionDescriptor)
                         val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, partitionDescriptor.entityClass.name)
-                        scanPartition(records, it.index)
+                        scanRecords(records, it.index)
                     }
                 )
             }
 
             units.forEach {
                 val results =  it.get()
-                if(collector == null) matching += results
+                if(collector == null) matching.addAll(results)
             }
 
             return matching
@@ -97,7 +64,7 @@ class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criter
             val partitionDescriptor = context.getDescriptorForEntity(query.entityType, query.partition)
             val dataFile = context.getDataFile(partitionDescriptor)
             val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, partitionDescriptor.entityClass.name)
-            return scanPartition(records, partitionId)
+            return scanRecords(records, partitionId)
         }
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.onyx.descriptor.recordInteractor
 import com.onyx.entity.SystemEntity
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
@@ -12,7 +13,6 @@ import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryPartitionMode
 import com.onyx.extension.common.async
-import com.onyx.extension.toManagedEntity
 import com.onyx.persistence.context.Contexts
 import java.util.concurrent.Future
 
@@ -34,7 +34,7 @@ class PartitionIdentifierScanner @Throws(OnyxException::class) constructor(crite
     @Throws(OnyxException::class)
     override fun scan(): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
-        val matching = HashSet<Reference>()
+        val matching = ReferenceSet()
 
         if (query.partition === QueryPartitionMode.ALL) {
             val units = ArrayList<Future<MutableSet<Reference>>>()
@@ -59,7 +59,7 @@ class PartitionIdentifierScanner @Throws(OnyxException::class) constructor(crite
 
             val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
             if (partitionId == 0L)
-                return HashSet()
+                return ReferenceSet()
 
             val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
             matching += scan(descriptor.recordInteractor(), false, partitionId)
@@ -70,7 +70,7 @@ class PartitionIdentifierScanner @Throws(OnyxException::class) constructor(crite
 
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
-        val matching = HashSet<Reference>()
+        val matching = ReferenceSet()
 
         if (query.partition === QueryPartitionMode.ALL) {
             val units = ArrayList<Future<MutableSet<Reference>>>()
@@ -94,19 +94,13 @@ class PartitionIdentifierScanner @Throws(OnyxException::class) constructor(crite
 
             val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
             if (partitionId == 0L)
-                return HashSet()
+                return ReferenceSet()
 
             val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
             matching += scan(descriptor.recordInteractor(), true, partitionId)
         }
 
-        return if(collector == null) matching.filterTo(HashSet()) {
-            if(existingValues.contains(it)) {
-                collector?.collect(it, it.toManagedEntity(context, descriptor))
-                return@filterTo collector == null
-            }
-            return@filterTo false
-        } else HashSet()
+        return if(collector == null) matching.apply { retainAll(existingValues) } else ReferenceSet()
 
     }
 }
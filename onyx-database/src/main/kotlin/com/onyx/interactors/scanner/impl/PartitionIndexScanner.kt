@@ -1,9 +1,9 @@
 package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
-import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.interactors.index.IndexInteractor
 import com.onyx.persistence.context.SchemaContext
@@ -12,12 +12,10 @@ import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryPartitionMode
 import com.onyx.extension.common.async
-import com.onyx.extension.toManagedEntity
 import com.onyx.persistence.context.Contexts
 
 import java.util.*
 import java.util.concurrent.Future
-import kotlin.collections.HashSet
 
 /**
  * Created by timothy.osborn on 2/10/15.
@@ -29,7 +27,7 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
         if(query.partition === QueryPartitionMode.ALL) {
             val context = Contexts.get(contextId)!!
-            val units = ArrayList<Future<Set<Reference>>>()
+            val units = ArrayList<Future<ReferenceSet>>()
             val entries = context.getAllPartitions(query.entityType!!)
 
             entries.forEach {
@@ -37,22 +35,16 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
                     async {
                         val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
                         val indexInteractor = context.getIndexInteractor(partitionDescriptor.indexes[criteria.attribute]!!)
-                        scanPartition(indexInteractor, it.index)
+                        scanPartition(indexInteractor, it.index, false)
                     }
                 )
             }
 
-            val results: MutableSet<Reference> = hashSetOf()
+            val results = ReferenceSet()
             units.forEach {
-                results += it.get()
-            }
-            return existingValues.filterTo(HashSet()) {
-                if(results.contains(it)) {
-                    collector?.collect(it, it.toManagedEntity(context, descriptor))
-                    return@filterTo collector == null
-                }
-                return@filterTo false
+                results.addAll(it.get())
             }
+            return retainExisting(results, existingValues)
         } else {
             return super.scan(existingValues)
         }
@@ -70,9 +62,9 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
 
         if (query.partition === QueryPartitionMode.ALL) {
 
-            val matching = HashSet<Reference>()
+            val matching = ReferenceSet()
 
-            val units = ArrayList<Future<Set<Reference>>>()
+            val units = ArrayList<Future<ReferenceSet>>()
             val entries = context.getAllPartitions(query.entityType!!)
 
             entries.forEach {
@@ -87,14 +79,14 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
 
             units.forEach {
                 val results =  it.get()
-                if(collector == null) matching += results
+                if(collector == null) matching.addAll(results)
             }
             return matching
 
         } else {
             val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
             if (partitionId == 0L)
-                return HashSet()
+                return ReferenceSet()
 
             val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
             val indexInteractor = context.getIndexInteractor(descriptor.indexes[criteria.attribute]!!)
@@ -105,33 +97,21 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
     /**
      * Scan indexes
      *
+     * @param collect Whether to collect the matching records if there is a collector
      * @return Matching values meeting criteria
      * @throws OnyxException Cannot scan partition
      */
     @Throws(OnyxException::class)
     @Suppress("UNCHECKED_CAST")
-    private fun scanPartition(indexInteractor: IndexInteractor, partitionId: Long): MutableSet<Reference> {
-        val matching = HashSet<Reference>()
-        val context = Contexts.get(contextId)!!
-        val maxCardinality = context.maxCardinality
+    private fun scanPartition(indexInteractor: IndexInteractor, partitionId: Long, collect: Boolean = true): ReferenceSet {
+        val matching = ReferenceSet()
 
         if (criteria.value is List<*>)
             (criteria.value as List<Any>).forEach { value ->
-                find(value, indexInteractor, partitionId).forEach {
-                collector?.collect(it, it.toManagedEntity(context, descriptor))
-                if (matching.size > maxCardinality)
-                    throw MaxCardinalityExceededException(context.maxCardinality)
-                if(collector == null)
-                    matching.add(it)
-            } }
-        else
-            find(criteria.value, indexInteractor, partitionId).forEach {
-                collector?.collect(it, it.toManagedEntity(context, descriptor))
-                if (matching.size > maxCardinality)
-                    throw MaxCardinalityExceededException(context.maxCardinality)
-                if(collector == null)
-                    matching.add(it)
+                addMatching(find(value, indexInteractor, partitionId), partitionId, matching, collect)
             }
+        else
+            addMatching(find(criteria.value, indexInteractor, partitionId), partitionId, matching, collect)
 
         return matching
     }
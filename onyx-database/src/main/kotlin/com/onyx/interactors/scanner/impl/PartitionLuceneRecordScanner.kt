@@ -9,6 +9,7 @@ import com.onyx.extension.common.async
 import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.record.FullTextRecordInteractor
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.Contexts
 import com.onyx.persistence.context.SchemaContext
@@ -99,7 +100,7 @@ class PartitionLuceneRecordScanner @Throws(OnyxException::class) constructor(
     private fun scanSinglePartition(interactor: FullTextRecordInteractor, partitionId: Long): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
         val maxCardinality = context.maxCardinality
-        val matchingReferences = HashSet<Reference>()
+        val matchingReferences = ReferenceSet()
 
         val results = findMatches(criteria.value?.toString().orEmpty(), interactor)
         results.forEach { (recordId, _) ->
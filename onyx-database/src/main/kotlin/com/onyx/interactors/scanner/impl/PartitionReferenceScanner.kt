@@ -2,11 +2,10 @@ package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.diskmap.DiskMap
-import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.exception.OnyxException
 import com.onyx.extension.common.async
-import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.Contexts
@@ -32,7 +31,7 @@ open class PartitionReferenceScanner @Throws(OnyxException::class) constructor(c
      * @since 1.3.0 Simplified to check all criteria rather than only a single criteria
      */
     @Throws(OnyxException::class)
-    override fun scan(): MutableSet<Reference> = HashSet()
+    override fun scan(): MutableSet<Reference> = ReferenceSet()
 
     /**
      * Retrieve all references except those that are passed in
@@ -45,26 +44,19 @@ open class PartitionReferenceScanner @Throws(OnyxException::class) constructor(c
     @Throws(OnyxException::class)
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
-        val maxCardinality = context.maxCardinality
 
         if (query.partition === QueryPartitionMode.ALL) {
-            val allMatching = HashSet<Reference>()
-            val units = ArrayList<Future<MutableSet<Reference>>>()
+            val allMatching = ReferenceSet()
+            val units = ArrayList<Future<ReferenceSet>>()
             val entries = context.getAllPartitions(query.entityType!!)
             entries.forEach {
                 units.add(
                         async {
-                            val matching = HashSet<Reference>()
+                            val matching = ReferenceSet()
                             val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
                             val dataFile = context.getDataFile(partitionDescriptor)
                             val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.identifier!!.type, partitionDescriptor.entityClass.name)
-                            (records.references.map { Reference(partitionId, it.position) } - existingValues).forEach {
-                                collector?.collect(it, it.toManagedEntity(context, descriptor))
-                                if (matching.size > maxCardinality)
-                                    throw MaxCardinalityExceededException(context.maxCardinality)
-                                if(collector == null)
-                                    matching.add(it)
-                            }
+                            addMatching(unreferenced(records, it.index, existingValues), it.index, matching)
                             return@async matching
                         }
                 )
@@ -72,7 +64,7 @@ open class PartitionReferenceScanner @Throws(OnyxException::class) constructor(c
 
             units.forEach {
                 val results =  it.get()
-                if(collector == null) allMatching += results
+                if(collector == null) allMatching.addAll(results)
             }
 
             return allMatching
@@ -6,6 +6,7 @@ import com.onyx.descriptor.EntityDescriptor
 import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.interactors.index.IndexInteractor
 import com.onyx.persistence.context.SchemaContext
@@ -18,7 +19,6 @@ import com.onyx.extension.toManagedEntity
 import com.onyx.persistence.context.Contexts
 import com.onyx.extension.meetsCriteria
 import java.util.concurrent.Future
-import kotlin.collections.HashSet
 
 /**
  * A table scanner that executes vector index queries across multiple database partitions.
@@ -157,7 +157,7 @@ class PartitionVectorIndexScanner @Throws(OnyxException::class) constructor(
     private fun scanSinglePartition(indexInteractor: IndexInteractor, partitionId: Long): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
         val maxCardinality = context.maxCardinality
-        val matchingReferences = HashSet<Reference>()
+        val matchingReferences = ReferenceSet()
 
         val results = findMatches(criteria.value, indexInteractor)
         
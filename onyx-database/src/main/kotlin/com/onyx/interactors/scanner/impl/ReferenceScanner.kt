@@ -3,7 +3,10 @@ package com.onyx.interactors.scanner.impl
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.exception.OnyxException
 import com.onyx.extension.toManagedEntity
+import com.onyx.diskmap.DiskMap
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
+import com.onyx.lang.LongHashSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.Contexts
 import com.onyx.persistence.context.SchemaContext
@@ -26,7 +29,7 @@ open class ReferenceScanner @Throws(OnyxException::class) constructor(criteria:
      * @since 1.3.0 Simplified to check all criteria rather than only a single criteria
      */
     @Throws(OnyxException::class)
-    override fun scan(): MutableSet<Reference> = HashSet()
+    override fun scan(): MutableSet<Reference> = ReferenceSet()
 
     /**
      * Retrieve all references except those that are passed in
@@ -39,12 +42,44 @@ open class ReferenceScanner @Throws(OnyxException::class) constructor(criteria:
     @Throws(OnyxException::class)
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
-        val matching = HashSet<Reference>()
-        (records.references.map { Reference(0L, it.position) } - existingValues).forEach {
-            collector?.collect(it, it.toManagedEntity(context, descriptor))
+        val matching = ReferenceSet()
+        val collector = collector
+        var skipped = 0
+        unreferenced(records, 0L, existingValues).forEachLong {
             if(collector == null)
-                matching.add(it)
+                matching.add(0L, it)
+            else if(collector.isFull)
+                skipped++
+            else
+                Reference(0L, it).let { reference -> collector.collect(reference, reference.toManagedEntity(context, descriptor)) }
         }
+        collector?.skipResults(skipped)
         return matching
     }
+
+    /**
+     * Get the record positions within a partition that are not within the existing values
+     *
+     * @param records Records within the partition
+     * @param partition Partition the records are in
+     * @param existingValues Existing values to exclude
+     * @return Record positions not within the existing values
+     *
+     * @since 3.9.10
+     */
+    protected fun unreferenced(records: DiskMap<*, *>, partition: Long, existingValues: Set<Reference>): LongHashSet {
+        val positions = LongHashSet(records.size)
+        records.references.forEach { positions.add(it.position) }
+        if (existingValues is ReferenceSet)
+            existingValues.forEachReference { referencePartition, reference ->
+                if (referencePartition == partition)
+                    positions.remove(reference)
+            }
+        else
+            existingValues.forEach {
+                if (it.partition == partition)
+                    positions.remove(it.reference)
+            }
+        return positions
+    }
 }
\ No newline at end of file
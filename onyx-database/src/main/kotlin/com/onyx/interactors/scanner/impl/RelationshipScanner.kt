@@ -6,6 +6,7 @@ import com.onyx.exception.InvalidQueryException
 import com.onyx.extension.*
 import com.onyx.extension.common.instance
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.ScannerFactory
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
@@ -44,7 +45,9 @@ class RelationshipScanner @Throws(OnyxException::class) constructor(criteria: Qu
         }
 
 
-        return scan(records.references.map { Reference(partitionId, it.position) }.toHashSet())
+        val references = ReferenceSet()
+        records.references.forEach { references.add(partitionId, it.position) }
+        return scan(references)
     }
 
     /**
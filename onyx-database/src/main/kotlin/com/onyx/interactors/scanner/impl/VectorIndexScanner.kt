@@ -3,6 +3,7 @@ package com.onyx.interactors.scanner.impl
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.exception.MaxCardinalityExceededException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.exception.OnyxException
 import com.onyx.extension.toManagedEntity
 import com.onyx.interactors.scanner.TableScanner
@@ -37,7 +38,7 @@ open class VectorIndexScanner @Throws(OnyxException::class) constructor(
      */
     @Throws(OnyxException::class)
     override fun scan(): MutableSet<Reference> {
-        val matching = HashSet<Reference>()
+        val matching = ReferenceSet()
         val context = Contexts.get(contextId)!!
         val maxCardinality = context.maxCardinality
 
@@ -71,7 +72,7 @@ open class VectorIndexScanner @Throws(OnyxException::class) constructor(
     override fun scan(existingValues: Set<Reference>): MutableSet<Reference> {
         val context = Contexts.get(contextId)!!
         val matching = scan()
-        return existingValues.filterTo(HashSet()) {
+        return existingValues.filterTo(ReferenceSet()) {
             if(matching.contains(it)) {
                 collector?.collect(it, it.toManagedEntity(context, descriptor))
                 return@filterTo collector == null
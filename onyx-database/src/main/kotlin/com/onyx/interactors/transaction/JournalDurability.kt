@@ -0,0 +1,26 @@
+package com.onyx.interactors.transaction
+
+/**
+ * Determines when journal entries are forced to the storage device.  Entries are always written by the journal
+ * flusher in batches.  The durability only controls how often the transaction file is synced.
+ *
+ * @since 3.9.10
+ */
+enum class JournalDurability {
+
+    /**
+     * Never force the transaction file.  The operating system decides when written entries reach the disk.
+     */
+    NONE,
+
+    /**
+     * Force the transaction file after every batch.  An entry is acknowledged only after it is on disk.
+     */
+    BATCH,
+
+    /**
+     * Force the transaction file at most once per flush interval.  Entries are acknowledged once written so a crash
+     * may lose the entries of the last interval.
+     */
+    INTERVAL
+}
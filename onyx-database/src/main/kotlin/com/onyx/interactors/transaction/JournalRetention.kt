@@ -0,0 +1,24 @@
+package com.onyx.interactors.transaction
+
+/**
+ * Determines what happens to transaction files once a checkpoint no longer needs them for recovery
+ *
+ * @since 3.9.10
+ */
+enum class JournalRetention {
+
+    /**
+     * Keep every transaction file in the journal directory
+     */
+    KEEP,
+
+    /**
+     * Move transaction files preceding the last checkpoint into an archive directory within the journal directory
+     */
+    ARCHIVE,
+
+    /**
+     * Delete transaction files preceding the last checkpoint
+     */
+    DELETE
+}
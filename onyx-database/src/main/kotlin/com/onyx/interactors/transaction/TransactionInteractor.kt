@@ -3,6 +3,7 @@ package com.onyx.interactors.transaction
 import com.onyx.exception.TransactionException
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.query.Query
+import com.onyx.interactors.transaction.data.JournalPosition
 import com.onyx.interactors.transaction.data.Transaction
 
 /**
@@ -20,6 +21,16 @@ interface TransactionInteractor {
     @Throws(TransactionException::class)
     fun writeSave(entity: IManagedEntity)
 
+    /**
+     * Write save transactions for several entities
+     *
+     * @param entities Entities to save
+     *
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    fun writeSaves(entities: List<IManagedEntity>) = entities.forEach { writeSave(it) }
+
     /**
      * Write a query update to the WAL transaction
      *
@@ -59,6 +70,46 @@ interface TransactionInteractor {
     @Throws(TransactionException::class)
     fun recoverDatabase(fromDirectoryPath: String, executeTransaction:  (Transaction) -> Boolean)
 
+    /**
+     * Rebuild Database From a directory of WAL transaction files using several threads.
+     *
+     * Transaction files are decoded in parallel.  Transactions of different entity types and partitions are applied
+     * concurrently while the transactions of each entity type and partition keep their order.  Index maintenance is
+     * deferred and the affected indexes are rebuilt once at the end.  Query transactions act as a barrier.
+     *
+     * @param fromDirectoryPath Directory containing WAL transaction files.
+     * @param parallelism Number of threads decoding transaction files and applying transactions
+     * @param executeTransaction Function that determines whether or not you should execute the transaction.  It is
+     *                           invoked on the calling thread in journal order.
+     *
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    fun recoverDatabaseInParallel(fromDirectoryPath: String, parallelism: Int = Runtime.getRuntime().availableProcessors(), executeTransaction: (Transaction) -> Boolean)
+
+    /**
+     * Write a checkpoint record.  It indicates every journal entry preceding the position is within the data files.
+     *
+     * @param position Journal position the data files were committed at
+     *
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    fun writeCheckpoint(position: JournalPosition)
+
+    /**
+     * Recover a database from a directory of WAL transaction files starting at the last checkpoint.  Only the
+     * transactions journaled after the checkpoint position are applied.  If there is no checkpoint, every transaction
+     * is applied the same as [recoverDatabase].
+     *
+     * @param fromDirectoryPath Directory containing WAL transaction files.
+     * @param executeTransaction Function that determines whether or not you should execute the transaction
+     *
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    fun recoverFromCheckpoint(fromDirectoryPath: String, executeTransaction: (Transaction) -> Boolean)
+
 
     /**
      * Roll Database Forward an entire transaction log.
@@ -1,7 +1,10 @@
 package com.onyx.interactors.transaction
 
 import com.onyx.exception.TransactionException
+import com.onyx.interactors.transaction.data.JournalPosition
+import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
+import java.util.concurrent.CompletableFuture
 
 /**
  * Created by Tim Osborn on 9/6/17.
@@ -10,6 +13,27 @@ import java.nio.channels.FileChannel
  */
 interface TransactionStore {
 
+    /**
+     * When written journal entries are forced to disk
+     *
+     * @since 3.9.10
+     */
+    var durability: JournalDurability
+
+    /**
+     * Milliseconds between syncs of the transaction file when the durability is [JournalDurability.INTERVAL]
+     *
+     * @since 3.9.10
+     */
+    var flushInterval: Long
+
+    /**
+     * What happens to transaction files released by a checkpoint
+     *
+     * @since 3.9.10
+     */
+    var retention: JournalRetention
+
     /**
      * Get WAL Transaction File. This will get the appropriate file channel and return it
      *
@@ -21,8 +45,57 @@ interface TransactionStore {
     @Throws(TransactionException::class)
     fun getTransactionFile(): FileChannel
 
+    /**
+     * Append an entry to the journal.  The entry is copied so the buffer may be reused once this returns.  Entries
+     * appended concurrently are written together.
+     *
+     * @param entry Bytes of the journal entry from its position to its limit
+     * @return Completes once the entry has been written and, depending on the durability, forced to disk.  Completes
+     *         exceptionally with a [TransactionException] if the entry could not be written.
+     * @throws TransactionException The store is closed
+     *
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    fun append(entry: ByteBuffer): CompletableFuture<Unit>
+
+    /**
+     * Append an entry that is repeated at the start of every following transaction file.  This is for entries that
+     * later entries depend upon so that each transaction file can be applied on its own.
+     *
+     * @param entry Bytes of the journal entry from its position to its limit
+     * @return Completes once the entry has been written
+     * @throws TransactionException The store is closed
+     *
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    fun appendHeader(entry: ByteBuffer): CompletableFuture<Unit>
+
+    /**
+     * Wait until every entry appended so far has been written and forced to disk
+     *
+     * @return Position following the last appended entry or null if nothing has been journaled since the store was
+     *         opened
+     * @throws TransactionException The entries could not be written
+     *
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    fun sync(): JournalPosition?
+
+    /**
+     * Release the transaction files preceding a segment according to the [retention].  The open transaction file is
+     * never released.
+     *
+     * @param segment Sequence of the first transaction file still needed for recovery
+     *
+     * @since 3.9.10
+     */
+    fun release(segment: Long)
+
     /**
      * Close the current open transaction file
      */
     fun close()
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package com.onyx.interactors.transaction.data
+
+/**
+ * Location within the journal.  It identifies the transaction file by its sequence and the byte offset within it.
+ *
+ * @param segment Sequence of the transaction file.  The file is named after it.
+ * @param offset Byte offset within the transaction file
+ *
+ * @since 3.9.10
+ */
+data class JournalPosition(val segment: Long, val offset: Long) : Comparable<JournalPosition> {
+
+    override fun compareTo(other: JournalPosition): Int = compareValuesBy(this, other, { it.segment }, { it.offset })
+}
@@ -5,12 +5,13 @@ package com.onyx.interactors.transaction.impl
 import com.onyx.buffer.BufferPool
 import com.onyx.buffer.BufferStream
 import com.onyx.entity.SystemEntity
-import com.onyx.entity.SystemPartitionEntry
 import com.onyx.exception.TransactionException
+import com.onyx.extension.common.catchAll
 import com.onyx.extension.common.metadata
 import com.onyx.extension.withBuffer
 import com.onyx.extension.common.openFileChannel
 import com.onyx.extension.createNewEntity
+import com.onyx.extension.common.setAny
 import com.onyx.interactors.transaction.TransactionInteractor
 import com.onyx.interactors.transaction.data.*
 import com.onyx.persistence.IManagedEntity
@@ -21,7 +22,12 @@ import com.onyx.interactors.transaction.TransactionStore
 
 import java.io.File
 import java.io.IOException
+import java.lang.reflect.Field
 import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.CRC32C
 
 /**
  * Created by Tim Osborn on 3/25/16.
@@ -30,22 +36,103 @@ import java.nio.ByteBuffer
  */
 open class DefaultTransactionInteractor(private val transactionStore: TransactionStore, private val persistenceManager: PersistenceManager) : TransactionInteractor {
 
-    private fun writeTransaction(transactionType:Byte, buffer: ByteBuffer) {
+    // Ids of the system entities whose schema has been written to the journal
+    private val journaledSchemas: MutableSet<Int> = ConcurrentHashMap.newKeySet()
+
+    /**
+     * Append a transaction to the journal and wait until the transaction store acknowledges it.  Concurrent writers
+     * are not serialized here.  Their entries are group committed by the transaction store.
+     *
+     * @param transactionType Type of record
+     * @param buffer Payload.  It is recycled once written.
+     * @param header Whether the record must be repeated at the start of every following journal file
+     */
+    private fun writeTransaction(transactionType:Byte, buffer: ByteBuffer, header: Boolean = false) =
+        awaitAcknowledgement(appendTransaction(transactionType, buffer, header))
+
+    /**
+     * Append a transaction to the journal without waiting for it to be written.
+     *
+     * Each record is the transaction type, the payload length, a CRC32C checksum of the payload, and the payload.
+     *
+     * @param transactionType Type of record
+     * @param buffer Payload.  It is recycled once appended.
+     * @param header Whether the record must be repeated at the start of every following journal file
+     * @return Completes once the transaction store has written the record
+     */
+    private fun appendTransaction(transactionType:Byte, buffer: ByteBuffer, header: Boolean = false): CompletableFuture<Unit> =
         withBuffer(buffer) { transBuffer ->
-            val file = transactionStore.getTransactionFile()
-
-            try {
-                BufferPool.allocateAndLimit(transBuffer.limit() + 5) {
-                    it.put(transactionType)
-                    it.putInt(transBuffer.limit())
-                    it.put(transBuffer)
-                    it.flip()
-                    file.write(it)
+            BufferPool.allocateAndLimit(transBuffer.limit() + RECORD_HEADER_SIZE) {
+                it.put(transactionType)
+                it.putInt(transBuffer.limit())
+                it.putInt(checksum(transBuffer))
+                it.put(transBuffer)
+                it.flip()
+                if (header) transactionStore.appendHeader(it) else transactionStore.append(it)
+            }
+        }
+
+    /**
+     * Wait until the transaction store acknowledges an appended record
+     */
+    private fun awaitAcknowledgement(acknowledgement: CompletableFuture<Unit>) {
+        try {
+            acknowledgement.get()
+        } catch (e: Exception) {
+            throw e.cause as? TransactionException ?: TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE)
+        }
+    }
+
+    /**
+     * Write an entity using the same binary form as the record store.  That is the system entity id followed by the
+     * attribute values in the order of the system entity attributes.  The system entity schema is journaled the first
+     * time it is used so the journal can be applied to another database.
+     *
+     * @param transactionType Save or delete
+     * @param entity Entity to journal
+     */
+    private fun writeEntity(transactionType: Byte, entity: IManagedEntity) =
+        awaitAcknowledgement(appendEntity(transactionType, entity))
+
+    /**
+     * Append an entity to the journal without waiting for it to be written
+     *
+     * @param transactionType Save or delete
+     * @param entity Entity to journal
+     * @return Completes once the transaction store has written the record
+     */
+    private fun appendEntity(transactionType: Byte, entity: IManagedEntity): CompletableFuture<Unit> {
+        val context = persistenceManager.context
+        val stream = BufferStream()
+        stream.putObject(entity, context)
+        stream.flip()
+
+        // Skip the object type to get the system entity id
+        val systemEntityId = stream.byteBuffer.getInt(1)
+        if (!journaledSchemas.contains(systemEntityId)) {
+            synchronized(journaledSchemas) {
+                if (!journaledSchemas.contains(systemEntityId)) {
+                    writeSchema(context.getSystemEntityById(systemEntityId)!!)
+                    journaledSchemas.add(systemEntityId)
                 }
-            } catch (_: Exception) {
-                throw TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE)
             }
         }
+
+        return appendTransaction(transactionType, stream.byteBuffer)
+    }
+
+    /**
+     * Write the name and attribute order of a system entity
+     *
+     * @param systemEntity System entity version used to journal entities
+     */
+    private fun writeSchema(systemEntity: SystemEntity) {
+        val stream = BufferStream()
+        stream.putObject(systemEntity.primaryKey)
+        stream.putObject(systemEntity.name)
+        stream.putObject(ArrayList(systemEntity.attributes.map { it.name }))
+        stream.flip()
+        writeTransaction(ENTITY_SCHEMA, stream.byteBuffer, header = true)
     }
 
     /**
@@ -54,13 +141,17 @@ open class DefaultTransactionInteractor(private val transactionStore: Transactio
      * @param entity Entity to save
      */
     @Throws(TransactionException::class)
-    override fun writeSave(entity: IManagedEntity) = synchronized(this) {
-        val map = (entity as ManagedEntity).toMap(persistenceManager.context)
-        val value = hashMapOf<String, Any?>(
-            "type" to entity::class.java.canonicalName,
-            "value" to map
-        )
-        writeTransaction(SAVE, BufferStream.toBuffer(value, persistenceManager.context))
+    override fun writeSave(entity: IManagedEntity) = writeEntity(BINARY_SAVE, entity)
+
+    /**
+     * Write save transactions for several entities.  The records are appended together and then awaited.
+     *
+     * @param entities Entities to save
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    override fun writeSaves(entities: List<IManagedEntity>) {
+        entities.map { appendEntity(BINARY_SAVE, it) }.forEach { awaitAcknowledgement(it) }
     }
 
     /**
@@ -69,8 +160,8 @@ open class DefaultTransactionInteractor(private val transactionStore: Transactio
      * @param query Query to update
      */
     @Throws(TransactionException::class)
-    override fun writeQueryUpdate(query: Query) = synchronized(this) {
-        writeTransaction(UPDATE_QUERY, BufferStream.toBuffer(query, persistenceManager.context))
+    override fun writeQueryUpdate(query: Query) {
+        writeTransaction(BINARY_UPDATE_QUERY, BufferStream.toBuffer(query, persistenceManager.context))
     }
 
     /**
@@ -79,22 +170,15 @@ open class DefaultTransactionInteractor(private val transactionStore: Transactio
      * @param entity Deleted entity
      */
     @Throws(TransactionException::class)
-    override fun writeDelete(entity: IManagedEntity) = synchronized(this) {
-        val map = (entity as ManagedEntity).toMap(persistenceManager.context)
-        val value = hashMapOf<String, Any?>(
-            "type" to entity::class.java.canonicalName,
-            "value" to map
-        )
-        writeTransaction(DELETE, BufferStream.toBuffer(value, persistenceManager.context))
-    }
+    override fun writeDelete(entity: IManagedEntity) = writeEntity(BINARY_DELETE, entity)
 
     /**
      * Write a delete query to a WAL file
      * @param query Query to write transaction of
      */
     @Throws(TransactionException::class)
-    override fun writeDeleteQuery(query: Query) = synchronized(this) {
-        writeTransaction(DELETE_QUERY, BufferStream.toBuffer(query, persistenceManager.context))
+    override fun writeDeleteQuery(query: Query) {
+        writeTransaction(BINARY_DELETE_QUERY, BufferStream.toBuffer(query, persistenceManager.context))
     }
 
     /**
@@ -112,18 +196,107 @@ open class DefaultTransactionInteractor(private val transactionStore: Transactio
      */
     @Throws(TransactionException::class)
     override fun recoverDatabase(fromDirectoryPath: String, executeTransaction: (Transaction) -> Boolean) {
+        transactionFiles(fromDirectoryPath).forEach {
+            applyTransactionLog(it, executeTransaction)
+        }
+    }
+
+    /**
+     * Rebuild a database from a directory of WAL transaction files using several threads.  Transaction files are
+     * decoded in parallel and entity transactions are applied concurrently for different entity types and partitions.
+     * The transactions of each entity type and partition are applied in the order they were journaled.  Indexes are
+     * rebuilt once rather than being maintained for every transaction.
+     *
+     * @param fromDirectoryPath Directory containing WAL transaction files.
+     * @param parallelism Number of threads decoding transaction files and applying transactions
+     * @param executeTransaction Function that determines whether or not you should execute the transaction
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    override fun recoverDatabaseInParallel(fromDirectoryPath: String, parallelism: Int, executeTransaction: (Transaction) -> Boolean) {
+        ParallelTransactionReplay(persistenceManager, parallelism) { readTransactions(it) }
+            .replay(transactionFiles(fromDirectoryPath), executeTransaction)
+    }
+
+    /**
+     * Write a checkpoint record containing the journal position the data files were committed at
+     *
+     * @param position Journal position the data files were committed at
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    override fun writeCheckpoint(position: JournalPosition) {
+        val buffer = BufferPool.allocateAndLimit(java.lang.Long.BYTES * 2)
+        buffer.putLong(position.segment)
+        buffer.putLong(position.offset)
+        buffer.flip()
+        writeTransaction(CHECKPOINT, buffer)
+    }
+
+    /**
+     * Recover a database starting at the last checkpoint within a directory of WAL transaction files
+     *
+     * @param fromDirectoryPath Directory containing WAL transaction files.
+     * @param executeTransaction Function that determines whether or not you should execute the transaction
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    override fun recoverFromCheckpoint(fromDirectoryPath: String, executeTransaction: (Transaction) -> Boolean) {
+        val files = transactionFiles(fromDirectoryPath)
+        val checkpoint = files.asReversed().asSequence().mapNotNull { lastCheckpoint(it) }.firstOrNull()
+
+        files.forEach { path ->
+            val segment = segmentOf(path)
+            if (checkpoint != null && segment < checkpoint.segment)
+                return@forEach
+
+            val from = if (checkpoint != null && segment == checkpoint.segment) checkpoint.offset else 0L
+            readTransactionLog(path, from) { transaction ->
+                catchAll {
+                    if (executeTransaction.invoke(transaction))
+                        applyTransaction(transaction)
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the last checkpoint within a transaction file
+     *
+     * @param walTransactionFile File that contains transaction log.
+     * @return Position of the last checkpoint or null if the file does not contain one
+     */
+    private fun lastCheckpoint(walTransactionFile: String): JournalPosition? {
+        var checkpoint: JournalPosition? = null
+        readRecords(walTransactionFile, { type, _ -> type == CHECKPOINT }) { _, buffer ->
+            checkpoint = JournalPosition(buffer.long, buffer.long)
+        }
+        return checkpoint
+    }
+
+    /**
+     * Get the transaction files within a directory in the order they were written
+     *
+     * @param fromDirectoryPath Directory containing WAL transaction files.
+     * @return Paths of the transaction files
+     */
+    private fun transactionFiles(fromDirectoryPath: String): List<String> {
         val walDirectory = File(fromDirectoryPath)
         if (!walDirectory.exists() || !walDirectory.isDirectory) {
             throw TransactionException(TransactionException.TRANSACTION_FAILED_TO_RECOVER_FROM_DIRECTORY)
         }
 
-        val filePaths = walDirectory.list()!!
-        filePaths.sort()
-        filePaths.forEach {
-            applyTransactionLog(fromDirectoryPath + File.separator + it, executeTransaction)
-        }
+        // Transaction files are named by their sequence so 10.wal follows 9.wal
+        return walDirectory.listFiles { file -> file.isFile && file.name.endsWith(".wal") }!!
+            .map { it.path }
+            .sortedWith(compareBy<String> { segmentOf(it) }.thenBy { it })
     }
 
+    /**
+     * Sequence of a transaction file taken from its name
+     */
+    private fun segmentOf(path: String): Long = File(path).name.removeSuffix(".wal").toLongOrNull() ?: Long.MAX_VALUE
+
     /**
      * Roll Database Forward an entire transaction log.
      *
@@ -131,98 +304,286 @@ open class DefaultTransactionInteractor(private val transactionStore: Transactio
      * An example usage would be if you had replication and experienced a network outage.  In that case in order to synchronize, you
      * could utilize this method.
      *
+     * Both the binary record format and the map based format of earlier versions can be applied.  Replay stops at the
+     * first binary record whose checksum does not match since that indicates a partially written tail.
+     *
      * @param walTransactionFile File that contains transaction log.
      * @param executeTransaction Function that determines whether or not you should execute the transaction
      * @throws TransactionException If a transaction failed to execute, this will be thrown
      */
     @Throws(TransactionException::class)
     override fun applyTransactionLog(walTransactionFile: String, executeTransaction:  (Transaction) -> Boolean): Boolean {
+        readTransactionLog(walTransactionFile) { transaction ->
+            catchAll {
+                if (executeTransaction.invoke(transaction))
+                    applyTransaction(transaction)
+            }
+        }
+        return true
+    }
+
+    /**
+     * Decode all the transactions within a transaction file
+     *
+     * @param walTransactionFile File that contains transaction log.
+     * @return Transactions in the order they were journaled
+     */
+    private fun readTransactions(walTransactionFile: String): List<Transaction> {
+        val transactions = ArrayList<Transaction>()
+        readTransactionLog(walTransactionFile) { transactions.add(it) }
+        return transactions
+    }
+
+    /**
+     * Decode each transaction within a transaction file
+     *
+     * @param walTransactionFile File that contains transaction log.
+     * @param from Position of the first transaction to decode.  Schema records preceding it are still read.
+     * @param consumer Receives the transactions in the order they were journaled
+     */
+    private fun readTransactionLog(walTransactionFile: String, from: Long = 0L, consumer: (Transaction) -> Unit) {
+        // Schemas journaled within this file by system entity id
+        val schemas = HashMap<Int, JournalSchema>()
+
+        readRecords(walTransactionFile, { type, start -> start >= from || type == ENTITY_SCHEMA }) { transactionType, transactionBuffer ->
+            val transaction = catchAll {
+                if (transactionType >= ENTITY_SCHEMA)
+                    decodeRecord(transactionType, transactionBuffer, schemas)
+                else
+                    decodeLegacyRecord(transactionType, transactionBuffer)
+            }
+
+            if (transaction != null)
+                consumer(transaction)
+        }
+    }
+
+    /**
+     * Read the records within a transaction file.  Reading stops at the first binary record whose checksum does not
+     * match.
+     *
+     * @param walTransactionFile File that contains transaction log.
+     * @param include Whether to read the record of a type starting at a position.  Records that are not included are
+     *                skipped without reading their payload.
+     * @param consumer Receives the type and payload of each included record
+     */
+    private fun readRecords(walTransactionFile: String, include: (Byte, Long) -> Boolean, consumer: (Byte, ByteBuffer) -> Unit) {
         val channel = walTransactionFile.openFileChannel()
 
         if (channel == null || !channel.isOpen) {
             throw TransactionException(TransactionException.TRANSACTION_FAILED_TO_READ_FILE)
         }
 
-        var transaction: Transaction? = null
-        BufferPool.allocateAndLimit(5) { metadataBuffer ->
-            try {
+        try {
+            BufferPool.allocateAndLimit(RECORD_HEADER_SIZE) { metadataBuffer ->
                 channel.position(0)
                 while (channel.position() < channel.size()) {
+                    val recordStart = channel.position()
 
-                    try {
-                        channel.read(metadataBuffer)
-                        metadataBuffer.flip()
+                    metadataBuffer.clear()
+                    metadataBuffer.limit(LEGACY_RECORD_HEADER_SIZE)
+                    if (!channel.readFully(metadataBuffer))
+                        break
+                    metadataBuffer.flip()
 
-                        val transactionType = metadataBuffer.get()
-                        val transactionDataLength = metadataBuffer.int
-
-                        BufferPool.allocateAndLimit(transactionDataLength) { transactionBuffer ->
-                            channel.read(transactionBuffer)
-                            transactionBuffer.rewind()
-
-                            when (transactionType) {
-                                SAVE -> {
-                                    val value = BufferStream.fromBuffer(transactionBuffer, persistenceManager.context) as Map<String, Any?>
-                                    val className = value["type"] as? String ?: continue
-                                    val instance = metadata(persistenceManager.context.contextId).classForName(className).createNewEntity<ManagedEntity>(this.persistenceManager.context.contextId)
-                                    instance.fromMap(value["value"] as Map<String, Any?>, persistenceManager.context)
-                                    transaction = SaveTransaction(instance)
-                                    if (className.endsWith("SystemPartitionEntry")) continue
-
-                                    if (executeTransaction.invoke(transaction!!)) {
-                                        instance.ignoreListeners = true
-                                        this.persistenceManager.saveEntity<IManagedEntity>(instance)
-                                        instance.ignoreListeners = false
-                                    }
-                                }
-                                DELETE -> {
-                                    val value = BufferStream.fromBuffer(transactionBuffer, persistenceManager.context) as Map<String, Any?>
-                                    val className = value["type"] as? String ?: continue
-                                    val instance = metadata(persistenceManager.context.contextId).classForName(className).createNewEntity<ManagedEntity>(this.persistenceManager.context.contextId)
-                                    instance.fromMap(value["value"] as Map<String, Any?>, persistenceManager.context)
-                                    transaction = DeleteTransaction(instance)
-                                    if (executeTransaction.invoke(transaction!!)) {
-                                        instance.ignoreListeners = true
-                                        this.persistenceManager.deleteEntity(instance)
-                                        instance.ignoreListeners = false
-                                    }
-                                }
-                                UPDATE_QUERY -> {
-                                    val query = BufferStream.fromBuffer(transactionBuffer, persistenceManager.context) as Query
-                                    transaction = UpdateQueryTransaction(query)
-                                    if (executeTransaction.invoke(transaction!!)) {
-                                        this.persistenceManager.executeUpdate(query)
-                                    }
-                                }
-                                DELETE_QUERY -> {
-                                    val query = BufferStream.fromBuffer(transactionBuffer, persistenceManager.context) as Query
-                                    transaction = DeleteQueryTransaction(query)
-                                    if (executeTransaction.invoke(transaction!!)) {
-                                        this.persistenceManager.executeDelete(query)
-                                    }
-                                }
-                            }
-
-                            transactionBuffer.clear()
-                        }
+                    val transactionType = metadataBuffer.get()
+                    val transactionDataLength = metadataBuffer.int
+                    val binary = transactionType >= ENTITY_SCHEMA
+
+                    var expectedChecksum = 0
+                    if (binary) {
+                        metadataBuffer.clear()
+                        metadataBuffer.limit(Integer.BYTES)
+                        if (!channel.readFully(metadataBuffer))
+                            break
                         metadataBuffer.flip()
-                    } catch (cause: Exception) {
-                        println("Failed to execute transaction ${transaction.toString()}, ${cause.message}")
+                        expectedChecksum = metadataBuffer.int
+                    }
+
+                    if (transactionDataLength < 0 || transactionDataLength > channel.size() - channel.position())
+                        break
+
+                    if (!include(transactionType, recordStart)) {
+                        channel.position(channel.position() + transactionDataLength)
+                        continue
+                    }
+
+                    val isCorrupt = BufferPool.allocateAndLimit(transactionDataLength) { transactionBuffer ->
+                        channel.readFully(transactionBuffer)
+                        transactionBuffer.rewind()
+
+                        if (binary && checksum(transactionBuffer) != expectedChecksum)
+                            return@allocateAndLimit true
+
+                        consumer(transactionType, transactionBuffer)
+                        false
                     }
+
+                    // A corrupt record is a partially written tail.  The records following it are not applied.
+                    if (isCorrupt)
+                        break
                 }
-            } catch (_: IOException) {
-                throw TransactionException(TransactionException.TRANSACTION_FAILED_TO_READ_FILE)
             }
+        } catch (_: IOException) {
+            throw TransactionException(TransactionException.TRANSACTION_FAILED_TO_READ_FILE)
+        } finally {
+            catchAll { channel.close() }
         }
+    }
 
-        return true
+    /**
+     * Apply a transaction to the database
+     *
+     * @param transaction Decoded transaction
+     */
+    private fun applyTransaction(transaction: Transaction) {
+        when (transaction) {
+            is SaveTransaction -> {
+                val instance = transaction.entity as ManagedEntity
+                instance.ignoreListeners = true
+                this.persistenceManager.saveEntity<IManagedEntity>(instance)
+                instance.ignoreListeners = false
+            }
+            is DeleteTransaction -> {
+                val instance = transaction.entity as ManagedEntity
+                instance.ignoreListeners = true
+                this.persistenceManager.deleteEntity(instance)
+                instance.ignoreListeners = false
+            }
+            is UpdateQueryTransaction -> this.persistenceManager.executeUpdate(transaction.query)
+            is DeleteQueryTransaction -> this.persistenceManager.executeDelete(transaction.query)
+        }
+    }
+
+    /**
+     * Decode a binary journal record.  Entities are read without first converting them to maps.
+     *
+     * @param transactionType Record type
+     * @param buffer Record payload
+     * @param schemas Schemas journaled earlier in the same file
+     * @return The transaction or null if the record is not a transaction that should be applied
+     */
+    private fun decodeRecord(transactionType: Byte, buffer: ByteBuffer, schemas: MutableMap<Int, JournalSchema>): Transaction? {
+        val context = persistenceManager.context
+        return when (transactionType) {
+            ENTITY_SCHEMA -> {
+                val stream = BufferStream(buffer)
+                val systemEntityId = stream.getObject(context) as Int
+                val name = stream.getObject(context) as String
+                val attributes = stream.getObject(context) as List<String>
+                schemas[systemEntityId] = JournalSchema(name, attributes)
+                null
+            }
+            BINARY_SAVE, BINARY_DELETE -> {
+                val stream = BufferStream(buffer)
+                stream.byte // Object type
+                val systemEntityId = stream.int
+                val schema = schemas.getOrPut(systemEntityId) {
+                    // The record was journaled by this database before schemas were journaled
+                    val systemEntity = context.getSystemEntityById(systemEntityId) ?: return null
+                    JournalSchema(systemEntity.name, systemEntity.attributes.map { it.name })
+                }
+
+                val entityType = schema.type ?: metadata(context.contextId).classForName(schema.name).also { schema.type = it }
+                val instance = entityType.createNewEntity<ManagedEntity>(context.contextId)
+                val fields = schema.fields ?: context.getDescriptorForEntity(instance, "").reflectionFields.let { fields ->
+                    schema.attributes.map { fields[it] }.also { schema.fields = it }
+                }
+                fields.forEach { field ->
+                    val value = stream.getObject(context)
+                    if (field != null)
+                        instance.setAny(field, value)
+                }
+
+                when {
+                    transactionType == BINARY_DELETE -> DeleteTransaction(instance)
+                    schema.name.endsWith("SystemPartitionEntry") -> null
+                    else -> SaveTransaction(instance)
+                }
+            }
+            BINARY_UPDATE_QUERY -> UpdateQueryTransaction(BufferStream.fromBuffer(buffer, context) as Query)
+            BINARY_DELETE_QUERY -> DeleteQueryTransaction(BufferStream.fromBuffer(buffer, context) as Query)
+            else -> null
+        }
+    }
+
+    /**
+     * Decode a record written by a version prior to 3.9.10 where entities were journaled as maps
+     *
+     * @param transactionType Record type
+     * @param transactionBuffer Record payload
+     * @return The transaction or null if the record is not a transaction that should be applied
+     */
+    private fun decodeLegacyRecord(transactionType: Byte, transactionBuffer: ByteBuffer): Transaction? {
+        val context = persistenceManager.context
+        return when (transactionType) {
+            SAVE, DELETE -> {
+                val value = BufferStream.fromBuffer(transactionBuffer, context) as Map<String, Any?>
+                val className = value["type"] as? String ?: return null
+                val instance = metadata(context.contextId).classForName(className).createNewEntity<ManagedEntity>(context.contextId)
+                instance.fromMap(value["value"] as Map<String, Any?>, context)
+                when {
+                    transactionType == DELETE -> DeleteTransaction(instance)
+                    className.endsWith("SystemPartitionEntry") -> null
+                    else -> SaveTransaction(instance)
+                }
+            }
+            UPDATE_QUERY -> UpdateQueryTransaction(BufferStream.fromBuffer(transactionBuffer, context) as Query)
+            DELETE_QUERY -> DeleteQueryTransaction(BufferStream.fromBuffer(transactionBuffer, context) as Query)
+            else -> null
+        }
+    }
+
+    /**
+     * Name and attribute order of a journaled system entity.  The entity type and the field of each attribute are
+     * resolved once when the first entity of the schema is decoded.
+     */
+    private class JournalSchema(val name: String, val attributes: List<String>) {
+        var type: Class<*>? = null
+
+        // Field of each attribute in the journaled order or null if the entity no longer has the attribute
+        var fields: List<Field?>? = null
     }
 
     companion object {
+        // Map based records written prior to 3.9.10
         private const val SAVE: Byte = 1
         private const val DELETE: Byte = 2
         private const val DELETE_QUERY: Byte = 3
         private const val UPDATE_QUERY: Byte = 4
+
+        // Binary records
+        private const val ENTITY_SCHEMA: Byte = 5
+        private const val BINARY_SAVE: Byte = 6
+        private const val BINARY_DELETE: Byte = 7
+        private const val BINARY_DELETE_QUERY: Byte = 8
+        private const val BINARY_UPDATE_QUERY: Byte = 9
+        private const val CHECKPOINT: Byte = 10
+
+        private const val LEGACY_RECORD_HEADER_SIZE = 5
+        private const val RECORD_HEADER_SIZE = 9
+
+        /**
+         * CRC32C checksum of the remaining bytes of a buffer.  The buffer position is not changed.
+         */
+        private fun checksum(buffer: ByteBuffer): Int {
+            val crc = CRC32C()
+            crc.update(buffer.duplicate())
+            return crc.value.toInt()
+        }
+
+        /**
+         * Read until the buffer is full or the end of the channel is reached
+         *
+         * @return Whether the buffer was filled
+         */
+        private fun FileChannel.readFully(buffer: ByteBuffer): Boolean {
+            while (buffer.hasRemaining()) {
+                if (read(buffer) < 0)
+                    return false
+            }
+            return true
+        }
     }
 }
 
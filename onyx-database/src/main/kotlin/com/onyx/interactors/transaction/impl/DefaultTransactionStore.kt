@@ -1,15 +1,25 @@
 package com.onyx.interactors.transaction.impl
 
+import com.onyx.buffer.BufferPool
 import com.onyx.exception.TransactionException
 import com.onyx.extension.common.closeAndFlush
 import com.onyx.extension.common.Block
 import com.onyx.extension.common.catchAll
 import com.onyx.extension.common.openFileChannel
+import com.onyx.interactors.transaction.JournalDurability
+import com.onyx.interactors.transaction.JournalRetention
 import com.onyx.interactors.transaction.TransactionStore
+import com.onyx.interactors.transaction.data.JournalPosition
+import com.onyx.lang.concurrent.impl.DefaultClosureReadWriteLock
 import java.io.File
 import java.io.IOException
+import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
 import java.util.*
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicLong
 
 /**
@@ -17,6 +27,10 @@ import java.util.concurrent.atomic.AtomicLong
  *
  * Implementation for getting the file channel for a transaction wal
  *
+ * Journal entries are group committed.  Writers add their entries to a bounded queue and a single flusher thread
+ * writes whatever has accumulated with one write call.  The transaction file is then forced according to the
+ * [durability] and the entries are acknowledged.
+ *
  * @since 2.0.0 Extracted from SchemaContext implementation
  */
 open class DefaultTransactionStore(val location:String): TransactionStore {
@@ -25,6 +39,34 @@ open class DefaultTransactionStore(val location:String): TransactionStore {
     private var lastWalFileChannel: FileChannel? = null
     private val transactionFileLock = Block()
 
+    // Entries waiting on the flusher.  Writers block once it is full.
+    private val pendingEntries = ArrayBlockingQueue<JournalEntry>(MAX_PENDING_ENTRIES)
+    private val flusherLock = DefaultClosureReadWriteLock()
+    @Volatile
+    private var flusher: Thread? = null
+    @Volatile
+    private var closed = false
+
+    // Set once the flusher has been interrupted.  Nothing is written afterwards.
+    @Volatile
+    private var failed = false
+
+    // Entries written at the start of every transaction file
+    private val headers = CopyOnWriteArrayList<ByteArray>()
+
+    // Only accessed by the flusher thread
+    private var lastForce = System.currentTimeMillis()
+    private var hasUnforcedWrites = false
+
+    @Volatile
+    override var durability: JournalDurability = JournalDurability.NONE
+
+    @Volatile
+    override var flushInterval: Long = DEFAULT_FLUSH_INTERVAL
+
+    @Volatile
+    override var retention: JournalRetention = JournalRetention.KEEP
+
     private val walDirectory: String
         get() = this.location + File.separator + "wal" + File.separator
 
@@ -47,16 +89,8 @@ open class DefaultTransactionStore(val location:String): TransactionStore {
                     journalingDirector.mkdirs()
                 }
 
-                // Grab the last used WAL File
-                val directoryListing = File(directory).list()
-                Arrays.sort(directoryListing!!)
-
-                if (directoryListing.isNotEmpty()) {
-                    var fileName = directoryListing[directoryListing.size - 1]
-                    fileName = fileName.replace(".wal", "")
-
-                    journalFileIndex.addAndGet(Integer.valueOf(fileName).toLong())
-                }
+                // Grab the last used WAL File.  Files are named by their sequence so the highest sequence is the last.
+                walSegments(journalingDirector).keys.maxOrNull()?.let { journalFileIndex.set(it) }
 
                 val lastWalFile = File(directory + journalFileIndex.get() + ".wal")
 
@@ -91,20 +125,313 @@ open class DefaultTransactionStore(val location:String): TransactionStore {
     }
 
     /**
-     * Close the open file channel
+     * Append an entry to the journal
+     *
+     * @param entry Bytes of the journal entry from its position to its limit
+     * @return Completes once the entry is written and forced as required by the durability
+     * @throws TransactionException The store is closed
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    override fun append(entry: ByteBuffer): CompletableFuture<Unit> {
+        val bytes = ByteArray(entry.remaining())
+        entry.get(bytes)
+        return enqueue(JournalEntry(bytes))
+    }
+
+    /**
+     * Append an entry that is also written at the start of each new transaction file
+     *
+     * @param entry Bytes of the journal entry from its position to its limit
+     * @return Completes once the entry is written and forced as required by the durability
+     * @throws TransactionException The store is closed
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    override fun appendHeader(entry: ByteBuffer): CompletableFuture<Unit> {
+        val bytes = ByteArray(entry.remaining())
+        entry.get(bytes)
+        headers.add(bytes)
+        return enqueue(JournalEntry(bytes))
+    }
+
+    /**
+     * Hand an entry to the flusher.  The flusher is started the first time an entry is appended.
+     *
+     * @throws TransactionException The store is closed or its flusher was interrupted
+     */
+    @Throws(TransactionException::class)
+    private fun enqueue(journalEntry: JournalEntry): CompletableFuture<Unit> {
+        flusherLock.readLock {
+            if (closed)
+                throw TransactionException(TransactionException.TRANSACTION_STORE_CLOSED)
+            if (failed)
+                throw TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE)
+            if (flusher == null) {
+                synchronized(flusherLock) {
+                    if (flusher == null)
+                        flusher = startFlusher()
+                }
+            }
+            try {
+                pendingEntries.put(journalEntry)
+            } catch (_: InterruptedException) {
+                Thread.currentThread().interrupt()
+                journalEntry.acknowledgement.completeExceptionally(TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE))
+            }
+
+            // The flusher may have stopped after its last look at the queue.  Nothing else would acknowledge the entry.
+            if (failed)
+                failPendingEntries()
+        }
+        return journalEntry.acknowledgement
+    }
+
+    /**
+     * Wait until every entry appended so far has been written and forced to disk
+     *
+     * @return Position following the last appended entry or null if nothing has been journaled
+     * @since 3.9.10
+     */
+    @Throws(TransactionException::class)
+    override fun sync(): JournalPosition? {
+        if (closed || flusher == null && synchronized(transactionFileLock) { lastWalFileChannel == null })
+            return null
+
+        val entry = SyncEntry()
+        try {
+            enqueue(entry).get()
+        } catch (e: Exception) {
+            throw e.cause as? TransactionException ?: TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE)
+        }
+        return entry.position
+    }
+
+    /**
+     * Delete or archive the transaction files preceding a segment
+     *
+     * @param segment Sequence of the first transaction file still needed for recovery
+     * @since 3.9.10
+     */
+    override fun release(segment: Long) {
+        if (retention == JournalRetention.KEEP)
+            return
+
+        val directory = File(walDirectory)
+        val current = journalFileIndex.get()
+        walSegments(directory).filterKeys { it < segment && it < current }.values.forEach { file ->
+            catchAll {
+                if (retention == JournalRetention.DELETE) {
+                    file.delete()
+                } else {
+                    val archive = File(directory, ARCHIVE_DIRECTORY)
+                    archive.mkdirs()
+                    file.renameTo(File(archive, file.name))
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the open file channel.  Entries that have already been appended are written first.  Nothing can be
+     * appended once the store is closed.
      *
      * @since 2.0.0
      */
     override fun close() {
-        if (lastWalFileChannel != null) {
-            catchAll {
-                lastWalFileChannel!!.closeAndFlush()
+        val stoppedFlusher = flusherLock.writeLock {
+            val running = flusher
+            if (running != null && !failed)
+                pendingEntries.put(SHUTDOWN)
+            flusher = null
+            closed = true
+            running
+        }
+        catchAll { stoppedFlusher?.join() }
+
+        synchronized(transactionFileLock) {
+            if (lastWalFileChannel != null) {
+                catchAll {
+                    lastWalFileChannel!!.closeAndFlush()
+                }
+            }
+            lastWalFileChannel = null
+        }
+    }
+
+    // region Group Commit
+
+    private fun startFlusher(): Thread {
+        val thread = Thread({ flushEntries() }, "Onyx Journal Flusher")
+        thread.isDaemon = true
+        thread.start()
+        return thread
+    }
+
+    /**
+     * Flusher loop.  Writes batches of pending entries until the shutdown entry is reached.
+     */
+    private fun flushEntries() {
+        val batch = ArrayList<JournalEntry>()
+        var running = true
+        try {
+            while (running) {
+                val first = nextEntry() ?: continue
+                if (first === SHUTDOWN)
+                    break
+
+                batch.add(first)
+                var batchSize = first.bytes.size
+                while (batchSize < MAX_BATCH_SIZE) {
+                    val next = pendingEntries.poll() ?: break
+                    if (next === SHUTDOWN) {
+                        running = false
+                        break
+                    }
+                    batch.add(next)
+                    batchSize += next.bytes.size
+                }
+
+                writeBatch(batch)
+                batch.clear()
             }
+            if (hasUnforcedWrites && durability != JournalDurability.NONE)
+                catchAll { force() }
+        } catch (_: InterruptedException) {
+            // The flusher is not restarted.  Later appends fail rather than waiting on entries nothing will write.
+            failed = true
+            val failure = TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE)
+            batch.forEach { it.acknowledgement.completeExceptionally(failure) }
+            failPendingEntries()
         }
     }
 
+    /**
+     * Fail every entry waiting on the flusher once it has been interrupted
+     */
+    private fun failPendingEntries() {
+        val failure = TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE)
+        generateSequence { pendingEntries.poll() }.forEach { it.acknowledgement.completeExceptionally(failure) }
+    }
+
+    /**
+     * Wait for the next entry.  When syncing by interval this gives up once the interval has passed so written
+     * entries are not left unsynced while the journal is idle.
+     *
+     * @return The next entry or null if the transaction file was forced instead
+     */
+    private fun nextEntry(): JournalEntry? {
+        if (durability != JournalDurability.INTERVAL || !hasUnforcedWrites)
+            return pendingEntries.take()
+
+        val wait = lastForce + flushInterval - System.currentTimeMillis()
+        val entry = if (wait > 0) pendingEntries.poll(wait, TimeUnit.MILLISECONDS) else null
+        if (entry == null)
+            catchAll { force() }
+        return entry
+    }
+
+    /**
+     * Write a batch of entries with a single write and acknowledge them once durable
+     *
+     * @param batch Entries to write in order
+     */
+    private fun writeBatch(batch: List<JournalEntry>) {
+        try {
+            val file = getTransactionFile()
+
+            val segment = journalFileIndex.get()
+            var offset = file.size()
+
+            // A new transaction file starts with the headers.  Headers within the batch are then already written.
+            val segmentHeaders = if (offset == 0L) headers.toList() else emptyList()
+            val entries = ArrayList<ByteArray>(segmentHeaders)
+            offset += segmentHeaders.sumOf { it.size }
+            var isSynced = false
+            batch.forEach { entry ->
+                if (segmentHeaders.any { it === entry.bytes })
+                    return@forEach
+                entries.add(entry.bytes)
+                offset += entry.bytes.size
+                if (entry is SyncEntry) {
+                    entry.position = JournalPosition(segment, offset)
+                    isSynced = true
+                }
+            }
+
+            BufferPool.allocateAndLimit(entries.sumOf { it.size }) { buffer ->
+                entries.forEach { buffer.put(it) }
+                buffer.flip()
+                while (buffer.hasRemaining())
+                    file.write(buffer)
+            }
+            hasUnforcedWrites = true
+
+            when {
+                isSynced -> force()
+                durability == JournalDurability.BATCH -> force()
+                durability == JournalDurability.INTERVAL && System.currentTimeMillis() - lastForce >= flushInterval -> force()
+            }
+
+            batch.forEach { it.acknowledgement.complete(Unit) }
+        } catch (_: Exception) {
+            val failure = TransactionException(TransactionException.TRANSACTION_FAILED_TO_WRITE_FILE)
+            batch.forEach { it.acknowledgement.completeExceptionally(failure) }
+        }
+    }
+
+    /**
+     * Force written entries to disk
+     */
+    private fun force() {
+        synchronized(transactionFileLock) {
+            lastWalFileChannel?.force(false)
+        }
+        lastForce = System.currentTimeMillis()
+        hasUnforcedWrites = false
+    }
+
+    /**
+     * Get the transaction files within the journal directory by their sequence
+     */
+    private fun walSegments(directory: File): Map<Long, File> =
+        directory.listFiles { file -> file.isFile && file.name.endsWith(".wal") }
+            ?.mapNotNull { file -> file.name.removeSuffix(".wal").toLongOrNull()?.let { it to file } }
+            ?.toMap() ?: emptyMap()
+
+    /**
+     * Journal entry waiting to be written
+     */
+    private open class JournalEntry(val bytes: ByteArray) {
+        val acknowledgement = CompletableFuture<Unit>()
+    }
+
+    /**
+     * Entry without content that is acknowledged once everything before it has been forced to disk
+     */
+    private class SyncEntry : JournalEntry(ByteArray(0)) {
+        var position: JournalPosition? = null
+    }
+
+    // endregion
+
     companion object {
         // Maximum WAL File longSize
         private const val MAX_JOURNAL_SIZE = 1024 * 1024 * 20
+
+        // Maximum bytes written by the flusher at once.  A single larger entry is still written as a whole.
+        private const val MAX_BATCH_SIZE = 1024 * 1024
+
+        // Maximum entries waiting on the flusher
+        private const val MAX_PENDING_ENTRIES = 4096
+
+        // Default milliseconds between syncs when the durability is by interval
+        const val DEFAULT_FLUSH_INTERVAL = 1000L
+
+        // Directory within the journal directory released transaction files are moved to
+        const val ARCHIVE_DIRECTORY = "archive"
+
+        // Marks the end of the entries the flusher should write
+        private val SHUTDOWN = JournalEntry(ByteArray(0))
     }
 }
@@ -0,0 +1,180 @@
+package com.onyx.interactors.transaction.impl
+
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.extension.common.catchAll
+import com.onyx.extension.deleteRelationships
+import com.onyx.extension.isValid
+import com.onyx.extension.recordInteractor
+import com.onyx.extension.reference
+import com.onyx.extension.referenceId
+import com.onyx.extension.save
+import com.onyx.extension.saveRelationships
+import com.onyx.interactors.transaction.data.*
+import com.onyx.persistence.ManagedEntity
+import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.query.QueryListenerEvent
+import java.util.Objects
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Replays transaction files using several threads.
+ *
+ * Transaction files are decoded in parallel ahead of being applied.  Decoded entity transactions are routed by their
+ * entity descriptor, which is distinct per entity type and partition, to one of several apply threads.  Each thread
+ * applies its transactions in journal order so the transactions of a single record keep their order.
+ *
+ * Saving or deleting an entity with relationships cascades to the related entities, which may be routed to other
+ * threads.  Those transactions wait for all preceding transactions and are applied on the calling thread.
+ *
+ * Index maintenance is deferred.  The indexes of every entity descriptor that was written to are rebuilt once all
+ * transactions have been applied.  Query transactions may select records through any index so they wait for all
+ * preceding transactions and have the stale indexes rebuilt first.
+ *
+ * @param persistenceManager Persistence manager of the database being recovered
+ * @param parallelism Number of threads decoding transaction files and the number of threads applying transactions
+ * @param decode Reads all the transactions within a transaction file
+ *
+ * @since 3.9.10
+ */
+class ParallelTransactionReplay(
+    private val persistenceManager: PersistenceManager,
+    private val parallelism: Int,
+    private val decode: (String) -> List<Transaction>
+) {
+
+    private val context = persistenceManager.context
+
+    private val decoders = Executors.newFixedThreadPool(parallelism)
+    private val appliers = Array<ExecutorService>(parallelism) { Executors.newSingleThreadExecutor() }
+
+    // Entity descriptors whose indexes have not been maintained
+    private val staleIndexes: MutableSet<EntityDescriptor> = ConcurrentHashMap.newKeySet()
+
+    /**
+     * Apply transaction files in order.  An instance can only replay once since its threads are shut down afterwards.
+     *
+     * @param transactionFiles Paths of the transaction files sorted in the order they were written
+     * @param executeTransaction Function that determines whether or not you should execute the transaction.  It is
+     *                           invoked on the calling thread in journal order.
+     */
+    fun replay(transactionFiles: List<String>, executeTransaction: (Transaction) -> Boolean) {
+        try {
+            // Decode up to one file per thread ahead of the file being applied
+            val decoded = ArrayDeque<Future<List<Transaction>>>()
+            var nextFile = 0
+            while (nextFile < transactionFiles.size || decoded.isNotEmpty()) {
+                while (nextFile < transactionFiles.size && decoded.size < parallelism) {
+                    val path = transactionFiles[nextFile++]
+                    decoded.addLast(decoders.submit<List<Transaction>> { decode(path) })
+                }
+
+                decoded.removeFirst().get().forEach { transaction ->
+                    if (executeTransaction(transaction))
+                        route(transaction)
+                }
+            }
+
+            drain()
+            rebuildStaleIndexes()
+        } finally {
+            appliers.forEach { it.shutdown() }
+            decoders.shutdown()
+        }
+    }
+
+    /**
+     * Hand a transaction to the thread responsible for its entity descriptor.  Queries are applied on the calling
+     * thread once every preceding transaction has been applied.
+     */
+    private fun route(transaction: Transaction) {
+        when (transaction) {
+            is SaveTransaction, is DeleteTransaction -> {
+                val entity = (if (transaction is SaveTransaction) transaction.entity else (transaction as DeleteTransaction).entity) as ManagedEntity
+                val descriptor = context.getDescriptorForEntity(entity)
+                if (descriptor.hasRelationships) {
+                    drain()
+                    applyQuietly { if (transaction is SaveTransaction) save(entity, descriptor) else delete(entity, descriptor) }
+                    return
+                }
+
+                val routeKey = Objects.hash(descriptor.entityClass, descriptor.partition?.partitionValue)
+                val applier = appliers[(routeKey and Int.MAX_VALUE) % appliers.size]
+                applier.execute {
+                    applyQuietly {
+                        if (transaction is SaveTransaction) save(entity, descriptor) else delete(entity, descriptor)
+                    }
+                }
+            }
+            is UpdateQueryTransaction -> {
+                drain()
+                rebuildStaleIndexes()
+                applyQuietly { persistenceManager.executeUpdate(transaction.query) }
+            }
+            is DeleteQueryTransaction -> {
+                drain()
+                rebuildStaleIndexes()
+                applyQuietly { persistenceManager.executeDelete(transaction.query) }
+            }
+        }
+    }
+
+    /**
+     * Save the record and its relationships without maintaining its indexes.  Cached query results are updated as
+     * they are when saving through the persistence manager.
+     */
+    private fun save(entity: ManagedEntity, descriptor: EntityDescriptor) {
+        entity.ignoreListeners = true
+        if (entity.isValid(context)) {
+            val putResult = entity.save(context, descriptor)
+            entity.saveRelationships(context, descriptor = descriptor)
+            if (descriptor.hasIndexes)
+                staleIndexes.add(descriptor)
+
+            context.queryCacheInteractor.updateCachedQueryResultsForEntity(
+                entity,
+                descriptor,
+                entity.reference(putResult.recordId, context, descriptor),
+                if (putResult.isInsert) QueryListenerEvent.INSERT else QueryListenerEvent.UPDATE
+            )
+        }
+        entity.ignoreListeners = false
+    }
+
+    /**
+     * Delete the record and its relationships without maintaining its indexes
+     */
+    private fun delete(entity: ManagedEntity, descriptor: EntityDescriptor) {
+        entity.ignoreListeners = true
+        if (entity.referenceId(context, descriptor) > 0) {
+            entity.deleteRelationships(context, descriptor = descriptor)
+            entity.recordInteractor(context, descriptor).delete(entity)
+            if (descriptor.hasIndexes)
+                staleIndexes.add(descriptor)
+        }
+        entity.ignoreListeners = false
+    }
+
+    /**
+     * Wait until every transaction handed to the apply threads has been applied
+     */
+    private fun drain() = appliers.map { it.submit { } }.forEach { it.get() }
+
+    /**
+     * Rebuild the indexes of the entity descriptors that were written to.  The indexes are rebuilt in parallel.
+     */
+    private fun rebuildStaleIndexes() {
+        val indexes = staleIndexes.flatMap { it.indexes.values }
+        staleIndexes.clear()
+        indexes.map { index -> decoders.submit { context.getIndexInteractor(index).rebuild() } }.forEach { it.get() }
+    }
+
+    /**
+     * A transaction that fails is skipped as it is when replaying serially
+     */
+    private inline fun applyQuietly(body: () -> Unit) {
+        catchAll { body() }
+    }
+}
@@ -0,0 +1,95 @@
+package com.onyx.lang
+
+/**
+ * Priority queue that only keeps the smallest elements up to a capacity.  The elements are kept within a binary heap
+ * with the largest element at the top so an element that does not belong within the queue is rejected after a single
+ * comparison.  Memory is bound by the capacity rather than the number of elements offered.
+ *
+ * @param capacity Maximum number of elements to keep
+ * @param comparator Orders the elements.  It must be consistent so two different elements never compare as equal.
+ *
+ * @since 3.9.10
+ */
+class BoundedPriorityQueue<T>(val capacity: Int, private val comparator: Comparator<in T>) {
+
+    private var heap = arrayOfNulls<Any?>(capacity.coerceAtMost(DEFAULT_INITIAL_SIZE))
+
+    var size = 0
+        private set
+
+    /**
+     * Offer an element
+     *
+     * @param element Element to add
+     * @return Whether the element was kept.  False if the queue is full and every element is smaller.
+     */
+    fun offer(element: T): Boolean {
+        if (capacity <= 0)
+            return false
+
+        if (size < capacity) {
+            if (size == heap.size)
+                heap = heap.copyOf((heap.size * 2).coerceAtMost(capacity))
+            heap[size] = element
+            siftUp(size++)
+            return true
+        }
+
+        if (comparator.compare(element, elementAt(0)) >= 0)
+            return false
+
+        heap[0] = element
+        siftDown(0)
+        return true
+    }
+
+    /**
+     * Copy the elements in ascending order
+     *
+     * @return Sorted elements
+     */
+    fun toSortedList(): List<T> {
+        val sorted = ArrayList<T>(size)
+        for (index in 0 until size)
+            sorted.add(elementAt(index))
+        sorted.sortWith(comparator)
+        return sorted
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun elementAt(index: Int): T = heap[index] as T
+
+    private fun siftUp(from: Int) {
+        var index = from
+        val element = elementAt(index)
+        while (index > 0) {
+            val parent = (index - 1) ushr 1
+            if (comparator.compare(element, elementAt(parent)) <= 0)
+                break
+            heap[index] = heap[parent]
+            index = parent
+        }
+        heap[index] = element
+    }
+
+    private fun siftDown(from: Int) {
+        var index = from
+        val element = elementAt(index)
+        while (true) {
+            var child = index * 2 + 1
+            if (child >= size)
+                break
+            if (child + 1 < size && comparator.compare(elementAt(child + 1), elementAt(child)) > 0)
+                child++
+            if (comparator.compare(element, elementAt(child)) >= 0)
+                break
+            heap[index] = heap[child]
+            index = child
+        }
+        heap[index] = element
+    }
+
+    companion object {
+        private const val DEFAULT_INITIAL_SIZE = 64
+    }
+}
@@ -0,0 +1,27 @@
+package com.onyx.lang
+
+import java.io.Closeable
+
+/**
+ * Iterator holding resources until it is closed.  Iterating every element does not have to close it so it should
+ * always be closed once it is no longer needed.
+ *
+ * @since 3.9.10
+ */
+interface CloseableIterator<out T> : Iterator<T>, Closeable
+
+/**
+ * Iterator that does not hold any resources
+ *
+ * @param onClose Invoked when the iterator is closed
+ * @return Closeable iterator over the same elements
+ * @since 3.9.10
+ */
+fun <T> Iterator<T>.asCloseable(onClose: () -> Unit = {}): CloseableIterator<T> {
+    val iterator = this
+    return object : CloseableIterator<T> {
+        override fun hasNext(): Boolean = iterator.hasNext()
+        override fun next(): T = iterator.next()
+        override fun close() = onClose()
+    }
+}
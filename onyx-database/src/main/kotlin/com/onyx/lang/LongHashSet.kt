@@ -0,0 +1,266 @@
+package com.onyx.lang
+
+/**
+ * Set of primitive longs.  Values are kept within an open addressed table so adding, checking and removing a value
+ * does not allocate.  Removed values leave a marker behind so iterating and removing at the same time is safe.
+ *
+ * @param expectedSize Number of values expected so the table is not grown while filling it
+ *
+ * @since 3.9.10
+ */
+class LongHashSet @JvmOverloads constructor(expectedSize: Int = DEFAULT_EXPECTED_SIZE) : AbstractMutableSet<Long>() {
+
+    @PublishedApi
+    internal var values = LongArray(capacityFor(expectedSize))
+
+    @PublishedApi
+    internal var states = ByteArray(values.size)
+
+    private var count = 0
+    private var removed = 0
+
+    override val size: Int
+        get() = count
+
+    /**
+     * Add a value
+     *
+     * @param element Value to add
+     * @return Whether the value was not already within the set
+     */
+    override fun add(element: Long): Boolean {
+        if ((count + removed + 1) * LOAD_FACTOR_DIVISOR > values.size * LOAD_FACTOR_DIVIDEND)
+            resize(if ((count + 1) * LOAD_FACTOR_DIVISOR > values.size * LOAD_FACTOR_DIVIDEND / 2) values.size * 2 else values.size)
+
+        val mask = values.size - 1
+        var slot = slotOf(element, mask)
+        var firstRemoved = -1
+        while (states[slot] != EMPTY) {
+            if (states[slot] == FULL && values[slot] == element)
+                return false
+            if (states[slot] == REMOVED && firstRemoved < 0)
+                firstRemoved = slot
+            slot = (slot + 1) and mask
+        }
+
+        if (firstRemoved >= 0) {
+            slot = firstRemoved
+            removed--
+        }
+        values[slot] = element
+        states[slot] = FULL
+        count++
+        return true
+    }
+
+    /**
+     * Whether a value is within the set
+     *
+     * @param element Value to check
+     * @return True if the set contains it
+     */
+    override fun contains(element: Long): Boolean = slotOf(element) >= 0
+
+    /**
+     * Remove a value
+     *
+     * @param element Value to remove
+     * @return Whether the value was within the set
+     */
+    override fun remove(element: Long): Boolean {
+        val slot = slotOf(element)
+        if (slot < 0)
+            return false
+        removeAt(slot)
+        return true
+    }
+
+    /**
+     * Add all values of another set without boxing them
+     *
+     * @param other Values to add
+     * @return Whether the set changed
+     */
+    fun addAll(other: LongHashSet): Boolean {
+        var changed = false
+        other.forEachLong { if (add(it)) changed = true }
+        return changed
+    }
+
+    override fun addAll(elements: Collection<Long>): Boolean =
+        if (elements is LongHashSet) addAll(elements) else super.addAll(elements)
+
+    /**
+     * Keep only the values within another set
+     *
+     * @param other Values to keep
+     * @return Whether the set changed
+     */
+    fun retainAll(other: LongHashSet): Boolean {
+        var changed = false
+        for (slot in values.indices) {
+            if (states[slot] == FULL && !other.contains(values[slot])) {
+                removeAt(slot)
+                changed = true
+            }
+        }
+        return changed
+    }
+
+    override fun retainAll(elements: Collection<Long>): Boolean =
+        if (elements is LongHashSet) retainAll(elements) else super.retainAll(elements)
+
+    /**
+     * Remove the values within another set
+     *
+     * @param other Values to remove
+     * @return Whether the set changed
+     */
+    fun removeAll(other: LongHashSet): Boolean {
+        var changed = false
+        for (slot in values.indices) {
+            if (states[slot] == FULL && other.contains(values[slot])) {
+                removeAt(slot)
+                changed = true
+            }
+        }
+        return changed
+    }
+
+    override fun removeAll(elements: Collection<Long>): Boolean =
+        if (elements is LongHashSet) removeAll(elements) else super.removeAll(elements)
+
+    override fun clear() {
+        values.fill(0L)
+        states.fill(EMPTY)
+        count = 0
+        removed = 0
+    }
+
+    /**
+     * Iterate the values without boxing them
+     *
+     * @param action Invoked with each value
+     */
+    inline fun forEachLong(action: (Long) -> Unit) {
+        val values = values
+        val states = states
+        for (slot in values.indices) {
+            if (states[slot] == FULL)
+                action(values[slot])
+        }
+    }
+
+    /**
+     * Copy the values in ascending order
+     *
+     * @return Sorted values
+     */
+    fun toSortedArray(): LongArray {
+        val sorted = LongArray(count)
+        var index = 0
+        forEachLong { sorted[index++] = it }
+        sorted.sort()
+        return sorted
+    }
+
+    override fun iterator(): MutableIterator<Long> = object : MutableIterator<Long> {
+        private var slot = nextSlot(0)
+        private var last = -1
+
+        private fun nextSlot(from: Int): Int {
+            var next = from
+            while (next < states.size && states[next] != FULL)
+                next++
+            return next
+        }
+
+        override fun hasNext(): Boolean = slot < states.size
+
+        override fun next(): Long {
+            if (slot >= states.size)
+                throw NoSuchElementException()
+            last = slot
+            slot = nextSlot(slot + 1)
+            return values[last]
+        }
+
+        override fun remove() {
+            check(last >= 0 && states[last] == FULL)
+            removeAt(last)
+        }
+    }
+
+    /**
+     * Find the slot holding a value
+     *
+     * @param value Value to find
+     * @return Slot or -1 if the value is not within the set
+     */
+    private fun slotOf(value: Long): Int {
+        val mask = values.size - 1
+        var slot = slotOf(value, mask)
+        while (states[slot] != EMPTY) {
+            if (states[slot] == FULL && values[slot] == value)
+                return slot
+            slot = (slot + 1) and mask
+        }
+        return -1
+    }
+
+    private fun removeAt(slot: Int) {
+        states[slot] = REMOVED
+        count--
+        removed++
+    }
+
+    /**
+     * Move the values to a new table.  Removed markers are dropped.
+     *
+     * @param capacity Size of the new table
+     */
+    private fun resize(capacity: Int) {
+        val oldValues = values
+        val oldStates = states
+        values = LongArray(capacity)
+        states = ByteArray(capacity)
+        removed = 0
+
+        val mask = capacity - 1
+        for (index in oldValues.indices) {
+            if (oldStates[index] == FULL) {
+                var slot = slotOf(oldValues[index], mask)
+                while (states[slot] != EMPTY)
+                    slot = (slot + 1) and mask
+                values[slot] = oldValues[index]
+                states[slot] = FULL
+            }
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_EXPECTED_SIZE = 16
+
+        // Table is grown once it is 3/4 full
+        private const val LOAD_FACTOR_DIVIDEND = 3
+        private const val LOAD_FACTOR_DIVISOR = 4
+
+        @PublishedApi
+        internal const val FULL: Byte = 1
+        private const val EMPTY: Byte = 0
+        private const val REMOVED: Byte = 2
+
+        private fun slotOf(value: Long, mask: Int): Int {
+            var hash = value * -0x61c8864680b583ebL
+            hash = hash xor (hash ushr 32)
+            return (hash xor (hash ushr 16)).toInt() and mask
+        }
+
+        private fun capacityFor(expectedSize: Int): Int {
+            var capacity = 8
+            while (capacity * LOAD_FACTOR_DIVIDEND < expectedSize * LOAD_FACTOR_DIVISOR)
+                capacity = capacity shl 1
+            return capacity
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.onyx.lang
+
+/**
+ * Tracks the mean and variance of a stream of values using Welford's algorithm.  Rather than summing the squares of
+ * the values, which loses precision once the sum is much larger than the spread of the values, the distance of each
+ * value from the running mean is accumulated.
+ *
+ * Two running variances can be merged so values may be accumulated separately and combined.  It is not thread safe.
+ *
+ * @since 3.9.10
+ */
+class RunningVariance {
+
+    var count = 0L
+        private set
+
+    var mean = 0.0
+        private set
+
+    // Sum of the squared distance of each value from the mean
+    private var squaredDistance = 0.0
+
+    /**
+     * Population variance of the values or NaN if there are none
+     */
+    val variance: Double
+        get() = if (count == 0L) Double.NaN else (squaredDistance / count).coerceAtLeast(0.0)
+
+    /**
+     * Add a value
+     *
+     * @param value Value to accumulate
+     */
+    fun add(value: Double) {
+        count++
+        val delta = value - mean
+        mean += delta / count
+        squaredDistance += delta * (value - mean)
+    }
+
+    /**
+     * Add the values accumulated by another running variance
+     *
+     * @param other Running variance to merge
+     */
+    fun merge(other: RunningVariance) {
+        if (other.count == 0L)
+            return
+        val total = count + other.count
+        val delta = other.mean - mean
+        squaredDistance += other.squaredDistance + delta * delta * count * other.count / total
+        mean += delta * other.count / total
+        count = total
+    }
+}
@@ -0,0 +1,198 @@
+package com.onyx.lang
+
+import kotlin.math.PI
+import kotlin.math.asin
+import kotlin.math.sin
+
+/**
+ * Sketch estimating quantiles of a stream of values.  Values are summarized as centroids, each holding the mean and
+ * number of the values it represents.  Centroids near the median may represent many values while centroids near the
+ * tails only represent a few so extreme quantiles stay accurate.  Memory is bound by the compression rather than the
+ * number of values added.
+ *
+ * Values are buffered and merged into the centroids once the buffer fills.  Until there are more values than the
+ * compression allows for each centroid represents a single value and quantiles are exact.
+ *
+ * Digests can be merged so values may be summarized separately and combined.  The digest is not thread safe.
+ *
+ * @param compression Bounds the number of centroids.  Higher values are more accurate and use more memory.
+ *
+ * @since 3.9.10
+ */
+class TDigest @JvmOverloads constructor(val compression: Double = DEFAULT_COMPRESSION) {
+
+    // Merged centroids sorted by mean
+    private var means = DoubleArray(0)
+    private var weights = DoubleArray(0)
+
+    // Values and centroids of other digests not yet merged
+    private val bufferSize = (compression * BUFFER_FACTOR).toInt()
+    private var bufferMeans = DoubleArray(bufferSize)
+    private var bufferWeights = DoubleArray(bufferSize)
+    private var buffered = 0
+
+    var size = 0L
+        private set
+
+    var min = Double.NaN
+        private set
+
+    var max = Double.NaN
+        private set
+
+    /**
+     * Number of centroids summarizing the values
+     */
+    val centroids: Int
+        get() {
+            compress()
+            return means.size
+        }
+
+    /**
+     * Add a value
+     *
+     * @param value Value to summarize
+     */
+    fun add(value: Double) {
+        if (value.isNaN())
+            return
+        buffer(value, 1.0)
+        size++
+        if (min.isNaN() || value < min) min = value
+        if (max.isNaN() || value > max) max = value
+    }
+
+    /**
+     * Add the values summarized by another digest
+     *
+     * @param other Digest to merge
+     */
+    fun merge(other: TDigest) {
+        if (other.size == 0L)
+            return
+        other.compress()
+        for (i in other.means.indices)
+            buffer(other.means[i], other.weights[i])
+        size += other.size
+        if (min.isNaN() || other.min < min) min = other.min
+        if (max.isNaN() || other.max > max) max = other.max
+    }
+
+    /**
+     * Estimate a quantile.  Values are ranked from 0 to size - 1 and the value at rank quantile * (size - 1) is
+     * interpolated between the centroids surrounding it.
+     *
+     * @param quantile Quantile from 0 to 1
+     * @return Estimated value or NaN if no values were added
+     */
+    fun quantile(quantile: Double): Double {
+        if (size == 0L)
+            return Double.NaN
+        compress()
+
+        val rank = quantile.coerceIn(0.0, 1.0) * (size - 1)
+
+        // Rank of the center of each centroid.  A centroid of a single value is centered on the rank of that value.
+        var weightBefore = 0.0
+        var previousCenter = 0.0
+        var previousMean = min
+        for (i in means.indices) {
+            val center = weightBefore + (weights[i] - 1.0) / 2.0
+            if (rank <= center) {
+                if (center == previousCenter)
+                    return means[i]
+                return previousMean + (means[i] - previousMean) * (rank - previousCenter) / (center - previousCenter)
+            }
+            weightBefore += weights[i]
+            previousCenter = center
+            previousMean = means[i]
+        }
+
+        val last = (size - 1).toDouble()
+        if (last == previousCenter)
+            return max
+        return previousMean + (max - previousMean) * (rank - previousCenter) / (last - previousCenter)
+    }
+
+    /**
+     * Buffer a centroid and merge the buffer if it is full
+     */
+    private fun buffer(mean: Double, weight: Double) {
+        if (buffered == bufferSize)
+            compress()
+        bufferMeans[buffered] = mean
+        bufferWeights[buffered] = weight
+        buffered++
+    }
+
+    /**
+     * Merge the buffer into the centroids.  Neighboring centroids are combined as long as the quantiles they span
+     * stay within one unit of the scale function.
+     */
+    private fun compress() {
+        if (buffered == 0)
+            return
+
+        val count = means.size + buffered
+        val allMeans = means.copyOf(count)
+        val allWeights = weights.copyOf(count)
+        System.arraycopy(bufferMeans, 0, allMeans, means.size, buffered)
+        System.arraycopy(bufferWeights, 0, allWeights, means.size, buffered)
+        buffered = 0
+
+        val order = (0 until count).sortedBy { allMeans[it] }
+        val total = allWeights.sum()
+
+        val mergedMeans = DoubleArray(count)
+        val mergedWeights = DoubleArray(count)
+        var merged = 0
+
+        var mean = allMeans[order[0]]
+        var weight = allWeights[order[0]]
+        var weightSoFar = 0.0
+        var weightLimit = total * quantileOf(scaleOf(0.0) + 1.0)
+
+        for (index in 1 until count) {
+            val next = order[index]
+            if (weightSoFar + weight + allWeights[next] <= weightLimit) {
+                weight += allWeights[next]
+                mean += (allMeans[next] - mean) * allWeights[next] / weight
+            } else {
+                mergedMeans[merged] = mean
+                mergedWeights[merged++] = weight
+                weightSoFar += weight
+                weightLimit = total * quantileOf(scaleOf(weightSoFar / total) + 1.0)
+                mean = allMeans[next]
+                weight = allWeights[next]
+            }
+        }
+        mergedMeans[merged] = mean
+        mergedWeights[merged++] = weight
+
+        means = mergedMeans.copyOf(merged)
+        weights = mergedWeights.copyOf(merged)
+    }
+
+    /**
+     * Scale function mapping a quantile to the number of centroids that may precede it
+     */
+    private fun scaleOf(quantile: Double): Double = compression / (2.0 * PI) * asin(2.0 * quantile.coerceIn(0.0, 1.0) - 1.0)
+
+    /**
+     * Inverse of the scale function
+     */
+    private fun quantileOf(scale: Double): Double {
+        val limit = compression / 4.0
+        if (scale >= limit)
+            return 1.0
+        return (sin(scale * 2.0 * PI / compression) + 1.0) / 2.0
+    }
+
+    companion object {
+        const val DEFAULT_COMPRESSION = 200.0
+
+        // Number of values buffered for each unit of compression
+        private const val BUFFER_FACTOR = 5
+    }
+}
@@ -35,4 +35,14 @@ interface AtomicCounter {
      * @since 1.3.0
      */
     fun getAndAdd(more: Int): Long
+
+    /**
+     * Thread safe, set the value only if it currently matches the expected value
+     *
+     * @param expect Expected current value
+     * @param update New value
+     * @return Whether the value was updated
+     * @since 3.9.10
+     */
+    fun compareAndSet(expect: Long, update: Long): Boolean
 }
@@ -0,0 +1,140 @@
+package com.onyx.lang.concurrent
+
+import java.util.ArrayDeque
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * Defers releasing a shared resource until no reader can still be using it.
+ *
+ * Readers never wait on writers.  A reader registers with the epoch that is current when it starts.  A retired
+ * resource is tagged with the current epoch and is released once the epoch has advanced twice since.  The epoch only
+ * advances when no reader is registered with the epoch preceding the current one, so by the time a resource is
+ * released every reader that started before it was retired has finished.
+ *
+ * Readers are counted in stripes so concurrent readers do not contend on a single counter.
+ *
+ * @param stripes Number of reader counters.  Must be a power of 2.
+ * @since 3.9.10
+ */
+class EpochReclamation(private val stripes: Int = DEFAULT_STRIPES) {
+
+    private val epoch = AtomicLong()
+
+    // Readers of each stripe for even and odd epochs.  Stripes are spaced apart so they do not share a cache line.
+    private val readers = AtomicLongArray(stripes * STRIDE)
+
+    private val retired = ArrayDeque<Retired>()
+    private val retiredCount = AtomicInteger()
+    private val reclaimLock = ReentrantLock()
+
+    /**
+     * Number of resources that have been retired but not yet released
+     */
+    val pending: Int
+        get() = retiredCount.get()
+
+    /**
+     * Invoke a body that may read retired resources.  Anything retired after it starts is not released until it has
+     * finished.  Reads may be nested.
+     *
+     * @param body Function to invoke
+     * @return The result of the body
+     */
+    fun <T> read(body: () -> T): T {
+        val slot = (System.identityHashCode(Thread.currentThread()) * HASH_MIX ushr 16 and (stripes - 1)) * STRIDE
+        var current: Long
+        while (true) {
+            current = epoch.get()
+            readers.incrementAndGet(slot + (current and 1L).toInt())
+
+            // The epoch advanced before this reader was counted.  Register with the new one instead.
+            if (epoch.get() == current) break
+            readers.decrementAndGet(slot + (current and 1L).toInt())
+        }
+
+        try {
+            return body()
+        } finally {
+            readers.decrementAndGet(slot + (current and 1L).toInt())
+            if (retiredCount.get() > 0)
+                reclaim()
+        }
+    }
+
+    /**
+     * Retire a resource.  It is released once no reader that started beforehand is still running.  This must be
+     * invoked after the resource can no longer be reached by a new reader.
+     *
+     * @param release Releases the resource
+     */
+    fun retire(release: () -> Unit) {
+        reclaimLock.lock()
+        try {
+            retired.add(Retired(epoch.get(), release))
+            retiredCount.incrementAndGet()
+        } finally {
+            reclaimLock.unlock()
+        }
+        reclaim()
+    }
+
+    /**
+     * Release the retired resources no reader can still be using.  If another thread is already reclaiming this
+     * returns immediately.
+     */
+    fun reclaim() {
+        if (!reclaimLock.tryLock())
+            return
+
+        val released = ArrayList<() -> Unit>()
+        try {
+            if (retired.isEmpty())
+                return
+
+            // Two advances make everything retired before the first one safe to release
+            for (i in 0 until 2) {
+                if (!advance())
+                    break
+            }
+
+            val safeEpoch = epoch.get() - 2
+            while (retired.isNotEmpty() && retired.peekFirst().epoch <= safeEpoch)
+                released.add(retired.pollFirst().release)
+            retiredCount.addAndGet(-released.size)
+        } finally {
+            reclaimLock.unlock()
+        }
+
+        released.forEach { it() }
+    }
+
+    /**
+     * Advance the epoch if no reader remains registered with the previous epoch.  This must be invoked while holding
+     * the reclaim lock.
+     *
+     * @return Whether the epoch advanced
+     */
+    private fun advance(): Boolean {
+        val current = epoch.get()
+        val previous = ((current - 1) and 1L).toInt()
+        for (stripe in 0 until stripes) {
+            if (readers.get(stripe * STRIDE + previous) != 0L)
+                return false
+        }
+        epoch.set(current + 1)
+        return true
+    }
+
+    private class Retired(val epoch: Long, val release: () -> Unit)
+
+    companion object {
+        const val DEFAULT_STRIPES = 16
+
+        // Counters per stripe including the padding that keeps them on their own cache line
+        private const val STRIDE = 16
+        private const val HASH_MIX = -0x61c88647
+    }
+}
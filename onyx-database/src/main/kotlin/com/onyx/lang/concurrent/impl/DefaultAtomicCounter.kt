@@ -42,6 +42,15 @@ class DefaultAtomicCounter(initialValue: Long = 0L) : AtomicCounter, BufferStrea
      */
     override fun getAndAdd(more: Int): Long = this.aLong.getAndAdd(more.toLong())
 
+    /**
+     * Compare and set
+     *
+     * @param expect Expected current value
+     * @param update New value
+     * @return Whether the value was updated
+     */
+    override fun compareAndSet(expect: Long, update: Long): Boolean = this.aLong.compareAndSet(expect, update)
+
     /**
      * Read from buffer
      *
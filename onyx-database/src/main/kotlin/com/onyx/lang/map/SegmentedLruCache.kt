@@ -0,0 +1,289 @@
+package com.onyx.lang.map
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * A thread-safe cache bounded by the combined weight of its entries rather than by how many entries it holds.
+ *
+ * Each segment uses a segmented LRU policy.  New entries are admitted into a probationary segment and are only
+ * promoted into the protected segment once they are read again.  Entries are evicted from the probationary segment
+ * first so a single pass over a large range, such as a full table scan, does not flush the entries that are read
+ * repeatedly.
+ *
+ * The cache is split into stripes by key hash so concurrent readers of unrelated keys do not contend on a single lock.
+ *
+ * @param K The type of keys maintained by this cache.
+ * @param V The type of cached values.
+ * @param maxWeight Maximum combined weight of all the entries.  This is usually the estimated number of bytes.
+ * @param stripes Number of independently locked stripes.  Must be a power of 2.
+ * @property weigher Determines the weight of an entry
+ *
+ * @since 3.9.10
+ */
+open class SegmentedLruCache<K : Any, V : Any>(
+    maxWeight: Long,
+    stripes: Int = DEFAULT_STRIPES,
+    private val weigher: (K, V) -> Int
+) {
+
+    private val stripes = Array(stripes) { Stripe() }
+    private val stripeShift = 32 - Integer.numberOfTrailingZeros(stripes)
+
+    /**
+     * Notified of the keys added to and removed from the cache.  It is invoked while holding the lock of the stripe
+     * the key belongs to so the notifications for a key are never re-ordered.  It must not access this cache.
+     */
+    var listener: Listener<K>? = null
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    /**
+     * Maximum combined weight of the entries.  Lowering it evicts entries until the cache fits.
+     */
+    @Volatile
+    var maxWeight: Long = maxWeight
+        set(value) {
+            field = value
+            stripes.forEach { it.lock.withLock { it.evict() } }
+        }
+
+    /**
+     * Number of reads that found a value
+     */
+    val hitCount: Long
+        get() = hits.get()
+
+    /**
+     * Number of reads that did not find a value
+     */
+    val missCount: Long
+        get() = misses.get()
+
+    /**
+     * Number of entries removed to stay within the maximum weight
+     */
+    val evictionCount: Long
+        get() = evictions.get()
+
+    /**
+     * Ratio of reads that found a value.  0 if nothing has been read.
+     */
+    val hitRate: Double
+        get() {
+            val hit = hits.get()
+            val total = hit + misses.get()
+            return if (total == 0L) 0.0 else hit.toDouble() / total.toDouble()
+        }
+
+    /**
+     * Combined weight of the cached entries
+     */
+    val weight: Long
+        get() = stripes.sumOf { it.lock.withLock { it.probationWeight + it.protectedWeight } }
+
+    /**
+     * Number of cached entries
+     */
+    val size: Int
+        get() = stripes.sumOf { it.lock.withLock { it.probation.size + it.protected.size } }
+
+    /**
+     * Get a cached value.  A hit promotes the entry into the protected segment.
+     *
+     * @param key Key of the entry
+     * @return The cached value or null if it is not cached
+     */
+    operator fun get(key: K): V? {
+        val stripe = stripe(key)
+        val value = stripe.lock.withLock { stripe.get(key) }
+        if (value == null) misses.incrementAndGet() else hits.incrementAndGet()
+        return value
+    }
+
+    /**
+     * Cache a value.  It replaces the value that is already cached for the key.  Values heavier than a stripe can
+     * hold are not cached.
+     *
+     * @param key Key of the entry
+     * @param value Value to cache
+     */
+    operator fun set(key: K, value: V) {
+        val stripe = stripe(key)
+        stripe.lock.withLock { stripe.put(key, value, weigher(key, value)) }
+    }
+
+    /**
+     * Get a cached value or load and cache it.  The value is loaded while holding the lock of the stripe the key
+     * belongs to so only one instance is ever loaded and cached for a key.  The loader must not access this cache.
+     *
+     * @param key Key of the entry
+     * @param loader Loads the value when it is not cached.  Null values are not cached.
+     * @return The cached or loaded value
+     */
+    fun getOrPut(key: K, loader: () -> V?): V? {
+        val stripe = stripe(key)
+        return stripe.lock.withLock {
+            val cached = stripe.get(key)
+            if (cached != null) {
+                hits.incrementAndGet()
+                return@withLock cached
+            }
+            misses.incrementAndGet()
+            val loaded = loader() ?: return@withLock null
+            stripe.put(key, loaded, weigher(key, loaded))
+            return@withLock loaded
+        }
+    }
+
+    /**
+     * Remove an entry
+     *
+     * @param key Key of the entry
+     * @return The value that was cached
+     */
+    fun remove(key: K): V? {
+        val stripe = stripe(key)
+        return stripe.lock.withLock { stripe.remove(key)?.also { listener?.removed(key) } }
+    }
+
+    /**
+     * Remove every entry whose key matches
+     *
+     * @param predicate Determines whether an entry should be removed
+     */
+    fun removeIf(predicate: (K) -> Boolean) = stripes.forEach { stripe ->
+        stripe.lock.withLock { stripe.removeIf(predicate) }
+    }
+
+    /**
+     * Remove all the entries.  Statistics are not reset.
+     */
+    fun clear() = stripes.forEach { stripe ->
+        stripe.lock.withLock {
+            listener?.let { listener ->
+                stripe.probation.keys.forEach { listener.removed(it) }
+                stripe.protected.keys.forEach { listener.removed(it) }
+            }
+            stripe.probation.clear()
+            stripe.protected.clear()
+            stripe.probationWeight = 0L
+            stripe.protectedWeight = 0L
+        }
+    }
+
+    // The stripe is chosen by the high bits of the mixed hash.  The hash maps within a stripe use the low bits.
+    private fun stripe(key: K): Stripe = stripes[if (stripes.size == 1) 0 else (key.hashCode() * HASH_MIX) ushr stripeShift]
+
+    private class Entry<V>(val value: V, val weight: Int)
+
+    /**
+     * Notified of the keys added to and removed from the cache
+     */
+    interface Listener<K> {
+        fun added(key: K)
+        fun removed(key: K)
+    }
+
+    /**
+     * A single locked portion of the cache holding its share of the maximum weight
+     */
+    private inner class Stripe {
+
+        val lock = ReentrantLock()
+
+        val probation = LinkedHashMap<K, Entry<V>>(16, 0.75f, true)
+        val protected = LinkedHashMap<K, Entry<V>>(16, 0.75f, true)
+        var probationWeight = 0L
+        var protectedWeight = 0L
+
+        private val maxStripeWeight: Long
+            get() = maxWeight / stripes.size
+
+        private val maxProtectedWeight: Long
+            get() = maxStripeWeight * PROTECTED_PERCENT / 100
+
+        fun get(key: K): V? {
+            val protectedEntry = protected[key]
+            if (protectedEntry != null)
+                return protectedEntry.value
+
+            // A second read promotes the entry so it outlives entries that were only read once
+            val entry = probation.remove(key) ?: return null
+            probationWeight -= entry.weight
+            protected[key] = entry
+            protectedWeight += entry.weight
+
+            while (protectedWeight > maxProtectedWeight && protected.isNotEmpty()) {
+                val eldest = protected.entries.iterator().next()
+                protected.remove(eldest.key)
+                protectedWeight -= eldest.value.weight
+                probation[eldest.key] = eldest.value
+                probationWeight += eldest.value.weight
+            }
+            return entry.value
+        }
+
+        fun put(key: K, value: V, weight: Int) {
+            val replaced = remove(key) != null
+            if (weight > maxStripeWeight) {
+                if (replaced) listener?.removed(key)
+                return
+            }
+            probation[key] = Entry(value, weight)
+            probationWeight += weight
+            if (!replaced) listener?.added(key)
+            evict()
+        }
+
+        fun remove(key: K): V? {
+            val protectedEntry = protected.remove(key)
+            if (protectedEntry != null) {
+                protectedWeight -= protectedEntry.weight
+                return protectedEntry.value
+            }
+            val entry = probation.remove(key) ?: return null
+            probationWeight -= entry.weight
+            return entry.value
+        }
+
+        fun removeIf(predicate: (K) -> Boolean) {
+            probation.entries.removeIf {
+                val matches = predicate(it.key)
+                if (matches) {
+                    probationWeight -= it.value.weight
+                    listener?.removed(it.key)
+                }
+                matches
+            }
+            protected.entries.removeIf {
+                val matches = predicate(it.key)
+                if (matches) {
+                    protectedWeight -= it.value.weight
+                    listener?.removed(it.key)
+                }
+                matches
+            }
+        }
+
+        fun evict() {
+            while (probationWeight + protectedWeight > maxStripeWeight && (probation.isNotEmpty() || protected.isNotEmpty())) {
+                val segment = if (probation.isNotEmpty()) probation else protected
+                val eldest = segment.entries.iterator().next()
+                segment.remove(eldest.key)
+                if (segment === probation) probationWeight -= eldest.value.weight else protectedWeight -= eldest.value.weight
+                evictions.incrementAndGet()
+                listener?.removed(eldest.key)
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_STRIPES = 16
+        private const val PROTECTED_PERCENT = 80
+        private const val HASH_MIX = -0x61c88647
+    }
+}
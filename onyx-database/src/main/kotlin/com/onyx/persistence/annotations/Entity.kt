@@ -1,5 +1,7 @@
 package com.onyx.persistence.annotations
 
+import com.onyx.diskmap.DiskMapType
+
 /**
  * Annotation used to indicate a class that is specified as a managed entity.
  *
@@ -20,6 +22,10 @@ package com.onyx.persistence.annotations
  *
  * </pre>
  *
+ * @param mapType Data structure the entity records are stored in.  The B+tree is better suited for large entities
+ *        that are scanned or queried by range.  This is only honored when the entity storage is created.
+ *        Default is the skip list.  @since 3.9.10
+ *
  * @see com.onyx.persistence.ManagedEntity
  */
 
@@ -34,5 +40,6 @@ enum class EntityType {
 annotation class Entity(
     val fileName: String = "",
     val archiveDirectories: Array<String> = [],
-    val type: EntityType = EntityType.DEFAULT
+    val type: EntityType = EntityType.DEFAULT,
+    val mapType: DiskMapType = DiskMapType.SKIP_LIST
 )
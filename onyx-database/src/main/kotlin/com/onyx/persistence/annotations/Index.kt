@@ -1,5 +1,6 @@
 package com.onyx.persistence.annotations
 
+import com.onyx.diskmap.DiskMapType
 import com.onyx.persistence.annotations.values.IndexType
 import com.onyx.persistence.annotations.values.VectorQuantization
 
@@ -37,6 +38,8 @@ import com.onyx.persistence.annotations.values.VectorQuantization
  *        NONE uses full float32 precision, INT8 uses 8-bit quantization, INT4 uses 4-bit quantization.
  *        Lower precision reduces memory usage but may slightly reduce accuracy.
  *        Default is NONE.
+ * @param mapType Data structure the index values are stored in.  This only applies to a standard index and is only
+ *        honored when the index storage is created.  Default is the skip list.  @since 3.9.10
  */
 @Target(AnnotationTarget.FIELD)
 annotation class Index(
@@ -45,5 +48,6 @@ annotation class Index(
     val minimumScore: Float = -1f,
     val maxNeighbors: Int = 16,
     val searchRadius: Int = 128,
-    val quantization: VectorQuantization = VectorQuantization.NONE
+    val quantization: VectorQuantization = VectorQuantization.NONE,
+    val mapType: DiskMapType = DiskMapType.SKIP_LIST
 )
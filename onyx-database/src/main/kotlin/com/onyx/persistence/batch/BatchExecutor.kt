@@ -0,0 +1,146 @@
+package com.onyx.persistence.batch
+
+import com.onyx.exception.BatchException
+import com.onyx.exception.OnyxException
+import com.onyx.extension.common.async
+import com.onyx.extension.common.catchAll
+import com.onyx.extension.copy
+import com.onyx.extension.createNewEntity
+import com.onyx.extension.identifier
+import com.onyx.extension.recordInteractor
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.manager.PersistenceManager
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+
+/**
+ * Executes a batch of operations against a persistence manager.  Operations are executed in order except that
+ * consecutive read only operations are executed in parallel.  A read is never executed before the writes preceding
+ * it within the batch.
+ *
+ * If the batch is atomic the first failure stops the batch and undoes the saves and deletes executed before it.
+ * Saved entities are restored to the values they had before the batch and new entities are deleted.  Changes
+ * cascaded to relationships are not undone and other clients may read the changes before they are undone.
+ *
+ * @param persistenceManager Persistence manager to execute the operations with
+ *
+ * @since 3.9.10
+ */
+class BatchExecutor(private val persistenceManager: PersistenceManager) {
+
+    /**
+     * Execute the batch
+     *
+     * @param operations Operations to execute
+     * @param atomic Whether to stop and undo the batch if an operation fails
+     * @return Result of each operation in the same order as the operations
+     * @throws BatchException An operation is not a persistence manager method or can not be undone within an atomic batch
+     * @throws OnyxException The first error of an atomic batch
+     */
+    @Throws(OnyxException::class)
+    fun execute(operations: List<BatchOperation>, atomic: Boolean): List<BatchResult> {
+        val methods = operations.map { it.method() }
+        if (atomic) {
+            operations.firstOrNull { !it.isReadOnly && !it.isUndoable }?.let {
+                throw BatchException(BatchException.UNSUPPORTED_ATOMIC_OPERATION + it.methodName)
+            }
+        }
+
+        val results = arrayOfNulls<BatchResult>(operations.size)
+        val undo = ArrayList<() -> Unit>()
+        var index = 0
+
+        while (index < operations.size) {
+            var end = index + 1
+            if (operations[index].isReadOnly) {
+                while (end < operations.size && operations[end].isReadOnly)
+                    end++
+            }
+
+            if (end - index > 1) {
+                (index until end).map { async { invoke(methods[it], operations[it]) } }
+                    .forEachIndexed { offset, future -> results[index + offset] = future.result() }
+            } else {
+                if (atomic && operations[index].isUndoable)
+                    undo.addAll(undoOf(operations[index]))
+                results[index] = invoke(methods[index], operations[index])
+            }
+
+            if (atomic) {
+                (index until end).firstNotNullOfOrNull { results[it]!!.error }?.let { error ->
+                    undo.asReversed().forEach { catchAll { it() } }
+                    throw error
+                }
+            }
+            index = end
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        return results.toList() as List<BatchResult>
+    }
+
+    /**
+     * Invoke an operation and capture its result or error
+     */
+    private fun invoke(method: Method, operation: BatchOperation): BatchResult = try {
+        BatchResult(method.invoke(persistenceManager, *operation.arguments))
+    } catch (e: InvocationTargetException) {
+        BatchResult(error = errorOf(e.targetException))
+    } catch (e: Exception) {
+        BatchResult(error = errorOf(e))
+    }
+
+    /**
+     * Wait for an operation executed in parallel
+     */
+    private fun Future<BatchResult>.result(): BatchResult = try {
+        get()
+    } catch (e: ExecutionException) {
+        BatchResult(error = errorOf(e.cause ?: e))
+    }
+
+    /**
+     * Errors are sent to remote clients so they must be Onyx exceptions
+     */
+    private fun errorOf(cause: Throwable): OnyxException = cause as? OnyxException ?: OnyxException(cause)
+
+    /**
+     * Capture what is needed to undo a save or delete before it is executed.  This is done before rather than after
+     * so entities saved or deleted before a save or delete of a list fails are also undone.
+     *
+     * @param operation Save or delete operation
+     * @return Steps restoring each entity of the operation
+     */
+    private fun undoOf(operation: BatchOperation): List<() -> Unit> {
+        val entities = when (val argument = operation.arguments.firstOrNull()) {
+            is IManagedEntity -> listOf(argument)
+            is List<*> -> argument.filterIsInstance<IManagedEntity>()
+            else -> emptyList()
+        }
+
+        return entities.mapNotNull { entity ->
+            val previous = stored(entity)
+            when {
+                operation.isSave && previous == null -> { { if (persistenceManager.exists(entity)) persistenceManager.deleteEntity(entity) } }
+                previous == null -> null
+                operation.isSave -> { { persistenceManager.saveEntity(previous) } }
+                else -> { { if (!persistenceManager.exists(previous)) persistenceManager.saveEntity(previous) } }
+            }
+        }
+    }
+
+    /**
+     * Copy the stored values of an entity.  The record is copied so later changes to a cached instance do not alter
+     * the values it is restored to.
+     *
+     * @param entity Entity to read
+     * @return Copy of the entity as it is stored or null if it does not exist
+     */
+    private fun stored(entity: IManagedEntity): IManagedEntity? = catchAll {
+        val context = persistenceManager.context
+        val record = if (entity.identifier(context) == null) null else entity.recordInteractor(context)[entity]
+        record?.let { entity.javaClass.createNewEntity<IManagedEntity>(context.contextId).apply { copy(it, context) } }
+    }
+}
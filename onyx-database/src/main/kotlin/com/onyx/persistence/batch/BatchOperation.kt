@@ -0,0 +1,151 @@
+package com.onyx.persistence.batch
+
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import com.onyx.exception.BatchException
+import com.onyx.exception.BufferingException
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.manager.PersistenceManager
+import java.io.Serializable
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+
+/**
+ * A persistence manager method and the arguments to invoke it with as part of a batch.  The method is identified by
+ * its name and parameter types so it can be resolved by the persistence manager executing the batch.  Only methods
+ * that read, save, delete or update entities can be batched.  Streams, cursors, query listeners and other batches
+ * are rejected.
+ *
+ * @param methodName Name of the persistence manager method
+ * @param parameterTypes Class names of the method parameters
+ * @param arguments Arguments to invoke the method with
+ *
+ * @since 3.9.10
+ */
+class BatchOperation @JvmOverloads constructor(var methodName: String = "", var parameterTypes: Array<String> = emptyArray(), var arguments: Array<Any?> = emptyArray()) : Serializable, BufferStreamable {
+
+    /**
+     * Whether the operation only reads data.  Consecutive read only operations within a batch may be executed in
+     * parallel.
+     */
+    val isReadOnly: Boolean
+        get() = methodName in READ_ONLY_METHODS
+
+    /**
+     * Whether the operation saves or deletes entities and can be undone if an atomic batch fails
+     */
+    val isUndoable: Boolean
+        get() = methodName in SAVE_METHODS || methodName in DELETE_METHODS
+
+    /**
+     * Whether the operation saves entities
+     */
+    val isSave: Boolean
+        get() = methodName in SAVE_METHODS
+
+    /**
+     * Find the persistence manager method to invoke.  The method is checked against the methods that can be batched
+     * before it is resolved since the operation may have been sent by a remote client.
+     *
+     * @return Persistence manager method
+     * @throws BatchException The method does not exist or can not be batched
+     */
+    @Throws(BatchException::class)
+    fun method(): Method {
+        checkBatchable(methodName)
+        return PersistenceManager::class.java.methods.firstOrNull { method ->
+            method.name == methodName && method.parameterTypes.map { it.name } == parameterTypes.toList()
+        } ?: throw BatchException(BatchException.UNKNOWN_OPERATION + methodName)
+    }
+
+    @Throws(BufferingException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun read(buffer: BufferStream) {
+        methodName = buffer.string
+        parameterTypes = Array(buffer.int) { buffer.string }
+        arguments = buffer.value as Array<Any?>
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream) {
+        buffer.putString(methodName)
+        buffer.putInt(parameterTypes.size)
+        parameterTypes.forEach { buffer.putString(it) }
+        buffer.putObject(arguments)
+    }
+
+    @Throws(BufferingException::class)
+    override fun read(buffer: BufferStream, context: SchemaContext?) {
+        this.read(buffer)
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream, context: SchemaContext?) {
+        this.write(buffer)
+    }
+
+    companion object {
+
+        private val READ_ONLY_METHODS = setOf(
+            "find", "findById", "findByIdInPartition", "findByIdWithPartitionId", "exists", "countForQuery",
+            "executeQuery", "executeQueryForResult", "executeLazyQuery", "executeLazyQueryForResult",
+            "executeLazyQueryForResults", "list", "getRelationship", "findRelationship", "getWithReference",
+            "getMapWithReferenceId", "explain"
+        )
+
+        private val SAVE_METHODS = setOf("saveEntity", "saveEntities", "save")
+        private val DELETE_METHODS = setOf("deleteEntity", "deleteEntities", "delete")
+
+        private val BATCH_METHODS = setOf("batch", "executeBatch")
+
+        // Methods that change entities but can not be undone by an atomic batch
+        private val WRITE_METHODS = setOf(
+            "executeUpdate", "executeUpdateForResult", "executeDelete", "executeDeleteForResult",
+            "saveRelationshipsForEntity", "bulkLoad"
+        )
+
+        private val BATCHABLE_METHODS = READ_ONLY_METHODS + SAVE_METHODS + DELETE_METHODS + WRITE_METHODS
+
+        /**
+         * Check a method can be executed within a batch
+         *
+         * @param methodName Name of the persistence manager method
+         * @throws BatchException The method is a batch or is not one of the methods that can be batched
+         */
+        @Throws(BatchException::class)
+        private fun checkBatchable(methodName: String) {
+            if (methodName in BATCH_METHODS)
+                throw BatchException(BatchException.NESTED_BATCH)
+            if (methodName !in BATCHABLE_METHODS)
+                throw BatchException(BatchException.UNSUPPORTED_OPERATION + methodName)
+        }
+
+        /**
+         * Record the persistence manager methods invoked by a block rather than invoking them.  The recorded methods
+         * return null, zero or false.
+         *
+         * @param operations Invokes the persistence manager methods to batch
+         * @return Recorded operations in the order they were invoked
+         * @throws BatchException The block started another batch or invoked a method that can not be batched
+         */
+        @JvmStatic
+        @Throws(BatchException::class)
+        fun record(operations: PersistenceManager.() -> Unit): List<BatchOperation> {
+            val recorded = ArrayList<BatchOperation>()
+            val recorder = Proxy.newProxyInstance(PersistenceManager::class.java.classLoader, arrayOf(PersistenceManager::class.java)) { _, method, args ->
+                checkBatchable(method.name)
+                recorded.add(BatchOperation(method.name, method.parameterTypes.map { it.name }.toTypedArray(), arrayOf(*(args ?: emptyArray()))))
+                defaultValue(method.returnType)
+            } as PersistenceManager
+
+            recorder.operations()
+            return recorded
+        }
+
+        /**
+         * Value returned from a recorded method so primitive return types can be unboxed
+         */
+        private fun defaultValue(returnType: Class<*>): Any? =
+            if (returnType.isPrimitive && returnType != Void.TYPE) java.lang.reflect.Array.get(java.lang.reflect.Array.newInstance(returnType, 1), 0) else null
+    }
+}
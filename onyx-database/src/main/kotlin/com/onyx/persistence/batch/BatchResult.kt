@@ -0,0 +1,62 @@
+package com.onyx.persistence.batch
+
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import com.onyx.exception.BufferingException
+import com.onyx.exception.OnyxException
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.query.ColumnBatch
+import java.io.Serializable
+
+/**
+ * Result of a single operation within a batch.  Each operation succeeds or fails independently unless the batch is
+ * atomic.
+ *
+ * @param value Value returned by the operation
+ * @param error Error thrown by the operation
+ *
+ * @since 3.9.10
+ */
+class BatchResult @JvmOverloads constructor(var value: Any? = null, var error: OnyxException? = null) : Serializable, BufferStreamable {
+
+    /**
+     * Whether the operation failed
+     */
+    val isError: Boolean
+        get() = error != null
+
+    /**
+     * Get the value returned by the operation
+     *
+     * @return Value returned by the operation
+     * @throws OnyxException Error thrown by the operation
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    fun <T> get(): T {
+        error?.let { throw it }
+        return value as T
+    }
+
+    @Throws(BufferingException::class)
+    override fun read(buffer: BufferStream) {
+        value = buffer.value.let { if (it is ColumnBatch) it.toRows() else it }
+        error = buffer.value as OnyxException?
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream) {
+        buffer.putObject(ColumnBatch.of(value) ?: value)
+        buffer.putObject(error)
+    }
+
+    @Throws(BufferingException::class)
+    override fun read(buffer: BufferStream, context: SchemaContext?) {
+        this.read(buffer)
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream, context: SchemaContext?) {
+        this.write(buffer)
+    }
+}
@@ -3,6 +3,7 @@ package com.onyx.persistence.context
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.descriptor.RelationshipDescriptor
+import com.onyx.diskmap.cache.DiskMapCache
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.diskmap.store.StoreType
 import com.onyx.entity.SystemEntity
@@ -15,6 +16,8 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.interactors.cache.QueryCacheInteractor
 import com.onyx.interactors.encryption.EncryptionInteractor
 import com.onyx.interactors.record.RecordInteractor
+import com.onyx.interactors.transaction.JournalDurability
+import com.onyx.interactors.transaction.JournalRetention
 import com.onyx.interactors.transaction.TransactionInteractor
 import com.onyx.interactors.relationship.RelationshipInteractor
 
@@ -73,6 +76,51 @@ interface SchemaContext {
      */
     var maxCardinality: Int
 
+    /**
+     * Number of results an ordered, distinct or grouped query keeps in memory before it spills them to a temporary
+     * store to be sorted
+     *
+     * @since 3.9.10
+     */
+    var querySortRunSize: Int
+
+    /**
+     * Cache of skip list nodes and record values shared by the data files of this context.  Its limits are in bytes
+     * and it keeps hit and miss counts.
+     *
+     * @since 3.9.10
+     */
+    val diskMapCache: DiskMapCache
+
+    /**
+     * When journal entries are forced to disk if journaling is enabled
+     *
+     * @since 3.9.10
+     */
+    var journalDurability: JournalDurability
+
+    /**
+     * Milliseconds between syncs of the journal when its durability is [JournalDurability.INTERVAL]
+     *
+     * @since 3.9.10
+     */
+    var journalFlushInterval: Long
+
+    /**
+     * Milliseconds between journal checkpoints.  Zero disables periodic checkpoints.  It takes effect when the context
+     * is started.
+     *
+     * @since 3.9.10
+     */
+    var journalCheckpointInterval: Long
+
+    /**
+     * What happens to journal files once a checkpoint no longer needs them for recovery
+     *
+     * @since 3.9.10
+     */
+    var journalRetention: JournalRetention
+
     /**
      * Get Context ID
      *
@@ -317,6 +365,25 @@ interface SchemaContext {
      */
     fun flush(): Unit = Unit
 
+    /**
+     * Write a journal checkpoint.  Every journal entry is synced, all data files are committed, and the position of
+     * the journal is recorded so recovery can start from it.  Journal files preceding the checkpoint are then released
+     * according to the [journalRetention].  Nothing is done if journaling is not in use.
+     *
+     * @since 3.9.10
+     */
+    fun checkpoint(): Unit = Unit
+
+    /**
+     * Journal and apply a change.  A checkpoint waits for the changes being applied so it never records a journal
+     * position following an entry whose change is not yet within the data files.
+     *
+     * @param body Journals and applies the change
+     * @return The result of the body
+     * @since 3.9.10
+     */
+    fun <T> journaled(body: () -> T): T = body()
+
     /**
      * Delete all data files associated with an entity descriptor.
      * This will delete the underlying data files for records, indexes, and relationships.
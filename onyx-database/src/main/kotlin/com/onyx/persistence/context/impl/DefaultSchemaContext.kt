@@ -6,6 +6,7 @@ import com.onyx.descriptor.DEFAULT_DATA_FILE
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.descriptor.RelationshipDescriptor
+import com.onyx.diskmap.cache.DiskMapCache
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.diskmap.factory.impl.DefaultDiskMapFactory
 import com.onyx.diskmap.store.StoreType
@@ -24,6 +25,7 @@ import com.onyx.interactors.encryption.data.Base64
 import com.onyx.interactors.index.IndexInteractor
 import com.onyx.interactors.index.impl.DefaultIndexInteractor
 import com.onyx.interactors.index.impl.VectorIndexInteractor
+import com.onyx.interactors.query.data.ExternalSorter
 import com.onyx.interactors.record.RecordInteractor
 import com.onyx.interactors.record.impl.DefaultRecordInteractor
 import com.onyx.interactors.record.impl.SequenceRecordInteractor
@@ -31,10 +33,13 @@ import com.onyx.interactors.record.impl.UUIDRecordInteractor
 import com.onyx.interactors.relationship.RelationshipInteractor
 import com.onyx.interactors.relationship.impl.ToManyRelationshipInteractor
 import com.onyx.interactors.relationship.impl.ToOneRelationshipInteractor
+import com.onyx.interactors.transaction.JournalDurability
+import com.onyx.interactors.transaction.JournalRetention
 import com.onyx.interactors.transaction.TransactionInteractor
 import com.onyx.interactors.transaction.TransactionStore
 import com.onyx.interactors.transaction.impl.DefaultTransactionInteractor
 import com.onyx.interactors.transaction.impl.DefaultTransactionStore
+import com.onyx.lang.concurrent.impl.DefaultClosureReadWriteLock
 import com.onyx.lang.map.OptimisticLockingMap
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.ManagedEntity
@@ -74,6 +79,8 @@ open class DefaultSchemaContext : SchemaContext {
     override var encryption: EncryptionInteractor? = null
     override var encryptDatabase: Boolean = false
     override var maxCardinality: Int = 1000000
+    override var querySortRunSize: Int = ExternalSorter.DEFAULT_RUN_SIZE
+    override val diskMapCache: DiskMapCache = DiskMapCache()
 
     // Location where the database folder is
     final override lateinit var location: String
@@ -91,11 +98,36 @@ open class DefaultSchemaContext : SchemaContext {
 
     protected open var transactionStore: TransactionStore? = null
 
+    override var journalDurability: JournalDurability = JournalDurability.NONE
+        set(value) {
+            field = value
+            transactionStore?.durability = value
+        }
+
+    override var journalFlushInterval: Long = DefaultTransactionStore.DEFAULT_FLUSH_INTERVAL
+        set(value) {
+            field = value
+            transactionStore?.flushInterval = value
+        }
+
+    override var journalCheckpointInterval: Long = 0L
+
+    override var journalRetention: JournalRetention = JournalRetention.KEEP
+        set(value) {
+            field = value
+            transactionStore?.retention = value
+        }
+
     // Class loader to dynamically add classes
     override var classLoader:ClassLoader = DefaultSchemaContext::class.java.classLoader
 
     protected open var memoryAlertJob: Job? = null
 
+    protected open var checkpointJob: Job? = null
+
+    // Held for reading while a journaled change is applied and for writing while a checkpoint syncs the journal
+    private val journaledChanges = DefaultClosureReadWriteLock()
+
     // endregion
 
     // region Constructors
@@ -155,12 +187,23 @@ open class DefaultSchemaContext : SchemaContext {
      * @since 1.0.0
      */
     override fun start() {
+        // A closed transaction store can not be reopened so a restarted context journals through a new one
+        if (killSwitch && transactionStore != null) {
+            transactionStore = DefaultTransactionStore(location).also {
+                it.durability = journalDurability
+                it.flushInterval = journalFlushInterval
+                it.retention = journalRetention
+            }
+            systemPersistenceManager?.let { transactionInteractor = DefaultTransactionInteractor(transactionStore!!, it) }
+        }
         killSwitch = false
 
         initializeSystemEntities()
         initializePartitionSequence()
         initializeEntityDescriptors()
         memoryAlertJob = watchMemoryUsage()
+        if (journalCheckpointInterval > 0)
+            checkpointJob = runJob(journalCheckpointInterval, TimeUnit.MILLISECONDS) { catchAll { checkpoint() } }
     }
 
     /**
@@ -172,6 +215,10 @@ open class DefaultSchemaContext : SchemaContext {
         killSwitch = true
 
         memoryAlertJob?.cancel()
+        checkpointJob?.cancel()
+
+        // Recovery starts at the last checkpoint so nothing journaled before shutting down is applied again
+        catchAll { checkpoint() }
 
         recordInteractors.forEach {(_, interactor) ->
             catchAll { interactor.shutdown() }
@@ -193,6 +240,7 @@ open class DefaultSchemaContext : SchemaContext {
         // Close transaction file
         catchAll { transactionStore?.close() }
         dataFiles.clear() // Clear all data files
+        diskMapCache.clear() // Clear cached nodes and records
         descriptors.clear() // Clear all descriptors
         recordInteractors.clear() // Clear all Record Controllers
         relationshipInteractors.clear() // Clear all relationship controllers
@@ -827,8 +875,34 @@ open class DefaultSchemaContext : SchemaContext {
      */
     override fun flush() {
         dataFiles.values.forEach { it.flush() }
+        diskMapCache.clear()
     }
 
+    /**
+     * Write a journal checkpoint.  The journal is synced while no journaled change is being applied so every entry
+     * preceding the checkpoint position has been applied in full.  The data files are then committed so those changes
+     * are within them.  Changes made while committing may also be within them and are replayed again on recovery,
+     * which has no effect.
+     *
+     * @since 3.9.10
+     */
+    @Synchronized
+    override fun checkpoint() {
+        val store = transactionStore ?: return
+        val position = journaledChanges.writeLock { store.sync() } ?: return
+        dataFiles.values.forEach { it.commit() }
+        transactionInteractor.writeCheckpoint(position)
+        store.release(position.segment)
+    }
+
+    /**
+     * Journal and apply a change.  A checkpoint waits for the changes being applied so it never records a journal
+     * position following an entry whose change is not yet within the data files.
+     *
+     * @since 3.9.10
+     */
+    override fun <T> journaled(body: () -> T): T = journaledChanges.readLock(body)
+
     @Suppress("MemberVisibilityCanBePrivate")
     protected fun watchMemoryUsage(): Job = runJob(5, TimeUnit.MINUTES) {
         if(Runtime.getRuntime().freeMemory().toDouble() / Runtime.getRuntime().totalMemory().toDouble() <= .50)
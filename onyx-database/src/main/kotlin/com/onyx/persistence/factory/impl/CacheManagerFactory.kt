@@ -51,6 +51,8 @@ open class CacheManagerFactory @JvmOverloads constructor(instance: String = DEFA
         this.persistenceManager
         schemaContext.storeType = storeType
         schemaContext.maxCardinality = maxCardinality
+        schemaContext.diskMapCache.maxNodeBytes = nodeCacheSize
+        schemaContext.diskMapCache.maxRecordBytes = recordCacheSize
         schemaContext.start()
     }
 
@@ -1,5 +1,6 @@
 package com.onyx.persistence.factory.impl
 
+import com.onyx.diskmap.cache.DiskMapCache
 import com.onyx.diskmap.store.StoreType
 import com.onyx.entity.SystemUser
 import com.onyx.entity.SystemUserRole
@@ -12,6 +13,9 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.manager.impl.EmbeddedPersistenceManager
 import com.onyx.interactors.encryption.impl.DefaultEncryptionInteractorInstance
 import com.onyx.interactors.encryption.EncryptionInteractor
+import com.onyx.interactors.transaction.JournalDurability
+import com.onyx.interactors.transaction.JournalRetention
+import com.onyx.interactors.transaction.impl.DefaultTransactionStore
 import com.onyx.persistence.query.eq
 import com.onyx.persistence.query.from
 
@@ -95,6 +99,24 @@ open class EmbeddedPersistenceManagerFactory @JvmOverloads constructor(override
     // Enable history journaling ot keep a transaction history
     var isEnableJournaling = false
 
+    // When journal entries are forced to disk
+    var journalDurability: JournalDurability = JournalDurability.NONE
+
+    // Milliseconds between journal syncs when the durability is by interval
+    var journalFlushInterval: Long = DefaultTransactionStore.DEFAULT_FLUSH_INTERVAL
+
+    // Milliseconds between journal checkpoints.  Zero disables periodic checkpoints.
+    var journalCheckpointInterval: Long = 0L
+
+    // What happens to journal files once a checkpoint no longer needs them
+    var journalRetention: JournalRetention = JournalRetention.KEEP
+
+    // Maximum estimated bytes of skip list nodes the schema context caches
+    var nodeCacheSize: Long = DiskMapCache.DEFAULT_NODE_CACHE_BYTES
+
+    // Maximum estimated bytes of de-serialized records the schema context caches
+    var recordCacheSize: Long = DiskMapCache.DEFAULT_RECORD_CACHE_BYTES
+
     // endregion
 
     //region Override Properties
@@ -158,6 +180,12 @@ open class EmbeddedPersistenceManagerFactory @JvmOverloads constructor(override
             schemaContext.encryption = this.encryption
             schemaContext.encryptDatabase = this.encryptDatabase
             schemaContext.maxCardinality = this.maxCardinality
+            schemaContext.diskMapCache.maxNodeBytes = this.nodeCacheSize
+            schemaContext.diskMapCache.maxRecordBytes = this.recordCacheSize
+            schemaContext.journalDurability = this.journalDurability
+            schemaContext.journalFlushInterval = this.journalFlushInterval
+            schemaContext.journalCheckpointInterval = this.journalCheckpointInterval
+            schemaContext.journalRetention = this.journalRetention
             schemaContext.start()
 
             if (!checkCredentials()) {
@@ -165,6 +193,9 @@ open class EmbeddedPersistenceManagerFactory @JvmOverloads constructor(override
                 throw InitializationException(InitializationException.INVALID_CREDENTIALS)
             }
 
+            if (isEnableJournaling)
+                recoverJournal()
+
         } catch (e: OverlappingFileLockException) {
             close()
             throw InitializationException(InitializationException.DATABASE_LOCKED)
@@ -177,6 +208,26 @@ open class EmbeddedPersistenceManagerFactory @JvmOverloads constructor(override
         }
     }
 
+    /**
+     * Apply the changes journaled after the last checkpoint.  They may not be within the data files if the database
+     * was not shut down.  The applied changes are not journaled again.
+     *
+     * @since 3.9.10
+     */
+    private fun recoverJournal() {
+        val walDirectory = File(this.databaseLocation + File.separator + "wal")
+        if (!walDirectory.isDirectory)
+            return
+
+        val manager = persistenceManager as EmbeddedPersistenceManager
+        manager.isJournalingEnabled = false
+        try {
+            schemaContext.transactionInteractor.recoverFromCheckpoint(walDirectory.path) { true }
+        } finally {
+            manager.isJournalingEnabled = true
+        }
+    }
+
     /**
      * Safe shutdown of database
      * @since 1.0.0
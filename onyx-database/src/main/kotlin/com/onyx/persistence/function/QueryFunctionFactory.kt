@@ -5,20 +5,29 @@ import com.onyx.persistence.query.QueryFunctionType
 
 object QueryFunctionFactory {
 
+    /**
+     * Parameter of a median or percentile function asking for an estimate rather than keeping every value
+     *
+     * @since 3.9.10
+     */
+    const val APPROXIMATE = "approximate"
+
     fun create(type:QueryFunctionType, attribute:String, param1:String? = null, param2:String? = null):QueryFunction = when(type) {
         QueryFunctionType.SUM -> SumQueryFunction(attribute)
         QueryFunctionType.MIN -> MinQueryFunction(attribute)
         QueryFunctionType.MAX -> MaxQueryFunction(attribute)
         QueryFunctionType.AVG -> AvgQueryFunction(attribute)
         QueryFunctionType.STD -> StdDevQueryFunction(attribute)
-        QueryFunctionType.MEDIAN -> MedianQueryFunction(attribute)
+        QueryFunctionType.MEDIAN -> MedianQueryFunction(attribute, isApproximate(param1))
         QueryFunctionType.VARIANCE -> VarianceQueryFunction(attribute)
         QueryFunctionType.COUNT -> CountQueryFunction(attribute)
         QueryFunctionType.UPPER -> UpperQueryFunction(attribute)
         QueryFunctionType.LOWER -> LowerQueryFunction(attribute)
         QueryFunctionType.REPLACE -> ReplaceQueryFunction(attribute, param1, param2)
         QueryFunctionType.SUBSTRING -> SubstringQueryFunction(attribute, param1, param2)
-        QueryFunctionType.PERCENTILE -> PercentileQueryFunction(attribute, param1?.toDoubleOrNull() ?: throw Exception("Invalid percentile for query function.  Please specify a number from 0 to 100"))
+        QueryFunctionType.PERCENTILE -> PercentileQueryFunction(attribute, param1?.toDoubleOrNull() ?: throw Exception("Invalid percentile for query function.  Please specify a number from 0 to 100"), isApproximate(param2))
         QueryFunctionType.FORMAT -> FormatQueryFunction(attribute, param1)
     }
+
+    private fun isApproximate(param: String?): Boolean = param.equals(APPROXIMATE, ignoreCase = true)
 }
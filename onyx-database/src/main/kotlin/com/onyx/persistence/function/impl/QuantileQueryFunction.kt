@@ -0,0 +1,76 @@
+package com.onyx.persistence.function.impl
+
+import com.onyx.extension.common.castTo
+import com.onyx.lang.TDigest
+import com.onyx.lang.concurrent.impl.DefaultClosureLock
+import com.onyx.persistence.function.QueryFunction
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryFunctionType
+import kotlin.math.floor
+
+/**
+ * Aggregates a quantile of the values within query results.  Exact quantiles keep every value as a primitive double
+ * and sort them once all values are collected.  Approximate quantiles summarize the values within a t-digest so
+ * memory stays bound no matter how many values each group has.
+ *
+ * @param quantile Quantile from 0 to 1
+ * @param approximate Whether to estimate the quantile rather than keep every value
+ *
+ * @since 3.9.10
+ */
+abstract class QuantileQueryFunction(attribute: String, type: QueryFunctionType, private val quantile: Double, val approximate: Boolean) : BaseQueryFunction(attribute, type), QueryFunction {
+
+    private var values = DoubleArray(if (approximate) 0 else INITIAL_SIZE)
+    private var numberOfValues = 0
+    private val digest = if (approximate) TDigest() else null
+
+    private var itemType: Class<*>? = null
+    private var result: Any? = null
+    private val valueLock = DefaultClosureLock()
+
+    override fun getFunctionValue(): Any? = result
+
+    override fun preProcess(query: Query, value: Any?): Boolean {
+        if (value != null) {
+            if (itemType == null) {
+                itemType = value.javaClass
+            }
+            val numericValue = (value as? Number)?.toDouble() ?: 0.0
+            valueLock.perform {
+                if (digest != null) {
+                    digest.add(numericValue)
+                } else {
+                    if (numberOfValues == values.size)
+                        values = values.copyOf(values.size * 2)
+                    values[numberOfValues++] = numericValue
+                }
+            }
+        }
+        return false
+    }
+
+    /**
+     * Computes the quantile using linear interpolation between the values surrounding it
+     */
+    override fun postProcess(query: Query) {
+        if (itemType == null)
+            return
+
+        val quantileValue = if (digest != null) {
+            digest.quantile(quantile)
+        } else {
+            if (numberOfValues == 0)
+                return
+            values.sort(0, numberOfValues)
+            val index = quantile * (numberOfValues - 1)
+            val k = floor(index).toInt()
+            val d = index - k
+            if (d == 0.0) values[k] else (1 - d) * values[k] + d * values[k + 1]
+        }
+        result = quantileValue.castTo(itemType!!)
+    }
+
+    companion object {
+        private const val INITIAL_SIZE = 16
+    }
+}
@@ -1,5 +1,6 @@
 package com.onyx.persistence.function.impl
 
+import com.onyx.lang.RunningVariance
 import com.onyx.lang.concurrent.impl.DefaultClosureLock
 import com.onyx.persistence.function.QueryFunction
 import com.onyx.persistence.query.Query
@@ -13,13 +14,11 @@ class StdDevQueryFunction(attribute: String = "") : BaseQueryFunction(attribute,
 
     override fun newInstance(): QueryFunction = StdDevQueryFunction(attribute)
 
-    private var numberOfRecords: Int = 0
     private var itemType: Class<*>? = null
     private var stdDev: Any? = null
 
-    // We will need both sum of values and sum of squares.
-    private var sumDouble: Double = 0.0
-    private var sumSquareDouble: Double = 0.0
+    // Welford's algorithm avoids the precision lost subtracting large sums of squares
+    private val values = RunningVariance()
 
     private val valueLock = DefaultClosureLock()
 
@@ -33,9 +32,7 @@ class StdDevQueryFunction(attribute: String = "") : BaseQueryFunction(attribute,
         val valueDouble: Double = (value as? Number)?.toDouble() ?: 0.0
 
         valueLock.perform {
-            sumDouble += valueDouble
-            sumSquareDouble += (valueDouble * valueDouble)
-            numberOfRecords++
+            values.add(valueDouble)
         }
 
         // Return false since we are only aggregating (like the AvgQueryFunction).
@@ -43,17 +40,9 @@ class StdDevQueryFunction(attribute: String = "") : BaseQueryFunction(attribute,
     }
 
     override fun postProcess(query: Query) {
-        if (itemType != null && numberOfRecords > 0) {
-            val n = numberOfRecords.toDouble()
-
-            // Population standard deviation formula:
-            // σ = sqrt( (sum(x^2) / n) - ( (sum(x) / n) ^ 2 ) )
-            val meanOfSquares = sumSquareDouble / n
-            val squareOfMean = (sumDouble / n) * (sumDouble / n)
-            val result = sqrt(meanOfSquares - squareOfMean)
-
-            // Cast back to the original item type
-            stdDev = result
+        if (itemType != null && values.count > 0) {
+            // Population standard deviation
+            stdDev = sqrt(values.variance)
         }
     }
 }
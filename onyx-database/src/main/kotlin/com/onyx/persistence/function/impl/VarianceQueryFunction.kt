@@ -1,5 +1,6 @@
 package com.onyx.persistence.function.impl
 
+import com.onyx.lang.RunningVariance
 import com.onyx.lang.concurrent.impl.DefaultClosureLock
 import com.onyx.persistence.function.QueryFunction
 import com.onyx.persistence.query.Query
@@ -13,14 +14,12 @@ class VarianceQueryFunction(attribute: String = "") : BaseQueryFunction(attribut
 
     override fun newInstance(): QueryFunction = VarianceQueryFunction(attribute)
 
-    private var numberOfRecords: Int = 0
     private var itemType: Class<*>? = null
 
     private var variance: Any? = null
 
-    // We'll track both the sum of values and the sum of their squares
-    private var sumDouble: Double = 0.0
-    private var sumSquareDouble: Double = 0.0
+    // Running mean and variance of the values
+    private val values = RunningVariance()
 
     private val valueLock = DefaultClosureLock()
 
@@ -34,9 +33,7 @@ class VarianceQueryFunction(attribute: String = "") : BaseQueryFunction(attribut
         val valueDouble = (value as? Number)?.toDouble() ?: 0.0
 
         valueLock.perform {
-            sumDouble += valueDouble
-            sumSquareDouble += (valueDouble * valueDouble)
-            numberOfRecords++
+            values.add(valueDouble)
         }
 
         // Return false since we only aggregate
@@ -44,14 +41,9 @@ class VarianceQueryFunction(attribute: String = "") : BaseQueryFunction(attribut
     }
 
     override fun postProcess(query: Query) {
-        if (itemType != null && numberOfRecords > 0) {
-            val n = numberOfRecords.toDouble()
-            // Population variance:
-            // variance = (sum(x^2)/n) - (sum(x)/n)^2
-            val meanOfSquares = sumSquareDouble / n
-            val squareOfMean = (sumDouble / n) * (sumDouble / n)
-            val result = meanOfSquares - squareOfMean
-            variance = result
+        if (itemType != null && values.count > 0) {
+            // Population variance
+            variance = values.variance
         }
     }
 }
@@ -3,6 +3,9 @@ package com.onyx.persistence.manager
 import com.onyx.exception.OnyxException
 import com.onyx.extension.get
 import com.onyx.interactors.record.data.Reference
+import com.onyx.lang.CloseableIterator
+import com.onyx.persistence.batch.BatchOperation
+import com.onyx.persistence.batch.BatchResult
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.*
@@ -84,6 +87,20 @@ interface PersistenceManager {
     @Throws(OnyxException::class)
     fun saveEntities(entities: List<IManagedEntity>)
 
+    /**
+     * Load a large number of entities.  This is intended for initial loads where saving each entity would be too
+     * slow.  Entities are saved in batches and their indexes are written once each batch has been stored.
+     *
+     * Unlike [saveEntities] the sequence is consumed lazily so it does not need to fit in memory.
+     *
+     * @since 3.9.10
+     * @param entityType Type of entities being loaded
+     * @param entities Entities to load
+     * @throws OnyxException Exception occurred while saving an entity.  This will not roll back preceding saves if error occurs.
+     */
+    @Throws(OnyxException::class)
+    fun bulkLoad(entityType: Class<*>, entities: Sequence<IManagedEntity>) = entities.chunked(BULK_LOAD_BATCH_SIZE).forEach { saveEntities(it) }
+
     /**
      * Batch saves a list of entities.
      *
@@ -638,6 +655,110 @@ interface PersistenceManager {
     @Throws(OnyxException::class)
     fun stream(query: Query, queryStreamClass: Class<*>)
 
+    /**
+     * Open a cursor over the results of a query.  Results are read as the cursor is iterated rather than all at once so
+     * result sets larger than memory can be iterated.  Entity queries that are not ordered read the records one at a
+     * time.  Other entity queries only hold the references to their results.  Selection, group by and function
+     * queries are executed before the cursor is returned.
+     *
+     * The cursor must be closed once it is no longer needed.
+     *
+     * @param query Query to execute
+     * @return Cursor over the query results
+     * @throws OnyxException Error while executing the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun <E> cursor(query: Query): CloseableIterator<E> = cursor(query, DEFAULT_FETCH_SIZE)
+
+    /**
+     * Open a cursor over the results of a query
+     *
+     * @param query Query to execute
+     * @param fetchSize Number of results sent with each request to a remote server.  The next batch is only requested
+     *                  once the previous one is read.
+     * @return Cursor over the query results
+     * @throws OnyxException Error while executing the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun <E> cursor(query: Query, fetchSize: Int): CloseableIterator<E>
+
+    /**
+     * Open a cursor and read its first batch of results.  Used by remote persistence managers to iterate a cursor
+     * held by the server.
+     *
+     * @param query Query to execute
+     * @param fetchSize Maximum number of results to read
+     * @return First batch of results.  The cursor is closed if there are no more results.
+     * @throws OnyxException Error while executing the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun openCursor(query: Query, fetchSize: Int): QueryCursorPage
+
+    /**
+     * Read the next batch of results from an open cursor
+     *
+     * @param cursorId Cursor returned by openCursor
+     * @param fetchSize Maximum number of results to read
+     * @return Next batch of results.  The cursor is closed if there are no more results.
+     * @throws OnyxException The cursor is closed or has expired
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun fetchCursor(cursorId: Long, fetchSize: Int): QueryCursorPage
+
+    /**
+     * Close a cursor before all of its results are read
+     *
+     * @param cursorId Cursor returned by openCursor
+     * @return Whether the cursor was open
+     * @since 3.9.10
+     */
+    fun closeCursor(cursorId: Long): Boolean
+
+    /**
+     * Execute a batch of operations.  Used by remote persistence managers to send many operations to the server in
+     * a single request.  Only methods that read, save, delete or update entities can be batched.
+     *
+     * An atomic batch is not isolated.  Its changes are applied as each operation executes so other clients may read
+     * them before the batch completes.  If an operation fails, the saves and deletes before it are undone by
+     * restoring the entities they changed.  Changes cascaded to relationships are not undone.
+     *
+     * @param operations Operations to execute in order
+     * @param atomic Whether to stop at the first failure and undo the saves and deletes executed before it.  Atomic
+     *               batches may only read, save and delete entities.
+     * @return Result of each operation in the same order as the operations
+     * @throws OnyxException An operation is not supported or the first error of an atomic batch
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun executeBatch(operations: List<BatchOperation>, atomic: Boolean): List<BatchResult>
+
+    /**
+     * Execute the persistence manager methods invoked within a block as a single batch.  The methods are recorded
+     * rather than invoked and return null, zero or false.  The results are returned once the batch is executed.
+     *
+     * val results = manager.batch {
+     *     findById<Person>(1)
+     *     saveEntity(person)
+     *     countForQuery(query)
+     * }
+     * val count = results[2].get<Long>()
+     *
+     * As with executeBatch, an atomic batch is not isolated.  Other clients may read its changes before they are
+     * undone.
+     *
+     * @param atomic Whether to stop at the first failure and undo the saves and deletes executed before it
+     * @param operations Invokes the methods to execute
+     * @return Result of each method in the order they were invoked
+     * @throws OnyxException An operation is not supported or the first error of an atomic batch
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun batch(atomic: Boolean = false, operations: PersistenceManager.() -> Unit): List<BatchResult> = executeBatch(BatchOperation.record(operations), atomic)
+
     /**
      * Get Map representation of an entity with reference id
      *
@@ -676,6 +797,22 @@ interface PersistenceManager {
     @Throws(OnyxException::class)
     fun countForQuery(query: Query): Long
 
+    /**
+     * Get the plan chosen to execute a query without executing it.  The plan lists the identifier, index and filter
+     * steps in the order they are evaluated along with the estimated number of records matching each.
+     *
+     * Query query = new Query(MyEntity.class, new QueryCriteria("name", QueryCriteriaOperator.EQUAL, "Bob")
+     *                                           .and(new QueryCriteria("zipCode", QueryCriteriaOperator.EQUAL, 55555)));
+     * QueryPlan plan = persistenceManager.explain(query);
+     *
+     * @param query Query to plan
+     * @return The plan chosen for the query
+     * @throws OnyxException Error while planning the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    fun explain(query: Query): QueryPlan
+
     /**
      * Un-register a query listener.  This will remove the listener from observing changes for that query.
      * If you do not un-register queries, they will not expire nor will they be de-registered automatically.
@@ -736,6 +873,14 @@ interface PersistenceManager {
     @Suppress("UNUSED")
     @Throws(OnyxException::class)
     fun findRelationship(entity: IManagedEntity, attribute: String): Any? = getRelationship(entity, attribute)
+
+    companion object {
+        // Number of entities saved together by a bulk load
+        const val BULK_LOAD_BATCH_SIZE = 10000
+
+        // Number of results a cursor sends with each request to a remote server
+        const val DEFAULT_FETCH_SIZE = 1000
+    }
 }
 
 @Throws(OnyxException::class)
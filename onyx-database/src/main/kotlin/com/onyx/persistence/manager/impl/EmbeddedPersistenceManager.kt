@@ -1,14 +1,26 @@
 package com.onyx.persistence.manager.impl
 
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.descriptor.IndexDescriptor
+import com.onyx.descriptor.recordInteractor
 import com.onyx.descriptor.truncateData
 import com.onyx.descriptor.truncatePartitionData
-import com.onyx.diskmap.impl.base.skiplist.AbstractIterableSkipList
+import com.onyx.diskmap.data.DiskMapEntry
+import com.onyx.diskmap.data.PutResult
 import com.onyx.exception.*
 import com.onyx.extension.*
 import com.onyx.extension.common.instance
 import com.onyx.interactors.query.QueryCollector
 import com.onyx.interactors.query.impl.DefaultQueryInteractor
+import com.onyx.interactors.query.impl.QueryPlanner
+import com.onyx.interactors.query.impl.QueryCursorRegistry
+import com.onyx.interactors.query.impl.RecordScanCursor
 import com.onyx.interactors.record.data.Reference
+import com.onyx.lang.CloseableIterator
+import com.onyx.lang.asCloseable
+import com.onyx.persistence.batch.BatchExecutor
+import com.onyx.persistence.batch.BatchOperation
+import com.onyx.persistence.batch.BatchResult
 import com.onyx.persistence.*
 import com.onyx.persistence.collections.LazyQueryCollection
 import com.onyx.persistence.context.SchemaContext
@@ -16,8 +28,10 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.interactors.relationship.data.RelationshipTransaction
 import com.onyx.interactors.relationship.data.RelationshipReference
+import com.onyx.persistence.query.QueryCursorPage
 import com.onyx.persistence.query.QueryListenerEvent
 import com.onyx.persistence.query.QueryPartitionMode
+import com.onyx.persistence.query.QueryPlan
 import com.onyx.persistence.stream.QueryMapStream
 import com.onyx.persistence.stream.QueryStream
 import java.util.*
@@ -51,6 +65,10 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
 
     var isJournalingEnabled: Boolean = false
 
+    // Cursors opened for remote persistence managers along with the session invoking this
+    private val openCursors = QueryCursorRegistry()
+    private val session = ThreadLocal<Any?>()
+
     /**
      * Save entity.  Persists a single entity for update or insert.  This method will cascade relationships and persist indexes.
      *
@@ -63,7 +81,7 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
     override fun <E : IManagedEntity> saveEntity(entity: E): E {
         context.checkForKillSwitch()
 
-        if (entity.isValid(context)) {
+        if (entity.isValid(context)) journaledChange {
             val putResult = entity.save(context)
 
             journal {
@@ -102,14 +120,113 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
         if (entities.isEmpty())
             return
 
+        journaledChange { saveEntityList(entities) }
+    }
+
+    /**
+     * Save a list of entities while writing each index once
+     *
+     * @param entities List of entities
+     */
+    private fun saveEntityList(entities: List<IManagedEntity>) {
+        // Index saves are deferred so each index is written once for the list
+        val indexSaves = HashMap<IndexDescriptor, MutableList<Triple<Any?, Long, Long>>>()
+        val saved = ArrayList<Triple<IManagedEntity, EntityDescriptor, PutResult>>(entities.size)
+
         try {
             entities.forEach {
                 if (it.isValid(context)) {
-                    saveEntity(it)
+                    val descriptor = it.descriptor(context)
+                    val putResult = it.save(context, descriptor)
+
+                    journal {
+                        context.transactionInteractor.writeSave(it)
+                    }
+
+                    descriptor.indexes.values.forEach { indexDescriptor ->
+                        indexSaves.getOrPut(indexDescriptor) { ArrayList() }.add(
+                            Triple(it.get<Any?>(context, descriptor, indexDescriptor.name), if (putResult.isInsert) 0L else putResult.recordId, putResult.recordId)
+                        )
+                    }
+                    saved.add(Triple(it, descriptor, putResult))
+                    it.saveRelationships(context, descriptor = descriptor)
                 }
             }
         } catch (e: ClassCastException) {
             throw EntityClassNotFoundException(EntityClassNotFoundException.ENTITY_NOT_FOUND)
+        } finally {
+            // Entities saved before a failure keep their index references
+            indexSaves.forEach { (indexDescriptor, saves) -> context.getIndexInteractor(indexDescriptor).saveAll(saves) }
+
+            saved.forEach { (entity, descriptor, putResult) ->
+                context.queryCacheInteractor.updateCachedQueryResultsForEntity(
+                    entity,
+                    descriptor,
+                    entity.reference(putResult.recordId, context, descriptor),
+                    if (putResult.isInsert) QueryListenerEvent.INSERT else QueryListenerEvent.UPDATE
+                )
+            }
+        }
+    }
+
+    /**
+     * Load a large number of entities.  Each batch is validated and then saved with a single put per data file.  Keys
+     * are inserted in ascending order so a load into an empty map, or of keys following the existing keys, appends the
+     * records without searching for each one.  Indexes, relationships and cached queries are then updated for the
+     * batch as a whole rather than after each entity.
+     *
+     * @param entityType Type of entities being loaded
+     * @param entities Entities to load
+     * @throws OnyxException Exception occurred while saving an entity.  This will not roll back preceding saves if error occurs.
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun bulkLoad(entityType: Class<*>, entities: Sequence<IManagedEntity>) {
+        entities.chunked(PersistenceManager.BULK_LOAD_BATCH_SIZE).forEach { batch ->
+            context.checkForKillSwitch()
+
+            if (batch.any { !entityType.isInstance(it) })
+                throw EntityClassNotFoundException(EntityClassNotFoundException.ENTITY_NOT_FOUND)
+
+            // Partitions are stored within their own data file
+            batch.filter { it.isValid(context) }
+                .groupBy { it.descriptor(context) }
+                .forEach { (descriptor, group) -> bulkSave(descriptor, group) }
+        }
+    }
+
+    /**
+     * Save a batch of entities sharing an entity descriptor
+     *
+     * @param descriptor Entity descriptor of every entity within the batch
+     * @param entities Entities to save
+     */
+    private fun bulkSave(descriptor: EntityDescriptor, entities: List<IManagedEntity>) = journaledChange {
+        val results = descriptor.recordInteractor().saveAll(entities)
+
+        journal {
+            context.transactionInteractor.writeSaves(entities)
+        }
+
+        // Write each index for the whole batch before moving on to the next
+        descriptor.indexes.values.forEach { indexDescriptor ->
+            context.getIndexInteractor(indexDescriptor).saveAll(entities.mapIndexed { index, entity ->
+                val result = results[index]
+                Triple(entity.get<Any?>(context, descriptor, indexDescriptor.name), if (result.isInsert) 0L else result.recordId, result.recordId)
+            })
+        }
+
+        if (descriptor.relationships.isNotEmpty())
+            entities.forEach { it.saveRelationships(context, descriptor = descriptor) }
+
+        entities.forEachIndexed { index, entity ->
+            val result = results[index]
+            context.queryCacheInteractor.updateCachedQueryResultsForEntity(
+                entity,
+                descriptor,
+                entity.reference(result.recordId, context, descriptor),
+                if (result.isInsert) QueryListenerEvent.INSERT else QueryListenerEvent.UPDATE
+            )
         }
     }
 
@@ -131,7 +248,7 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
 
         val previousReferenceId = entity.referenceId(context, descriptor)
 
-        if (previousReferenceId > 0) {
+        if (previousReferenceId > 0) journaledChange {
             journal {
                 context.transactionInteractor.writeDelete(entity)
             }
@@ -163,6 +280,17 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
         query.isUpdateOrDelete = true
         query.validate(context, descriptor)
 
+        return journaledChange { deleteForQuery(query, descriptor) }
+    }
+
+    /**
+     * Journal a delete query and delete the entities it selects
+     *
+     * @param query Validated delete query
+     * @param descriptor Entity descriptor of the query
+     * @return Number of entities deleted
+     */
+    private fun deleteForQuery(query: Query, descriptor: EntityDescriptor): Int {
         journal {
             context.transactionInteractor.writeDeleteQuery(query)
         }
@@ -215,14 +343,16 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
 
         val queryController = DefaultQueryInteractor(descriptor, this, context)
 
-        val results: QueryCollector<IManagedEntity> = queryController.getReferencesForQuery(query)
-        query.resultsCount = results.getNumberOfResults()
+        return journaledChange {
+            val results: QueryCollector<IManagedEntity> = queryController.getReferencesForQuery(query)
+            query.resultsCount = results.getNumberOfResults()
 
-        journal {
-            context.transactionInteractor.writeQueryUpdate(query)
-        }
+            journal {
+                context.transactionInteractor.writeQueryUpdate(query)
+            }
 
-        return queryController.updateRecordsWithReferences(query, results.references)
+            queryController.updateRecordsWithReferences(query, results.references)
+        }
     }
 
     /**
@@ -270,14 +400,7 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
         val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
         query.validate(context, descriptor)
 
-        val queryController = DefaultQueryInteractor(descriptor, this, context)
-
-        val results: QueryCollector<E> = if (!query.cache)
-            queryController.getReferencesForQuery(query)
-        else
-            cache(query) { queryController.getReferencesForQuery(query) }
-
-        return LazyQueryCollection<IManagedEntity>(descriptor, results.getLimitedReferences(), context) as List<E>
+        return LazyQueryCollection<IManagedEntity>(descriptor, getLazyReferences(query, descriptor), context) as List<E>
     }
 
     /**
@@ -551,6 +674,26 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
         return queryController.getCountForQuery(query)
     }
 
+    /**
+     * Get the plan chosen to execute a query without executing it
+     *
+     * @param query Query to plan
+     * @return The plan chosen for the query
+     * @throws OnyxException Error while planning the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun explain(query: Query): QueryPlan {
+        context.checkForKillSwitch()
+
+        query.resolveSubQueries(this)
+
+        val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
+        query.validate(context, descriptor)
+
+        return DefaultQueryInteractor(descriptor, this, context).explain(query)
+    }
+
     /**
      * This method is used for bulk streaming data entities.  An example of bulk streaming is for analytics or bulk updates included but not limited to model changes.
      *
@@ -596,7 +739,7 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
                     descriptor.partition!!.partitionValue
                 )!!.primaryKey.toLong() else 0L
                 context.getRecordInteractor(descriptor).forEach<T> record@{ it ->
-                    val entry = it as? AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>
+                    val entry = it as? DiskMapEntry<Any?, IManagedEntity?>
 
                     if (entry != null) {
                         val reference = Reference(partitionId, entry.node?.position ?: 0)
@@ -640,6 +783,135 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
         this.stream(query, streamer)
     }
 
+    /**
+     * Open a cursor over the results of a query.  Entity queries that are not ordered and are not answered by an
+     * index read the records one at a time.  Other entity queries find the references to their results and read each
+     * result as the cursor gets to it.  Ordered references are sorted in runs spilled to a temporary store.  Selection,
+     * group by and function queries are executed before the cursor is returned.
+     *
+     * The query is copied so executing it as a cursor does not change it.
+     *
+     * @param query Query to execute
+     * @param fetchSize Not used by an embedded cursor.  Results are read one at a time.
+     * @return Cursor over the query results
+     * @throws OnyxException Error while executing the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun <E> cursor(query: Query, fetchSize: Int): CloseableIterator<E> {
+        context.checkForKillSwitch()
+
+        val cursorQuery = query.copy()
+        if (cursorQuery.selections?.isNotEmpty() == true || cursorQuery.groupBy?.isNotEmpty() == true || cursorQuery.functions().isNotEmpty())
+            return executeQuery<E>(cursorQuery).iterator().asCloseable()
+
+        cursorQuery.resolveSubQueries(this)
+
+        val descriptor = context.getDescriptorForEntity(cursorQuery.entityType, cursorQuery.partition)
+        cursorQuery.validate(context, descriptor)
+
+        val isFullText = cursorQuery.getAllCriteria().any { it.attribute == Query.FULL_TEXT_ATTRIBUTE }
+        val isCached = cursorQuery.cache || cursorQuery.changeListener != null
+        val isRecordScan = cursorQuery.queryOrders?.isNotEmpty() != true && !isCached && !isFullText
+                && (cursorQuery.isDefaultQuery(descriptor) || QueryPlanner(context, cursorQuery).plan().forceFullScan)
+        if (isRecordScan)
+            return RecordScanCursor(cursorQuery, context, descriptor) as CloseableIterator<E>
+
+        val entityType = cursorQuery.entityType!!
+        if (isCached || isFullText) {
+            cursorQuery.isLazy = true
+            return getLazyReferences(cursorQuery, descriptor).asSequence()
+                .mapNotNull { getWithReference<IManagedEntity>(entityType, it) }
+                .iterator()
+                .asCloseable() as CloseableIterator<E>
+        }
+
+        val references = DefaultQueryInteractor(descriptor, this, context).getReferenceCursor(cursorQuery)
+        return references.asSequence()
+            .mapNotNull { getWithReference<IManagedEntity>(entityType, it) }
+            .iterator()
+            .asCloseable { references.close() } as CloseableIterator<E>
+    }
+
+    /**
+     * Open a cursor for a remote persistence manager and read its first batch of results.  The cursor belongs to the
+     * session invoking this within withSession.  Cursors that are not read for
+     * QueryCursorRegistry.DEFAULT_IDLE_TIMEOUT are closed so a client that goes away does not keep them open.
+     *
+     * @param query Query to execute
+     * @param fetchSize Maximum number of results to read
+     * @return First batch of results.  The cursor is closed if there are no more results.
+     * @throws OnyxException Error while executing the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun openCursor(query: Query, fetchSize: Int): QueryCursorPage {
+        val session = session.get()
+        val cursorId = openCursors.open(session, cursor(query, fetchSize))
+        return openCursors.fetch(session, cursorId, fetchSize)
+    }
+
+    /**
+     * Read the next batch of results from a cursor opened by the same session
+     *
+     * @param cursorId Cursor returned by openCursor
+     * @param fetchSize Maximum number of results to read
+     * @return Next batch of results.  The cursor is closed if there are no more results.
+     * @throws OnyxException The cursor is closed, has expired or was opened by another session
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun fetchCursor(cursorId: Long, fetchSize: Int): QueryCursorPage = openCursors.fetch(session.get(), cursorId, fetchSize)
+
+    /**
+     * Close a cursor opened by the same session before all of its results are read
+     *
+     * @param cursorId Cursor returned by openCursor
+     * @return Whether the cursor was open
+     * @since 3.9.10
+     */
+    override fun closeCursor(cursorId: Long): Boolean = openCursors.close(session.get(), cursorId)
+
+    /**
+     * Invoke a body on behalf of a session.  Cursors opened within the body belong to the session and can only be
+     * read and closed by it.  The server invokes requests from a connection within its session.
+     *
+     * @param session Session such as the connection the request came from
+     * @param body Body to invoke
+     * @return Result of the body
+     * @since 3.9.10
+     */
+    fun <T> withSession(session: Any, body: () -> T): T {
+        val previous = this.session.get()
+        this.session.set(session)
+        try {
+            return body()
+        } finally {
+            this.session.set(previous)
+        }
+    }
+
+    /**
+     * Close the cursors opened by a session that has ended
+     *
+     * @param session Session passed to withSession
+     * @since 3.9.10
+     */
+    fun closeSession(session: Any) = openCursors.closeAll(session)
+
+    /**
+     * Execute a batch of operations.  Consecutive reads are executed in parallel.
+     *
+     * @param operations Operations to execute in order
+     * @param atomic Whether to stop at the first failure and undo the saves and deletes executed before it
+     * @return Result of each operation in the same order as the operations
+     * @throws OnyxException An operation is not supported or the first error of an atomic batch
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun executeBatch(operations: List<BatchOperation>, atomic: Boolean): List<BatchResult> = BatchExecutor(this).execute(operations, atomic)
+
     /**
      * Un-register a query listener.  This will remove the listener from observing changes for that query.
      * If you do not un-register queries, they will not expire nor will they be de-registered automatically.
@@ -681,6 +953,13 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
             body.invoke()
     }
 
+    /**
+     * Journal and apply a change so a checkpoint does not complete while the change is partially applied
+     *
+     * @since 3.9.10
+     */
+    private fun <T> journaledChange(body: () -> T): T = if (isJournalingEnabled) context.journaled(body) else body()
+
     /**
      * Cache query results from the closure.  If the query has already been cached, return the results
      * of the cache.
@@ -691,4 +970,23 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
      * @since 2.0.0
      */
     private fun <E> cache(query: Query, body: () -> QueryCollector<E>) = context.queryCacheInteractor.cache(query, body)
+
+    /**
+     * Get the references to the results of a lazy query
+     *
+     * @param query Validated lazy query
+     * @param descriptor Descriptor of the entity type being queried
+     * @return References to the results limited to the page of results
+     * @since 3.9.10
+     */
+    private fun getLazyReferences(query: Query, descriptor: EntityDescriptor): List<Reference> {
+        val queryController = DefaultQueryInteractor(descriptor, this, context)
+
+        val results: QueryCollector<IManagedEntity> = if (!query.cache)
+            queryController.getReferencesForQuery(query)
+        else
+            cache(query) { queryController.getReferencesForQuery(query) }
+
+        return results.getLimitedReferences()
+    }
 }
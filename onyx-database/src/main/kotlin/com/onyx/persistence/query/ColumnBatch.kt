@@ -0,0 +1,147 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import com.onyx.exception.BufferingException
+import com.onyx.persistence.context.SchemaContext
+import java.io.Serializable
+
+/**
+ * Selection query results stored by column rather than by row.  Each row of a selection query is a map with the
+ * same keys so sending the rows as is repeats every attribute name once per row.  A batch writes the attribute names
+ * once followed by the values of each column.  Columns of numbers are written as primitive arrays and columns of
+ * strings with few distinct values are written as a dictionary of values and the index of each row's value.
+ *
+ * @since 3.9.10
+ */
+class ColumnBatch @JvmOverloads constructor(var columns: Array<String> = emptyArray(), var values: Array<Any?> = emptyArray(), var size: Int = 0) : Serializable, BufferStreamable {
+
+    /**
+     * Convert the batch back to rows
+     *
+     * @return List of selection results
+     */
+    fun toRows(): List<Map<String, Any?>> {
+        val rows = List(size) { HashMap<String, Any?>(columns.size * 2) }
+        columns.forEachIndexed { column, name ->
+            when (val columnValues = values[column]) {
+                is LongArray -> rows.forEachIndexed { row, map -> map[name] = columnValues[row] }
+                is IntArray -> rows.forEachIndexed { row, map -> map[name] = columnValues[row] }
+                is DoubleArray -> rows.forEachIndexed { row, map -> map[name] = columnValues[row] }
+                is Dictionary -> rows.forEachIndexed { row, map -> map[name] = columnValues.valueAt(row) }
+                is Array<*> -> rows.forEachIndexed { row, map -> map[name] = columnValues[row] }
+            }
+        }
+        return rows
+    }
+
+    @Throws(BufferingException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun read(buffer: BufferStream) {
+        size = buffer.int
+        columns = Array(buffer.int) { buffer.string }
+        values = Array(columns.size) {
+            when (buffer.byte) {
+                DICTIONARY_COLUMN -> Dictionary(buffer.value as Array<Any?>, buffer.value as IntArray)
+                else -> buffer.value
+            }
+        }
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream) {
+        buffer.putInt(size)
+        buffer.putInt(columns.size)
+        columns.forEach { buffer.putString(it) }
+        values.forEach {
+            if (it is Dictionary) {
+                buffer.putByte(DICTIONARY_COLUMN)
+                buffer.putObject(it.dictionary)
+                buffer.putObject(it.indexes)
+            } else {
+                buffer.putByte(VALUE_COLUMN)
+                buffer.putObject(it)
+            }
+        }
+    }
+
+    @Throws(BufferingException::class)
+    override fun read(buffer: BufferStream, context: SchemaContext?) {
+        this.read(buffer)
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream, context: SchemaContext?) {
+        this.write(buffer)
+    }
+
+    /**
+     * Distinct values of a column and the index of the value of each row.  An index of -1 is a null value.
+     */
+    private class Dictionary(val dictionary: Array<Any?>, val indexes: IntArray) {
+        fun valueAt(row: Int): Any? = if (indexes[row] < 0) null else dictionary[indexes[row]]
+    }
+
+    companion object {
+
+        private const val VALUE_COLUMN: Byte = 0
+        private const val DICTIONARY_COLUMN: Byte = 1
+
+        /**
+         * Minimum number of rows worth storing by column
+         */
+        const val MINIMUM_ROWS = 2
+
+        /**
+         * Convert selection results to a column batch
+         *
+         * @param results Results of a query
+         * @return Column batch or null if the results are not selection rows sharing the same attributes
+         */
+        @JvmStatic
+        fun of(results: Any?): ColumnBatch? {
+            if (results !is List<*> || results.size < MINIMUM_ROWS)
+                return null
+
+            val first = results[0] as? Map<*, *> ?: return null
+            if (first.keys.any { it !is String })
+                return null
+            val columns = first.keys.map { it as String }.toTypedArray()
+
+            for (row in results) {
+                if (row !is Map<*, *> || row.size != columns.size || !columns.all { row.containsKey(it) })
+                    return null
+            }
+
+            @Suppress("UNCHECKED_CAST")
+            val rows = results as List<Map<String, Any?>>
+            return ColumnBatch(columns, Array(columns.size) { column(rows, columns[it]) }, rows.size)
+        }
+
+        /**
+         * Store the values of a column in the most compact form available
+         */
+        private fun column(rows: List<Map<String, Any?>>, name: String): Any {
+            when {
+                rows.all { it[name] is Long } -> return LongArray(rows.size) { rows[it][name] as Long }
+                rows.all { it[name] is Int } -> return IntArray(rows.size) { rows[it][name] as Int }
+                rows.all { it[name] is Double } -> return DoubleArray(rows.size) { rows[it][name] as Double }
+            }
+
+            if (rows.all { it[name] == null || it[name] is String }) {
+                val distinct = HashMap<Any, Int>()
+                val indexes = IntArray(rows.size) { row ->
+                    val value = rows[row][name]
+                    if (value == null) -1 else distinct.getOrPut(value) { distinct.size }
+                }
+                if (distinct.size <= rows.size / 2) {
+                    val dictionary = arrayOfNulls<Any?>(distinct.size)
+                    distinct.forEach { (value, index) -> dictionary[index] = value }
+                    return Dictionary(dictionary, indexes)
+                }
+            }
+
+            return Array(rows.size) { rows[it][name] }
+        }
+    }
+}
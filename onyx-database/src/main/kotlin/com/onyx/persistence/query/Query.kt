@@ -1,7 +1,9 @@
 package com.onyx.persistence.query
 
 import com.onyx.buffer.BufferStreamable
+import com.onyx.descriptor.EntityDescriptor
 import com.onyx.extension.getFunctionWithinSelection
+import com.onyx.interactors.query.impl.CriteriaEvaluator
 import com.onyx.interactors.record.data.Reference
 import com.onyx.persistence.function.QueryFunction
 import com.onyx.persistence.manager.PersistenceManager
@@ -489,6 +491,30 @@ class Query : BufferStreamable {
         return allCriteria
     }
 
+    /**
+     * Criteria compiled for checking entities.  It is rebuilt if the criteria or entity type changes.
+     */
+    @Transient
+    @Volatile
+    private var criteriaEvaluatorValue: CriteriaEvaluator? = null
+
+    /**
+     * Getter for the criteria compiled for checking entities.  The evaluator can be used by several threads at once.
+     *
+     * @param descriptor Descriptor of the entities being checked
+     * @return Compiled criteria
+     *
+     * @since 3.9.10
+     */
+    fun criteriaEvaluator(descriptor: EntityDescriptor): CriteriaEvaluator {
+        val evaluator = criteriaEvaluatorValue
+        if (evaluator != null && evaluator.criteria === criteria && evaluator.entityClass == descriptor.entityClass)
+            return evaluator
+
+        getAllCriteria()
+        return CriteriaEvaluator(criteria, descriptor).also { criteriaEvaluatorValue = it }
+    }
+
     // endregion
 
     fun shouldSortResults(): Boolean = this.queryOrders != null && this.queryOrders!!.isNotEmpty()
@@ -499,6 +525,33 @@ class Query : BufferStreamable {
     @Transient
     var isLazy:Boolean = false
 
+    /**
+     * Copy the query so it can be executed differently without changing this query.  The criteria, orders and
+     * updates are shared with the copy.
+     *
+     * @return Query with the same values
+     * @since 3.9.10
+     */
+    fun copy(): Query {
+        val copy = Query()
+        copy.selections = selections
+        copy.groupBy = groupBy
+        copy.updates = updates
+        copy.criteria = criteria
+        copy.queryOrders = queryOrders
+        copy.entityType = entityType
+        copy.firstRow = firstRow
+        copy.maxResults = maxResults
+        copy.isDistinct = isDistinct
+        copy.partition = partition
+        copy.changeListener = changeListener
+        copy.cache = cache
+        copy.isTerminated = isTerminated
+        copy.isUpdateOrDelete = isUpdateOrDelete
+        copy.isLazy = isLazy
+        return copy
+    }
+
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (javaClass != other?.javaClass) return false
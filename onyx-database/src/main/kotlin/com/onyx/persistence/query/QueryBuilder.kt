@@ -5,7 +5,9 @@ import com.onyx.extension.common.async
 import com.onyx.extension.common.get
 import com.onyx.extension.identifier
 import com.onyx.interactors.record.FullTextRecordInteractor
+import com.onyx.lang.CloseableIterator
 import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.function.QueryFunctionFactory
 import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.stream.QueryMapStream
 import java.util.concurrent.*
@@ -133,6 +135,8 @@ class QueryBuilder(
         return manager.executeLazyQuery(this.query)
     }
 
+    fun <T> cursor(fetchSize: Int = PersistenceManager.DEFAULT_FETCH_SIZE): CloseableIterator<T> = manager.cursor(this.query, fetchSize)
+
     fun <T> forEach(unit: (T) -> Unit) {
         list<T>().forEach { unit.invoke(it) }
     }
@@ -524,7 +528,8 @@ fun String.desc(): QueryOrder = QueryOrder(this, false)
 fun avg(attribute: String) = "avg($attribute)"
 fun sum(attribute: String) = "sum($attribute)"
 fun std(attribute: String) = "std($attribute)"
-fun median(attribute: String) = "median($attribute)"
+@JvmOverloads
+fun median(attribute: String, approximate: Boolean = false) = if (approximate) "median($attribute, ${QueryFunctionFactory.APPROXIMATE})" else "median($attribute)"
 fun variance(attribute: String) = "variance($attribute)"
 
 fun count(attribute: String) = "count($attribute)"
@@ -534,7 +539,8 @@ fun upper(attribute: String) = "upper($attribute)"
 fun lower(attribute: String) = "lower($attribute)"
 fun substring(attribute: String, from: Int, length: Int) = "substring($attribute, $from, $length)"
 fun replace(attribute: String, pattern: String, replace: String) = "replace($attribute, '$pattern', '$replace')"
-fun percentile(attribute: String, percent: Double) = "percentile($attribute, $percent)"
+@JvmOverloads
+fun percentile(attribute: String, percent: Double, approximate: Boolean = false) = if (approximate) "percentile($attribute, $percent, ${QueryFunctionFactory.APPROXIMATE})" else "percentile($attribute, $percent)"
 fun format(attribute: String, pattern: String) = "format($attribute, '$pattern')"
 
 // endregion
@@ -0,0 +1,45 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import com.onyx.exception.BufferingException
+import com.onyx.persistence.context.SchemaContext
+import java.io.Serializable
+
+/**
+ * Batch of results read from a cursor opened on a remote server.  The cursor stays open on the server until every
+ * result is read or it is closed.
+ *
+ * @param cursorId Identifies the cursor on the server
+ * @param results Results read from the cursor
+ * @param hasMore Whether there are more results.  If not the cursor is already closed on the server.
+ *
+ * @since 3.9.10
+ */
+class QueryCursorPage @JvmOverloads constructor(var cursorId: Long = 0L, var results: List<Any?> = emptyList(), var hasMore: Boolean = false) : Serializable, BufferStreamable {
+
+    @Throws(BufferingException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun read(buffer: BufferStream) {
+        cursorId = buffer.long
+        hasMore = buffer.boolean
+        results = buffer.value.let { if (it is ColumnBatch) it.toRows() else it } as List<Any?>
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream) {
+        buffer.putLong(cursorId)
+        buffer.putBoolean(hasMore)
+        buffer.putObject(ColumnBatch.of(results) ?: results)
+    }
+
+    @Throws(BufferingException::class)
+    override fun read(buffer: BufferStream, context: SchemaContext?) {
+        this.read(buffer)
+    }
+
+    @Throws(BufferingException::class)
+    override fun write(buffer: BufferStream, context: SchemaContext?) {
+        this.write(buffer)
+    }
+}
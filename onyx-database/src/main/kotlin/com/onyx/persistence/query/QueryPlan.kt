@@ -0,0 +1,38 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferStreamable
+import com.onyx.persistence.manager.PersistenceManager
+
+/**
+ * The plan chosen to execute a query.  It lists the steps in the order they are evaluated along with the estimated
+ * number of references matching each.
+ *
+ * PersistenceManager manager = factory.getPersistenceManager();
+ *
+ * Query query = new Query(MyEntity.class, new QueryCriteria("name", QueryCriteriaOperator.EQUAL, "Bob")
+ *                                           .and(new QueryCriteria("zipCode", QueryCriteriaOperator.EQUAL, 55555)));
+ *
+ * QueryPlan plan = manager.explain(query);
+ *
+ * @param strategy How the criteria are evaluated
+ * @param steps Steps in the order they are evaluated
+ * @param estimatedRecords Number of records the query spans
+ * @param estimatedResults Estimated number of results.  -1 if it could not be estimated.
+ *
+ * @since 3.9.10
+ *
+ * @see PersistenceManager.explain
+ */
+data class QueryPlan @JvmOverloads constructor(
+    var strategy: QueryPlanStrategy = QueryPlanStrategy.AS_WRITTEN,
+    var steps: MutableList<QueryPlanStep> = ArrayList(),
+    var estimatedRecords: Long = 0L,
+    var estimatedResults: Long = -1L
+) : BufferStreamable {
+
+    override fun toString(): String = buildString {
+        append("$strategy of $estimatedRecords records")
+        if (estimatedResults >= 0) append(" (~$estimatedResults results)")
+        steps.forEachIndexed { index, step -> append("\n  ${index + 1}. $step") }
+    }
+}
@@ -0,0 +1,23 @@
+package com.onyx.persistence.query
+
+/**
+ * How a step of a query plan reads references.
+ *
+ * @since 3.9.10
+ *
+ * @see QueryPlanStep
+ */
+enum class QueryPlanAccess {
+    // Lookup by entity identifier
+    IDENTIFIER,
+    // Lookup within an index
+    INDEX,
+    // Scan of a related entity
+    RELATIONSHIP,
+    // Full text or vector search
+    SEARCH,
+    // Read the references found so far and check them against all criteria
+    FILTER,
+    // Read every record and check it against all criteria
+    FULL_SCAN
+}
@@ -0,0 +1,26 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferStreamable
+
+/**
+ * A single step of a query plan.
+ *
+ * @param attribute Attribute of the criteria evaluated within the step
+ * @param operator Operator of the criteria
+ * @param access How references are read
+ * @param estimatedResults Estimated number of references matching the criteria.  -1 if it could not be estimated.
+ *
+ * @since 3.9.10
+ *
+ * @see QueryPlan
+ */
+data class QueryPlanStep @JvmOverloads constructor(
+    var attribute: String = "",
+    var operator: QueryCriteriaOperator? = null,
+    var access: QueryPlanAccess = QueryPlanAccess.FILTER,
+    var estimatedResults: Long = -1L
+) : BufferStreamable {
+
+    override fun toString(): String = "$access $attribute ${operator ?: ""}".trimEnd() +
+            if (estimatedResults >= 0) " (~$estimatedResults)" else ""
+}
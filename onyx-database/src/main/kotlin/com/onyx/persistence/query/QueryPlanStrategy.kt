@@ -0,0 +1,19 @@
+package com.onyx.persistence.query
+
+/**
+ * How the query planner chose to evaluate the criteria of a query.
+ *
+ * @since 3.9.10
+ *
+ * @see QueryPlan
+ */
+enum class QueryPlanStrategy {
+    // Criteria are evaluated in the order they were written
+    AS_WRITTEN,
+    // The most selective identifier or index criteria is scanned first and the rest narrow its references
+    INDEX,
+    // Every record is read once and checked against all criteria
+    FULL_SCAN,
+    // Records are read in the order of the first query order until the page of results is filled
+    INDEX_ORDER
+}
@@ -18,13 +18,13 @@ class QueryResult @JvmOverloads constructor(var query: Query? = null, var result
     @Throws(BufferingException::class)
     override fun read(buffer: BufferStream) {
         query = buffer.value as Query
-        results = buffer.value
+        results = buffer.value.let { if (it is ColumnBatch) it.toRows() else it }
     }
 
     @Throws(BufferingException::class)
     override fun write(buffer: BufferStream) {
         buffer.putObject(query)
-        buffer.putObject(results)
+        buffer.putObject(ColumnBatch.of(results) ?: results)
     }
 
     @Throws(BufferingException::class)
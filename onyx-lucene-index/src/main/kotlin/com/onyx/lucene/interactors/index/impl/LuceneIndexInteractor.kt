@@ -166,6 +166,22 @@ class LuceneIndexInteractor @Throws(OnyxException::class) constructor(
         updateDocument(newReferenceId, indexValue)
     }
 
+    /**
+     * Saves several index values and applies each to the Lucene index in order.
+     *
+     * @param entries Index value, old record ID and new record ID of each save
+     */
+    @Throws(OnyxException::class)
+    @Synchronized
+    override fun saveAll(entries: List<Triple<Any?, Long, Long>>) {
+        super.saveAll(entries)
+        entries.forEach { (indexValue, oldReferenceId, newReferenceId) ->
+            if (oldReferenceId > 0)
+                indexWriter.deleteDocuments(Term(ID_FIELD, oldReferenceId.toString()))
+            updateDocument(newReferenceId, indexValue)
+        }
+    }
+
     /**
      * Deletes an entity from the Lucene index using its record ID.
      *
@@ -10,6 +10,8 @@ import com.onyx.persistence.factory.impl.ServerPersistenceManagerFactory
 import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.network.auth.impl.DefaultAuthenticationManager
 import com.onyx.network.rmi.OnyxRMIServer
+import com.onyx.network.serialization.impl.DefaultServerSerializer
+import com.onyx.network.rmi.RequestScheduler
 import com.onyx.interactors.encryption.impl.DefaultEncryptionInteractorInstance
 import com.onyx.interactors.encryption.EncryptionInteractor
 import com.onyx.persistence.IManagedEntity
@@ -55,6 +57,44 @@ open class DatabaseServer(override val databaseLocation:String) : AbstractDataba
 
     var storeType: StoreType = StoreType.FILE
 
+    /**
+     * Number of requests processed at the same time across every connection
+     *
+     * @since 3.9.10
+     */
+    var maxConcurrentRequests = OnyxRMIServer.DEFAULT_MAX_CONCURRENT_REQUESTS
+
+    /**
+     * Number of requests each connection may have outstanding before the server stops reading its requests
+     *
+     * @since 3.9.10
+     */
+    var maxConnectionRequests = OnyxRMIServer.DEFAULT_MAX_CONNECTION_REQUESTS
+
+    /**
+     * Number of requests that may wait to be processed before requests are rejected
+     *
+     * @since 3.9.10
+     */
+    var maxQueuedRequests = OnyxRMIServer.DEFAULT_MAX_QUEUED_REQUESTS
+
+    /**
+     * Size in bytes a response must exceed to be compressed.  Large query results compress well since the same
+     * attributes and values repeat from one record to the next.
+     *
+     * @since 3.9.10
+     */
+    var compressionThreshold = DefaultServerSerializer.NO_COMPRESSION
+
+    /**
+     * Scheduler processing requests.  It reports the number of queued, active and rejected requests.  Available once
+     * the server is started.
+     *
+     * @since 3.9.10
+     */
+    val requestScheduler: RequestScheduler
+        get() = rmiServer.requestScheduler
+
     /**
      * Start the database socket server
      *
@@ -84,6 +124,10 @@ open class DatabaseServer(override val databaseLocation:String) : AbstractDataba
             // Create the RMI Server
             this.rmiServer = OnyxRMIServer()
             this.rmiServer.port = port
+            this.rmiServer.maxConcurrentRequests = maxConcurrentRequests
+            this.rmiServer.maxConnectionRequests = maxConnectionRequests
+            this.rmiServer.maxQueuedRequests = maxQueuedRequests
+            this.rmiServer.compressionThreshold = compressionThreshold
             this.registerServices()
 
             this.rmiServer.start()
@@ -7,13 +7,15 @@ import com.onyx.network.handlers.RequestHandler
 import com.onyx.network.rmi.data.RMIRequest
 import com.onyx.exception.OnyxException
 import com.onyx.exception.InitializationException
+import com.onyx.exception.ServerOverloadedException
 import com.onyx.lang.map.OptimisticLockingMap
 import com.onyx.network.push.PushPublisher
 import com.onyx.network.push.PushSubscriber
 import com.onyx.network.rmi.OnyxRMIClient.Companion.PUSH_NOTIFICATION
-import com.onyx.network.serialization.ServerSerializer
 import com.onyx.network.serialization.impl.DefaultServerSerializer
 import com.onyx.network.transport.data.RequestToken
+import com.onyx.persistence.manager.impl.EmbeddedPersistenceManager
+import com.onyx.persistence.query.Query
 import io.ktor.server.application.*
 import io.ktor.server.engine.*
 import io.ktor.server.netty.*
@@ -22,6 +24,7 @@ import io.ktor.server.websocket.*
 import io.ktor.util.collections.*
 import io.ktor.websocket.*
 import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Semaphore
 import java.lang.reflect.Method
 import java.nio.ByteBuffer
 import java.util.concurrent.atomic.AtomicLong
@@ -51,10 +54,53 @@ class OnyxRMIServer : PushPublisher {
 
     private var requestHandler: RequestHandler
     private val connections = ConcurrentSet<Connection>()
-    private val serializer: ServerSerializer = DefaultServerSerializer()
+    private val serializer = DefaultServerSerializer()
     private val serviceScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
     var port: Int = 8082
 
+    /**
+     * Number of requests processed at the same time across every connection.  This must be set before the server
+     * is started.
+     *
+     * @since 3.9.10
+     */
+    var maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS
+
+    /**
+     * Number of requests each connection may have waiting or being processed.  Once a connection reaches it no more
+     * requests are read from it until one of them completes.
+     *
+     * @since 3.9.10
+     */
+    var maxConnectionRequests = DEFAULT_MAX_CONNECTION_REQUESTS
+
+    /**
+     * Number of requests that may wait to be processed before requests are rejected with a
+     * ServerOverloadedException.  This must be set before the server is started.
+     *
+     * @since 3.9.10
+     */
+    var maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS
+
+    /**
+     * Size in bytes a response must exceed to be compressed before it is sent.  Responses are not compressed by
+     * default.
+     *
+     * @since 3.9.10
+     */
+    var compressionThreshold: Int
+        get() = serializer.compressionThreshold
+        set(value) { serializer.compressionThreshold = value }
+
+    /**
+     * Scheduler requests are processed on.  It also reports how many requests are queued and active.  It is created
+     * when the server is started using the request limits set at that time.
+     *
+     * @since 3.9.10
+     */
+    lateinit var requestScheduler: RequestScheduler
+        private set
+
     /**
      * Constructor
      *
@@ -127,8 +173,11 @@ class OnyxRMIServer : PushPublisher {
 
                     method.isAccessible = true
                     return try {
-                        // Invoke the method
-                        val result = method.invoke(registeredObject, *`object`.params!!)
+                        // Invoke the method.  Cursors opened by a persistence manager belong to the connection.
+                        val result = if (registeredObject is EmbeddedPersistenceManager)
+                            registeredObject.withSession(connection) { method.invoke(registeredObject, *`object`.params!!) }
+                        else
+                            method.invoke(registeredObject, *`object`.params!!)
                         checkForAuthentication(registeredObject, connection)
                         result
                     } catch (t: Throwable) {
@@ -303,6 +352,7 @@ class OnyxRMIServer : PushPublisher {
      * @since 3.4.5 This was refactored to use KTOR and has a keepAlive feature which is enabled by default
      */
     fun start() {
+        requestScheduler = RequestScheduler(maxConcurrentRequests, maxQueuedRequests)
         server = embeddedServer(Netty, port = this.port, host = "0.0.0.0") {
             install(WebSockets) {
                 pingPeriod = 15.seconds
@@ -314,15 +364,31 @@ class OnyxRMIServer : PushPublisher {
                 webSocket("/") {
                     val connection = Connection(this)
                     connections.add(connection)
+                    val permits = Semaphore(maxConnectionRequests)
 
                     try {
 
                         for (frame in incoming) {
                             when (frame) {
                                 is Frame.Binary -> {
+                                    // Compressed requests are only inflated for authenticated connections so a
+                                    // client can not make the server allocate memory before it is verified
+                                    if (!connection.isAuthenticated && serializer.isCompressed(frame.data)) {
+                                        close(CloseReason(CloseReason.Codes.VIOLATED_POLICY, COMPRESSED_BEFORE_AUTHENTICATION))
+                                        break
+                                    }
+
+                                    // Stop reading from a connection with too many outstanding requests.  The client
+                                    // is held back until its requests complete.
+                                    permits.acquire()
                                     launch {
-                                        val requestToken = serializer.deserialize<RequestToken>(ByteBuffer.wrap(frame.data))
-                                        handleMessage(connection, requestToken)
+                                        try {
+                                            val requestToken = serializer.deserialize<RequestToken>(ByteBuffer.wrap(frame.data))
+                                            scheduleMessage(connection, requestToken) { permits.release() }
+                                        } catch (e: Exception) {
+                                            permits.release()
+                                            failure(e)
+                                        }
                                     }
                                 }
                                 else -> Unit
@@ -330,6 +396,7 @@ class OnyxRMIServer : PushPublisher {
                         }
                     } catch (ignore: CancellationException){} finally {
                         connections.remove(connection)
+                        registeredObjects.values.forEach { if (it is EmbeddedPersistenceManager) it.closeSession(connection) }
                     }
                 }
             }
@@ -344,6 +411,8 @@ class OnyxRMIServer : PushPublisher {
     fun stop() {
         running = false
         server?.stop()
+        if (::requestScheduler.isInitialized)
+            requestScheduler.shutdown()
     }
 
     /**
@@ -358,6 +427,56 @@ class OnyxRMIServer : PushPublisher {
         }
     }
 
+    /**
+     * Queue an inbound message to be handled by the request scheduler.  If the scheduler is full the message is
+     * answered with a ServerOverloadedException.
+     *
+     * @param connection Connection information containing buffer and thread info
+     * @param message Network message containing packet segments
+     * @param onComplete Invoked once the message is answered
+     * @since 3.9.10
+     */
+    private suspend fun scheduleMessage(connection: Connection, message: RequestToken, onComplete: () -> Unit) {
+        val scheduled = requestScheduler.submit(priorityOf(message.packet)) {
+            try {
+                runBlocking { handleMessage(connection, message) }
+            } finally {
+                onComplete()
+            }
+        }
+
+        if (!scheduled) {
+            try {
+                message.packet = ServerOverloadedException()
+                write(connection, message)
+            } catch (e: Exception) {
+                failure(e)
+            } finally {
+                onComplete()
+            }
+        }
+    }
+
+    /**
+     * Priority of a request.  Requests that execute a query may scan many records so point lookups, saves and
+     * other requests are processed before them.
+     *
+     * @param packet Request packet
+     * @return Priority of the request
+     * @since 3.9.10
+     */
+    private fun priorityOf(packet: Any?): RequestPriority {
+        if (packet !is RMIRequest)
+            return RequestPriority.HIGH
+        val registeredInterface = registeredInterfaces[packet.instance] ?: return RequestPriority.NORMAL
+        val method = try {
+            getCorrectMethod(registeredInterface, packet.method)
+        } catch (e: Exception) {
+            return RequestPriority.NORMAL
+        }
+        return if (method.parameterTypes.any { Query::class.java.isAssignableFrom(it) }) RequestPriority.LOW else RequestPriority.HIGH
+    }
+
     /**
      * Handle an inbound message
      *
@@ -402,5 +521,11 @@ class OnyxRMIServer : PushPublisher {
     companion object {
         const val REMOVE_SUBSCRIBER_EVENT = 1.toByte()
         const val REGISTER_SUBSCRIBER_EVENT = 2.toByte()
+        private const val COMPRESSED_BEFORE_AUTHENTICATION = "Compressed requests are not accepted before authenticating"
+
+        // Matches the number of threads the IO dispatcher previously ran requests on
+        const val DEFAULT_MAX_CONCURRENT_REQUESTS = 64
+        const val DEFAULT_MAX_CONNECTION_REQUESTS = 32
+        const val DEFAULT_MAX_QUEUED_REQUESTS = 10000
     }
 }
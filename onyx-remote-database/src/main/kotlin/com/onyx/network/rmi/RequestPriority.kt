@@ -0,0 +1,14 @@
+package com.onyx.network.rmi
+
+/**
+ * Order requests are processed in when the server is busy.  Requests with a higher priority are processed first.
+ *
+ * @since 3.9.10
+ */
+enum class RequestPriority {
+    // Point lookups, saves and authentication
+    HIGH,
+    NORMAL,
+    // Queries that may scan many records
+    LOW
+}
@@ -0,0 +1,119 @@
+package com.onyx.network.rmi
+
+import java.util.concurrent.PriorityBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs server requests on a fixed number of threads so a burst of requests can not flood the database with
+ * parallel queries.  Requests wait in a queue ordered by priority and then by the order they were received.  Once
+ * the queue is full requests are rejected rather than queued.
+ *
+ * Priorities age so lower priority requests are not starved by a steady stream of higher priority requests.  A
+ * request is ranked as if it was received priorityAging requests later for each priority level below HIGH.  Once
+ * that many requests have been received after it, it is processed ahead of any request received since.
+ *
+ * @param maxConcurrentRequests Number of requests processed at the same time
+ * @param maxQueuedRequests Number of requests that may wait to be processed before requests are rejected
+ * @param priorityAging Number of requests a request may be passed by for each priority level it is below HIGH
+ *
+ * @since 3.9.10
+ */
+class RequestScheduler(val maxConcurrentRequests: Int, val maxQueuedRequests: Int, val priorityAging: Long = DEFAULT_PRIORITY_AGING) {
+
+    private val queued = AtomicInteger()
+    private val active = AtomicInteger()
+    private val rejected = AtomicLong()
+    private val completed = AtomicLong()
+    private val sequence = AtomicLong()
+
+    private val executor = ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests, 60, TimeUnit.SECONDS, PriorityBlockingQueue(), RequestThreadFactory())
+
+    /**
+     * Number of requests waiting to be processed
+     */
+    val queuedRequests: Int
+        get() = queued.get()
+
+    /**
+     * Number of requests being processed
+     */
+    val activeRequests: Int
+        get() = active.get()
+
+    /**
+     * Number of requests rejected because the queue was full
+     */
+    val rejectedRequests: Long
+        get() = rejected.get()
+
+    /**
+     * Number of requests processed
+     */
+    val completedRequests: Long
+        get() = completed.get()
+
+    /**
+     * Queue a request
+     *
+     * @param priority Priority of the request
+     * @param request Processes the request
+     * @return False if the queue is full and the request was rejected
+     */
+    fun submit(priority: RequestPriority, request: () -> Unit): Boolean {
+        if (queued.incrementAndGet() > maxQueuedRequests) {
+            queued.decrementAndGet()
+            rejected.incrementAndGet()
+            return false
+        }
+        val received = sequence.getAndIncrement()
+        executor.execute(ScheduledRequest(received + priority.ordinal * priorityAging, received, request))
+        return true
+    }
+
+    /**
+     * Stop processing requests
+     */
+    fun shutdown() {
+        executor.shutdownNow()
+    }
+
+    /**
+     * Request ordered by its aged rank and then by the order it was received
+     */
+    private inner class ScheduledRequest(private val rank: Long, private val sequence: Long, private val request: () -> Unit) : Runnable, Comparable<ScheduledRequest> {
+
+        override fun run() {
+            queued.decrementAndGet()
+            active.incrementAndGet()
+            try {
+                request()
+            } finally {
+                active.decrementAndGet()
+                completed.incrementAndGet()
+            }
+        }
+
+        override fun compareTo(other: ScheduledRequest): Int {
+            val comparison = rank.compareTo(other.rank)
+            return if (comparison != 0) comparison else sequence.compareTo(other.sequence)
+        }
+    }
+
+    /**
+     * Creates the daemon threads requests are processed on
+     */
+    private class RequestThreadFactory : ThreadFactory {
+        private val threadNumber = AtomicInteger()
+
+        override fun newThread(runnable: Runnable): Thread = Thread(runnable, "onyx-request-${threadNumber.incrementAndGet()}").apply { isDaemon = true }
+    }
+
+    companion object {
+        // Requests a lower priority request may be passed by for each priority level
+        const val DEFAULT_PRIORITY_AGING = 1000L
+    }
+}
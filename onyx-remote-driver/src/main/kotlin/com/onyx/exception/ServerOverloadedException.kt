@@ -0,0 +1,14 @@
+package com.onyx.exception
+
+/**
+ * Thrown when the server has too many requests waiting to be processed.  The request was rejected before it was
+ * processed so it is safe to retry.
+ *
+ * @since 3.9.10
+ */
+class ServerOverloadedException(override var message: String? = SERVER_OVERLOADED) : OnyxServerException(message) {
+
+    companion object {
+        const val SERVER_OVERLOADED = "The server has too many requests waiting to be processed.  Try again later."
+    }
+}
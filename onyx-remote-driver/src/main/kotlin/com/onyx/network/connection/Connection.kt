@@ -13,5 +13,5 @@ import io.ktor.websocket.*
 data class Connection(
     val connection: DefaultWebSocketSession
 ) {
-    var isAuthenticated = false
+    @Volatile var isAuthenticated = false
 }
\ No newline at end of file
@@ -5,14 +5,11 @@ import com.onyx.exception.InitializationException
 import com.onyx.exception.InitializationException.Companion.CONNECTION_EXCEPTION
 import com.onyx.exception.OnyxServerException
 import com.onyx.exception.RequestTimeoutException
-import com.onyx.extension.common.DeferredValue
 import com.onyx.lang.map.OptimisticLockingMap
 import com.onyx.network.auth.AuthenticationManager
 import com.onyx.network.push.PushConsumer
-import com.onyx.network.push.PushRegistrar
 import com.onyx.network.push.PushSubscriber
 import com.onyx.network.rmi.data.RMIRequest
-import com.onyx.network.serialization.ServerSerializer
 import com.onyx.network.serialization.impl.DefaultServerSerializer
 import com.onyx.network.transport.data.RequestToken
 import io.ktor.client.*
@@ -25,9 +22,12 @@ import java.lang.reflect.Method
 import java.lang.reflect.Proxy
 import java.nio.ByteBuffer
 import java.util.*
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.time.Duration.Companion.seconds
 
 /**
@@ -38,16 +38,30 @@ import kotlin.time.Duration.Companion.seconds
  *
  * @since 1.2.0
  */
-class OnyxRMIClient : PushRegistrar {
+class OnyxRMIClient : RMIClient {
 
     // Local Cache of Remote Objects
     private val registeredObjects = HashMap<String, Any>()
-    private val serializer: ServerSerializer = DefaultServerSerializer()
+    private val serializer = DefaultServerSerializer()
+
+    // Requests are not compressed until the connection is authenticated since the server rejects them
+    private val uncompressedSerializer = DefaultServerSerializer()
+    @Volatile private var isAuthenticated = false
     private val serviceScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
     private var timeout = 240
     private var connectTimeout = 5
     var keepAlive = false
 
+    /**
+     * Size in bytes a request must exceed to be compressed before it is sent.  Requests are not compressed by
+     * default or before the connection is authenticated.  Responses are decompressed regardless of this setting.
+     *
+     * @since 3.9.10
+     */
+    var compressionThreshold: Int
+        get() = serializer.compressionThreshold
+        set(value) { serializer.compressionThreshold = value }
+
     var authenticationManager: AuthenticationManager? = null
 
     private var user: String = "admin"
@@ -67,7 +81,7 @@ class OnyxRMIClient : PushRegistrar {
      * @return Instance of the remote proxy object
      * @since 1.2.0
      */
-    fun getRemoteObject(remoteId: String, type: Class<*>): Any? {
+    override fun getRemoteObject(remoteId: String, type: Class<*>): Any? {
 
         // Return the registered Object
         if (registeredObjects.containsKey(remoteId))
@@ -92,7 +106,7 @@ class OnyxRMIClient : PushRegistrar {
      *
      * @since 1.3.0
      */
-    private inner class RMIClientInvocationHandler(type: Class<*>, val remoteId: String) : InvocationHandler {
+    private inner class RMIClientInvocationHandler(val type: Class<*>, val remoteId: String) : InvocationHandler {
         var methods: MutableList<Method> = ArrayList()
 
         init {
@@ -109,6 +123,65 @@ class OnyxRMIClient : PushRegistrar {
                 throw result
             return result
         }
+
+        /**
+         * Record the method invoked by the call and send it without waiting on the response
+         *
+         * @param call Invokes a single method of the remote object
+         * @return Future completed with the result of the method
+         * @since 3.9.10
+         */
+        fun <T, R> invokeAsync(call: T.() -> R): CompletableFuture<R> {
+            var request: RMIRequest? = null
+            val recorder = Proxy.newProxyInstance(type.classLoader, arrayOf(type)) { _, method, args ->
+                check(request == null) { "Only a single remote method may be invoked asynchronously" }
+                request = RMIRequest(remoteId, methods.indexOf(method).toByte(), args)
+                defaultValue(method.returnType)
+            }
+
+            @Suppress("UNCHECKED_CAST")
+            (recorder as T).call()
+
+            @Suppress("UNCHECKED_CAST")
+            return sendAsync(checkNotNull(request) { "No remote method was invoked" }) as CompletableFuture<R>
+        }
+
+        /**
+         * Value returned from the recorded method so primitive return types can be unboxed
+         */
+        private fun defaultValue(returnType: Class<*>): Any? =
+            if (returnType.isPrimitive && returnType != Void.TYPE) java.lang.reflect.Array.get(java.lang.reflect.Array.newInstance(returnType, 1), 0) else null
+    }
+
+    /**
+     * Invoke a method of a remote object without blocking.  The method invoked within the call is sent to the server
+     * and the future completes once the server responds.  Many calls can be awaiting a response over the same
+     * connection.
+     *
+     * The call is only used to record which method to invoke and must invoke a single method of the remote object.
+     * The value it returns is ignored.
+     *
+     * @param remoteObject Proxy returned by getRemoteObject
+     * @param call Invokes a method of the remote object
+     * @return Future completed with the result of the method or exceptionally with the error of the server
+     * @since 3.9.10
+     */
+    override fun <T : Any, R> invokeAsync(remoteObject: T, call: T.() -> R): CompletableFuture<R> {
+        val handler = Proxy.getInvocationHandler(remoteObject) as? RMIClientInvocationHandler
+            ?: throw IllegalArgumentException("Object is not a remote object")
+        return handler.invokeAsync(call)
+    }
+
+    /**
+     * Every method is sent over the one connection of this client so the remote object is returned as is
+     *
+     * @param remoteObject Proxy returned by getRemoteObject
+     * @return The same proxy
+     * @since 3.9.10
+     */
+    override fun <T : Any> pinned(remoteObject: T): T {
+        require(Proxy.getInvocationHandler(remoteObject) is RMIClientInvocationHandler) { "Object is not a remote object" }
+        return remoteObject
     }
 
     // region Push Methods
@@ -141,7 +214,7 @@ class OnyxRMIClient : PushRegistrar {
             UNEXPECTED_EXCEPTION -> (message.packet as Exception).printStackTrace()
             PUSH_NOTIFICATION -> handlePushMessage(message)
             else -> {
-                val consumer = pendingRequests.remove(message)
+                val consumer = pendingRequests.remove(message.token)
                 consumer?.complete(message.packet)
             }
         }
@@ -183,23 +256,31 @@ class OnyxRMIClient : PushRegistrar {
 
     // endregion
 
-    private var tokenCounter =
-        (java.lang.Short.MIN_VALUE + 1).toShort() // +1 because Short.MIN_VALUE denotes a push event
+    private val tokenCounter = AtomicInteger(0)
 
     /**
-     * Generates a new token.  Resets it to 0 if we have reached the maximum
+     * Generates a new token.  Tokens wrap around once every int is used skipping the tokens reserved for push
+     * notifications and un-correlated errors.
      *
      * @return New token id
      */
-    @Synchronized
-    private fun generateNewToken(): Short {
-        if (tokenCounter >= java.lang.Short.MAX_VALUE - 1)
-        // Short.MAX_VALUE is reserved for un-correlated error
-            tokenCounter = (java.lang.Short.MIN_VALUE + 1).toShort()
-        return tokenCounter++
+    private fun generateNewToken(): Int {
+        while (true) {
+            val token = tokenCounter.incrementAndGet()
+            if (token != PUSH_NOTIFICATION && token != UNEXPECTED_EXCEPTION)
+                return token
+        }
     }
 
-    private val pendingRequests = ConcurrentHashMap<RequestToken, DeferredValue<Any?>>()
+    private val pendingRequests = ConcurrentHashMap<Int, CompletableFuture<Any?>>()
+
+    /**
+     * Number of requests awaiting a response
+     *
+     * @since 3.9.10
+     */
+    val pendingRequestCount: Int
+        get() = pendingRequests.size
 
     /**
      * Send a generic packet and await the response
@@ -208,27 +289,59 @@ class OnyxRMIClient : PushRegistrar {
      * @return The server response to that packet
      *
      * @since 3.4.5 Refactored to use Ktor
+     * @since 3.9.10 Requests are pipelined rather than blocking a coroutine until the response
      */
-    fun send(packet: Any): Any? {
-        return runBlocking {
-            if (connection == null) {
-                return@runBlocking ConnectionFailedException(CONNECTION_EXCEPTION)
-            }
-            val token = RequestToken(generateNewToken(), packet)
+    fun send(packet: Any): Any? = try {
+        request(packet).get()
+    } catch (e: ExecutionException) {
+        if (e.cause !is TimeoutException)
+            throw e.cause ?: e
+        if (active) RequestTimeoutException() else null
+    }
 
-            val future = DeferredValue<Any?>()
-            pendingRequests[token] = future
+    /**
+     * Send a generic packet without waiting on the response
+     *
+     * @param packet Any non null request
+     * @return Future completed with the server response or exceptionally if the server responds with an error
+     *
+     * @since 3.9.10
+     */
+    fun sendAsync(packet: Any): CompletableFuture<Any?> = request(packet).handle { result, error ->
+        when {
+            error is TimeoutException -> throw RequestTimeoutException()
+            error != null -> throw error
+            result is Exception -> throw result
+            else -> result
+        }
+    }
 
+    /**
+     * Write a request and register the future completed by its response.  The request is written by a coroutine so
+     * the caller is never blocked and requests are not held up by the responses of other requests.
+     *
+     * @param packet Any non null request
+     * @return Future completed with the server response.  Errors returned by the server complete the future normally.
+     */
+    private fun request(packet: Any): CompletableFuture<Any?> {
+        val session = connection ?: return CompletableFuture.completedFuture(ConnectionFailedException(CONNECTION_EXCEPTION))
+
+        val future = CompletableFuture<Any?>()
+        var token = RequestToken(generateNewToken(), packet)
+        while (pendingRequests.putIfAbsent(token.token, future) != null)
+            token = RequestToken(generateNewToken(), packet)
+
+        future.orTimeout(timeout.toLong(), TimeUnit.SECONDS).whenComplete { _, _ -> pendingRequests.remove(token.token, future) }
+
+        val frame = Frame.Binary(true, (if (isAuthenticated) serializer else uncompressedSerializer).serialize(token))
+        serviceScope.launch {
             try {
-                connection?.send(Frame.Binary(true, serializer.serialize(token)))
-                future.get(timeout.toLong(), TimeUnit.SECONDS)
-            } catch (e: TimeoutException) {
-                pendingRequests.remove(token)
-                if (active)
-                    RequestTimeoutException()
-                else null
+                session.send(frame)
+            } catch (e: Exception) {
+                future.complete(ConnectionFailedException(CONNECTION_EXCEPTION))
             }
         }
+        return future
     }
 
     private val client = HttpClient {
@@ -238,6 +351,14 @@ class OnyxRMIClient : PushRegistrar {
     private var connection: DefaultClientWebSocketSession? = null
     private var active = false
 
+    /**
+     * Whether the client is connected or reconnecting.  False once it is closed.
+     *
+     * @since 3.9.10
+     */
+    val isActive: Boolean
+        get() = active
+
     /**
      * Connect to the onyx rmi server
      *
@@ -258,6 +379,7 @@ class OnyxRMIClient : PushRegistrar {
                                 launch {
                                     try {
                                         authenticationManager?.verify(user, password)
+                                        isAuthenticated = true
                                     } catch (e: InitializationException) {
                                         close()
                                         if (e.message == InitializationException.INVALID_CREDENTIALS)
@@ -284,10 +406,10 @@ class OnyxRMIClient : PushRegistrar {
                                 }
                             }
                         }
-                        connection = null
+                        disconnected()
                     }
                     catch (e: Exception) {
-                        connection = null
+                        disconnected()
                         delay(200)
                     }
                 }
@@ -309,6 +431,7 @@ class OnyxRMIClient : PushRegistrar {
                 }
             }
             this.authenticationManager?.verify(this.user, this.password)
+            isAuthenticated = true
         } catch (e: InitializationException) {
             this.close()
             if (e.message == InitializationException.INVALID_CREDENTIALS)
@@ -321,15 +444,36 @@ class OnyxRMIClient : PushRegistrar {
         }
     }
 
-    fun close() {
-        pendingRequests.forEach { it.value.complete(InitializationException(CONNECTION_EXCEPTION)) }
-        pendingRequests.clear()
+    override fun close() {
+        failPendingRequests { InitializationException(CONNECTION_EXCEPTION) }
         active = false
         client.close()
     }
 
+    /**
+     * The connection was lost.  Responses to the requests sent over it will never arrive so they fail rather than
+     * waiting until they time out.  A new connection is made while the client is active.
+     *
+     * @since 3.9.10
+     */
+    private fun disconnected() {
+        connection = null
+        isAuthenticated = false
+        failPendingRequests { ConnectionFailedException(CONNECTION_EXCEPTION) }
+    }
+
+    /**
+     * Complete every request awaiting a response with an error
+     *
+     * @param error Creates the error each request completes with
+     * @since 3.9.10
+     */
+    private fun failPendingRequests(error: () -> Exception) = pendingRequests.keys.forEach { token ->
+        pendingRequests.remove(token)?.complete(error())
+    }
+
     companion object {
-        const val UNEXPECTED_EXCEPTION: Short = java.lang.Short.MAX_VALUE
-        const val PUSH_NOTIFICATION: Short = java.lang.Short.MIN_VALUE
+        const val UNEXPECTED_EXCEPTION: Int = Int.MAX_VALUE
+        const val PUSH_NOTIFICATION: Int = Int.MIN_VALUE
     }
 }
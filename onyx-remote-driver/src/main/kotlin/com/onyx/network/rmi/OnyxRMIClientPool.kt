@@ -0,0 +1,179 @@
+package com.onyx.network.rmi
+
+import com.onyx.exception.OnyxServerException
+import com.onyx.extension.common.catchAll
+import com.onyx.network.auth.AuthenticationManager
+import com.onyx.network.push.PushConsumer
+import com.onyx.network.push.PushSubscriber
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Pool of connections to an Onyx RMI Server.  Each connection is its own client with its own WebSocket so a large
+ * response being written to one connection does not hold up the responses of other requests.  Every call is sent
+ * over the connection with the fewest requests awaiting a response.
+ *
+ * Push notifications are tied to the connection they were registered on so a subscriber is always unregistered
+ * over the same connection.  Cursors are likewise read and closed through the pinned remote object they were opened
+ * with.
+ *
+ * @param size Number of connections
+ *
+ * @since 3.9.10
+ */
+class OnyxRMIClientPool(size: Int) : RMIClient {
+
+    init {
+        require(size > 0) { "Connection pool size must be greater than 0" }
+    }
+
+    /**
+     * Clients holding each connection
+     */
+    val clients: List<OnyxRMIClient> = List(size) { OnyxRMIClient() }
+
+    // Local Cache of Remote Objects
+    private val registeredObjects = ConcurrentHashMap<String, Any>()
+
+    // Client each push subscriber was registered with
+    private val pushClients = ConcurrentHashMap<Long, OnyxRMIClient>()
+
+    // Rotates where the search for the least loaded client starts so ties are spread across clients
+    private val nextClient = AtomicInteger()
+
+    var keepAlive: Boolean
+        get() = clients.first().keepAlive
+        set(value) = clients.forEach { it.keepAlive = value }
+
+    var compressionThreshold: Int
+        get() = clients.first().compressionThreshold
+        set(value) = clients.forEach { it.compressionThreshold = value }
+
+    // Set Username and password
+    fun setCredentials(user: String, password: String) = clients.forEach { it.setCredentials(user, password) }
+
+    /**
+     * Verify the credentials of each connection using the remote authentication manager
+     *
+     * @param remoteId Instance name of the registered authentication manager
+     */
+    fun authenticateWith(remoteId: String) = clients.forEach {
+        it.authenticationManager = it.getRemoteObject(remoteId, AuthenticationManager::class.java) as AuthenticationManager
+    }
+
+    /**
+     * Connect each client to the onyx rmi server.  If a client can not connect, the clients already connected are
+     * closed along with it so no connection is left open.
+     *
+     * @param host Host to connect to
+     * @param port Server port
+     */
+    fun connect(host: String, port: Int) = clients.forEachIndexed { index, client ->
+        try {
+            client.connect(host, port)
+        } catch (e: Exception) {
+            clients.take(index + 1).forEach { catchAll { it.close() } }
+            throw e
+        }
+    }
+
+    override fun close() = clients.forEach { it.close() }
+
+    /**
+     * Get a Remote Proxy Object.  Each method invoked on it is sent over the least loaded connection.
+     *
+     * @param remoteId Instance name of the registered object
+     * @param type     The class type of what you are trying to get
+     * @return Instance of the remote proxy object
+     */
+    override fun getRemoteObject(remoteId: String, type: Class<*>): Any? = registeredObjects.getOrPut(remoteId) {
+        Proxy.newProxyInstance(type.classLoader, arrayOf(type), PooledInvocationHandler(remoteId, type))
+    }
+
+    override fun <T : Any, R> invokeAsync(remoteObject: T, call: T.() -> R): CompletableFuture<R> {
+        val handler = Proxy.getInvocationHandler(remoteObject) as? PooledInvocationHandler
+            ?: throw IllegalArgumentException("Object is not a remote object")
+        val client = leastLoaded()
+        @Suppress("UNCHECKED_CAST")
+        return clients[client].invokeAsync(handler.remoteObjects[client] as T, call)
+    }
+
+    /**
+     * Get the remote object of the least loaded connection.  Unlike the pooled proxy, every method invoked on it is
+     * sent over that connection.
+     *
+     * @param remoteObject Proxy returned by getRemoteObject
+     * @return Proxy bound to a single connection
+     */
+    override fun <T : Any> pinned(remoteObject: T): T {
+        val handler = Proxy.getInvocationHandler(remoteObject) as? PooledInvocationHandler
+            ?: throw IllegalArgumentException("Object is not a remote object")
+        @Suppress("UNCHECKED_CAST")
+        return handler.remoteObjects[leastLoaded()] as T
+    }
+
+    /**
+     * Register a push consumer over the least loaded connection
+     *
+     * @param consumer Object to send to the server to register the push subscription.
+     * @param responder Local responder object that will handle the inbound push notifications
+     *
+     * @throws OnyxServerException Cannot communicate with server
+     */
+    @Throws(OnyxServerException::class)
+    override fun register(consumer: PushSubscriber, responder: PushConsumer) {
+        val client = clients[leastLoaded()]
+        client.register(consumer, responder)
+        pushClients[consumer.pushObjectId] = client
+    }
+
+    /**
+     * De register a push subscriber over the connection it was registered on
+     *
+     * @param subscriber Subscriber associated to the push listener
+     * @throws OnyxServerException Typically indicates cannot connect to server
+     */
+    @Throws(OnyxServerException::class)
+    override fun unregister(subscriber: PushSubscriber) {
+        val client = pushClients.remove(subscriber.pushObjectId) ?: clients.first()
+        client.unregister(subscriber)
+    }
+
+    /**
+     * Find the client with the fewest requests awaiting a response
+     *
+     * @return Index of the client
+     */
+    private fun leastLoaded(): Int {
+        if (clients.size == 1)
+            return 0
+        val start = Math.floorMod(nextClient.getAndIncrement(), clients.size)
+        var best = start
+        for (offset in 1 until clients.size) {
+            val index = (start + offset) % clients.size
+            if (clients[index].pendingRequestCount < clients[best].pendingRequestCount)
+                best = index
+        }
+        return best
+    }
+
+    /**
+     * Sends each method invoked to the remote object of the least loaded client
+     */
+    private inner class PooledInvocationHandler(remoteId: String, type: Class<*>) : InvocationHandler {
+
+        val remoteObjects = clients.map { it.getRemoteObject(remoteId, type) }
+
+        @Throws(Throwable::class)
+        override fun invoke(proxy: Any, method: Method, args: Array<Any?>?): Any? = try {
+            method.invoke(remoteObjects[leastLoaded()], *(args ?: emptyArray()))
+        } catch (e: InvocationTargetException) {
+            throw e.targetException
+        }
+    }
+}
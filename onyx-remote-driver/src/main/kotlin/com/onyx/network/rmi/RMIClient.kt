@@ -0,0 +1,44 @@
+package com.onyx.network.rmi
+
+import com.onyx.network.push.PushRegistrar
+import java.util.concurrent.CompletableFuture
+
+/**
+ * Contract for invoking the methods of objects registered within an Onyx RMI Server
+ *
+ * @since 3.9.10
+ */
+interface RMIClient : PushRegistrar {
+
+    /**
+     * Get a Remote Proxy Object
+     *
+     * @param remoteId Instance name of the registered object
+     * @param type     The class type of what you are trying to get
+     * @return Instance of the remote proxy object
+     */
+    fun getRemoteObject(remoteId: String, type: Class<*>): Any?
+
+    /**
+     * Invoke a method of a remote object without blocking
+     *
+     * @param remoteObject Proxy returned by getRemoteObject
+     * @param call Invokes a single method of the remote object
+     * @return Future completed with the result of the method or exceptionally with the error of the server
+     */
+    fun <T : Any, R> invokeAsync(remoteObject: T, call: T.() -> R): CompletableFuture<R>
+
+    /**
+     * Get a proxy of a remote object that sends every method over a single connection.  State the server ties to a
+     * connection, such as an open cursor, must be used through it.
+     *
+     * @param remoteObject Proxy returned by getRemoteObject
+     * @return Proxy bound to a single connection
+     */
+    fun <T : Any> pinned(remoteObject: T): T
+
+    /**
+     * Close the connection to the server
+     */
+    fun close()
+}
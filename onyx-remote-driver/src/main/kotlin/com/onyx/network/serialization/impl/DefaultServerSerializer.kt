@@ -1,24 +1,85 @@
 package com.onyx.network.serialization.impl
 
+import com.onyx.buffer.BufferPool
 import com.onyx.buffer.BufferStream
 import com.onyx.buffer.BufferStreamable
+import com.onyx.exception.BufferingException
 import com.onyx.network.serialization.ServerSerializer
 
 import java.nio.ByteBuffer
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
 
 /**
  * Created by Tim Osborn on 7/1/16.
  *
  * The default serializer implementation will use basic java serialization and Externalize whenever possible.
+ *
+ * Each message starts with a flag indicating whether the rest of the message is compressed.  Messages larger than
+ * the compression threshold are deflated before they are sent.  Messages are always decompressed when read so
+ * each side of the connection chooses whether to compress independently.
+ *
+ * @param compressionThreshold Size in bytes a message must exceed to be compressed.  Use [NO_COMPRESSION] to never compress.
  * @since 1.2.0
  */
-class DefaultServerSerializer : ServerSerializer {
+class DefaultServerSerializer @JvmOverloads constructor(var compressionThreshold: Int = NO_COMPRESSION) : ServerSerializer {
+
+    /**
+     * Largest size in bytes a compressed message may inflate to.  The size a compressed message claims is checked
+     * against it before any memory is allocated for it.
+     *
+     * @since 3.9.10
+     */
+    var maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE
 
     /**
      * Serialize and put the bytes into the input buffer
      * @since 1.2.0
      */
-    override fun serialize(serializable: BufferStreamable): ByteBuffer = BufferStream.toBuffer(serializable)
+    override fun serialize(serializable: BufferStreamable): ByteBuffer {
+        val buffer = BufferStream.toBuffer(serializable)
+        val size = buffer.remaining()
+
+        if (compressionThreshold < 0 || size <= compressionThreshold) {
+            val message = ByteBuffer.allocate(size + 1)
+            message.put(UNCOMPRESSED)
+            message.put(buffer)
+            message.flip()
+            BufferPool.recycle(buffer)
+            return message
+        }
+
+        val bytes = ByteArray(size)
+        buffer.get(bytes)
+        BufferPool.recycle(buffer)
+
+        val deflater = Deflater(Deflater.BEST_SPEED)
+        try {
+            deflater.setInput(bytes)
+            deflater.finish()
+
+            // Fall back to sending the message as is when it does not compress
+            val compressed = ByteArray(size)
+            val compressedSize = deflater.deflate(compressed)
+            if (!deflater.finished()) {
+                val message = ByteBuffer.allocate(size + 1)
+                message.put(UNCOMPRESSED)
+                message.put(bytes)
+                message.flip()
+                return message
+            }
+
+            val message = ByteBuffer.allocate(compressedSize + 1 + Integer.BYTES)
+            message.put(COMPRESSED)
+            message.putInt(size)
+            message.put(compressed, 0, compressedSize)
+            message.flip()
+            return message
+        } finally {
+            deflater.end()
+        }
+    }
 
     /**
      * Deserialize the bytes from the buffer
@@ -27,5 +88,50 @@ class DefaultServerSerializer : ServerSerializer {
      * @since 1.2.0
      */
     @Suppress("UNCHECKED_CAST")
-    override fun <T : BufferStreamable> deserialize(buffer: ByteBuffer): T = BufferStream.fromBuffer(buffer) as T
+    override fun <T : BufferStreamable> deserialize(buffer: ByteBuffer): T {
+        if (buffer.get() == UNCOMPRESSED)
+            return BufferStream.fromBuffer(buffer) as T
+
+        val size = buffer.int
+        if (size < 0 || size > maxMessageSize)
+            throw BufferingException(BufferingException.UNKNOWN_DESERIALIZE)
+        val compressed = ByteArray(buffer.remaining())
+        buffer.get(compressed)
+
+        val inflater = Inflater()
+        try {
+            inflater.setInput(compressed)
+            val bytes = ByteArray(size)
+            var inflated = 0
+            while (inflated < size && !inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary())
+                inflated += inflater.inflate(bytes, inflated, size - inflated)
+
+            // The message must inflate to exactly the size it claims
+            val overflow = if (inflater.finished()) 0 else inflater.inflate(ByteArray(1))
+            if (inflated != size || overflow != 0 || !inflater.finished())
+                throw BufferingException(BufferingException.UNKNOWN_DESERIALIZE)
+            return BufferStream.fromBuffer(ByteBuffer.wrap(bytes)) as T
+        } catch (e: DataFormatException) {
+            throw BufferingException(BufferingException.UNKNOWN_DESERIALIZE, null, e)
+        } finally {
+            inflater.end()
+        }
+    }
+
+    /**
+     * Whether a message is compressed
+     *
+     * @param message Serialized message
+     * @return True if the rest of the message is deflated
+     * @since 3.9.10
+     */
+    fun isCompressed(message: ByteArray): Boolean = message.isNotEmpty() && message[0] == COMPRESSED
+
+    companion object {
+        const val NO_COMPRESSION = -1
+        const val DEFAULT_MAX_MESSAGE_SIZE = 256 * 1024 * 1024
+
+        private const val UNCOMPRESSED: Byte = 0
+        private const val COMPRESSED: Byte = 1
+    }
 }
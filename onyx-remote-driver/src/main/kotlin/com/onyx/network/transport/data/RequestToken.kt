@@ -12,23 +12,23 @@ import com.onyx.persistence.context.SchemaContext
  */
 class RequestToken() : BufferStreamable {
 
-    var token: Short = 0
+    var token: Int = 0
     var packet: Any? = null
 
-    constructor(token: Short, packet: Any?): this() {
+    constructor(token: Int, packet: Any?): this() {
         this.token = token
         this.packet = packet
     }
 
     @Throws(BufferingException::class)
     override fun read(buffer: BufferStream) {
-        token = buffer.short
+        token = buffer.int
         packet = buffer.value
     }
 
     @Throws(BufferingException::class)
     override fun write(buffer: BufferStream) {
-        buffer.putShort(token)
+        buffer.putInt(token)
         buffer.putObject(packet)
     }
 
@@ -42,7 +42,7 @@ class RequestToken() : BufferStreamable {
         this.write(buffer)
     }
 
-    override fun hashCode(): Int = token.toInt()
+    override fun hashCode(): Int = token
 
     override fun equals(other: Any?): Boolean = other != null && other is RequestToken && other.token == token
 
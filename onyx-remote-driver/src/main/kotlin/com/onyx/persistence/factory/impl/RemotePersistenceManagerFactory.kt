@@ -1,9 +1,9 @@
 package com.onyx.persistence.factory.impl
 
 import com.onyx.diskmap.store.StoreType
-import com.onyx.network.auth.AuthenticationManager
 import com.onyx.exception.ConnectionFailedException
-import com.onyx.network.rmi.OnyxRMIClient
+import com.onyx.network.rmi.OnyxRMIClientPool
+import com.onyx.network.serialization.impl.DefaultServerSerializer
 import com.onyx.entity.SystemEntity
 import com.onyx.exception.OnyxException
 import com.onyx.exception.InitializationException
@@ -58,9 +58,32 @@ open class RemotePersistenceManagerFactory @JvmOverloads constructor(databaseLoc
 
     var keepAlive = true
 
+    /**
+     * Number of connections to the server.  Each request is sent over the connection with the fewest requests
+     * awaiting a response so large responses do not hold up other requests.  This must be set before the factory
+     * is initialized.
+     *
+     * @since 3.9.10
+     */
+    var connectionPoolSize = 1
+
+    /**
+     * Size in bytes a request must exceed to be compressed before it is sent to the server.  Requests are not
+     * compressed by default.  This must be set before the factory is initialized.
+     *
+     * @since 3.9.10
+     */
+    var compressionThreshold = DefaultServerSerializer.NO_COMPRESSION
+
     // region Private Values
 
-    private val onyxRMIClient: OnyxRMIClient by lazy { OnyxRMIClient().apply { this.keepAlive = keepAlive } }
+    private val onyxRMIClient: OnyxRMIClientPool by lazy {
+        val threshold = compressionThreshold
+        OnyxRMIClientPool(connectionPoolSize).apply {
+            this.keepAlive = keepAlive
+            this.compressionThreshold = threshold
+        }
+    }
 
     // endregion
 
@@ -111,8 +134,7 @@ open class RemotePersistenceManagerFactory @JvmOverloads constructor(databaseLoc
         onyxRMIClient.setCredentials(this.user, this.password)
 //        copySSLPeerTo(onyxRMIClient)
 
-        val authenticationManager = onyxRMIClient.getRemoteObject(Services.AUTHENTICATION_MANAGER_SERVICE.serviceId, AuthenticationManager::class.java) as AuthenticationManager
-        onyxRMIClient.authenticationManager = authenticationManager
+        onyxRMIClient.authenticateWith(Services.AUTHENTICATION_MANAGER_SERVICE.serviceId)
 
         try {
             onyxRMIClient.connect(host, Integer.valueOf(port))
@@ -1,19 +1,29 @@
 package com.onyx.persistence.manager.impl
 
 import com.onyx.network.push.PushRegistrar
+import com.onyx.network.rmi.RMIClient
 import com.onyx.exception.OnyxException
 import com.onyx.exception.StreamException
 import com.onyx.extension.copy
 import com.onyx.extension.set
 import com.onyx.interactors.record.data.Reference
+import com.onyx.lang.CloseableIterator
 import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.batch.BatchOperation
+import com.onyx.persistence.batch.BatchResult
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryCursorPage
+import com.onyx.persistence.query.QueryPlan
+import com.onyx.persistence.query.RemoteQueryCursor
 import com.onyx.persistence.query.RemoteQueryListener
+import com.onyx.persistence.stream.QueryMapStream
 import com.onyx.persistence.stream.QueryStream
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Persistence manager supplies a public API for performing database persistence and querying operations.  This specifically is used for an remote database.
@@ -53,6 +63,9 @@ open class RemotePersistenceManager : PersistenceManager {
     private lateinit var proxy: PersistenceManager
     private lateinit var pushRegistrar: PushRegistrar
 
+    // Connection each cursor opened with openCursor was opened on
+    private val cursorConnections = ConcurrentHashMap<Long, PersistenceManager>()
+
     constructor()
 
     /**
@@ -384,14 +397,132 @@ open class RemotePersistenceManager : PersistenceManager {
     /**
      * This method is used for bulk streaming data entities.  An example of bulk streaming is for analytics or bulk updates included but not limited to model changes.
      *
+     * The entities are read from a cursor on the server a batch at a time.  A QueryMapStream is not supported.
+     *
      * @since 1.0.0
+     * @since 3.9.10 Streams entities using a cursor
      *
      * @param query Query to execute and stream
      *
      * @param streamer Instance of the streamer to use to stream the data
      */
     @Throws(OnyxException::class)
-    override fun <T : Any> stream(query: Query, streamer: QueryStream<T>) = throw StreamException(StreamException.UNSUPPORTED_FUNCTION_ALTERNATIVE)
+    @Suppress("UNCHECKED_CAST")
+    override fun <T : Any> stream(query: Query, streamer: QueryStream<T>) {
+        if (streamer is QueryMapStream)
+            throw StreamException(StreamException.UNSUPPORTED_FUNCTION_ALTERNATIVE)
+
+        cursor<T>(query).use { cursor ->
+            while (cursor.hasNext()) {
+                if (!streamer.accept(cursor.next(), this))
+                    break
+            }
+        }
+    }
+
+    /**
+     * Open a cursor held by the server.  Results are requested fetchSize at a time as the cursor is iterated.
+     *
+     * @param query Query to execute
+     * @param fetchSize Number of results requested with each batch
+     * @return Cursor over the query results
+     * @throws OnyxException Error while executing the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun <E> cursor(query: Query, fetchSize: Int): CloseableIterator<E> {
+        val connection = (pushRegistrar as RMIClient).pinned(proxy)
+        return RemoteQueryCursor(connection, fetchSize, connection.openCursor(query, fetchSize))
+    }
+
+    /**
+     * Open a cursor on the server and read its first batch of results.  The server only lets the connection that
+     * opened a cursor read it, so the connection is remembered until the cursor is exhausted or closed.
+     *
+     * @param query Query to execute
+     * @param fetchSize Maximum number of results to read
+     * @return First batch of results
+     * @throws OnyxException Error while executing the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun openCursor(query: Query, fetchSize: Int): QueryCursorPage {
+        val connection = (pushRegistrar as RMIClient).pinned(proxy)
+        return connection.openCursor(query, fetchSize).also {
+            if (it.hasMore)
+                cursorConnections[it.cursorId] = connection
+        }
+    }
+
+    /**
+     * Read the next batch of results from a cursor on the server
+     *
+     * @param cursorId Cursor returned by openCursor
+     * @param fetchSize Maximum number of results to read
+     * @return Next batch of results
+     * @throws OnyxException The cursor is closed or has expired
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun fetchCursor(cursorId: Long, fetchSize: Int): QueryCursorPage {
+        val connection = cursorConnections[cursorId] ?: throw StreamException(StreamException.CURSOR_CLOSED)
+        val page = try {
+            connection.fetchCursor(cursorId, fetchSize)
+        } catch (e: Exception) {
+            cursorConnections.remove(cursorId)
+            throw e
+        }
+        if (!page.hasMore)
+            cursorConnections.remove(cursorId)
+        return page
+    }
+
+    /**
+     * Close a cursor on the server before all of its results are read
+     *
+     * @param cursorId Cursor returned by openCursor
+     * @return Whether the cursor was open
+     * @since 3.9.10
+     */
+    override fun closeCursor(cursorId: Long): Boolean = cursorConnections.remove(cursorId)?.closeCursor(cursorId) ?: false
+
+    /**
+     * Send a batch of operations to the server in a single request.  The server executes consecutive reads in
+     * parallel.
+     *
+     * As with saveEntity the values of saved entities, such as generated identifiers, are copied back onto the
+     * entities passed in.  Query listeners are not registered and query result counts are not updated.
+     *
+     * @param operations Operations to execute in order
+     * @param atomic Whether to stop at the first failure and undo the saves and deletes executed before it
+     * @return Result of each operation in the same order as the operations
+     * @throws OnyxException An operation is not supported or the first error of an atomic batch
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun executeBatch(operations: List<BatchOperation>, atomic: Boolean): List<BatchResult> {
+        val results = proxy.executeBatch(operations, atomic)
+        operations.forEachIndexed { index, operation ->
+            val entity = operation.arguments.firstOrNull() as? IManagedEntity
+            val saved = results[index].value as? IManagedEntity
+            if (operation.isSave && entity != null && saved != null)
+                entity.copy(saved, context)
+        }
+        return results
+    }
+
+    /**
+     * Invoke a method of the server persistence manager without blocking.  The future completes once the server
+     * responds so many calls can be awaiting a response over the same connection.
+     *
+     * The call is sent to the server as is.  Unlike the methods of this persistence manager, saved identifiers are
+     * not copied back onto the entities passed in and query listeners are not registered.
+     *
+     * @param call Invokes a single method of the persistence manager
+     * @return Future completed with the result of the method or exceptionally with the error of the server
+     * @since 3.9.10
+     */
+    fun <R> async(call: PersistenceManager.() -> R): CompletableFuture<R> = (pushRegistrar as RMIClient).invokeAsync(proxy, call)
 
 
     /**
@@ -449,6 +580,17 @@ open class RemotePersistenceManager : PersistenceManager {
         return proxy.countForQuery(query)
     }
 
+    /**
+     * Get the plan the server chose to execute a query without executing it
+     *
+     * @param query Query to plan
+     * @return The plan chosen for the query
+     * @throws OnyxException Error while planning the query
+     * @since 3.9.10
+     */
+    @Throws(OnyxException::class)
+    override fun explain(query: Query): QueryPlan = proxy.explain(query)
+
     /**
      * Un-register a query listener.  This will remove the listener from observing changes for that query.
      * If you do not un-register queries, they will not expire nor will they be de-registered automatically.
@@ -0,0 +1,50 @@
+package com.onyx.persistence.query
+
+import com.onyx.lang.CloseableIterator
+import com.onyx.persistence.manager.PersistenceManager
+
+/**
+ * Cursor held by a remote server.  Results are requested a batch at a time and the next batch is only requested once
+ * the previous one is read, so the client holds a single batch no matter how many results there are.
+ *
+ * @param proxy Proxy of the server persistence manager bound to the connection the cursor was opened on.  The server
+ *              only lets that connection read or close the cursor.
+ * @param fetchSize Number of results requested with each batch
+ * @param page First batch of results returned when the cursor was opened
+ *
+ * @since 3.9.10
+ */
+class RemoteQueryCursor<out E>(private val proxy: PersistenceManager, private val fetchSize: Int, private var page: QueryCursorPage) : CloseableIterator<E> {
+
+    private var results = page.results.iterator()
+    private var isClosed = false
+
+    override fun hasNext(): Boolean {
+        while (!results.hasNext()) {
+            if (isClosed || !page.hasMore)
+                return false
+            page = proxy.fetchCursor(page.cursorId, fetchSize)
+            results = page.results.iterator()
+        }
+        return true
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun next(): E {
+        if (!hasNext())
+            throw NoSuchElementException()
+        return results.next() as E
+    }
+
+    /**
+     * Close the cursor on the server if it still has results
+     */
+    override fun close() {
+        if (isClosed)
+            return
+        isClosed = true
+        results = emptyList<Any?>().iterator()
+        if (page.hasMore)
+            proxy.closeCursor(page.cursorId)
+    }
+}